@@ -24,6 +24,8 @@ import com.hiddenswitch.spellsource.client.models.Match;
 import com.hiddenswitch.spellsource.client.models.SpanContext;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import java.util.ArrayList;
+import java.util.List;
 import java.io.Serializable;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
@@ -42,9 +44,15 @@ public class EnvelopeAdded implements Serializable {
   @JsonProperty("friend")
   private Friend friend = null;
 
+  @JsonProperty("friends")
+  private List<Friend> friends = null;
+
   @JsonProperty("invite")
   private Invite invite = null;
 
+  @JsonProperty("invites")
+  private List<Invite> invites = null;
+
   @JsonProperty("match")
   private Match match = null;
 
@@ -87,6 +95,32 @@ public class EnvelopeAdded implements Serializable {
     this.friend = friend;
   }
 
+  public EnvelopeAdded friends(List<Friend> friends) {
+    this.friends = friends;
+    return this;
+  }
+
+  public EnvelopeAdded addFriendsItem(Friend friendsItem) {
+    if (this.friends == null) {
+      this.friends = new ArrayList<>();
+    }
+    this.friends.add(friendsItem);
+    return this;
+  }
+
+   /**
+   * Several friends to add at once. When a client connects with a ready sub-protocol, like spellsource-json-ready, the first envelope it receives contains all of the user's friends in this field. 
+   * @return friends
+  **/
+  @ApiModelProperty(value = "Several friends to add at once. When a client connects with a ready sub-protocol, like spellsource-json-ready, the first envelope it receives contains all of the user's friends in this field. ")
+  public List<Friend> getFriends() {
+    return friends;
+  }
+
+  public void setFriends(List<Friend> friends) {
+    this.friends = friends;
+  }
+
   public EnvelopeAdded invite(Invite invite) {
     this.invite = invite;
     return this;
@@ -105,6 +139,32 @@ public class EnvelopeAdded implements Serializable {
     this.invite = invite;
   }
 
+  public EnvelopeAdded invites(List<Invite> invites) {
+    this.invites = invites;
+    return this;
+  }
+
+  public EnvelopeAdded addInvitesItem(Invite invitesItem) {
+    if (this.invites == null) {
+      this.invites = new ArrayList<>();
+    }
+    this.invites.add(invitesItem);
+    return this;
+  }
+
+   /**
+   * Several invites to add at once. When a client connects with a ready sub-protocol, like spellsource-json-ready, the first envelope it receives contains all of the user's pending incoming invites in this field. 
+   * @return invites
+  **/
+  @ApiModelProperty(value = "Several invites to add at once. When a client connects with a ready sub-protocol, like spellsource-json-ready, the first envelope it receives contains all of the user's pending incoming invites in this field. ")
+  public List<Invite> getInvites() {
+    return invites;
+  }
+
+  public void setInvites(List<Invite> invites) {
+    this.invites = invites;
+  }
+
   public EnvelopeAdded match(Match match) {
     this.match = match;
     return this;
@@ -153,14 +213,16 @@ public class EnvelopeAdded implements Serializable {
     EnvelopeAdded envelopeAdded = (EnvelopeAdded) o;
     return Objects.equals(this.chatMessage, envelopeAdded.chatMessage) &&
         Objects.equals(this.friend, envelopeAdded.friend) &&
+        Objects.equals(this.friends, envelopeAdded.friends) &&
         Objects.equals(this.invite, envelopeAdded.invite) &&
+        Objects.equals(this.invites, envelopeAdded.invites) &&
         Objects.equals(this.match, envelopeAdded.match) &&
         Objects.equals(this.spanContext, envelopeAdded.spanContext);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(chatMessage, friend, invite, match, spanContext);
+    return Objects.hash(chatMessage, friend, friends, invite, invites, match, spanContext);
   }
 
 
@@ -171,7 +233,9 @@ public class EnvelopeAdded implements Serializable {
     
     sb.append("    chatMessage: ").append(toIndentedString(chatMessage)).append("\n");
     sb.append("    friend: ").append(toIndentedString(friend)).append("\n");
+    sb.append("    friends: ").append(toIndentedString(friends)).append("\n");
     sb.append("    invite: ").append(toIndentedString(invite)).append("\n");
+    sb.append("    invites: ").append(toIndentedString(invites)).append("\n");
     sb.append("    match: ").append(toIndentedString(match)).append("\n");
     sb.append("    spanContext: ").append(toIndentedString(spanContext)).append("\n");
     sb.append("}");
@@ -3,14 +3,13 @@ package com.hiddenswitch.spellsource.draft;
 import net.demilich.metastone.game.cards.*;
 import net.demilich.metastone.game.decks.DeckFormat;
 import net.demilich.metastone.game.entities.heroes.HeroClass;
+import net.demilich.metastone.game.utils.AliasSampler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.ref.WeakReference;
 import java.util.*;
 
-import static java.util.stream.Collectors.toList;
-
 /**
  * Implements a basic draft where the user is given a selection of champions from all {@link DeckFormat#spellsource()}
  * champions, and 30 rounds of 3-card choices pulled from a weighted selection of {@link DeckFormat#spellsource()}
@@ -48,6 +47,30 @@ public class DraftLogic {
 	 * {@link Rarity#LEGENDARY} cards are shown with chance {@code 1 - EPIC_ROLL - RARE_ROLL - COMMON_ROLL}.
 	 */
 	private static final float EPIC_ROLL = 0.15f;
+	/**
+	 * The rarities a round of choices can have, in the order of {@link #RARITY_SAMPLER}'s weights.
+	 */
+	private static final Rarity[] RARITIES = {Rarity.COMMON, Rarity.RARE, Rarity.EPIC, Rarity.LEGENDARY};
+	private static final AliasSampler RARITY_SAMPLER = new AliasSampler(new double[]{
+			COMMON_ROLL, RARE_ROLL, EPIC_ROLL, 1.0 - COMMON_ROLL - RARE_ROLL - EPIC_ROLL});
+	/**
+	 * The card sets a draft draws from and the odds of each, with the latest expansion {@link #EXPANSION_ODDS_FACTOR}
+	 * times more likely than the others.
+	 */
+	private static final Map<DeckFormat, Double> FORMAT_ODDS;
+
+	static {
+		// Until we have enough mean streets cards, don't use it
+		String latestExpansion = CardSet.SPELLSOURCE_BASIC;
+		List<String> equals = Collections.singletonList(CardSet.CUSTOM);
+		double latestExpansionOdds = EXPANSION_ODDS_FACTOR / (equals.size() + EXPANSION_ODDS_FACTOR);
+
+		Map<DeckFormat, Double> formatOdds = new LinkedHashMap<>();
+		formatOdds.put(new DeckFormat().withCardSets(latestExpansion), latestExpansionOdds);
+		formatOdds.put(new DeckFormat().withCardSets(equals), 1.0 - latestExpansionOdds);
+		FORMAT_ODDS = Collections.unmodifiableMap(formatOdds);
+	}
+
 	private final WeakReference<DraftContext> context;
 
 
@@ -112,105 +135,35 @@ public class DraftLogic {
 	 * Creates the list of cards that will appear in the draft.
 	 * <p>
 	 * Uses the {@link DeckFormat#spellsource()} sets and sets {@link CardSet#SPELLSOURCE_BASIC} to be {@link
-	 * #EXPANSION_ODDS_FACTOR} more likely to appear.
+	 * #EXPANSION_ODDS_FACTOR} more likely to appear. The cards are drawn from the champion's precomputed {@link
+	 * DraftPool}.
 	 *
 	 * @param hero
 	 * @return
 	 */
 	private List<List<String>> createDraftCards(String hero) {
-		ArrayList<List<Card>> draftCards = new ArrayList<>(ROUNDS);
-
-		List<String> equals = Arrays.asList(
-				CardSet.CUSTOM
-		);
-
-		// Until we have enough mean streets cards, don't use it
-		String latestExpansion = CardSet.SPELLSOURCE_BASIC;
-
-		Set<CardType> validCardTypes = new HashSet<>(Arrays.asList(CardType.values()));
-		Set<String> bannedCards = new HashSet<>(CardCatalogue.getBannedDraftCards());
-
-		CardCatalogue.getAll().stream()
-				.filter(Card::isQuest)
-				.map(Card::getCardId)
-				.forEach(bannedCards::add);
-
-		for (int draft = 0; draft < ROUNDS; draft++) {
-			// Select a rarity at the appropriate frequency
-			float rarityRoll = roll();
-			Rarity rarity;
-			if (rarityRoll < COMMON_ROLL) {
-				rarity = Rarity.COMMON;
-			} else if (rarityRoll < COMMON_ROLL + RARE_ROLL) {
-				rarity = Rarity.RARE;
-			} else if (rarityRoll < COMMON_ROLL + RARE_ROLL + EPIC_ROLL) {
-				rarity = Rarity.EPIC;
-			} else {
-				rarity = Rarity.LEGENDARY;
+		List<List<String>> draftCards = new ArrayList<>(ROUNDS);
+		DraftPool pool = DraftPool.get(hero, FORMAT_ODDS);
+
+		while (draftCards.size() < ROUNDS) {
+			// Select a rarity at the appropriate frequency, rolling again if it has too few cards to fill a round
+			Rarity rarity = RARITIES[RARITY_SAMPLER.sample(getRandom())];
+			if (pool.size(rarity) < CARDS_PER_ROUND) {
+				logger.info("Draft pulled too few cards given parameters: draft={}, rarity={}, hero={}", draftCards.size(), rarity, hero);
+				continue;
 			}
 
-			// Select the card set. The latest expansion gets a 50% bonus
-			List<Card> draftChoices = new ArrayList<>(CARDS_PER_ROUND);
-
-			while (draftChoices.stream().map(Card::getCardId).distinct().count() < CARDS_PER_ROUND) {
-				float cardSetRoll = roll();
-				DeckFormat format = new DeckFormat();
-				float latestExpansionOdds = EXPANSION_ODDS_FACTOR / (equals.size() + EXPANSION_ODDS_FACTOR);
-				if (cardSetRoll < latestExpansionOdds) {
-					format.withCardSets(latestExpansion);
-				} else {
-					format.withCardSets(equals);
-				}
-
-				// Get neutral and hero cards
-				CardList classCards = CardCatalogue.query(format, c -> {
-					return c.hasHeroClass(hero)
-							&& !bannedCards.contains(c.getCardId())
-							&& c.getRarity() == rarity
-							&& validCardTypes.contains(c.getCardType())
-							&& c.isCollectible();
-				});
-
-				CardList neutralCards = CardCatalogue.query(format, c -> {
-					return c.hasHeroClass(HeroClass.ANY)
-							&& !bannedCards.contains(c.getCardId())
-							&& c.getRarity() == rarity
-							&& validCardTypes.contains(c.getCardType())
-							&& c.isCollectible();
-				});
-
-				// Total five copies of the class cards and then the neutrals
-				CardList cards = classCards.clone()
-						.addAll(classCards)
-						.addAll(classCards)
-						.addAll(classCards)
-						.addAll(classCards)
-						.addAll(neutralCards);
-
-				if (cards.getCount() == 0) {
-					logger.info("Draft pulled no cards given parameters: draft={}, rarity={}, sets={}", draft, rarity, format.getCardSets());
-					continue;
+			List<String> draftChoices = new ArrayList<>(CARDS_PER_ROUND);
+			while (draftChoices.size() < CARDS_PER_ROUND) {
+				String nextCard = pool.sample(rarity, getRandom());
+				if (!draftChoices.contains(nextCard)) {
+					draftChoices.add(nextCard);
 				}
-
-				// Shuffle then choose until we're done
-				cards.shuffle(getRandom());
-
-				final Card nextCard = cards.removeFirst();
-
-				if (draftChoices.stream().anyMatch(c -> Objects.equals(c.getCardId(), nextCard.getCardId()))) {
-					continue;
-				}
-
-				draftChoices.add(nextCard);
 			}
 
 			draftCards.add(draftChoices);
 		}
-		return draftCards.stream().map(d -> d.stream().map(Card::getCardId).collect(toList())).collect(toList());
-	}
-
-	private float roll() {
-		return getRandom().nextFloat();
+		return draftCards;
 	}
 
 	private Random getRandom() {
@@ -0,0 +1,110 @@
+package com.hiddenswitch.spellsource.draft;
+
+import net.demilich.metastone.game.cards.*;
+import net.demilich.metastone.game.decks.DeckFormat;
+import net.demilich.metastone.game.entities.heroes.HeroClass;
+import net.demilich.metastone.game.utils.AliasSampler;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The cards a draft for a champion can offer, grouped by rarity, with a weighted sampler for each rarity.
+ * <p>
+ * A card's weight combines the odds of its card set being rolled and the five-to-one bonus class cards have over
+ * neutral cards, so that {@link #sample(Rarity, Random)} picks a card with the same probability as rolling a card set
+ * and then drawing from the class and neutral cards in it. Pools are built once per champion, card set odds and
+ * {@link CardCatalogue#getVersion()}, when a draft first needs them.
+ */
+public final class DraftPool {
+	/**
+	 * How many times more likely a class card is to be drawn than a neutral card of the same rarity and set.
+	 */
+	public static final int CLASS_CARD_WEIGHT = 5;
+	private static final Map<List<Object>, DraftPool> POOLS = new ConcurrentHashMap<>();
+
+	private final Map<Rarity, String[]> cardIds = new EnumMap<>(Rarity.class);
+	private final Map<Rarity, AliasSampler> samplers = new EnumMap<>(Rarity.class);
+
+	private DraftPool(String heroClass, Map<DeckFormat, Double> formatOdds) {
+		Set<String> bannedCards = new HashSet<>(CardCatalogue.getBannedDraftCards());
+		CardList candidates = CardCatalogue.query(null, c -> c.isCollectible()
+				&& !c.isQuest()
+				&& !bannedCards.contains(c.getCardId())
+				&& (c.hasHeroClass(heroClass) || c.hasHeroClass(HeroClass.ANY)));
+
+		for (Rarity rarity : Rarity.values()) {
+			List<String> rarityCardIds = new ArrayList<>();
+			List<Double> rarityWeights = new ArrayList<>();
+			for (Map.Entry<DeckFormat, Double> entry : formatOdds.entrySet()) {
+				DeckFormat format = entry.getKey();
+				List<Card> cards = new ArrayList<>();
+				int totalWeight = 0;
+				for (Card card : candidates) {
+					if (card.getRarity() == rarity && format.isInFormat(card)) {
+						cards.add(card);
+						totalWeight += weight(card, heroClass);
+					}
+				}
+				// A set with no cards of this rarity is never rolled, so its odds go to the other sets
+				for (Card card : cards) {
+					rarityCardIds.add(card.getCardId());
+					rarityWeights.add(entry.getValue() * weight(card, heroClass) / totalWeight);
+				}
+			}
+
+			if (rarityCardIds.isEmpty()) {
+				continue;
+			}
+			double[] weights = new double[rarityWeights.size()];
+			for (int i = 0; i < weights.length; i++) {
+				weights[i] = rarityWeights.get(i);
+			}
+			cardIds.put(rarity, rarityCardIds.toArray(new String[0]));
+			samplers.put(rarity, new AliasSampler(weights));
+		}
+	}
+
+	/**
+	 * Gets the draft pool of a champion, building it if necessary.
+	 *
+	 * @param heroClass  The champion.
+	 * @param formatOdds The card sets to draw from and the odds of each being rolled.
+	 * @return The pool.
+	 */
+	public static DraftPool get(String heroClass, Map<DeckFormat, Double> formatOdds) {
+		return POOLS.computeIfAbsent(Arrays.asList(heroClass, CardCatalogue.getVersion(), formatOdds), k -> new DraftPool(heroClass, formatOdds));
+	}
+
+	/**
+	 * Draws a card of the given rarity.
+	 *
+	 * @param rarity The rarity.
+	 * @param random The source of randomness.
+	 * @return A card ID, or {@code null} if the pool has no cards of this rarity.
+	 */
+	@Nullable
+	public String sample(Rarity rarity, Random random) {
+		AliasSampler sampler = samplers.get(rarity);
+		if (sampler == null) {
+			return null;
+		}
+		return cardIds.get(rarity)[sampler.sample(random)];
+	}
+
+	/**
+	 * The number of distinct cards of the given rarity in the pool.
+	 *
+	 * @param rarity The rarity.
+	 * @return The number of cards.
+	 */
+	public int size(Rarity rarity) {
+		String[] ids = cardIds.get(rarity);
+		return ids == null ? 0 : ids.length;
+	}
+
+	private static int weight(Card card, String heroClass) {
+		return card.hasHeroClass(heroClass) ? CLASS_CARD_WEIGHT : 1;
+	}
+}
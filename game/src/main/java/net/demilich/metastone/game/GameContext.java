@@ -218,6 +218,7 @@ public class GameContext implements Cloneable, Serializable, Inventory, EntityZo
 	private boolean ignoreEvents;
 	private CardList tempCards = new CardArrayList();
 	private boolean didCallEndGame;
+	private ExecutionProfile executionProfile = ExecutionProfile.FULL;
 
 	private transient Trace trace = new Trace();
 	private transient Fiber<Void> fiber;
@@ -243,6 +244,21 @@ public class GameContext implements Cloneable, Serializable, Inventory, EntityZo
 	 * @param fromContext The other context to copy.
 	 */
 	public GameContext(GameContext fromContext) {
+		this(fromContext, fromContext.getExecutionProfile());
+	}
+
+	/**
+	 * Creates a game context from another context by copying it, using the specified execution profile for the copy.
+	 * <p>
+	 * When the profile does not trace, the other context's {@link Trace} is not copied. Use this to create throwaway
+	 * contexts for AI rollouts.
+	 *
+	 * @param fromContext      The other context to copy.
+	 * @param executionProfile The profile of the new context.
+	 * @see ExecutionProfile for more about what each profile records.
+	 */
+	public GameContext(GameContext fromContext, ExecutionProfile executionProfile) {
+		setExecutionProfile(executionProfile);
 		GameLogic logicClone = fromContext.getLogic().clone();
 		Player player1Clone = fromContext.getPlayer1().clone();
 		Player player2Clone = fromContext.getPlayer2().clone();
@@ -260,7 +276,7 @@ public class GameContext implements Cloneable, Serializable, Inventory, EntityZo
 		setStatus(fromContext.getStatus());
 		setTurnState(fromContext.getTurnState());
 		setWinner(fromContext.getWinner());
-		setTrace(fromContext.getTrace().clone());
+		setTrace(executionProfile.isTracing() ? fromContext.getTrace().clone() : new Trace());
 
 		for (Map.Entry<Environment, Object> entry : fromContext.getEnvironment().entrySet()) {
 			Object value1 = entry.getValue();
@@ -349,10 +365,14 @@ public class GameContext implements Cloneable, Serializable, Inventory, EntityZo
 
 		// Expire the game just once here
 		getTriggerManager().expireAll();
-		LOGGER.debug("endGame {}: Game is now ending", getGameId());
+		if (getExecutionProfile().isLogging()) {
+			LOGGER.debug("endGame {}: Game is now ending", getGameId());
+		}
 		setWinner(getLogic().getWinner(getActivePlayer(), getOpponent(getActivePlayer())));
 		notifyPlayersGameOver();
-		calculateStatistics();
+		if (getExecutionProfile().isRecordingStatistics()) {
+			calculateStatistics();
+		}
 	}
 
 	@Suspendable
@@ -383,7 +403,9 @@ public class GameContext implements Cloneable, Serializable, Inventory, EntityZo
 	 */
 	@Suspendable
 	public void endTurn() {
-		LOGGER.debug("{} endTurn: Ending turn {}", getGameId(), getActivePlayer().getId());
+		if (getExecutionProfile().isLogging()) {
+			LOGGER.debug("{} endTurn: Ending turn {}", getGameId(), getActivePlayer().getId());
+		}
 		getLogic().endTurn(getActivePlayerId());
 		setActivePlayerId(getLogic().getNextActivePlayerId());
 		setTurnState(TurnState.TURN_ENDED);
@@ -858,7 +880,9 @@ public class GameContext implements Cloneable, Serializable, Inventory, EntityZo
 	public void init(int startingPlayerId) {
 		setActivePlayerId(startingPlayerId);
 		getEnvironment().put(Environment.STARTING_PLAYER, startingPlayerId);
-		LOGGER.debug("{} init: Initializing game with starting player {}", getGameId(), getActivePlayer().getUserId());
+		if (getExecutionProfile().isLogging()) {
+			LOGGER.debug("{} init: Initializing game with starting player {}", getGameId(), getActivePlayer().getUserId());
+		}
 		getPlayers().forEach(p -> p.getAttributes().put(Attribute.GAME_START_TIME_MILLIS, (int) (System.currentTimeMillis() % Integer.MAX_VALUE)));
 		getLogic().initializePlayerAndMoveMulliganToSetAside(PLAYER_1, startingPlayerId == PLAYER_1);
 		getLogic().initializePlayerAndMoveMulliganToSetAside(PLAYER_2, startingPlayerId == PLAYER_2);
@@ -877,6 +901,9 @@ public class GameContext implements Cloneable, Serializable, Inventory, EntityZo
 	}
 
 	protected void traceMulligans(List<Card> mulligansActive, List<Card> mulligansNonActive) {
+		if (!getExecutionProfile().isTracing()) {
+			return;
+		}
 		int[][] tracedMulligans = new int[2][];
 		tracedMulligans[getActivePlayerId()] = mulligansActive.stream().mapToInt(Card::getId).toArray();
 		tracedMulligans[getOpponent(getActivePlayer()).getId()] = mulligansNonActive.stream().mapToInt(Card::getId).toArray();
@@ -887,6 +914,9 @@ public class GameContext implements Cloneable, Serializable, Inventory, EntityZo
 	 * Ensures that the game state is traced / recorded
 	 */
 	protected void startTrace() {
+		if (!getExecutionProfile().isTracing()) {
+			return;
+		}
 		trace.setStartState(getGameState());
 		trace.setSeed(getLogic().getSeed());
 		trace.setCatalogueVersion(CardCatalogue.getVersion());
@@ -954,6 +984,9 @@ public class GameContext implements Cloneable, Serializable, Inventory, EntityZo
 	 */
 	@Suspendable
 	public boolean takeActionInTurn() {
+		if (getExecutionProfile().isTracing()) {
+			trace.checkpoint(this);
+		}
 		setActionsThisTurn(getActionsThisTurn() + 1);
 		if (getActionsThisTurn() > 99) {
 			LOGGER.warn("{} takeActionInTurn: Turn has been forcefully ended after {} actions", getGameId(), getActionsThisTurn());
@@ -982,7 +1015,9 @@ public class GameContext implements Cloneable, Serializable, Inventory, EntityZo
 			throw new NullPointerException("nextAction");
 		}
 
-		trace.addAction(nextAction.getId(), nextAction, this);
+		if (getExecutionProfile().isTracing()) {
+			trace.addAction(nextAction.getId(), nextAction, this);
+		}
 
 		getLogic().performGameAction(getActivePlayerId(), nextAction);
 
@@ -1314,6 +1349,34 @@ public class GameContext implements Cloneable, Serializable, Inventory, EntityZo
 		return new GameState(this, this.getTurnState(), true);
 	}
 
+	/**
+	 * Moves the complete state of another context into this one without copying it, keeping this context's logic,
+	 * behaviours and execution profile.
+	 * <p>
+	 * Unlike {@link #setGameState(GameState)}, this also restores the random state, the statistics, the trace and the
+	 * progress of the current turn, so that this context continues exactly where the other one left off.
+	 *
+	 * @param source The context whose state should be used. It should not be used afterwards.
+	 * @see GameContextSnapshot for a way to store and restore a context.
+	 */
+	public void restoreState(GameContext source) {
+		getLogic().restoreState(source.getLogic());
+		setDeckFormat(source.getDeckFormat());
+		setPlayer1(source.getPlayer1());
+		setPlayer2(source.getPlayer2());
+		setTempCards(source.getTempCards());
+		setTriggerManager(source.getTriggerManager());
+		setEnvironment(source.getEnvironment());
+		setActivePlayerId(source.getActivePlayerId());
+		setTurn(source.getTurn());
+		setActionsThisTurn(source.getActionsThisTurn());
+		setStatus(source.getStatus());
+		setTurnState(source.getTurnState());
+		setWinner(source.getWinner());
+		setTrace(source.getTrace());
+		didCallEndGame = source.didCallEndGame;
+	}
+
 	public GameState getGameStateCopy() {
 		return new GameState(this);
 	}
@@ -1468,6 +1531,23 @@ public class GameContext implements Cloneable, Serializable, Inventory, EntityZo
 		endGame();
 	}
 
+	/**
+	 * Continues a game whose turn is in progress, as though {@link #resume()} had been called before the turn started.
+	 * <p>
+	 * Use this to continue a context copied at the start of {@link #takeActionInTurn()}, like the checkpoints recorded
+	 * by {@link Trace#checkpoint(GameContext)}.
+	 */
+	@Suspendable
+	public void resumeTurn() {
+		while (takeActionInTurn()) {
+		}
+		if (getTurn() > GameLogic.TURN_LIMIT) {
+			endGame();
+			return;
+		}
+		resume();
+	}
+
 	/**
 	 * Retrieves the stack of event sources.
 	 *
@@ -1951,7 +2031,30 @@ public class GameContext implements Cloneable, Serializable, Inventory, EntityZo
 		return 0;
 	}
 
-	protected void setTrace(Trace trace) {
+	public void setTrace(Trace trace) {
 		this.trace = trace;
 	}
+
+	/**
+	 * Indicates how much bookkeeping this context does besides executing the rules of the game.
+	 *
+	 * @return The execution profile, {@link ExecutionProfile#FULL} by default.
+	 */
+	public ExecutionProfile getExecutionProfile() {
+		return executionProfile;
+	}
+
+	/**
+	 * Sets how much bookkeeping this context does. Copies made with {@link #clone()} inherit the profile.
+	 * <p>
+	 * Set {@link ExecutionProfile#ROLLOUT} before a throwaway context is played to skip the trace, unread statistics,
+	 * logging and client notifications. Game outcomes are identical under every profile.
+	 *
+	 * @param executionProfile The profile.
+	 * @return This instance.
+	 */
+	public GameContext setExecutionProfile(ExecutionProfile executionProfile) {
+		this.executionProfile = executionProfile;
+		return this;
+	}
 }
@@ -0,0 +1,117 @@
+package net.demilich.metastone.game;
+
+import net.demilich.metastone.game.behaviour.Behaviour;
+import net.demilich.metastone.game.logic.ExecutionProfile;
+import net.demilich.metastone.game.logic.Trace;
+
+import java.io.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A compact, serialized copy of the complete state of a {@link GameContext}, including its random state and {@link
+ * Trace}.
+ * <p>
+ * Snapshots are compressed Java serializations, typically a small fraction of the size of the live context. Use them to
+ * keep games that are waiting on a player out of the heap, or to move them between processes. The {@link Behaviour}
+ * instances of the context are not stored.
+ * <p>
+ * For <b>example</b>, to take a snapshot of a context waiting on an action and continue it later:
+ * <pre>
+ *   {@code
+ *   GameContextSnapshot snapshot = GameContextSnapshot.of(context);
+ *   // ...
+ *   GameContext restored = new GameContext();
+ *   snapshot.restoreTo(restored);
+ *   restored.setBehaviours(behaviours);
+ *   restored.resumeTurn();
+ *   }
+ * </pre>
+ */
+public final class GameContextSnapshot implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private final byte[] data;
+
+	private GameContextSnapshot(byte[] data) {
+		this.data = data;
+	}
+
+	/**
+	 * Takes a snapshot of the context. The context is not modified.
+	 *
+	 * @param context The context.
+	 * @return The snapshot.
+	 * @throws UncheckedIOException if an entity in the context could not be serialized.
+	 */
+	public static GameContextSnapshot of(GameContext context) {
+		// Subclasses of GameContext may reference networking or other state that can't be serialized, so only the game
+		// state is copied into a plain context
+		GameContext copy = new GameContext(context, ExecutionProfile.FULL);
+		copy.setBehaviours(new Behaviour[2]);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream output = new ObjectOutputStream(new DeflaterOutputStream(bytes, new Deflater(Deflater.BEST_SPEED)))) {
+			output.writeObject(copy);
+			// The trace is transient in the context
+			output.writeObject(copy.getTrace());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return new GameContextSnapshot(bytes.toByteArray());
+	}
+
+	/**
+	 * Creates a snapshot from the bytes returned by {@link #getBytes()}.
+	 *
+	 * @param bytes The bytes.
+	 * @return The snapshot.
+	 */
+	public static GameContextSnapshot fromBytes(byte[] bytes) {
+		return new GameContextSnapshot(bytes);
+	}
+
+	/**
+	 * Restores a new, plain context from this snapshot. Its behaviours are {@code null} and must be set before the game
+	 * can continue.
+	 *
+	 * @return A new context.
+	 * @throws UncheckedIOException if the snapshot could not be read.
+	 */
+	public GameContext restore() {
+		try (ObjectInputStream input = new ObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+			GameContext context = (GameContext) input.readObject();
+			context.setTrace((Trace) input.readObject());
+			// The logic's reference to its context is transient
+			context.setLogic(context.getLogic());
+			return context;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (ClassNotFoundException e) {
+			throw new UncheckedIOException(new InvalidClassException(e.getMessage()));
+		}
+	}
+
+	/**
+	 * Restores the state in this snapshot into an existing context, keeping the context's class, logic and behaviours.
+	 *
+	 * @param context The context to restore into.
+	 * @see GameContext#restoreState(GameContext) for more about what is restored.
+	 */
+	public void restoreTo(GameContext context) {
+		context.restoreState(restore());
+	}
+
+	/**
+	 * @return The compressed snapshot, suitable for storing on disk or sending to another process.
+	 */
+	public byte[] getBytes() {
+		return data;
+	}
+
+	/**
+	 * @return The size of the compressed snapshot in bytes.
+	 */
+	public int size() {
+		return data.length;
+	}
+}
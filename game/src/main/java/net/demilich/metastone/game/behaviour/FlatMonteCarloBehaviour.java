@@ -5,26 +5,34 @@ import net.demilich.metastone.game.GameContext;
 import net.demilich.metastone.game.Player;
 import net.demilich.metastone.game.actions.GameAction;
 import net.demilich.metastone.game.cards.Card;
+import net.demilich.metastone.game.logic.ExecutionProfile;
+import net.demilich.metastone.game.logic.XORShiftRandom;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * A behaviour which randomly samples the game tree seeking sequences of actions that terminate in wins.
+ * <p>
+ * Rollouts for every candidate action are split into {@link RecursiveTask} instances and executed on a work-stealing
+ * {@link ForkJoinPool} (by default {@link ForkJoinPool#commonPool()}). Win counts are summed as the tasks are joined, so
+ * no locks are taken to reduce the results. Each worker thread reuses its own {@link RolloutBuffer}.
+ * <p>
+ * The random seed of every rollout is derived from the state of the context's {@link
+ * net.demilich.metastone.game.logic.GameLogic#getRandom()}, the index of the candidate action and the index of the
+ * rollout. A game with a fixed seed will therefore reproduce the same decisions regardless of how the rollouts were
+ * scheduled across threads, as long as no rollouts were skipped because of the {@link #getTimeout()}.
  */
 public class FlatMonteCarloBehaviour extends IntelligentBehaviour {
-	private static class ScoredAction {
-		protected GameAction action;
-		protected double score;
-	}
-
 	private final static Logger logger = LoggerFactory.getLogger(FlatMonteCarloBehaviour.class);
+	private static final ThreadLocal<RolloutBuffer> BUFFERS = ThreadLocal.withInitial(RolloutBuffer::new);
 	private int iterations;
 	private long timeout = 59000;
+	private transient ForkJoinPool pool;
 
 	public FlatMonteCarloBehaviour() {
 		this(8);
@@ -35,13 +43,13 @@ public class FlatMonteCarloBehaviour extends IntelligentBehaviour {
 	}
 
 	@Suspendable
-	private GameAction getBestAction(Map<GameAction, Double> actionScores) {
+	private GameAction getBestAction(List<GameAction> validActions, double[] actionScores) {
 		GameAction bestAction = null;
 		double bestScore = Integer.MIN_VALUE;
-		for (GameAction actionEntry : actionScores.keySet()) {
-			double score = actionScores.get(actionEntry);
+		for (int i = 0; i < validActions.size(); i++) {
+			double score = actionScores[i];
 			if (score > bestScore) {
-				bestAction = actionEntry;
+				bestAction = validActions.get(i);
 				bestScore = score;
 			}
 		}
@@ -67,8 +75,11 @@ public class FlatMonteCarloBehaviour extends IntelligentBehaviour {
 	}
 
 	@Suspendable
-	private int playRandomUntilEnd(GameContext simulation, int playerId) {
-		simulation.setBehaviours(new Behaviour[]{new PlayRandomBehaviour(), new PlayRandomBehaviour()});
+	private static int playRandomUntilEnd(GameContext simulation, int playerId, long seed) {
+		RolloutBuffer buffer = BUFFERS.get();
+		buffer.reseed(seed);
+		simulation.getLogic().setRandom(buffer.logicRandom);
+		simulation.setBehaviours(buffer.behaviours);
 		simulation.resume();
 		return simulation.getWinningPlayerId() == playerId ? 1 : 0;
 	}
@@ -81,37 +92,37 @@ public class FlatMonteCarloBehaviour extends IntelligentBehaviour {
 		}
 		final int playerId = player.getId();
 		final long startMillis = System.currentTimeMillis();
-		Map<GameAction, Double> actionScores = validActions
-				.parallelStream()
-				.map(gameAction -> {
-					double score = simulate(context, playerId, gameAction, startMillis);
-					ScoredAction scored = new ScoredAction();
-					scored.action = gameAction;
-					scored.score = score;
-					return scored;
-				}).collect(Collectors.toMap(scored -> scored.action, scored -> scored.score));
-
-		return getBestAction(actionScores);
+		final long baseSeed = ((XORShiftRandom) context.getLogic().getRandom()).getState();
+		// Rollouts are thrown away, so they and all of their clones skip tracing and other bookkeeping
+		GameContext root = new GameContext(context, ExecutionProfile.ROLLOUT);
+		double[] actionScores = getPool().invoke(new ActionsTask(root, playerId, validActions, baseSeed, startMillis));
+		return getBestAction(validActions, actionScores);
 	}
 
 	@Suspendable
-	private double simulate(GameContext context, int playerId, GameAction action, long startMillis) {
-		GameContext simulation = context.clone();
+	private double simulate(GameContext simulation, int playerId, GameAction action, long seed, long startMillis) {
 		simulation.performAction(simulation.getActivePlayerId(), action);
 		if (simulation.updateAndGetGameOver()) {
 			// Action leads to lethal
 			return simulation.getWinningPlayerId() == playerId ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
 		}
-		double score = 0;
-		int i = 0;
-		for (; i < iterations; i++) {
-			final boolean timedOut = System.currentTimeMillis() - startMillis > getTimeout();
-			if (timedOut) {
-				break;
-			}
-			score += playRandomUntilEnd(simulation.clone(), playerId);
-		}
-		return score;
+		return new RolloutsTask(simulation, playerId, seed, startMillis, 0, iterations).invoke();
+	}
+
+	/**
+	 * Derives the seed of a specific rollout using the SplitMix64 finalizer, so that neighbouring indices produce
+	 * uncorrelated random sequences.
+	 *
+	 * @param baseSeed The seed of the decision.
+	 * @param index    The index of the action or rollout.
+	 * @return A non-zero seed suitable for {@link XORShiftRandom}.
+	 */
+	static long deriveSeed(long baseSeed, long index) {
+		long z = baseSeed + (index + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return z == 0 ? 0x9E3779B97F4A7C15L : z;
 	}
 
 	public long getTimeout() {
@@ -121,4 +132,131 @@ public class FlatMonteCarloBehaviour extends IntelligentBehaviour {
 	public void setTimeout(long timeout) {
 		this.timeout = timeout;
 	}
+
+	/**
+	 * The pool the rollouts are executed on.
+	 *
+	 * @return The pool set with {@link #setPool(ForkJoinPool)}, or the {@link ForkJoinPool#commonPool()}.
+	 */
+	public ForkJoinPool getPool() {
+		return pool == null ? ForkJoinPool.commonPool() : pool;
+	}
+
+	public FlatMonteCarloBehaviour setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * The per-worker state reused by every rollout executed on that worker's thread.
+	 * <p>
+	 * Rollouts never fork, so a buffer is never used by two rollouts at the same time.
+	 */
+	private static class RolloutBuffer {
+		private final XORShiftRandom logicRandom = new XORShiftRandom(1L);
+		private final XORShiftRandom behaviourRandom = new XORShiftRandom(1L);
+		private final Behaviour[] behaviours;
+
+		private RolloutBuffer() {
+			PlayRandomBehaviour random = new PlayRandomBehaviour().setRandom(behaviourRandom);
+			behaviours = new Behaviour[]{random, random};
+		}
+
+		private void reseed(long seed) {
+			logicRandom.setState(seed);
+			behaviourRandom.setState(deriveSeed(seed, 0));
+		}
+	}
+
+	/**
+	 * Scores every candidate action by forking one {@link RolloutsTask} tree per action.
+	 */
+	private class ActionsTask extends RecursiveTask<double[]> {
+		private final GameContext context;
+		private final int playerId;
+		private final List<GameAction> validActions;
+		private final long baseSeed;
+		private final long startMillis;
+
+		private ActionsTask(GameContext context, int playerId, List<GameAction> validActions, long baseSeed, long startMillis) {
+			this.context = context;
+			this.playerId = playerId;
+			this.validActions = validActions;
+			this.baseSeed = baseSeed;
+			this.startMillis = startMillis;
+		}
+
+		@Override
+		@Suspendable
+		protected double[] compute() {
+			// Cloning is not thread safe, so the source context is only ever cloned on this thread
+			List<RecursiveTask<Double>> tasks = new ArrayList<>(validActions.size());
+			for (int i = 0; i < validActions.size(); i++) {
+				final GameAction action = validActions.get(i);
+				final GameContext simulation = context.clone();
+				final long seed = deriveSeed(baseSeed, i);
+				RecursiveTask<Double> task = new RecursiveTask<Double>() {
+					@Override
+					@Suspendable
+					protected Double compute() {
+						return simulate(simulation, playerId, action, seed, startMillis);
+					}
+				};
+				task.fork();
+				tasks.add(task);
+			}
+
+			double[] scores = new double[tasks.size()];
+			for (int i = 0; i < tasks.size(); i++) {
+				scores[i] = tasks.get(i).join();
+			}
+			return scores;
+		}
+	}
+
+	/**
+	 * Plays the rollouts in the half-open range {@code [from, to)} from the given simulation, splitting the range in
+	 * half until a single rollout remains.
+	 */
+	private class RolloutsTask extends RecursiveTask<Double> {
+		private final GameContext simulation;
+		private final int playerId;
+		private final long seed;
+		private final long startMillis;
+		private final int from;
+		private final int to;
+
+		private RolloutsTask(GameContext simulation, int playerId, long seed, long startMillis, int from, int to) {
+			this.simulation = simulation;
+			this.playerId = playerId;
+			this.seed = seed;
+			this.startMillis = startMillis;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		@Suspendable
+		protected Double compute() {
+			if (to - from <= 1) {
+				final boolean timedOut = System.currentTimeMillis() - startMillis > getTimeout();
+				if (from >= to || timedOut) {
+					return 0d;
+				}
+				GameContext rollout;
+				// The parent simulation is shared between sibling tasks
+				synchronized (simulation) {
+					rollout = simulation.clone();
+				}
+				return (double) playRandomUntilEnd(rollout, playerId, deriveSeed(seed, from));
+			}
+
+			int mid = (from + to) >>> 1;
+			RolloutsTask left = new RolloutsTask(simulation, playerId, seed, startMillis, from, mid);
+			RolloutsTask right = new RolloutsTask(simulation, playerId, seed, startMillis, mid, to);
+			left.fork();
+			double rightScore = right.compute();
+			return left.join() + rightScore;
+		}
+	}
 }
@@ -18,6 +18,7 @@ import net.demilich.metastone.game.entities.Entity;
 import net.demilich.metastone.game.entities.EntityType;
 import net.demilich.metastone.game.entities.heroes.Hero;
 import net.demilich.metastone.game.entities.minions.Minion;
+import net.demilich.metastone.game.logic.ExecutionProfile;
 import net.demilich.metastone.game.logic.GameLogic;
 import net.demilich.metastone.game.logic.TurnState;
 import net.demilich.metastone.game.spells.BuffSpell;
@@ -105,6 +106,10 @@ public class GameStateValueBehaviour extends IntelligentBehaviour {
 	public static final int DEFAULT_MAXIMUM_DEPTH = 2;
 	public static final int DEFAULT_TIMEOUT = 1400;
 	public static final int DEFAULT_LETHAL_TIMEOUT = 15000;
+	/**
+	 * The most terminal nodes scored with one call to {@link Heuristic#getScores(List, int)}.
+	 */
+	public static final int SCORE_BATCH_SIZE = 64;
 	private final static Logger LOGGER = LoggerFactory.getLogger(GameStateValueBehaviour.class);
 
 	protected Heuristic heuristic;
@@ -352,8 +357,9 @@ public class GameStateValueBehaviour extends IntelligentBehaviour {
 	@Suspendable
 	public @Nullable
 	GameAction requestAction(@NotNull GameContext context, @NotNull Player player, @NotNull List<GameAction> validActions) {
-		// Isolate this context
-		context = context.clone();
+		// Isolate this context without copying its trace. Its clones inherit the rollout profile, so the search skips
+		// tracing and other bookkeeping.
+		context = new GameContext(context, ExecutionProfile.ROLLOUT);
 		player = context.getPlayer(player.getId());
 
 		// Consistency checks
@@ -497,18 +503,37 @@ public class GameStateValueBehaviour extends IntelligentBehaviour {
 
 				// Is this node terminal?
 				if (isTerminal(v, getRequestActionStartTime(), playerId)) {
-					postProcess(playerId, v.context);
-					double newScore = heuristic.getScore(v.context, playerId);
-					v.setScore(newScore);
-					if (disposeNodes) {
-						v.dispose();
-						if (forceGarbageCollection) {
-							System.gc();
+					// Score the terminal nodes queued behind this one in the same batch, in the order they would have been
+					// popped. Nothing is pruned or expanded between terminal nodes, so this finds the same best node.
+					List<Node> leaves = new ArrayList<>();
+					leaves.add(v);
+					while (leaves.size() < SCORE_BATCH_SIZE) {
+						Node next = contextStack.peekFirst();
+						if (next == null || !isTerminal(next, getRequestActionStartTime(), playerId)) {
+							break;
 						}
+						leaves.add(contextStack.pop());
 					}
-					if (newScore > score) {
-						maxScore = Optional.of(v);
-						score = newScore;
+					List<GameContext> leafContexts = new ArrayList<>(leaves.size());
+					for (Node leaf : leaves) {
+						postProcess(playerId, leaf.context);
+						leafContexts.add(leaf.context);
+					}
+					double[] newScores = heuristic.getScores(leafContexts, playerId);
+					for (int i = 0; i < leaves.size(); i++) {
+						Node leaf = leaves.get(i);
+						double newScore = newScores[i];
+						leaf.setScore(newScore);
+						if (disposeNodes) {
+							leaf.dispose();
+						}
+						if (newScore > score) {
+							maxScore = Optional.of(leaf);
+							score = newScore;
+						}
+					}
+					if (disposeNodes && forceGarbageCollection) {
+						System.gc();
 					}
 					// If we found lethal, we can terminate immediately
 					if (score == Double.POSITIVE_INFINITY) {
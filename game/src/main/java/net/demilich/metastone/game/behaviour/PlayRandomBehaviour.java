@@ -35,6 +35,18 @@ public class PlayRandomBehaviour extends IntelligentBehaviour {
 		return random;
 	}
 
+	/**
+	 * Replaces the source of this behaviour's random choices, for example with a seeded {@link
+	 * net.demilich.metastone.game.logic.XORShiftRandom} when the playouts must be reproducible.
+	 *
+	 * @param random The random instance to use.
+	 * @return This instance.
+	 */
+	public PlayRandomBehaviour setRandom(Random random) {
+		this.random = random;
+		return this;
+	}
+
 	@Override
 	public GameAction requestAction(GameContext context, Player player, List<GameAction> validActions) {
 		if (validActions.size() == 1) {
@@ -91,6 +91,21 @@ public class FeatureVector implements Cloneable, Serializable {
 		return values.get(param);
 	}
 
+	/**
+	 * Copies the weights into a primitive array indexed by {@link WeightedFeature#ordinal()}.
+	 *
+	 * @return A new array of length {@code WeightedFeature.values().length}.
+	 * @see ThreatBasedHeuristic#extractFeatures(net.demilich.metastone.game.GameContext, int, double[], int) for the
+	 * 		matching feature layout.
+	 */
+	public double[] toArray() {
+		double[] array = new double[WeightedFeature.values().length];
+		for (Map.Entry<WeightedFeature, Double> entry : values.entrySet()) {
+			array[entry.getKey().ordinal()] = entry.getValue();
+		}
+		return array;
+	}
+
 	public Map<WeightedFeature, Double> getValues() {
 		return values;
 	}
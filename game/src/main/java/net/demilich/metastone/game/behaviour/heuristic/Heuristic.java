@@ -2,6 +2,8 @@ package net.demilich.metastone.game.behaviour.heuristic;
 
 import net.demilich.metastone.game.GameContext;
 
+import java.util.List;
+
 /**
  * A heuristic is a function that takes a game state and returns a score from the given player's point of view.
  */
@@ -17,4 +19,22 @@ public interface Heuristic {
 	 * @return A possibly negative score.
 	 */
 	double getScore(GameContext context, int playerId);
+
+	/**
+	 * Scores a batch of game states from the same player's point of view.
+	 * <p>
+	 * Implementations that can evaluate many leaf states more efficiently at once, like {@link ThreatBasedHeuristic},
+	 * should override this method.
+	 *
+	 * @param contexts The game contexts to score. Do not mutate them here.
+	 * @param playerId The player whose point of view should be used to calculate these scores.
+	 * @return An array of scores, where the {@code i}th score corresponds to the {@code i}th context.
+	 */
+	default double[] getScores(List<GameContext> contexts, int playerId) {
+		double[] scores = new double[contexts.size()];
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = getScore(contexts.get(i), playerId);
+		}
+		return scores;
+	}
 }
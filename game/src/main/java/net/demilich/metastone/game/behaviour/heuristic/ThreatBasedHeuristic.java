@@ -16,10 +16,15 @@ import net.demilich.metastone.game.cards.Attribute;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * A heuristic that considers a linear combination of game state entities to determine the strength of a game state.
+ * <p>
+ * Feature values are extracted into primitive arrays by {@link #extractFeatures(GameContext, int, double[], int)}, so
+ * the score is a dot product with the weights. {@link GameStateValueBehaviour} scores its leaf states in
+ * batches with {@link #getScores(List, int)}.
  */
 public class ThreatBasedHeuristic implements Heuristic, Serializable {
 
@@ -86,60 +91,71 @@ public class ThreatBasedHeuristic implements Heuristic, Serializable {
 				|| destroySpell;
 	}
 
-	private final FeatureVector weights;
+	private static final int FEATURE_COUNT = WeightedFeature.values().length;
+	private final double[] weightArray;
 
 	public ThreatBasedHeuristic(FeatureVector vector) {
-		this.weights = vector;
+		this.weightArray = vector.toArray();
 	}
 
-	private double calculateMinionScore(Minion minion, ThreatLevel threatLevel) {
-		double minionScore = weights.get(WeightedFeature.MINION_INTRINSIC_VALUE);
-		minionScore += weights.get(WeightedFeature.MINION_ATTACK_FACTOR)
-				* (minion.getAttack() - minion.getAttributeValue(Attribute.TEMPORARY_ATTACK_BONUS));
-		minionScore += weights.get(WeightedFeature.MINION_HP_FACTOR) * minion.getHp();
+	private static void extractMinionFeatures(Minion minion, ThreatLevel threatLevel, double sign, double[] features, int offset) {
+		features[offset + WeightedFeature.MINION_INTRINSIC_VALUE.ordinal()] += sign;
+		features[offset + WeightedFeature.MINION_ATTACK_FACTOR.ordinal()] += sign * (minion.getAttack() - minion.getAttributeValue(Attribute.TEMPORARY_ATTACK_BONUS));
+		features[offset + WeightedFeature.MINION_HP_FACTOR.ordinal()] += sign * minion.getHp();
 
 		if (minion.hasAttribute(Attribute.TAUNT) || minion.hasAttribute(Attribute.AURA_TAUNT)) {
 			switch (threatLevel) {
 				case RED:
-					minionScore += weights.get(WeightedFeature.MINION_RED_TAUNT_MODIFIER);
+					features[offset + WeightedFeature.MINION_RED_TAUNT_MODIFIER.ordinal()] += sign;
 					break;
 				case YELLOW:
-					minionScore += weights.get(WeightedFeature.MINION_YELLOW_TAUNT_MODIFIER);
+					features[offset + WeightedFeature.MINION_YELLOW_TAUNT_MODIFIER.ordinal()] += sign;
 					break;
 				default:
-					minionScore += weights.get(WeightedFeature.MINION_DEFAULT_TAUNT_MODIFIER);
+					features[offset + WeightedFeature.MINION_DEFAULT_TAUNT_MODIFIER.ordinal()] += sign;
 					break;
 			}
 		}
 
 		if (minion.hasAttribute(Attribute.WINDFURY) || minion.hasAttribute(Attribute.AURA_WINDFURY)) {
-			minionScore += weights.get(WeightedFeature.MINION_WINDFURY_MODIFIER);
+			features[offset + WeightedFeature.MINION_WINDFURY_MODIFIER.ordinal()] += sign;
 		} else if (minion.hasAttribute(Attribute.MEGA_WINDFURY)) {
-			minionScore += 2 * weights.get(WeightedFeature.MINION_WINDFURY_MODIFIER);
+			features[offset + WeightedFeature.MINION_WINDFURY_MODIFIER.ordinal()] += 2 * sign;
 		}
 
 		if (minion.hasAttribute(Attribute.DIVINE_SHIELD)) {
-			minionScore += weights.get(WeightedFeature.MINION_DIVINE_SHIELD_MODIFIER);
+			features[offset + WeightedFeature.MINION_DIVINE_SHIELD_MODIFIER.ordinal()] += sign;
 		}
 		if (minion.hasAttribute(Attribute.SPELL_DAMAGE)) {
-			minionScore += minion.getAttributeValue(Attribute.SPELL_DAMAGE) * weights.get(WeightedFeature.MINION_SPELL_POWER_MODIFIER);
+			features[offset + WeightedFeature.MINION_SPELL_POWER_MODIFIER.ordinal()] += sign * minion.getAttributeValue(Attribute.SPELL_DAMAGE);
 		}
 		if (minion.hasAttribute(Attribute.AURA_SPELL_DAMAGE)) {
-			minionScore += minion.getAttributeValue(Attribute.AURA_SPELL_DAMAGE) * weights.get(WeightedFeature.MINION_SPELL_POWER_MODIFIER);
+			features[offset + WeightedFeature.MINION_SPELL_POWER_MODIFIER.ordinal()] += sign * minion.getAttributeValue(Attribute.AURA_SPELL_DAMAGE);
 		}
 
 		if (minion.hasAttribute(Attribute.STEALTH) || minion.hasAttribute(Attribute.AURA_STEALTH)) {
-			minionScore += weights.get(WeightedFeature.MINION_STEALTHED_MODIFIER);
+			features[offset + WeightedFeature.MINION_STEALTHED_MODIFIER.ordinal()] += sign;
 		}
 		if (minion.hasAttribute(Attribute.UNTARGETABLE_BY_SPELLS)) {
-			minionScore += weights.get(WeightedFeature.MINION_UNTARGETABLE_BY_SPELLS_MODIFIER);
+			features[offset + WeightedFeature.MINION_UNTARGETABLE_BY_SPELLS_MODIFIER.ordinal()] += sign;
 		}
-
-		return minionScore;
 	}
 
-	@Override
-	public double getScore(GameContext context, int playerId) {
+	/**
+	 * Fills a row of a feature matrix with the feature values of the given game state.
+	 * <p>
+	 * The row has one column per {@link WeightedFeature}, indexed by {@link WeightedFeature#ordinal()}, so that the score
+	 * of a non-terminal state is exactly the dot product of the row with {@link FeatureVector#toArray()}.
+	 *
+	 * @param context  The game context to read. It is not mutated.
+	 * @param playerId The player whose point of view should be used.
+	 * @param features The destination matrix, laid out row-major with {@code WeightedFeature.values().length} columns.
+	 * @param offset   The index of the first column of the row to fill. The row is overwritten.
+	 * @return {@link Double#NaN} if the state should be scored with the dot product, otherwise the infinite score of a
+	 * 		state whose outcome is decided.
+	 */
+	public static double extractFeatures(GameContext context, int playerId, double[] features, int offset) {
+		Arrays.fill(features, offset, offset + FEATURE_COUNT, 0d);
 		Player player = context.getPlayer(playerId);
 		Player opponent = context.getOpponent(player);
 		if (player.getHero().isDestroyed()) {
@@ -148,40 +164,39 @@ public class ThreatBasedHeuristic implements Heuristic, Serializable {
 		if (opponent.getHero().isDestroyed()) {
 			return Double.POSITIVE_INFINITY;
 		}
-		double score = 0;
 
 		ThreatLevel threatLevel = calcuateThreatLevel(context, playerId);
 		switch (threatLevel) {
 			case RED:
-				score += weights.get(WeightedFeature.RED_MODIFIER);
+				features[offset + WeightedFeature.RED_MODIFIER.ordinal()] = 1;
 				break;
 			case YELLOW:
-				score += weights.get(WeightedFeature.YELLOW_MODIFIER);
+				features[offset + WeightedFeature.YELLOW_MODIFIER.ordinal()] = 1;
 				break;
 			default:
 				break;
 		}
-		score += player.getHero().getEffectiveHp() * weights.get(WeightedFeature.OWN_HP_FACTOR);
-		score += opponent.getHero().getEffectiveHp() * weights.get(WeightedFeature.OPPONENT_HP_FACTOR);
+		features[offset + WeightedFeature.OWN_HP_FACTOR.ordinal()] = player.getHero().getEffectiveHp();
+		features[offset + WeightedFeature.OPPONENT_HP_FACTOR.ordinal()] = opponent.getHero().getEffectiveHp();
 		for (Card card : player.getHand()) {
 			if (isHardRemoval(card)) {
-				score += weights.get(WeightedFeature.HARD_REMOVAL_VALUE);
+				features[offset + WeightedFeature.HARD_REMOVAL_VALUE.ordinal()] += 1;
 			}
 
 			if (card.hasAttribute(Attribute.CURSE)) {
-				score += weights.get(WeightedFeature.CURSED_FACTOR);
+				features[offset + WeightedFeature.CURSED_FACTOR.ordinal()] += 1;
 			}
 		}
 
-		score += player.getHand().getCount() * weights.get(WeightedFeature.OWN_CARD_COUNT);
-		score += opponent.getHand().getCount() * weights.get(WeightedFeature.OPPONENT_CARD_COUNT);
+		features[offset + WeightedFeature.OWN_CARD_COUNT.ordinal()] = player.getHand().getCount();
+		features[offset + WeightedFeature.OPPONENT_CARD_COUNT.ordinal()] = opponent.getHand().getCount();
 
 		for (Minion minion : player.getMinions()) {
-			score += calculateMinionScore(minion, threatLevel);
+			extractMinionFeatures(minion, threatLevel, 1d, features, offset);
 		}
 
 		for (Minion minion : opponent.getMinions()) {
-			score -= calculateMinionScore(minion, threatLevel);
+			extractMinionFeatures(minion, threatLevel, -1d, features, offset);
 		}
 
 		int questCount = player.getQuests().size();
@@ -201,16 +216,73 @@ public class ThreatBasedHeuristic implements Heuristic, Serializable {
 			}
 		}
 
-		score += questCount * weights.get(WeightedFeature.QUEST_COUNTER_VALUE);
-		score += questRewards * weights.get(WeightedFeature.QUEST_REWARD_VALUE);
+		features[offset + WeightedFeature.QUEST_COUNTER_VALUE.ordinal()] = questCount;
+		features[offset + WeightedFeature.QUEST_REWARD_VALUE.ordinal()] = questRewards;
 
 		// Count roasted cards to make sure the bot punishes Fel Reaper
-		score += player.getGraveyard().stream().filter(c -> c.hasAttribute(Attribute.ROASTED)).count() * weights.get(WeightedFeature.OWN_ROASTED_VALUE);
-		score += opponent.getGraveyard().stream().filter(c -> c.hasAttribute(Attribute.ROASTED)).count() * weights.get(WeightedFeature.OPPONENT_ROASTED_VALUE);
+		features[offset + WeightedFeature.OWN_ROASTED_VALUE.ordinal()] = countRoasted(player);
+		features[offset + WeightedFeature.OPPONENT_ROASTED_VALUE.ordinal()] = countRoasted(opponent);
+
+		features[offset + WeightedFeature.EMPTY_MANA_CRYSTAL_VALUE.ordinal()] = player.getMaxMana();
+		features[offset + WeightedFeature.OPPOSING_EMPTY_MANA_CRYSTAL_VALUE.ordinal()] = opponent.getMaxMana();
+
+		return Double.NaN;
+	}
 
-		score += player.getMaxMana() * weights.get(WeightedFeature.EMPTY_MANA_CRYSTAL_VALUE);
-		score += opponent.getMaxMana() * weights.get(WeightedFeature.OPPOSING_EMPTY_MANA_CRYSTAL_VALUE);
+	private static int countRoasted(Player player) {
+		int roasted = 0;
+		for (Card card : player.getGraveyard()) {
+			if (card.hasAttribute(Attribute.ROASTED)) {
+				roasted++;
+			}
+		}
+		return roasted;
+	}
 
+	/**
+	 * Computes the dot product of a row of the feature matrix with the weights. The loop is kept free of branches and
+	 * indirection so that the JIT can unroll and vectorize it.
+	 */
+	private double dot(double[] features, int offset) {
+		double[] weights = weightArray;
+		double score = 0;
+		for (int i = 0; i < FEATURE_COUNT; i++) {
+			score += features[offset + i] * weights[i];
+		}
 		return score;
 	}
+
+	@Override
+	public double getScore(GameContext context, int playerId) {
+		double[] features = new double[FEATURE_COUNT];
+		double terminalScore = extractFeatures(context, playerId, features, 0);
+		if (!Double.isNaN(terminalScore)) {
+			return terminalScore;
+		}
+		return dot(features, 0);
+	}
+
+	/**
+	 * Scores the batch by first extracting every state's features into a single row-major matrix, then taking the dot
+	 * product of each row with the weights in one pass over contiguous memory.
+	 *
+	 * @param contexts The game contexts to score. Do not mutate them here.
+	 * @param playerId The player whose point of view should be used to calculate these scores.
+	 * @return The scores.
+	 */
+	@Override
+	public double[] getScores(List<GameContext> contexts, int playerId) {
+		int n = contexts.size();
+		double[] features = new double[n * FEATURE_COUNT];
+		double[] scores = new double[n];
+		for (int i = 0; i < n; i++) {
+			scores[i] = extractFeatures(contexts.get(i), playerId, features, i * FEATURE_COUNT);
+		}
+		for (int i = 0; i < n; i++) {
+			if (Double.isNaN(scores[i])) {
+				scores[i] = dot(features, i * FEATURE_COUNT);
+			}
+		}
+		return scores;
+	}
 }
@@ -88,6 +88,10 @@ public class Card extends Entity implements HasChooseOneActions, HasDeathrattleE
 	private List<SpellDesc> deathrattleEnchantments = new ArrayList<>();
 	private List<EnchantmentDesc> storedEnchantments = new ArrayList<>();
 	private List<BattlecryDesc> battlecryEnchantments = new ArrayList<>();
+	/**
+	 * The attributes that belong to this player's copy of the card rather than to every card with its description.
+	 */
+	private Set<Attribute> inventoryAttributes = Collections.emptySet();
 
 	protected Card() {
 		attributes = new CardAttributeMap(this);
@@ -234,14 +238,49 @@ public class Card extends Entity implements HasChooseOneActions, HasDeathrattleE
 		}
 
 		// Add the attributes to the first enchantment
-		if (getDesc().getAttributes() != null && !getDesc().getAttributes().isEmpty()) {
+		AttributeMap descAttributes = getDescAttributes();
+		if (!descAttributes.isEmpty()) {
 			enchantments.get(0)
-					.getAttributes().putAll(getDesc().getAttributes());
+					.getAttributes().putAll(descAttributes);
 		}
 
 		return enchantments;
 	}
 
+	/**
+	 * Puts attributes that belong to this player's copy of the card, like its owner's {@link Attribute#USER_ID} and its
+	 * persisted attributes. They are stored with the card's other attributes, but they are inherited like the attributes
+	 * written on its description.
+	 *
+	 * @param attributes The attributes of this copy of the card.
+	 * @see #getDescAttributes()
+	 */
+	public void putInventoryAttributes(AttributeMap attributes) {
+		getAttributes().putAll(attributes);
+		// Clones share the set, so it is replaced instead of modified
+		Set<Attribute> keys = new HashSet<>(inventoryAttributes);
+		keys.addAll(attributes.keySet());
+		inventoryAttributes = keys;
+	}
+
+	/**
+	 * Gets the attributes written on this card's description together with the attributes of this player's copy of the
+	 * card, which take precedence.
+	 *
+	 * @return A new map.
+	 * @see #putInventoryAttributes(AttributeMap)
+	 */
+	public AttributeMap getDescAttributes() {
+		AttributeMap descAttributes = getDesc().getAttributes() == null ? new AttributeMap() : getDesc().getAttributes().clone();
+		for (Attribute attribute : inventoryAttributes) {
+			Object value = getAttributes().get(attribute);
+			if (value != null) {
+				descAttributes.put(attribute, value);
+			}
+		}
+		return descAttributes;
+	}
+
 	/**
 	 * Clones a card's base fields, like name and description, and its current attributes. The entity ID and location
 	 * match the source object and are not cleared. {@link #getCopy()} is typically more appropriate choice for when
@@ -0,0 +1,67 @@
+package net.demilich.metastone.game.logic;
+
+import net.demilich.metastone.game.GameContext;
+import net.demilich.metastone.game.statistics.GameStatistics;
+
+/**
+ * Indicates how much bookkeeping a {@link GameContext} should do besides executing the rules of the game.
+ * <p>
+ * Game outcomes never depend on the profile. Statistics that are read by card rules (like cards played or cards
+ * drawn) are always recorded.
+ *
+ * @see GameContext#setExecutionProfile(ExecutionProfile) to change the profile of a context.
+ */
+public enum ExecutionProfile {
+	/**
+	 * Records a {@link Trace}, all {@link GameStatistics}, debug logging and notifies the context's hooks like {@link
+	 * GameContext#onWillPerformGameAction(int, net.demilich.metastone.game.actions.GameAction)} and {@link
+	 * GameContext#onEnchantmentFired(net.demilich.metastone.game.spells.trigger.Enchantment)}.
+	 */
+	FULL(true, true, true, true),
+	/**
+	 * For throwaway contexts, like AI rollouts and bulk simulations, whose bookkeeping is never read. Disables tracing,
+	 * statistics that no card rule reads, debug logging in {@link GameContext} and client notification hooks.
+	 */
+	ROLLOUT(false, false, false, false);
+
+	private final boolean tracing;
+	private final boolean recordingStatistics;
+	private final boolean logging;
+	private final boolean notifying;
+
+	ExecutionProfile(boolean tracing, boolean recordingStatistics, boolean logging, boolean notifying) {
+		this.tracing = tracing;
+		this.recordingStatistics = recordingStatistics;
+		this.logging = logging;
+		this.notifying = notifying;
+	}
+
+	/**
+	 * @return {@code true} if actions and mulligans should be recorded into the context's {@link Trace}.
+	 */
+	public boolean isTracing() {
+		return tracing;
+	}
+
+	/**
+	 * @return {@code true} if {@link GameStatistics} that are not read by card rules (like damage dealt, mana spent and
+	 * 		games won) should be recorded.
+	 */
+	public boolean isRecordingStatistics() {
+		return recordingStatistics;
+	}
+
+	/**
+	 * @return {@code true} if the context should emit its debug log messages.
+	 */
+	public boolean isLogging() {
+		return logging;
+	}
+
+	/**
+	 * @return {@code true} if the context's notification hooks should be called.
+	 */
+	public boolean isNotifying() {
+		return notifying;
+	}
+}
@@ -1252,7 +1252,9 @@ public class GameLogic implements Cloneable, Serializable, IdFactory {
 				targetOwner.modifyAttribute(Attribute.DAMAGE_THIS_TURN, damageDealt);
 			}
 
-			player.getStatistics().damageDealt(damageDealt);
+			if (context.getExecutionProfile().isRecordingStatistics()) {
+				player.getStatistics().damageDealt(damageDealt);
+			}
 			DamageEvent damageEvent = new DamageEvent(context, target, source, damageDealt, damageType);
 			context.fireGameEvent(damageEvent);
 		}
@@ -1594,7 +1596,9 @@ public class GameLogic implements Cloneable, Serializable, IdFactory {
 
 			damage(player, hero, fatigue, player, true, true, DamageType.FATIGUE);
 			context.fireGameEvent(new FatigueEvent(context, player.getId(), fatigue));
-			player.getStatistics().fatigueDamage(fatigue);
+			if (context.getExecutionProfile().isRecordingStatistics()) {
+				player.getStatistics().fatigueDamage(fatigue);
+			}
 		}
 	}
 
@@ -1733,7 +1737,9 @@ public class GameLogic implements Cloneable, Serializable, IdFactory {
 
 		// Resolving the battlecry may have destroyed the weapon we are currently putting into play
 		if (weapon.isInPlay()) {
-			player.getStatistics().equipWeapon(weapon);
+			if (context.getExecutionProfile().isRecordingStatistics()) {
+				player.getStatistics().equipWeapon(weapon);
+			}
 			weapon.onEquip(context, player);
 			weapon.setActive(context.getActivePlayerId() == playerId);
 
@@ -1904,7 +1910,9 @@ public class GameLogic implements Cloneable, Serializable, IdFactory {
 	public void gainArmor(Player player, int armor) {
 		logger.debug("{} gains {} armor", player.getHero(), armor);
 		player.getHero().modifyArmor(armor);
-		player.getStatistics().armorGained(armor);
+		if (context.getExecutionProfile().isRecordingStatistics()) {
+			player.getStatistics().armorGained(armor);
+		}
 		if (armor != 0) {
 			context.fireGameEvent(new ArmorChangedEvent(context, player.getHero(), armor));
 		}
@@ -2858,7 +2866,10 @@ public class GameLogic implements Cloneable, Serializable, IdFactory {
 	 */
 	@Suspendable
 	public void performGameAction(int playerId, GameAction action) {
-		context.onWillPerformGameAction(playerId, action);
+		boolean notifying = context.getExecutionProfile().isNotifying();
+		if (notifying) {
+			context.onWillPerformGameAction(playerId, action);
+		}
 		if (playerId != context.getActivePlayerId()) {
 			logger.warn("Player {} tries to perform an action, but it is not his turn!", context.getPlayer(playerId).getName());
 		}
@@ -2879,7 +2890,9 @@ public class GameLogic implements Cloneable, Serializable, IdFactory {
 		}
 
 		// Calculate how all the entities changed.
-		context.onDidPerformGameAction(playerId, action);
+		if (notifying) {
+			context.onDidPerformGameAction(playerId, action);
+		}
 	}
 
 	/**
@@ -2969,7 +2982,9 @@ public class GameLogic implements Cloneable, Serializable, IdFactory {
 		} else {
 			context.getEnvironment().put(Environment.LAST_MANA_COST, modifiedManaCost);
 			modifyCurrentMana(playerId, -modifiedManaCost, true);
-			player.getStatistics().manaSpent(modifiedManaCost);
+			if (context.getExecutionProfile().isRecordingStatistics()) {
+				player.getStatistics().manaSpent(modifiedManaCost);
+			}
 		}
 
 		player.getStatistics().cardPlayed(card, context.getTurn());
@@ -3615,7 +3630,9 @@ public class GameLogic implements Cloneable, Serializable, IdFactory {
 		if (action == null) {
 			throw new NullPointerException("Behaviour did not return action");
 		}
-		context.getTrace().addAction(action.getId(), action, context);
+		if (context.getExecutionProfile().isTracing()) {
+			context.getTrace().addAction(action.getId(), action, context);
+		}
 		return action;
 	}
 
@@ -4294,7 +4311,7 @@ public class GameLogic implements Cloneable, Serializable, IdFactory {
 		List<Attribute> badAttributes = Arrays.asList(Attribute.HP, Attribute.BASE_HP, Attribute.BASE_ATTACK, Attribute.HP_BONUS,
 				Attribute.ATTACK, Attribute.ATTACK_BONUS, Attribute.RACE, Attribute.BASE_MANA_COST, Attribute.DEATHRATTLES,
 				Attribute.MAGNETIC, Attribute.MAGNETS, Attribute.ECHO, Attribute.AURA_ECHO, Attribute.PLAYED_FROM_HAND_OR_DECK, Attribute.CARD_ID);
-		for (Attribute attribute : card.getDesc().getAttributes().keySet()) {
+		for (Attribute attribute : card.getDescAttributes().keySet()) {
 			if (!badAttributes.contains(attribute)) {
 				targetMinion.setAttribute(attribute, card.getAttribute(attribute));
 			}
@@ -4472,7 +4489,9 @@ public class GameLogic implements Cloneable, Serializable, IdFactory {
 			damage(player, (Actor) player.getHero(), modifiedManaCost, (Entity) power, true);
 		} else {
 			modifyCurrentMana(playerId, -modifiedManaCost, true);
-			player.getStatistics().manaSpent(modifiedManaCost);
+			if (context.getExecutionProfile().isRecordingStatistics()) {
+				player.getStatistics().manaSpent(modifiedManaCost);
+			}
 		}
 		power.markUsed();
 		player.getStatistics().cardPlayed(power, context.getTurn());
@@ -4495,6 +4514,20 @@ public class GameLogic implements Cloneable, Serializable, IdFactory {
 		this.idFactory = idFactory;
 	}
 
+	/**
+	 * Moves the ID factory, seed and random state of another logic into this one without copying them.
+	 * <p>
+	 * This lets a logic of a different class, like a networked one, continue a game that was stored with another logic.
+	 *
+	 * @param source The logic whose state should be used. It should not be used afterwards.
+	 * @see GameContext#restoreState(GameContext) for the context equivalent.
+	 */
+	public void restoreState(GameLogic source) {
+		idFactory = source.idFactory;
+		seed = source.seed;
+		random = source.random;
+	}
+
 	/**
 	 * Concedes the game for the specified player.
 	 * <p>
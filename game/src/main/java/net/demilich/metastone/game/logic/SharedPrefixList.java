@@ -0,0 +1,120 @@
+package net.demilich.metastone.game.logic;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * An append-only list whose copies share their common prefix.
+ * <p>
+ * Elements are stored in fixed-size chunks. Once a chunk is full it is frozen into an immutable, singly-linked chain
+ * that every copy made afterwards shares. Only the partially filled tail chunk is copied by {@link #copy()}, so copying
+ * costs the same no matter how many elements were appended.
+ * <p>
+ * This is used by {@link Trace} so that cloning a {@link net.demilich.metastone.game.GameContext} late in a game does
+ * not copy every action taken so far.
+ *
+ * @param <E> The type of the elements.
+ */
+final class SharedPrefixList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final int CHUNK_SIZE = 64;
+
+	private Chunk last;
+	private int frozenSize;
+	private Object[] tail = new Object[CHUNK_SIZE];
+	private int tailSize;
+	private transient Chunk[] chunks;
+
+	SharedPrefixList() {
+	}
+
+	SharedPrefixList(Collection<? extends E> values) {
+		addAll(values);
+	}
+
+	/**
+	 * Copies this list in constant time. The copy and this list can be appended to independently.
+	 *
+	 * @return The copy.
+	 */
+	SharedPrefixList<E> copy() {
+		SharedPrefixList<E> copy = new SharedPrefixList<>();
+		copy.last = last;
+		copy.frozenSize = frozenSize;
+		System.arraycopy(tail, 0, copy.tail, 0, tailSize);
+		copy.tailSize = tailSize;
+		// The index is never mutated once built, and both lists start with the same frozen chunks
+		copy.chunks = chunks;
+		return copy;
+	}
+
+	@Override
+	public boolean add(E e) {
+		tail[tailSize++] = e;
+		if (tailSize == CHUNK_SIZE) {
+			last = new Chunk(tail, last);
+			frozenSize += CHUNK_SIZE;
+			tail = new Object[CHUNK_SIZE];
+			tailSize = 0;
+		}
+		modCount++;
+		return true;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		if (index >= frozenSize) {
+			return (E) tail[index - frozenSize];
+		}
+		return (E) chunks()[index / CHUNK_SIZE].values[index % CHUNK_SIZE];
+	}
+
+	@Override
+	public int size() {
+		return frozenSize + tailSize;
+	}
+
+	@Override
+	public void clear() {
+		last = null;
+		frozenSize = 0;
+		tail = new Object[CHUNK_SIZE];
+		tailSize = 0;
+		chunks = null;
+		modCount++;
+	}
+
+	/**
+	 * Lazily indexes the frozen chunks in order, so that random access doesn't walk the chain.
+	 */
+	private Chunk[] chunks() {
+		int count = frozenSize / CHUNK_SIZE;
+		Chunk[] chunks = this.chunks;
+		if (chunks != null && chunks.length == count) {
+			return chunks;
+		}
+		chunks = new Chunk[count];
+		for (Chunk chunk = last; chunk != null; chunk = chunk.previous) {
+			chunks[--count] = chunk;
+		}
+		this.chunks = chunks;
+		return chunks;
+	}
+
+	private static final class Chunk implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final Object[] values;
+		private final Chunk previous;
+
+		private Chunk(Object[] values, Chunk previous) {
+			this.values = values;
+			this.previous = previous;
+		}
+	}
+}
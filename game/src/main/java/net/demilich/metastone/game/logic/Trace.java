@@ -14,10 +14,10 @@ import net.demilich.metastone.game.targeting.IdFactoryImpl;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -33,6 +33,8 @@ import java.util.function.Consumer;
  * @see #replayContext(boolean, Consumer) to replay a context after loading it from a string. Provide {@code
  * 		skipLastAction: true} as the argument if the last action throws an exception (useful for debugging). Provide {@code
  * 		recorder} is useful if you'd like to process each {@link GameContext} (useful for recording replays).
+ * @see #setCheckpointInterval(int) to record periodic checkpoints of the game, so that {@link #replayContext(int,
+ * 		Consumer)} can reconstruct the context at any action without replaying from the seed.
  */
 public class Trace implements Serializable, Cloneable {
 	private static final long serialVersionUID = 3L;
@@ -44,10 +46,14 @@ public class Trace implements Serializable, Cloneable {
 	private String[] deckFormatSets;
 	private String[] secondPlayerBonusCards;
 	private int[][] mulligans;
-	private List<Integer> actions = new ArrayList<>();
+	private List<Integer> actions = new SharedPrefixList<>();
 	private String id;
+	private int checkpointInterval;
 	@JsonIgnore
-	private transient List<GameAction> rawActions = new ArrayList<>();
+	private transient List<GameAction> rawActions = new SharedPrefixList<>();
+	@JsonIgnore
+	private transient TreeMap<Integer, GameContext> checkpoints = new TreeMap<>();
+	private transient boolean checkpointsShared;
 
 	public Trace() {
 	}
@@ -92,6 +98,32 @@ public class Trace implements Serializable, Cloneable {
 		rawActions.add(action);
 	}
 
+	/**
+	 * Records a checkpoint of the context if checkpoints are enabled and at least {@link #getCheckpointInterval()}
+	 * actions were added since the last checkpoint.
+	 * <p>
+	 * The context must be at the start of {@link GameContext#takeActionInTurn()}, so that it can be continued with
+	 * {@link GameContext#resumeTurn()}. The checkpoint is a copy that does not carry a trace of its own.
+	 *
+	 * @param context The context that owns this trace.
+	 */
+	@JsonIgnore
+	public void checkpoint(GameContext context) {
+		if (checkpointInterval <= 0) {
+			return;
+		}
+		int actionCount = actions.size();
+		int lastCheckpoint = checkpoints.isEmpty() ? 0 : checkpoints.lastKey();
+		if (actionCount == 0 || actionCount < lastCheckpoint + checkpointInterval) {
+			return;
+		}
+		if (checkpointsShared) {
+			checkpoints = new TreeMap<>(checkpoints);
+			checkpointsShared = false;
+		}
+		checkpoints.put(actionCount, new GameContext(context, ExecutionProfile.ROLLOUT));
+	}
+
 	@JsonIgnore
 	public GameContext replayContext() {
 		return replayContext(false, null);
@@ -112,16 +144,62 @@ public class Trace implements Serializable, Cloneable {
 	 */
 	@JsonIgnore
 	public GameContext replayContext(boolean skipLastAction, @Nullable Consumer<GameContext> beforeRequestActionHandler) {
+		return replayFromSeed(skipLastAction ? actions.size() - 1 : actions.size(), beforeRequestActionHandler);
+	}
+
+	/**
+	 * Creates a game context that has taken exactly the first {@code actionCount} actions in this trace, stopping at the
+	 * request for the next action.
+	 * <p>
+	 * If this trace has a checkpoint at or before {@code actionCount}, the context is restored from the nearest one and
+	 * only the remaining actions are replayed. Otherwise, the game is replayed from the seed. Both produce the same
+	 * context.
+	 *
+	 * @param actionCount                The number of actions to replay.
+	 * @param beforeRequestActionHandler [Optional] consumer to be called on every {@link GameContext} before each action
+	 *                                   is taken.
+	 * @return The replayed context.
+	 * @see #setCheckpointInterval(int) to record checkpoints.
+	 */
+	@JsonIgnore
+	public GameContext replayContext(int actionCount, @Nullable Consumer<GameContext> beforeRequestActionHandler) {
+		actionCount = Math.max(0, Math.min(actionCount, actions.size()));
+		Map.Entry<Integer, GameContext> checkpoint = checkpoints.floorEntry(actionCount);
+		if (checkpoint == null) {
+			return replayFromSeed(actionCount, beforeRequestActionHandler);
+		}
+
+		int checkpointActionCount = checkpoint.getKey();
+		AtomicInteger nextAction = new AtomicInteger(checkpointActionCount);
+		int originalCatalogueVersion = CardCatalogue.getVersion();
+		CardCatalogue.setVersion(1);
+		GameContext gameContext = new GameContext(checkpoint.getValue(), ExecutionProfile.FULL);
+		gameContext.setTrace(prefix(checkpointActionCount));
+
+		List<Integer> behaviourActions = actions.subList(0, actionCount);
+		gameContext.setBehaviour(
+				0, new TraceBehaviour(0, mulligans, nextAction, behaviourActions, beforeRequestActionHandler));
+		gameContext.setBehaviour(
+				1, new TraceBehaviour(1, mulligans, nextAction, behaviourActions, beforeRequestActionHandler));
+
+		try {
+			gameContext.resumeTurn();
+		} catch (CancellationException ex) {
+			// DO NOT REMOVE, resume throws cancellation on purpose.
+		}
+		CardCatalogue.setVersion(originalCatalogueVersion);
+		return gameContext;
+	}
+
+	private GameContext replayFromSeed(int actionCount, @Nullable Consumer<GameContext> beforeRequestActionHandler) {
 		AtomicInteger nextAction = new AtomicInteger();
 		int originalCatalogueVersion = CardCatalogue.getVersion();
 		CardCatalogue.setVersion(1);
 		GameContext gameContext = new GameContext();
 		restoreStartingStateTo(gameContext);
+		gameContext.getTrace().setCheckpointInterval(checkpointInterval);
 
-		List<Integer> behaviourActions = actions;
-		if (skipLastAction) {
-			behaviourActions = behaviourActions.subList(0, behaviourActions.size() - 1);
-		}
+		List<Integer> behaviourActions = actions.subList(0, actionCount);
 
 		gameContext.setBehaviour(
 				0, new TraceBehaviour(0, mulligans, nextAction, behaviourActions, beforeRequestActionHandler));
@@ -138,6 +216,21 @@ public class Trace implements Serializable, Cloneable {
 		return gameContext;
 	}
 
+	/**
+	 * Copies this trace, keeping only the first {@code actionCount} actions and the checkpoints up to that point.
+	 *
+	 * @param actionCount The number of actions to keep.
+	 * @return A new trace.
+	 */
+	private Trace prefix(int actionCount) {
+		Trace prefix = clone();
+		prefix.actions = new SharedPrefixList<>(actions.subList(0, actionCount));
+		prefix.rawActions = new SharedPrefixList<>(rawActions.subList(0, Math.min(actionCount, rawActions.size())));
+		prefix.checkpoints = new TreeMap<>(checkpoints.headMap(actionCount, true));
+		prefix.checkpointsShared = false;
+		return prefix;
+	}
+
 	public void restoreStartingStateTo(GameContext context) {
 		if (heroClasses != null && deckCardIds != null) {
 			context.setPlayer(0, new Player(DeckCreateRequest.fromCardIds(heroClasses[0], deckCardIds[0]).withFormat(deckFormatName).toGameDeck(), "Player 0"));
@@ -177,6 +270,12 @@ public class Trace implements Serializable, Cloneable {
 		context.setLogic(logic);
 	}
 
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		rawActions = new SharedPrefixList<>();
+		checkpoints = new TreeMap<>();
+	}
+
 	public String dump() {
 		return Json.encodePrettily(this);
 	}
@@ -200,7 +299,12 @@ public class Trace implements Serializable, Cloneable {
 				}
 				clone.mulligans = mulliganCopy;
 			}
-			clone.actions = new ArrayList<>(actions);
+			// Copies share the actions taken so far instead of copying them
+			clone.actions = copyOf(actions);
+			clone.rawActions = copyOf(rawActions);
+			// Checkpoints are never mutated, so the copies share the map until either one records a new checkpoint
+			checkpointsShared = true;
+			clone.checkpointsShared = true;
 			return clone;
 		} catch (Exception ex) {
 			return null;
@@ -248,10 +352,20 @@ public class Trace implements Serializable, Cloneable {
 	}
 
 	public Trace setActions(List<Integer> actions) {
-		this.actions = actions;
+		this.actions = actions == null ? null : new SharedPrefixList<>(actions);
 		return this;
 	}
 
+	private static <E> List<E> copyOf(List<E> list) {
+		if (list == null) {
+			return null;
+		}
+		if (list instanceof SharedPrefixList) {
+			return ((SharedPrefixList<E>) list).copy();
+		}
+		return new SharedPrefixList<>(list);
+	}
+
 	public String getId() {
 		return id;
 	}
@@ -273,6 +387,40 @@ public class Trace implements Serializable, Cloneable {
 		return rawActions;
 	}
 
+	/**
+	 * The number of actions between checkpoints recorded by {@link #checkpoint(GameContext)}.
+	 *
+	 * @return The interval, or {@code 0} if checkpoints are disabled (the default).
+	 */
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
+	/**
+	 * Enables periodic checkpoints. Every checkpoint holds a copy of the game context, so smaller intervals trade memory
+	 * for faster random access with {@link #replayContext(int, Consumer)}.
+	 * <p>
+	 * Checkpoints are kept in memory only and are not included in {@link #dump()}. Contexts replayed from this trace
+	 * record checkpoints with the same interval.
+	 *
+	 * @param checkpointInterval The number of actions between checkpoints, or {@code 0} to disable them.
+	 * @return This instance.
+	 */
+	public Trace setCheckpointInterval(int checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+		return this;
+	}
+
+	/**
+	 * The recorded checkpoints, keyed by the number of actions that had been taken when they were recorded.
+	 *
+	 * @return An unmodifiable view of the checkpoints.
+	 */
+	@JsonIgnore
+	public NavigableMap<Integer, GameContext> getCheckpoints() {
+		return Collections.unmodifiableNavigableMap(checkpoints);
+	}
+
 	public String[] getSecondPlayerBonusCards() {
 		return secondPlayerBonusCards;
 	}
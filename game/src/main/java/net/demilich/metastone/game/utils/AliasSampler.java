@@ -0,0 +1,91 @@
+package net.demilich.metastone.game.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Samples indices with probabilities proportional to fixed weights in constant time, using Vose's alias method.
+ * <p>
+ * Building the sampler takes time linear in the number of weights. Each sample then needs one uniform column and one
+ * uniform coin flip, regardless of how many weights there are.
+ */
+public final class AliasSampler {
+	private final double[] probability;
+	private final int[] alias;
+
+	/**
+	 * Creates a sampler.
+	 *
+	 * @param weights The non-negative weight of each index. At least one weight must be positive.
+	 * @throws IllegalArgumentException if a weight is negative or no weight is positive.
+	 */
+	public AliasSampler(double[] weights) {
+		int n = weights.length;
+		double total = 0.0;
+		for (double weight : weights) {
+			if (weight < 0.0 || Double.isNaN(weight)) {
+				throw new IllegalArgumentException("weights must be non-negative");
+			}
+			total += weight;
+		}
+		if (total <= 0.0) {
+			throw new IllegalArgumentException("at least one weight must be positive");
+		}
+
+		probability = new double[n];
+		alias = new int[n];
+		double[] scaled = new double[n];
+		Deque<Integer> small = new ArrayDeque<>();
+		Deque<Integer> large = new ArrayDeque<>();
+		for (int i = 0; i < n; i++) {
+			scaled[i] = weights[i] * n / total;
+			if (scaled[i] < 1.0) {
+				small.push(i);
+			} else {
+				large.push(i);
+			}
+		}
+
+		while (!small.isEmpty() && !large.isEmpty()) {
+			int less = small.pop();
+			int more = large.pop();
+			probability[less] = scaled[less];
+			alias[less] = more;
+			scaled[more] = scaled[more] + scaled[less] - 1.0;
+			if (scaled[more] < 1.0) {
+				small.push(more);
+			} else {
+				large.push(more);
+			}
+		}
+
+		// Whatever remains has a scaled weight of one, up to rounding error
+		while (!large.isEmpty()) {
+			probability[large.pop()] = 1.0;
+		}
+		while (!small.isEmpty()) {
+			probability[small.pop()] = 1.0;
+		}
+	}
+
+	/**
+	 * Samples an index.
+	 *
+	 * @param random The source of randomness.
+	 * @return An index between {@code 0} and {@link #size()}, chosen with probability proportional to its weight.
+	 */
+	public int sample(Random random) {
+		int column = random.nextInt(probability.length);
+		return random.nextDouble() < probability[column] ? column : alias[column];
+	}
+
+	/**
+	 * The number of weights this sampler was created with.
+	 *
+	 * @return The number of indices it can return.
+	 */
+	public int size() {
+		return probability.length;
+	}
+}
@@ -5,14 +5,22 @@ import com.hiddenswitch.spellsource.draft.*;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import net.demilich.metastone.game.cards.Card;
 import net.demilich.metastone.game.cards.CardCatalogue;
 import net.demilich.metastone.game.cards.CardParseException;
+import net.demilich.metastone.game.cards.CardSet;
+import net.demilich.metastone.game.cards.Rarity;
+import net.demilich.metastone.game.decks.DeckFormat;
+import net.demilich.metastone.game.entities.heroes.HeroClass;
+import net.demilich.metastone.game.utils.AliasSampler;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 public class DraftContextTest {
 	@Test
@@ -45,4 +53,42 @@ public class DraftContextTest {
 		Assert.assertEquals(context.getPublicState().getSelectedCards().size(), DraftLogic.ROUNDS);
 		Assert.assertEquals(context.getPublicState().getStatus(), DraftStatus.COMPLETE);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testAliasSamplerMatchesWeights() {
+		AliasSampler sampler = new AliasSampler(new double[]{0.5, 0.0, 0.3, 0.2});
+		Random random = new Random(101L);
+		int[] counts = new int[sampler.size()];
+		int samples = 100000;
+		for (int i = 0; i < samples; i++) {
+			counts[sampler.sample(random)]++;
+		}
+		Assert.assertEquals(counts[1], 0);
+		Assert.assertEquals(counts[0] / (double) samples, 0.5, 0.01);
+		Assert.assertEquals(counts[2] / (double) samples, 0.3, 0.01);
+		Assert.assertEquals(counts[3] / (double) samples, 0.2, 0.01);
+	}
+
+	@Test
+	public void testDraftPoolOnlyOffersEligibleCards() {
+		CardCatalogue.loadCardsFromPackage();
+		String heroClass = HeroClass.getBaseClasses(DeckFormat.spellsource()).get(0);
+		DraftPool pool = DraftPool.get(heroClass, Collections.singletonMap(new DeckFormat().withCardSets(CardSet.SPELLSOURCE_BASIC), 1.0));
+		Assert.assertSame(DraftPool.get(heroClass, Collections.singletonMap(new DeckFormat().withCardSets(CardSet.SPELLSOURCE_BASIC), 1.0)), pool);
+		Random random = new Random(101L);
+		for (Rarity rarity : new Rarity[]{Rarity.COMMON, Rarity.RARE, Rarity.EPIC, Rarity.LEGENDARY}) {
+			if (pool.size(rarity) == 0) {
+				Assert.assertNull(pool.sample(rarity, random));
+				continue;
+			}
+			for (int i = 0; i < 100; i++) {
+				Card card = CardCatalogue.getCardById(pool.sample(rarity, random));
+				Assert.assertEquals(card.getRarity(), rarity);
+				Assert.assertTrue(card.isCollectible());
+				Assert.assertFalse(card.isQuest());
+				Assert.assertFalse(CardCatalogue.getBannedDraftCards().contains(card.getCardId()));
+				Assert.assertTrue(card.hasHeroClass(heroClass) || card.hasHeroClass(HeroClass.ANY));
+			}
+		}
+	}
+}
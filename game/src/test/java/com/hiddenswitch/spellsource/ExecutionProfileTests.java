@@ -0,0 +1,62 @@
+package com.hiddenswitch.spellsource;
+
+import net.demilich.metastone.game.GameContext;
+import net.demilich.metastone.game.Player;
+import net.demilich.metastone.game.behaviour.PlayRandomBehaviour;
+import net.demilich.metastone.game.cards.CardCatalogue;
+import net.demilich.metastone.game.decks.Deck;
+import net.demilich.metastone.game.decks.DeckFormat;
+import net.demilich.metastone.game.logic.ExecutionProfile;
+import net.demilich.metastone.game.logic.GameLogic;
+import net.demilich.metastone.game.logic.XORShiftRandom;
+import net.demilich.metastone.game.targeting.IdFactoryImpl;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.stream.IntStream;
+
+public class ExecutionProfileTests {
+
+	@BeforeClass
+	public static void before() {
+		CardCatalogue.loadCardsFromPackage();
+	}
+
+	private static void setSeededBehaviours(GameContext context, long seed) {
+		context.setBehaviour(GameContext.PLAYER_1, new PlayRandomBehaviour().setRandom(new XORShiftRandom(seed)));
+		context.setBehaviour(GameContext.PLAYER_2, new PlayRandomBehaviour().setRandom(new XORShiftRandom(seed + 1)));
+	}
+
+	@Test
+	public void testRolloutProfileProducesSameOutcomes() {
+		IntStream.range(1, 51).parallel().unordered().forEach(seed -> {
+			GameContext full = new GameContext();
+			full.setLogic(new GameLogic((IdFactoryImpl) full.getLogic().getIdFactory(), seed));
+			full.setDeckFormat(DeckFormat.getFormat("Custom"));
+			full.setPlayer(GameContext.PLAYER_1, new Player(Deck.randomDeck(), "Player 1"));
+			full.setPlayer(GameContext.PLAYER_2, new Player(Deck.randomDeck(), "Player 2"));
+
+			GameContext rollout = new GameContext(full, ExecutionProfile.ROLLOUT);
+			Assert.assertEquals(rollout.getExecutionProfile(), ExecutionProfile.ROLLOUT);
+
+			setSeededBehaviours(full, seed);
+			setSeededBehaviours(rollout, seed);
+			full.play();
+			rollout.play();
+
+			Assert.assertEquals(rollout.getWinningPlayerId(), full.getWinningPlayerId());
+			Assert.assertEquals(rollout.getTurn(), full.getTurn());
+			Assert.assertEquals(rollout.getStatus(), full.getStatus());
+			Assert.assertTrue(rollout.getTrace().getActions().isEmpty());
+			Assert.assertFalse(full.getTrace().getActions().isEmpty());
+		});
+	}
+
+	@Test
+	public void testClonesInheritProfile() {
+		GameContext context = GameContext.fromTwoRandomDecks();
+		context.setExecutionProfile(ExecutionProfile.ROLLOUT);
+		Assert.assertEquals(context.clone().getExecutionProfile(), ExecutionProfile.ROLLOUT);
+	}
+}
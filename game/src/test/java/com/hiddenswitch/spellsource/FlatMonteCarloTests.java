@@ -11,6 +11,7 @@ import net.demilich.metastone.game.behaviour.FlatMonteCarloBehaviour;
 import net.demilich.metastone.game.behaviour.PlayRandomBehaviour;
 import net.demilich.metastone.game.cards.Card;
 import net.demilich.metastone.game.decks.GameDeck;
+import net.demilich.metastone.game.logic.XORShiftRandom;
 import net.demilich.metastone.game.statistics.SimulationResult;
 import org.testng.Assert;
 import org.testng.annotations.Ignore;
@@ -18,6 +19,7 @@ import org.testng.annotations.Test;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class FlatMonteCarloTests extends TestBase {
@@ -90,4 +92,43 @@ public class FlatMonteCarloTests extends TestBase {
 			Assert.assertEquals(((PlayCardAction) playCardAction).getSourceReference(), winTheGame.getReference());
 		});
 	}
+
+	@Test
+	public void testSeededDecisionDoesNotDependOnScheduling() {
+		Logging.setLoggingLevel(Level.OFF);
+		runGym((context, player, opponent) -> {
+			for (int i = 0; i < 3; i++) {
+				shuffleToDeck(context, player, "minion_neutral_test");
+				shuffleToDeck(context, opponent, "minion_neutral_test");
+			}
+			receiveCard(context, player, "minion_neutral_test");
+			receiveCard(context, player, "spell_test_gain_mana");
+			playMinionCard(context, opponent, "minion_neutral_test");
+			List<GameAction> validActions = context.getValidActions();
+			Assert.assertTrue(validActions.size() > 1);
+
+			// A pool with one worker plays every rollout one after another on the same thread
+			ForkJoinPool sequential = new ForkJoinPool(1);
+			ForkJoinPool parallel = new ForkJoinPool(4);
+			try {
+				int expected = decide(context, player.getId(), validActions, sequential);
+				for (int i = 0; i < 3; i++) {
+					Assert.assertEquals(decide(context, player.getId(), validActions, parallel), expected);
+				}
+				Assert.assertEquals(decide(context, player.getId(), validActions, null), expected);
+			} finally {
+				sequential.shutdown();
+				parallel.shutdown();
+			}
+		});
+	}
+
+	private static int decide(GameContext context, int playerId, List<GameAction> validActions, ForkJoinPool pool) {
+		// Every decision starts from the same random state, since rollouts must not advance the context's own random
+		context.getLogic().setRandom(new XORShiftRandom(101L));
+		FlatMonteCarloBehaviour behaviour = new FlatMonteCarloBehaviour(16).setPool(pool);
+		behaviour.setTimeout(Long.MAX_VALUE / 2);
+		GameAction action = behaviour.requestAction(context, context.getPlayer(playerId), validActions);
+		return validActions.indexOf(action);
+	}
 }
@@ -0,0 +1,78 @@
+package com.hiddenswitch.spellsource;
+
+import net.demilich.metastone.game.GameContext;
+import net.demilich.metastone.game.GameContextSnapshot;
+import net.demilich.metastone.game.Player;
+import net.demilich.metastone.game.behaviour.PlayRandomBehaviour;
+import net.demilich.metastone.game.cards.CardCatalogue;
+import net.demilich.metastone.game.decks.Deck;
+import net.demilich.metastone.game.decks.DeckFormat;
+import net.demilich.metastone.game.logic.GameLogic;
+import net.demilich.metastone.game.logic.XORShiftRandom;
+import net.demilich.metastone.game.targeting.IdFactoryImpl;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.stream.IntStream;
+
+public class GameContextSnapshotTests {
+
+	@BeforeClass
+	public static void before() {
+		CardCatalogue.loadCardsFromPackage();
+	}
+
+	private static void setSeededBehaviours(GameContext context, long seed) {
+		context.setBehaviour(GameContext.PLAYER_1, new PlayRandomBehaviour().setRandom(new XORShiftRandom(seed)));
+		context.setBehaviour(GameContext.PLAYER_2, new PlayRandomBehaviour().setRandom(new XORShiftRandom(seed + 1)));
+	}
+
+	@Test
+	public void testRestoredContextsProduceSameOutcomes() {
+		IntStream.range(1, 21).parallel().unordered().forEach(seed -> {
+			GameContext original = new GameContext();
+			original.setLogic(new GameLogic((IdFactoryImpl) original.getLogic().getIdFactory(), seed));
+			original.setDeckFormat(DeckFormat.getFormat("Custom"));
+			original.setPlayer(GameContext.PLAYER_1, new Player(Deck.randomDeck(), "Player 1"));
+			original.setPlayer(GameContext.PLAYER_2, new Player(Deck.randomDeck(), "Player 2"));
+			setSeededBehaviours(original, seed);
+			original.init();
+			// Stop partway into the first turn
+			original.startTurn(original.getActivePlayerId());
+			for (int i = 0; i < 2 && original.takeActionInTurn(); i++) {
+			}
+
+			GameContextSnapshot snapshot = GameContextSnapshot.of(original);
+			Assert.assertTrue(snapshot.size() > 0);
+			GameContext restored = GameContextSnapshot.fromBytes(snapshot.getBytes()).restore();
+			Assert.assertEquals(restored.getTurn(), original.getTurn());
+			Assert.assertEquals(restored.getActionsThisTurn(), original.getActionsThisTurn());
+			Assert.assertEquals(restored.getTrace().getActions(), original.getTrace().getActions());
+
+			setSeededBehaviours(original, seed + 2);
+			setSeededBehaviours(restored, seed + 2);
+			original.resumeTurn();
+			restored.resumeTurn();
+
+			Assert.assertEquals(restored.getWinningPlayerId(), original.getWinningPlayerId());
+			Assert.assertEquals(restored.getTurn(), original.getTurn());
+			Assert.assertEquals(restored.getStatus(), original.getStatus());
+			Assert.assertEquals(restored.getTrace().getActions(), original.getTrace().getActions());
+		});
+	}
+
+	@Test
+	public void testRestoreToKeepsContextAndLogic() {
+		GameContext source = GameContext.fromTwoRandomDecks();
+		source.play();
+		GameContext target = new GameContext();
+		GameLogic logic = target.getLogic();
+		GameContextSnapshot.of(source).restoreTo(target);
+		Assert.assertSame(target.getLogic(), logic);
+		Assert.assertEquals(target.getLogic().getSeed(), source.getLogic().getSeed());
+		Assert.assertEquals(target.getStatus(), source.getStatus());
+		Assert.assertEquals(target.getTurn(), source.getTurn());
+		Assert.assertEquals(target.getPlayer1().getHero().getHp(), source.getPlayer1().getHero().getHp());
+	}
+}
@@ -13,6 +13,15 @@ import net.demilich.metastone.game.decks.FixedCardsDeckFormat;
 import net.demilich.metastone.game.entities.minions.Minion;
 import net.demilich.metastone.game.events.GameStartEvent;
 import net.demilich.metastone.game.behaviour.GameStateValueBehaviour;
+import net.demilich.metastone.game.behaviour.PlayRandomBehaviour;
+import net.demilich.metastone.game.behaviour.heuristic.FeatureVector;
+import net.demilich.metastone.game.behaviour.heuristic.ThreatBasedHeuristic;
+import net.demilich.metastone.game.behaviour.heuristic.WeightedFeature;
+import net.demilich.metastone.game.cards.CardCatalogue;
+import net.demilich.metastone.game.entities.Entity;
+import net.demilich.metastone.game.spells.DestroySpell;
+import net.demilich.metastone.game.spells.desc.SpellDesc;
+import net.demilich.metastone.game.spells.trigger.secrets.Quest;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.testng.Assert;
@@ -330,4 +339,167 @@ public class GameStateValueBehaviourTest extends TestBase implements Serializabl
 			Assert.assertEquals(action.getSourceReference(), charger.getReference());
 		});
 	}
+
+	@Test
+	public void testThreatBasedHeuristicMatchesPerFeatureScore() {
+		List<GameContext> states = new ArrayList<>();
+		PlayRandomBehaviour recorder = new PlayRandomBehaviour() {
+			@Override
+			public GameAction requestAction(GameContext context, Player player, List<GameAction> validActions) {
+				states.add(context.clone());
+				return super.requestAction(context, player, validActions);
+			}
+		};
+		for (int i = 0; i < 3; i++) {
+			GameContext context = GameContext.fromTwoRandomDecks();
+			context.setBehaviour(0, recorder);
+			context.setBehaviour(1, recorder);
+			context.play();
+			states.add(context);
+		}
+		assertTrue(states.size() > 10);
+
+		for (FeatureVector weights : new FeatureVector[]{FeatureVector.getDefault(), FeatureVector.getFittest()}) {
+			ThreatBasedHeuristic heuristic = new ThreatBasedHeuristic(weights);
+			for (int playerId = 0; playerId < 2; playerId++) {
+				double[] batch = heuristic.getScores(states, playerId);
+				for (int i = 0; i < states.size(); i++) {
+					double expected = perFeatureScore(weights, states.get(i), playerId);
+					double tolerance = Double.isInfinite(expected) ? 0d : 1e-9 * Math.max(1d, Math.abs(expected));
+					assertEquals(heuristic.getScore(states.get(i), playerId), expected, tolerance);
+					assertEquals(batch[i], expected, tolerance);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Scores a state the way {@link ThreatBasedHeuristic} did before it extracted feature arrays, by adding each feature's
+	 * weight as it is read from the state.
+	 */
+	private static double perFeatureScore(FeatureVector weights, GameContext context, int playerId) {
+		Player player = context.getPlayer(playerId);
+		Player opponent = context.getOpponent(player);
+		if (player.getHero().isDestroyed()) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		if (opponent.getHero().isDestroyed()) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double score = 0;
+
+		int damageOnBoard = 0;
+		for (Minion minion : opponent.getMinions()) {
+			damageOnBoard += minion.getAttack() * minion.getAttributeValue(Attribute.NUMBER_OF_ATTACKS);
+		}
+		String heroClass = opponent.getHero().getHeroClass();
+		if (heroClass.equals("BLUE") || heroClass.equals("BROWN") || heroClass.equals("BLACK")) {
+			damageOnBoard += 1;
+		} else if (heroClass.equals("GREEN")) {
+			damageOnBoard += 2;
+		}
+		if (opponent.getHero().getWeapon() != null) {
+			damageOnBoard += opponent.getHero().getWeapon().getWeaponDamage();
+		}
+		int remainingHp = player.getHero().getEffectiveHp() - damageOnBoard;
+		int threatLevel = 0;
+		if (remainingHp < 1 || GameStateValueBehaviour.observesLethal(context, opponent.getId(), player.getHero())) {
+			threatLevel = 2;
+			score += weights.get(WeightedFeature.RED_MODIFIER);
+		} else if (remainingHp < 15) {
+			threatLevel = 1;
+			score += weights.get(WeightedFeature.YELLOW_MODIFIER);
+		}
+
+		score += player.getHero().getEffectiveHp() * weights.get(WeightedFeature.OWN_HP_FACTOR);
+		score += opponent.getHero().getEffectiveHp() * weights.get(WeightedFeature.OPPONENT_HP_FACTOR);
+		for (Card card : player.getHand()) {
+			if (isHardRemoval(card)) {
+				score += weights.get(WeightedFeature.HARD_REMOVAL_VALUE);
+			}
+			if (card.hasAttribute(Attribute.CURSE)) {
+				score += weights.get(WeightedFeature.CURSED_FACTOR);
+			}
+		}
+		score += player.getHand().getCount() * weights.get(WeightedFeature.OWN_CARD_COUNT);
+		score += opponent.getHand().getCount() * weights.get(WeightedFeature.OPPONENT_CARD_COUNT);
+
+		for (Minion minion : player.getMinions()) {
+			score += perFeatureMinionScore(weights, minion, threatLevel);
+		}
+		for (Minion minion : opponent.getMinions()) {
+			score -= perFeatureMinionScore(weights, minion, threatLevel);
+		}
+
+		int questCount = player.getQuests().size();
+		if (questCount > 0) {
+			questCount += player.getQuests().get(0).getFires();
+		}
+		long questRewards = 0L;
+		for (Entity e : player.getRemovedFromPlay()) {
+			if (e instanceof Quest && ((Quest) e).isExpired() && ((Quest) e).getFires() == ((Quest) e).getCountUntilCast()) {
+				questRewards++;
+			}
+		}
+		score += questCount * weights.get(WeightedFeature.QUEST_COUNTER_VALUE);
+		score += questRewards * weights.get(WeightedFeature.QUEST_REWARD_VALUE);
+
+		score += player.getGraveyard().stream().filter(c -> c.hasAttribute(Attribute.ROASTED)).count() * weights.get(WeightedFeature.OWN_ROASTED_VALUE);
+		score += opponent.getGraveyard().stream().filter(c -> c.hasAttribute(Attribute.ROASTED)).count() * weights.get(WeightedFeature.OPPONENT_ROASTED_VALUE);
+
+		score += player.getMaxMana() * weights.get(WeightedFeature.EMPTY_MANA_CRYSTAL_VALUE);
+		score += opponent.getMaxMana() * weights.get(WeightedFeature.OPPOSING_EMPTY_MANA_CRYSTAL_VALUE);
+		return score;
+	}
+
+	private static double perFeatureMinionScore(FeatureVector weights, Minion minion, int threatLevel) {
+		double minionScore = weights.get(WeightedFeature.MINION_INTRINSIC_VALUE);
+		minionScore += weights.get(WeightedFeature.MINION_ATTACK_FACTOR)
+				* (minion.getAttack() - minion.getAttributeValue(Attribute.TEMPORARY_ATTACK_BONUS));
+		minionScore += weights.get(WeightedFeature.MINION_HP_FACTOR) * minion.getHp();
+		if (minion.hasAttribute(Attribute.TAUNT) || minion.hasAttribute(Attribute.AURA_TAUNT)) {
+			minionScore += weights.get(threatLevel == 2 ? WeightedFeature.MINION_RED_TAUNT_MODIFIER
+					: threatLevel == 1 ? WeightedFeature.MINION_YELLOW_TAUNT_MODIFIER
+					: WeightedFeature.MINION_DEFAULT_TAUNT_MODIFIER);
+		}
+		if (minion.hasAttribute(Attribute.WINDFURY) || minion.hasAttribute(Attribute.AURA_WINDFURY)) {
+			minionScore += weights.get(WeightedFeature.MINION_WINDFURY_MODIFIER);
+		} else if (minion.hasAttribute(Attribute.MEGA_WINDFURY)) {
+			minionScore += 2 * weights.get(WeightedFeature.MINION_WINDFURY_MODIFIER);
+		}
+		if (minion.hasAttribute(Attribute.DIVINE_SHIELD)) {
+			minionScore += weights.get(WeightedFeature.MINION_DIVINE_SHIELD_MODIFIER);
+		}
+		if (minion.hasAttribute(Attribute.SPELL_DAMAGE)) {
+			minionScore += minion.getAttributeValue(Attribute.SPELL_DAMAGE) * weights.get(WeightedFeature.MINION_SPELL_POWER_MODIFIER);
+		}
+		if (minion.hasAttribute(Attribute.AURA_SPELL_DAMAGE)) {
+			minionScore += minion.getAttributeValue(Attribute.AURA_SPELL_DAMAGE) * weights.get(WeightedFeature.MINION_SPELL_POWER_MODIFIER);
+		}
+		if (minion.hasAttribute(Attribute.STEALTH) || minion.hasAttribute(Attribute.AURA_STEALTH)) {
+			minionScore += weights.get(WeightedFeature.MINION_STEALTHED_MODIFIER);
+		}
+		if (minion.hasAttribute(Attribute.UNTARGETABLE_BY_SPELLS)) {
+			minionScore += weights.get(WeightedFeature.MINION_UNTARGETABLE_BY_SPELLS_MODIFIER);
+		}
+		return minionScore;
+	}
+
+	private static boolean isHardRemoval(Card card) {
+		boolean destroySpell = false;
+		if (card.getDesc().getBattlecry() != null && card.getDesc().getBattlecry().getSpell() != null) {
+			SpellDesc spell = card.getDesc().getBattlecry().getSpell();
+			destroySpell |= DestroySpell.class.isAssignableFrom(spell.getDescClass())
+					|| spell.subSpells().stream().anyMatch(sd -> DestroySpell.class.isAssignableFrom(sd.getDescClass()));
+		}
+		if (card.getSpell() != null) {
+			SpellDesc spell = card.getSpell();
+			destroySpell |= DestroySpell.class.isAssignableFrom(spell.getDescClass())
+					|| spell.subSpells().stream().anyMatch(sd -> DestroySpell.class.isAssignableFrom(sd.getDescClass()));
+		}
+		return CardCatalogue.getHardRemovalCardIds().contains(card.getCardId())
+				|| card.hasAttribute(Attribute.POISONOUS)
+				|| card.hasAttribute(Attribute.AURA_POISONOUS)
+				|| destroySpell;
+	}
 }
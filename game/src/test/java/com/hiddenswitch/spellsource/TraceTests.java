@@ -9,6 +9,7 @@ import net.demilich.metastone.game.cards.Card;
 import net.demilich.metastone.game.cards.CardCatalogue;
 import net.demilich.metastone.game.decks.Deck;
 import net.demilich.metastone.game.decks.DeckFormat;
+import net.demilich.metastone.game.entities.Actor;
 import net.demilich.metastone.game.entities.Entity;
 import net.demilich.metastone.game.entities.EntityType;
 import net.demilich.metastone.game.logic.Trace;
@@ -28,6 +29,7 @@ import java.nio.charset.Charset;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toList;
@@ -82,6 +84,51 @@ public class TraceTests {
 		});
 	}
 
+	@Test
+	public void testCheckpointedReplayMatchesFullReplay() {
+		IntStream.range(0, 20).parallel().unordered().forEach(ignored -> {
+			GameContext context1 = new GameContext();
+			context1.setDeckFormat(DeckFormat.getFormat("Custom"));
+			context1.setPlayer(0, new Player(Deck.randomDeck(), "Player 1"));
+			context1.setPlayer(1, new Player(Deck.randomDeck(), "Player 2"));
+			context1.getTrace().setCheckpointInterval(5);
+			context1.play();
+
+			// Replay once so that the replayed trace records checkpoints the same way a replay viewer would
+			Trace recorded = context1.getTrace();
+			Trace withCheckpoints = recorded.replayContext(false, null).getTrace();
+			Assert.assertEquals(withCheckpoints.getActions(), recorded.getActions());
+			Trace withoutCheckpoints = Trace.load(recorded.dump());
+			Assert.assertTrue(withoutCheckpoints.getCheckpoints().isEmpty());
+
+			int actionCount = recorded.getActions().size();
+			Assert.assertEquals(withCheckpoints.getCheckpoints().isEmpty(), actionCount < 5);
+			for (int k : new int[]{0, 1, 4, 5, 6, actionCount / 2, actionCount - 1, actionCount}) {
+				if (k < 0 || k > actionCount) {
+					continue;
+				}
+				GameContext fromCheckpoint = withCheckpoints.replayContext(k, null);
+				GameContext fromSeed = withoutCheckpoints.replayContext(k, null);
+				Assert.assertEquals(fingerprint(fromCheckpoint), fingerprint(fromSeed), String.format("Replays differ at action %d", k));
+				Assert.assertEquals(fromCheckpoint.getTrace().getActions(), fromSeed.getTrace().getActions());
+			}
+
+			GameContext toEnd = withCheckpoints.replayContext(actionCount, null);
+			Assert.assertEquals(toEnd.getWinningPlayerId(), context1.getWinningPlayerId());
+			Assert.assertEquals(toEnd.getTurn(), context1.getTurn());
+		});
+	}
+
+	private static String fingerprint(GameContext context) {
+		return context.getTurn() + ":" + context.getActivePlayerId() + ":" + context.getActionsThisTurn() + ":" + context.getStatus() + "\n"
+				+ context.getEntities()
+				.sorted(Comparator.comparingInt(Entity::getId))
+				.map(e -> e.getId() + " " + e.getEntityType() + " "
+						+ (e.getSourceCard() == null ? "" : e.getSourceCard().getCardId()) + " " + e.getEntityLocation()
+						+ (e instanceof Actor ? " " + ((Actor) e).getAttack() + "/" + ((Actor) e).getHp() : ""))
+				.collect(Collectors.joining("\n"));
+	}
+
 	@Test(dataProvider = "Traces")
 	public void testTraces(Trace trace) {
 		GameContext context = trace.replayContext(false, null);
@@ -0,0 +1,58 @@
+package net.demilich.metastone.game.logic;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SharedPrefixListTest {
+
+	@Test
+	public void testCopiesStayIndependentAfterDivergentAppends() {
+		// Cover copies made inside the first chunk, exactly at a chunk boundary and after several frozen chunks
+		for (int prefixSize : new int[]{0, 10, 64, 130}) {
+			SharedPrefixList<Integer> original = new SharedPrefixList<>();
+			List<Integer> expectedOriginal = new ArrayList<>();
+			for (int i = 0; i < prefixSize; i++) {
+				original.add(i);
+				expectedOriginal.add(i);
+			}
+			// Build the chunk index before copying so that the copy starts out sharing it
+			if (prefixSize > 0) {
+				original.get(0);
+			}
+
+			SharedPrefixList<Integer> copy = original.copy();
+			List<Integer> expectedCopy = new ArrayList<>(expectedOriginal);
+			SharedPrefixList<Integer> copyOfCopy = copy.copy();
+			List<Integer> expectedCopyOfCopy = new ArrayList<>(expectedOriginal);
+
+			// Append enough different values to each list to freeze new chunks on both sides of the shared prefix
+			for (int i = 0; i < 150; i++) {
+				original.add(1000 + i);
+				expectedOriginal.add(1000 + i);
+				copy.add(-1000 - i);
+				expectedCopy.add(-1000 - i);
+				if (i % 2 == 0) {
+					copyOfCopy.add(5000 + i);
+					expectedCopyOfCopy.add(5000 + i);
+				}
+			}
+
+			Assert.assertEquals(original, expectedOriginal);
+			Assert.assertEquals(copy, expectedCopy);
+			Assert.assertEquals(copyOfCopy, expectedCopyOfCopy);
+			for (int i = 0; i < expectedOriginal.size(); i++) {
+				Assert.assertEquals(original.get(i), expectedOriginal.get(i));
+				Assert.assertEquals(copy.get(i), expectedCopy.get(i));
+			}
+
+			// Clearing one list leaves the others untouched
+			copy.clear();
+			Assert.assertTrue(copy.isEmpty());
+			Assert.assertEquals(original, expectedOriginal);
+			Assert.assertEquals(copyOfCopy, expectedCopyOfCopy);
+		}
+	}
+}
@@ -175,6 +175,7 @@ public interface Accounts {
 			}
 
 			mongo().insert(USERS, mapFrom(record));
+			UserRecordCache.current().put(record);
 
 			response.setUserId(userId);
 			response.setLoginToken(forUser);
@@ -430,6 +431,7 @@ public interface Accounts {
 			if (updateResult.getDocModified() == 0) {
 				throw new RuntimeException("login failed");
 			}
+			UserRecordCache.invalidate(userRecord.getId());
 
 			span.setTag("userId", userRecord.getId());
 			return new LoginResponse(token, userRecord);
@@ -459,6 +461,10 @@ public interface Accounts {
 			String secret = components[1];
 
 			UserRecord record = Accounts.get(userId);
+			if (record != null && !Accounts.isAuthorizedWithToken(record, secret)) {
+				// The token may have been created on another node before its invalidation arrived here
+				record = mongo().findOneById(USERS, userId, UserRecord.class);
+			}
 			if (Accounts.isAuthorizedWithToken(record, secret)) {
 				span.setTag("userId", userId);
 				return record;
@@ -473,13 +479,16 @@ public interface Accounts {
 
 	/**
 	 * Gets a user by the specified user ID.
+	 * <p>
+	 * Users are read through this node's {@link UserRecordCache}. Code that modifies user documents must call {@link
+	 * UserRecordCache#invalidate(String...)} afterwards.
 	 *
 	 * @param userId
 	 * @return
 	 */
 	@Suspendable
 	static UserRecord get(String userId) {
-		return mongo().findOne(USERS, json("_id", userId), UserRecord.class);
+		return UserRecordCache.current().get(userId);
 	}
 
 	/**
@@ -524,6 +533,7 @@ public interface Accounts {
 			if (result.getDocModified() == 0) {
 				throw new IllegalStateException("Unable to save the password change at this time.");
 			}
+			UserRecordCache.invalidate(record.getId());
 
 			return new ChangePasswordResponse();
 		} catch (RuntimeException runtimeException) {
@@ -559,9 +569,11 @@ public interface Accounts {
 			// Remove all collections
 			mongo().removeDocuments(Inventory.COLLECTIONS, json("userId", record.getId()));
 			// Remove all inventory records
-			mongo().removeDocuments(Inventory.INVENTORY, json("userId", record.getId()));
+			mongo().removeDocuments(Inventory.COUNTS, json("_id", record.getId()));
 			// Remove the user document
 			mongo().removeDocument(Accounts.USERS, json("_id", record.getId()));
+			UserRecordCache.invalidate(record.getId());
+			DeckCardsCache.invalidateOwners(record.getId());
 			return true;
 		} catch (RuntimeException runtimeException) {
 			Tracing.error(runtimeException, span, true);
@@ -591,9 +603,11 @@ public interface Accounts {
 			// Remove all collections
 			mongo().removeDocuments(Inventory.COLLECTIONS, json("userId", json("$in", userIds)));
 			// Remove all inventory records
-			mongo().removeDocuments(Inventory.INVENTORY, json("userId", json("$in", userIds)));
+			mongo().removeDocuments(Inventory.COUNTS, json("_id", json("$in", userIds)));
 			// Remove the user document
 			MongoClientDeleteResult result = mongo().removeDocuments(Accounts.USERS, json("_id", json("$in", userIds)));
+			UserRecordCache.invalidate(Vertx.currentContext().owner(), ids.stream().map(UserId::toString).collect(Collectors.toList()));
+			DeckCardsCache.invalidateOwners(Vertx.currentContext().owner(), ids.stream().map(UserId::toString).collect(Collectors.toList()));
 			return result.getRemovedCount();
 
 		} catch (RuntimeException runtimeException) {
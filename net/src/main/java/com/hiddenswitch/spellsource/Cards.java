@@ -2,13 +2,12 @@ package com.hiddenswitch.spellsource;
 
 import co.paralleluniverse.fibers.Suspendable;
 import com.hiddenswitch.spellsource.client.models.CardRecord;
-import com.hiddenswitch.spellsource.concurrent.SuspendableMap;
+import com.hiddenswitch.spellsource.impl.util.CardCataloguePayload;
 import com.hiddenswitch.spellsource.models.*;
 import io.opentracing.Scope;
 import io.opentracing.Span;
 import io.opentracing.Tracer;
 import io.opentracing.util.GlobalTracer;
-import io.vertx.core.Vertx;
 import net.demilich.metastone.game.GameContext;
 import net.demilich.metastone.game.cards.CardCatalogue;
 import net.demilich.metastone.game.cards.CardCatalogueRecord;
@@ -19,16 +18,26 @@ import net.demilich.metastone.game.decks.DeckFormat;
 import net.demilich.metastone.game.entities.heroes.HeroClass;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.hiddenswitch.spellsource.util.QuickJson.json;
+import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
 
 /**
  * The cards service. This manages the base card definitions.
  */
 public interface Cards {
 	Random RANDOM = new Random();
+	/**
+	 * The response to {@link Gateway#getCards(io.vertx.ext.web.RoutingContext)} for the current card catalogue, or
+	 * {@code null} if it has to be built again.
+	 */
+	AtomicReference<CardCataloguePayload> PAYLOAD = new AtomicReference<>();
+	/**
+	 * The collectible cards in the catalogue indexed by card set, or {@code null} if it has to be built again.
+	 */
+	AtomicReference<Map<String, List<CardCatalogueRecord>>> COLLECTIBLE_BY_SET = new AtomicReference<>();
 
 	/**
 	 * Queries the card catalogue with the specified parameters and returns the corresponding card records. Useful for
@@ -61,22 +70,17 @@ public interface Cards {
 				response = new QueryCardsResponse()
 						.withRecords(request.getCardIds().stream().map(CardCatalogue.getRecords()::get).collect(toList()));
 			} else {
-				final Set<String> sets = new HashSet<>(Arrays.asList(request.getSets()));
-
-				List<CardCatalogueRecord> results = CardCatalogue.getRecords().values().stream().filter(r -> {
-					boolean passes = true;
-
-					final CardDesc desc = r.getDesc();
-
-					passes &= desc.isCollectible();
-					passes &= sets.contains(desc.getSet());
-
-					if (request.getRarity() != null) {
-						passes &= desc.getRarity() != null && desc.getRarity().isRarity(request.getRarity());
+				Map<String, List<CardCatalogueRecord>> collectibleBySet = getCollectibleBySet();
+				List<CardCatalogueRecord> results = new ArrayList<>();
+				for (String set : new LinkedHashSet<>(Arrays.asList(request.getSets()))) {
+					for (CardCatalogueRecord record : collectibleBySet.getOrDefault(set, Collections.emptyList())) {
+						if (request.getRarity() != null
+								&& (record.getDesc().getRarity() == null || !record.getDesc().getRarity().isRarity(request.getRarity()))) {
+							continue;
+						}
+						results.add(record);
 					}
-
-					return passes;
-				}).collect(toList());
+				}
 
 				int count = results.size();
 
@@ -107,6 +111,43 @@ public interface Cards {
 		return RANDOM;
 	}
 
+	/**
+	 * Gets the collectible cards in the catalogue by card set, indexing them the first time.
+	 *
+	 * @return A map of card sets to their collectible cards.
+	 */
+	static Map<String, List<CardCatalogueRecord>> getCollectibleBySet() {
+		Map<String, List<CardCatalogueRecord>> collectibleBySet = COLLECTIBLE_BY_SET.get();
+		if (collectibleBySet == null) {
+			collectibleBySet = CardCatalogue.getRecords().values().stream()
+					.filter(record -> record.getDesc().isCollectible())
+					.collect(groupingBy(record -> record.getDesc().getSet()));
+			COLLECTIBLE_BY_SET.compareAndSet(null, collectibleBySet);
+		}
+		return collectibleBySet;
+	}
+
+	/**
+	 * Gets the serialized and compressed response containing every card from {@link #getCards()}, building it the first
+	 * time it is requested after the cache was invalidated.
+	 *
+	 * @return The payload.
+	 */
+	static CardCataloguePayload getCataloguePayload() {
+		CardCataloguePayload payload = PAYLOAD.get();
+		if (payload == null) {
+			synchronized (PAYLOAD) {
+				payload = PAYLOAD.get();
+				if (payload == null) {
+					CardCatalogue.loadCardsFromPackage();
+					payload = CardCataloguePayload.create(getCards());
+					PAYLOAD.set(payload);
+				}
+			}
+		}
+		return payload;
+	}
+
 	/**
 	 * Retrieves a freshly computed list containing all the collectible cards as client entities. Represents the current
 	 * master collection of the game.
@@ -147,19 +188,17 @@ public interface Cards {
 	}
 
 	/**
-	 * Invalidates the card cache.
+	 * Invalidates the card cache on this node, so that the catalogue response and the index used by {@link
+	 * #query(QueryCardsRequest)} are built again on their next use.
 	 */
-	@Suspendable
 	static void invalidateCardCache() {
 		Tracer tracer = GlobalTracer.get();
 		Span span = tracer.buildSpan("Cards/invalidateCardCache")
 				.start();
 		Scope scope = tracer.activateSpan(span);
 		try {
-			SuspendableMap<String, Object> cache = SuspendableMap.getOrCreate("Cards/cards");
-			// Invalidate the cache here
-			cache.put("cards-version", Vertx.currentContext().deploymentID());
-			cache.put("cards-last-modified", Gateway.DATE_TIME_FORMATTER.format(new Date()));
+			PAYLOAD.set(null);
+			COLLECTIBLE_BY_SET.set(null);
 		} catch (RuntimeException runtimeException) {
 			Tracing.error(runtimeException, span, true);
 			throw runtimeException;
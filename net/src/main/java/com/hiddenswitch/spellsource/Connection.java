@@ -4,9 +4,13 @@ import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.fibers.Suspendable;
 import com.hiddenswitch.spellsource.client.models.ClientToServerMessage;
 import com.hiddenswitch.spellsource.client.models.Envelope;
+import com.hiddenswitch.spellsource.client.models.EnvelopeAdded;
+import com.hiddenswitch.spellsource.client.models.Friend;
+import com.hiddenswitch.spellsource.client.models.Invite;
 import com.hiddenswitch.spellsource.client.models.ServerToClientMessage;
 import com.hiddenswitch.spellsource.concurrent.SuspendableLock;
 import com.hiddenswitch.spellsource.impl.*;
+import com.hiddenswitch.spellsource.impl.util.EnvelopeWriteStream;
 import io.opentracing.Span;
 import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
@@ -65,21 +69,31 @@ import static java.util.stream.Collectors.toList;
  *   }
  * </pre>
  * Observe the use of the {@link Connection#writeStream(String)}}, which allows any code anywhere to send a message to a
- * connected client. The {@link #write(Envelope)} method can also be used in the {@code connected} handler.
+ * connected client. The {@link #write(Envelope)} method can also be used in the {@code connected} handler, though
+ * records the client should receive as soon as it connects belong in {@link #initialState()}.
  */
 public interface Connection extends ReadStream<Envelope>, WriteStream<Envelope>, Closeable {
 	Map<String, Boolean> CODECS_REGISTERED = new ConcurrentHashMap<>();
+	/**
+	 * The connections whose sockets are hosted by this process, keyed by {@link #localKey(Vertx, String)}. For internal
+	 * use only.
+	 */
+	Map<String, Connection> LOCAL_CONNECTIONS = new ConcurrentHashMap<>();
 
 	/**
 	 * Retrieves a valid reference to write to a connection from anywhere, as long as the event bus on the other node is
 	 * shared/clustered with this one.
+	 * <p>
+	 * When the user is connected to this node, envelopes are written to the {@link #local(Vertx, String)} connection, the
+	 * same path game servers on this node use, so that they are not reordered with respect to game messages.
 	 *
 	 * @param userId The user ID whose connection should be retrieved
 	 * @return A connection object.
 	 */
 	static @NotNull
 	WriteStream<Envelope> writeStream(@NotNull String userId) {
-		return Vertx.currentContext().owner().eventBus().publisher(toBusAddress(userId));
+		Vertx vertx = Vertx.currentContext().owner();
+		return new EnvelopeWriteStream(vertx, userId, vertx.eventBus().publisher(toBusAddress(userId)));
 	}
 
 	static @NotNull
@@ -103,6 +117,48 @@ public interface Connection extends ReadStream<Envelope>, WriteStream<Envelope>,
 		return "Connection/clusteredConsumer/" + userId;
 	}
 
+	/**
+	 * Retrieves the user's connection if its socket is hosted by the given {@link Vertx} instance.
+	 * <p>
+	 * Writing to a local connection directly skips encoding the message for the event bus and dispatching it to the
+	 * connection's consumer. Code that may run on any node should fall back to {@link #writeStream(String)} when this
+	 * returns {@code null}.
+	 *
+	 * @param vertx  The instance the caller is running on.
+	 * @param userId The user whose connection should be retrieved
+	 * @return The connection, or {@code null} if the user is not connected to this node.
+	 */
+	static @Nullable
+	Connection local(@NotNull Vertx vertx, @NotNull String userId) {
+		return LOCAL_CONNECTIONS.get(localKey(vertx, userId));
+	}
+
+	/**
+	 * Computes the key of a user's connection in {@link #LOCAL_CONNECTIONS}. Several {@link Vertx} instances can run in
+	 * one process (typically in tests), so the key includes the node ID.
+	 *
+	 * @param vertx  The instance hosting the socket.
+	 * @param userId The user.
+	 * @return The key.
+	 */
+	static String localKey(Vertx vertx, String userId) {
+		return nodeId(vertx) + "/" + userId;
+	}
+
+	/**
+	 * Gets an identifier for the given instance that is unique in this process.
+	 *
+	 * @param owner The instance.
+	 * @return The cluster node ID, or a unique string for unclustered instances.
+	 */
+	static String nodeId(Vertx owner) {
+		if (((VertxInternal) owner).getClusterManager() == null) {
+			return owner.toString();
+		} else {
+			return ((VertxInternal) owner).getNodeID();
+		}
+	}
+
 	/**
 	 * Closes the connection, if the user has one.
 	 *
@@ -123,6 +179,9 @@ public interface Connection extends ReadStream<Envelope>, WriteStream<Envelope>,
 	/**
 	 * Creates a handler for the verticle's {@link io.vertx.ext.web.Router} that upgrades the web socket and manages the
 	 * messaging over the cluster for the user.
+	 * <p>
+	 * The wire format of the envelopes is negotiated with the {@code Sec-WebSocket-Protocol} header during the upgrade.
+	 * See {@link EnvelopeFormat} for the supported formats.
 	 *
 	 * @return
 	 */
@@ -212,8 +271,28 @@ public interface Connection extends ReadStream<Envelope>, WriteStream<Envelope>,
 				});
 				return fut;
 			}).collect(toList())).setHandler(h));
-			// Send an envelope to indicate that the connection is ready.
-			connection.write(new Envelope());
+			// Send an envelope to indicate that the connection is ready. Clients that opted in receive everything the setup
+			// handlers loaded in it, so they get their initial state in one message.
+			EnvelopeAdded initialState = connection.initialState();
+			Envelope ready = new Envelope();
+			if (connection.isReadyState()) {
+				if (!initialState.equals(new EnvelopeAdded())) {
+					ready.added(initialState);
+				}
+			} else {
+				// Other clients expect an added envelope per record
+				if (initialState.getFriends() != null) {
+					for (Friend friend : initialState.getFriends()) {
+						connection.write(new Envelope().added(new EnvelopeAdded().friend(friend)));
+					}
+				}
+				if (initialState.getInvites() != null) {
+					for (Invite invite : initialState.getInvites()) {
+						connection.write(new Envelope().added(new EnvelopeAdded().invite(invite)));
+					}
+				}
+			}
+			connection.write(ready);
 		} catch (RuntimeException runtimeException) {
 			Tracing.error(runtimeException, span, true);
 			// This also closes the socket and cleans up its handlers
@@ -227,13 +306,7 @@ public interface Connection extends ReadStream<Envelope>, WriteStream<Envelope>,
 	 */
 	static void registerCodecs() {
 		Vertx owner = Vertx.currentContext().owner();
-		String nodeId;
-
-		if (((VertxInternal) owner).getClusterManager() == null) {
-			nodeId = owner.toString();
-		} else {
-			nodeId = ((VertxInternal) owner).getNodeID();
-		}
+		String nodeId = nodeId(owner);
 
 		if (CODECS_REGISTERED.putIfAbsent(nodeId, true) == null) {
 			owner.eventBus().registerDefaultCodec(Envelope.class, new EnvelopeMessageCodec());
@@ -244,6 +317,9 @@ public interface Connection extends ReadStream<Envelope>, WriteStream<Envelope>,
 
 	/**
 	 * Registers the given socket to the user. For internal use only.
+	 * <p>
+	 * The connection is added to {@link #LOCAL_CONNECTIONS} before its event bus consumer is registered, so writers on
+	 * this node never reach it through the event bus.
 	 *
 	 * @param socket
 	 * @param readyHandler
@@ -316,6 +392,29 @@ public interface Connection extends ReadStream<Envelope>, WriteStream<Envelope>,
 	@NotNull
 	String userId();
 
+	/**
+	 * The records to send the client when the connection is ready.
+	 * <p>
+	 * {@link SetupHandler}s should add the state a client needs when it first connects, like its friends and invites,
+	 * here instead of writing an envelope per record. The handlers run on the connection's context, so they can modify
+	 * the state without synchronization, but only until they complete.
+	 * <p>
+	 * If the client {@link #isReadyState()}, the state is sent in the envelope that indicates the connection is ready.
+	 * Otherwise, each friend and invite is sent in its own {@code added} envelope before it.
+	 *
+	 * @return The mutable initial state.
+	 */
+	@NotNull
+	EnvelopeAdded initialState();
+
+	/**
+	 * Indicates whether the client negotiated one of the {@link EnvelopeFormat#getReadyStateSubProtocol()} sub-protocols,
+	 * and so reads its {@link #initialState()} from the envelope that indicates the connection is ready.
+	 *
+	 * @return {@code true} if the client opted in.
+	 */
+	boolean isReadyState();
+
 	Connection removeHandler(Handler<Envelope> handler);
 
 	@FunctionalInterface
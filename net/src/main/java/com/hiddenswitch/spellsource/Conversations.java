@@ -1,15 +1,15 @@
 package com.hiddenswitch.spellsource;
 
 import com.hiddenswitch.spellsource.client.models.*;
-import com.hiddenswitch.spellsource.concurrent.SuspendableMultimap;
+import com.hiddenswitch.spellsource.impl.util.ConversationLog;
 import com.hiddenswitch.spellsource.impl.util.UserRecord;
-import com.hiddenswitch.spellsource.util.*;
 import io.reactivex.disposables.Disposable;
+import io.vertx.core.Closeable;
 import io.vertx.core.Future;
-import org.apache.commons.lang3.RandomStringUtils;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import static com.hiddenswitch.spellsource.util.Mongo.mongo;
-import static com.hiddenswitch.spellsource.util.QuickJson.json;
 import static com.hiddenswitch.spellsource.util.Sync.defer;
 import static com.hiddenswitch.spellsource.util.Sync.suspendableHandler;
 
@@ -17,6 +17,15 @@ import static com.hiddenswitch.spellsource.util.Sync.suspendableHandler;
  * Provides the methods to help users message each other.
  */
 public interface Conversations {
+	Logger LOGGER = LoggerFactory.getLogger(Conversations.class);
+	/**
+	 * The collection of chat messages, stored with the sequence number of each message in its conversation.
+	 */
+	String CONVERSATIONS = "conversations";
+	/**
+	 * How often each node writes the messages it accepted to {@link #CONVERSATIONS}.
+	 */
+	long PERSIST_INTERVAL_MILLIS = 1000L;
 
 	/**
 	 * Creates the ephemeral messaging state and notifies users when they receive messages.
@@ -25,13 +34,14 @@ public interface Conversations {
 		Connection.connected((connection, fut) -> {
 			defer(v1 -> {
 				try {
-					SuspendableMultimap<ConversationId, ChatMessage> conversations = SuspendableMultimap.getOrCreate("conversations");
+					ConversationLog log = ConversationLog.current();
+					// Chat messages carry the sender's name as it was when they connected
+					UserRecord sender = Accounts.get(connection.userId());
 					connection.handler(suspendableHandler(msg -> {
 						// Send a message
 						if (msg.getMethod() != null && msg.getMethod().getSendMessage() != null) {
 							EnvelopeMethodSendMessage sendMessage = msg.getMethod().getSendMessage();
 							// Sending a chat message
-							UserRecord sender = mongo().findOne(Accounts.USERS, json("_id", connection.userId()), UserRecord.class);
 							String conversationId = sendMessage.getConversationId();
 							if (!conversationId.contains(connection.userId())) {
 								throw new SecurityException(String.format("User %s attempted to subscribe to unauthorized conversationId %s",
@@ -40,38 +50,17 @@ public interface Conversations {
 							}
 							// Conversation IDs should be of the form userId1,userId2
 							// TODO: Assert that it's two valid user IDs.
-							ChatMessage message = new ChatMessage()
-									.messageId("c:" + Integer.toString(conversations.size()) + ":" + RandomStringUtils.randomAlphanumeric(6))
-									.conversationId(conversationId)
-									.message(sendMessage.getMessage())
-									.senderUserId(sender.getId())
-									.senderName(sender.getUsername());
-
-							conversations.put(new ConversationId(conversationId), message);
+							ChatMessage message = log.append(conversationId, sender.getId(), sender.getUsername(), sendMessage.getMessage());
 							connection.write(new Envelope().result(new EnvelopeResult().sendMessage(new EnvelopeResultSendMessage().messageId(message.getMessageId()))));
 						}
 
 						if (msg.getSub() != null && msg.getSub().getConversation() != null) {
 							// Subscribe to conversation
 							EnvelopeSubConversation request = msg.getSub().getConversation();
-							String conversationId = request.getConversationId();
-							ConversationId key = new ConversationId(conversationId);
-
-							AddedChangedRemoved<ConversationId, ChatMessage> observer =
-									SuspendableMultimap.subscribeToKeyInMultimap("conversations", key);
-
-							for (ChatMessage message : conversations.get(key)) {
-								connection.write(new Envelope().added(new EnvelopeAdded().chatMessage(message)));
-							}
-
-							Disposable sub = observer.added().subscribe(next -> {
-								connection.write(new Envelope().added(new EnvelopeAdded().chatMessage(next.getValue())));
-							});
+							Disposable sub = log.subscribe(request.getConversationId(), message ->
+									connection.write(new Envelope().added(new EnvelopeAdded().chatMessage(message))));
 
-							connection.endHandler(v2 -> {
-								sub.dispose();
-								observer.dispose();
-							});
+							connection.endHandler(v2 -> sub.dispose());
 						}
 					}));
 
@@ -82,4 +71,29 @@ public interface Conversations {
 			});
 		});
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Starts writing the chat messages accepted by this node to {@link #CONVERSATIONS} in batches, every {@link
+	 * #PERSIST_INTERVAL_MILLIS}.
+	 *
+	 * @return A handle to stop persisting messages on this node, which writes the remaining messages first.
+	 */
+	static Closeable startPersistingMessages() {
+		Vertx vertx = Vertx.currentContext().owner();
+		ConversationLog log = ConversationLog.get(vertx);
+		long timerId = vertx.setPeriodic(PERSIST_INTERVAL_MILLIS, suspendableHandler(ignored -> {
+			try {
+				log.flush();
+			} catch (RuntimeException any) {
+				LOGGER.error("startPersistingMessages: Failed to persist messages", any);
+			}
+		}));
+		return fut -> {
+			vertx.cancelTimer(timerId);
+			defer(v -> {
+				log.flush();
+				fut.handle(Future.succeededFuture());
+			});
+		};
+	}
+}
@@ -4,14 +4,17 @@ import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.fibers.Suspendable;
 import com.hiddenswitch.spellsource.client.models.DecksUpdateCommand;
 import net.demilich.metastone.game.decks.DeckCreateRequest;
+import com.hiddenswitch.spellsource.impl.util.DeckCardsCache;
 import com.hiddenswitch.spellsource.impl.util.DeckType;
 import com.hiddenswitch.spellsource.impl.util.InventoryRecord;
+import com.hiddenswitch.spellsource.impl.util.UserRecordCache;
 import com.hiddenswitch.spellsource.models.*;
 import com.hiddenswitch.spellsource.util.Mongo;
 import io.opentracing.Scope;
 import io.opentracing.Span;
 import io.opentracing.Tracer;
 import io.opentracing.util.GlobalTracer;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.mongo.FindOptions;
 import io.vertx.ext.mongo.MongoClientUpdateResult;
@@ -19,15 +22,12 @@ import io.vertx.ext.mongo.MongoClientUpdateResult;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static com.hiddenswitch.spellsource.util.Mongo.mongo;
 import static com.hiddenswitch.spellsource.util.QuickJson.json;
 import static com.hiddenswitch.spellsource.util.QuickJson.jsonPut;
 import static io.vertx.ext.sync.Sync.awaitResult;
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
 
 /**
@@ -47,70 +47,97 @@ public interface Decks {
 	 * @throws InterruptedException
 	 */
 	static DeckCreateResponse createDeck(DeckCreateRequest request) throws SuspendExecution, InterruptedException {
+		if (request.getUserId() == null) {
+			throw new SecurityException("A valid userID is required.");
+		}
+
+		return createDecks(request.getUserId(), Collections.singletonList(request)).get(0);
+	}
+
+	/**
+	 * Creates several decks for a user.
+	 * <p>
+	 * The card IDs of all the requests are resolved to copies in the user's collection with one read of their inventory,
+	 * and the copies the user is missing are created together. The decks are returned without being read back from the
+	 * database.
+	 *
+	 * @param userId   The user that will own the decks. Overrides the user ID of the requests.
+	 * @param requests Requests that specify the contents of the decks either as card IDs or inventory IDs.
+	 * @return The created decks, in the order of the requests.
+	 * @throws SuspendExecution
+	 * @throws InterruptedException
+	 */
+	@Suspendable
+	static List<DeckCreateResponse> createDecks(String userId, List<DeckCreateRequest> requests) throws SuspendExecution, InterruptedException {
 		Tracer tracer = GlobalTracer.get();
-		Span span = tracer.buildSpan("Decks/createDeck")
-				.withTag("userId", request.getUserId())
+		Span span = tracer.buildSpan("Decks/createDecks")
+				.withTag("userId", userId)
+				.withTag("count", requests.size())
 				.start();
 		Scope scope = tracer.activateSpan(span);
 		try {
-			if (request.getUserId() == null) {
+			if (userId == null) {
 				throw new SecurityException("A valid userID is required.");
 			}
 
-			List<String> inventoryIds = new ArrayList<>();
-			if (request.getInventoryIds() != null) {
-				inventoryIds.addAll(request.getInventoryIds());
+			List<List<String>> cardIds = new ArrayList<>(requests.size());
+			for (DeckCreateRequest request : requests) {
+				int size = (request.getInventoryIds() != null ? request.getInventoryIds().size() : 0)
+						+ (request.getCardIds() != null ? request.getCardIds().size() : 0);
+				if (size > getMaxDeckSize()) {
+					throw new RuntimeException(String.format("Cannot create a deck whose size %d exceeds %d", size, getMaxDeckSize()));
+				}
+				cardIds.add(request.getCardIds() != null ? request.getCardIds() : Collections.emptyList());
 			}
 
-			if (request.getCardIds() != null
-					&& request.getCardIds().size() > 0) {
-				// Find the card IDs in the user's collection, using copies wherever available, to put into the deck
-				GetCollectionResponse userCollection = Inventory.getCollection(GetCollectionRequest.user(request.getUserId()));
-				Map<String, List<String>> cards = userCollection.getInventoryRecords().stream().collect(groupingBy(InventoryRecord::getCardId, mapping(InventoryRecord::getId, toList())));
-
-				for (String cardId : request.getCardIds()) {
-					List<String> entry = cards.getOrDefault(cardId, Collections.emptyList());
-					if (entry.size() == 0) {
-						// TODO: Create a copy of the card on the fly for now.
-						cards.put(cardId, Inventory.addToCollection(new AddToCollectionRequest()
-								.withCardIds(Collections.singletonList(cardId))
-								.withUserId(request.getUserId())
-								// Add just one copy for now (add cards on demand)
-								.withCopies(1)).getInventoryIds());
-						entry = cards.get(cardId);
-					}
-					String record = entry.remove(0);
-					inventoryIds.add(record);
-				}
+			// Find the card IDs in the user's collection, using copies wherever available, to put into the decks
+			List<List<InventoryRecord>> copies;
+			try {
+				copies = Inventory.getOrCreateCopies(userId, cardIds);
+			} catch (IllegalArgumentException invalidCardId) {
+				throw new RuntimeException("Cannot create a deck that requested invalid card IDs", invalidCardId);
 			}
 
-			if (inventoryIds.size() > getMaxDeckSize()) {
-				throw new RuntimeException(String.format("Cannot create a deck whose size %d exceeds %d", inventoryIds.size(), getMaxDeckSize()));
-			} else {
-				final int size = request.getInventoryIds() != null ? request.getInventoryIds().size() : 0;
-				final int cardCount = request.getCardIds() != null ? request.getCardIds().size() : 0;
-				if (inventoryIds.size() != (size + cardCount)) {
-					throw new RuntimeException("Cannot create a deck that requested invalid card IDs");
+			List<DeckCreateResponse> responses = new ArrayList<>(requests.size());
+			List<String> deckIds = new ArrayList<>(requests.size());
+			for (int i = 0; i < requests.size(); i++) {
+				DeckCreateRequest request = requests.get(i);
+				List<InventoryRecord> records = copies.get(i);
+				List<String> inventoryIds = new ArrayList<>();
+				if (request.getInventoryIds() != null) {
+					inventoryIds.addAll(request.getInventoryIds());
 				}
+				records.forEach(record -> inventoryIds.add(record.getId()));
+
+				// Creates a new collection representing this deck
+				String deckId = Inventory
+						.createCollection(CreateCollectionRequest.deck(userId, request.getName(), request.getHeroClass(), inventoryIds, request.isDraft())
+								.setStandard(request.isStandardDeck())
+								.withHeroCardId(request.getHeroCardId())
+								.withFormat(request.getFormat()))
+						.getCollectionId();
+				deckIds.add(deckId);
+
+				GetCollectionResponse deck;
+				if (request.getInventoryIds() != null && !request.getInventoryIds().isEmpty()) {
+					// Only the inventory IDs the request specified directly have to be read back
+					deck = Inventory.getCollection(new GetCollectionRequest().withUserId(userId).withDeckId(deckId));
+				} else {
+					records.forEach(record -> record.getCollectionIds().add(deckId));
+					deck = GetCollectionResponse.deck(userId, deckId, request.getName(), request.getHeroClass(), request.getHeroCardId(),
+							request.getFormat(), request.isDraft() ? DeckType.DRAFT : DeckType.CONSTRUCTED, records, false)
+							.setStandard(request.isStandardDeck());
+				}
+				responses.add(DeckCreateResponse.create(deckId, deck));
 			}
 
-			// Creates a new collection representing this deck
-			final String userId = request.getUserId();
-			CreateCollectionResponse createCollectionResponse = Inventory
-					.createCollection(CreateCollectionRequest.deck(userId, request.getName(), request.getHeroClass(), inventoryIds, request.isDraft())
-							.setStandard(request.isStandardDeck())
-							.withHeroCardId(request.getHeroCardId())
-							.withFormat(request.getFormat()));
-
-			// Update the user document with this deck ID
-			final String deckId = createCollectionResponse.getCollectionId();
-			Mongo.mongo().updateCollection(Accounts.USERS, json("_id", userId), json("$addToSet", json("decks", deckId)));
-
-			// Get the collection
-			GetCollectionResponse getCollectionResponse = Inventory
-					.getCollection(new GetCollectionRequest().withUserId(userId).withDeckId(createCollectionResponse.getCollectionId()));
+			// Update the user document with these deck IDs
+			if (!deckIds.isEmpty()) {
+				Mongo.mongo().updateCollection(Accounts.USERS, json("_id", userId), json("$addToSet", json("decks", json("$each", new JsonArray(deckIds)))));
+				UserRecordCache.invalidate(userId);
+			}
 
-			return DeckCreateResponse.create(deckId, getCollectionResponse);
+			return responses;
 		} catch (RuntimeException runtimeException) {
 			Tracing.error(runtimeException, span, true);
 			throw runtimeException;
@@ -118,7 +145,6 @@ public interface Decks {
 			span.finish();
 			scope.close();
 		}
-
 	}
 
 	/**
@@ -154,6 +180,7 @@ public interface Decks {
 
 			if (!collectionUpdate.isEmpty()) {
 				MongoClientUpdateResult result = mongo().updateCollection(Inventory.COLLECTIONS, json("_id", deckId), collectionUpdate);
+				DeckCardsCache.invalidateDecks(deckId);
 			}
 
 			if (updateCommand.getPullAllInventoryIds() != null
@@ -228,6 +255,7 @@ public interface Decks {
 
 			// Remove the deckId from the user's decks
 			Mongo.mongo().updateCollection(Accounts.USERS, json("_id", userId), json("$pull", json("decks", deckId)));
+			UserRecordCache.invalidate(userId);
 
 			return DeckDeleteResponse.create(response);
 		} catch (RuntimeException runtimeException) {
@@ -268,13 +296,12 @@ public interface Decks {
 
 			AtomicLong updated = new AtomicLong();
 
-			// Add all the new decks
-			// TODO: For now, with so few users, we're not going to overoptimize this. We'll just call the API methods.
+			// Add all the new decks, resolving the cards of all of a user's decks at once
 			for (String userId : userIds) {
-				for (DeckCreateRequest deckCreate : request.getDeckCreateRequests()) {
-					createDeck(deckCreate.clone().withUserId(userId));
-					updated.incrementAndGet();
-				}
+				List<DeckCreateRequest> deckCreates = request.getDeckCreateRequests().stream()
+						.map(deckCreate -> deckCreate.clone().withUserId(userId))
+						.collect(toList());
+				updated.addAndGet(createDecks(userId, deckCreates).size());
 			}
 
 			return DeckListUpdateResponse.create(updated.get());
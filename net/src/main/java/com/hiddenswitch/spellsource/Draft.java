@@ -173,7 +173,7 @@ public interface Draft {
 
 	@Suspendable
 	static DraftRecord getRecord(String userId) {
-		return mongo().findOne(DRAFTS, json("_id", userId), DraftRecord.class);
+		return mongo().findOneById(DRAFTS, userId, DraftRecord.class);
 	}
 
 	@Suspendable
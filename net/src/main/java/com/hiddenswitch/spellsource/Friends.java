@@ -2,30 +2,39 @@ package com.hiddenswitch.spellsource;
 
 import co.paralleluniverse.fibers.SuspendExecution;
 import com.hiddenswitch.spellsource.client.models.*;
+import com.hiddenswitch.spellsource.impl.util.FriendGraph;
 import com.hiddenswitch.spellsource.impl.util.FriendRecord;
 import com.hiddenswitch.spellsource.impl.util.UserRecord;
+import com.hiddenswitch.spellsource.impl.util.UserRecordCache;
 import com.hiddenswitch.spellsource.util.Mongo;
 import io.vertx.core.Future;
+import io.vertx.core.Vertx;
 import io.vertx.core.streams.WriteStream;
 
+import java.util.Map;
+
 import static com.hiddenswitch.spellsource.util.Mongo.mongo;
 import static com.hiddenswitch.spellsource.util.QuickJson.json;
 import static com.hiddenswitch.spellsource.util.Sync.defer;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Provides a way for users to friend each other.
  */
 public interface Friends {
 	/**
-	 * Sends the player their friend list as "added" on their first connection
+	 * Sends the player their friend list, including each friend's presence, in the initial state of their connection
 	 */
 	static void handleConnections() {
 		Connection.connected((connection, fut) -> {
 			defer(v -> {
 				try {
-					UserRecord user = mongo().findOne(Accounts.USERS, json("_id", connection.userId()), UserRecord.class);
+					UserRecord user = Accounts.get(connection.userId());
+					// The presence stored with the friend records is not kept up to date
+					Map<String, PresenceEnum> presences = Presence.getPresences(user.getFriends().stream().map(FriendRecord::getFriendId).collect(toList()));
 					for (FriendRecord friend : user.getFriends()) {
-						connection.write(new Envelope().added(new EnvelopeAdded().friend(friend.toFriendDto())));
+						friend.setPresence(presences.get(friend.getFriendId()));
+						connection.initialState().addFriendsItem(friend.toFriendDto());
 					}
 					fut.handle(Future.succeededFuture());
 				} catch (RuntimeException any) {
@@ -54,7 +63,7 @@ public interface Friends {
 			String[] tokens = req.getUsernameWithToken().split("#");
 			friendAccount = Mongo.mongo().findOne(Accounts.USERS, json("username", tokens[0], "privacyToken", tokens[1]), UserRecord.class);
 		} else if (req.getFriendId() != null) {
-			friendAccount = mongo().findOne(Accounts.USERS, json("_id", req.getFriendId()), UserRecord.class);
+			friendAccount = Accounts.get(req.getFriendId());
 		} else {
 			friendAccount = null;
 		}
@@ -85,6 +94,12 @@ public interface Friends {
 		// Update both sides
 		mongo().updateCollection(Accounts.USERS, json("_id", userId), json("$push", json("friends", json(friendRecord))));
 		mongo().updateCollection(Accounts.USERS, json("_id", friendId), json("$push", json("friends", json(friendOfFriendRecord))));
+		UserRecordCache.invalidate(userId, friendId);
+		FriendGraph.friend(Vertx.currentContext().owner(), userId, friendId);
+
+		// The records are sent with each user's current presence, like the friend list in the initial state
+		friendRecord.setPresence(Presence.getPresence(friendId));
+		friendOfFriendRecord.setPresence(Presence.getPresence(userId));
 
 		// Update both users with the new friend records
 		WriteStream<Envelope> userConnection = Connection.writeStream(userId);
@@ -127,6 +142,9 @@ public interface Friends {
 				json("friends", json("friendId", friendId))));
 		Mongo.mongo().updateCollection(Accounts.USERS, json("_id", friendId), json("$pull",
 				json("friends", json("friendId", userId))));
+		UserRecordCache.invalidate(userId, friendId);
+		FriendGraph.unfriend(Vertx.currentContext().owner(), userId, friendId);
+		friendRecord.setPresence(Presence.getPresence(friendId));
 
 		// Update both users with the new friend records
 		WriteStream<Envelope> userConnection = Connection.writeStream(userId);
@@ -2,6 +2,7 @@ package com.hiddenswitch.spellsource;
 
 import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.fibers.Suspendable;
+import co.paralleluniverse.strands.Strand;
 import com.google.common.collect.MapDifference;
 import com.hiddenswitch.spellsource.client.models.*;
 import com.hiddenswitch.spellsource.concurrent.SuspendableMap;
@@ -10,6 +11,7 @@ import com.hiddenswitch.spellsource.impl.GameId;
 import com.hiddenswitch.spellsource.impl.UserId;
 import com.hiddenswitch.spellsource.models.*;
 import com.hiddenswitch.spellsource.util.Rpc;
+import com.hiddenswitch.spellsource.util.RpcOptions;
 import io.vertx.core.Verticle;
 import io.vertx.core.Vertx;
 import net.demilich.metastone.game.GameContext;
@@ -64,7 +66,9 @@ import static java.util.stream.Collectors.toList;
 public interface Games extends Verticle {
 	Logger LOGGER = LoggerFactory.getLogger(Games.class);
 	long DEFAULT_NO_ACTIVITY_TIMEOUT = 225000L;
+	long LOAD_PUBLISH_INTERVAL = 2000L;
 	String GAMES_PLAYERS_MAP = "Games/players";
+	String GAMES_DEPLOYMENTS_MAP = "Games/deployments";
 	String GAMES = "games";
 
 	/**
@@ -637,6 +641,180 @@ public interface Games extends Verticle {
 		return SuspendableMap.getOrCreate(GAMES_PLAYERS_MAP);
 	}
 
+	/**
+	 * Retrieves the {@link Games} deployments in the cluster, mapped to their most recently published load. Each
+	 * deployment publishes its load periodically and whenever it starts or stops hosting a game.
+	 *
+	 * @return A map.
+	 * @throws SuspendExecution
+	 * @see #placeGame() for how the load is used to choose where games are created.
+	 */
+	static SuspendableMap<String, DeploymentLoad> getDeployments() throws SuspendExecution {
+		return SuspendableMap.getOrCreate(GAMES_DEPLOYMENTS_MAP);
+	}
+
+	/**
+	 * Retrieves the deployments whose load was published recently. Deployments on nodes that have stopped responding
+	 * are excluded, and their entries are removed from {@link #getDeployments()}, since a deployment that stopped
+	 * without removing its own entry will never update it again.
+	 *
+	 * @return A copy of the live entries in {@link #getDeployments()}.
+	 * @throws SuspendExecution
+	 */
+	static Map<String, DeploymentLoad> getLiveDeployments() throws SuspendExecution {
+		long oldest = System.currentTimeMillis() - LOAD_PUBLISH_INTERVAL * 3L;
+		SuspendableMap<String, DeploymentLoad> published = getDeployments();
+		Map<String, DeploymentLoad> deployments = new HashMap<>();
+		for (Map.Entry<String, DeploymentLoad> entry : published.entrySet()) {
+			if (entry.getValue().getUpdatedAt() >= oldest) {
+				deployments.put(entry.getKey(), entry.getValue());
+			} else {
+				// Only removes the entry if the deployment did not publish again in the meantime
+				DeploymentLoad current = published.get(entry.getKey());
+				if (current != null && current.getUpdatedAt() < oldest) {
+					published.remove(entry.getKey());
+				}
+			}
+		}
+		return deployments;
+	}
+
+	/**
+	 * Chooses the deployment that should host a new game.
+	 * <p>
+	 * Deployments are grouped by node. A node is eligible when its CPU load, heap load and number of games are all below
+	 * the limits configured by {@link #getMaxCpuLoad()}, {@link #getMaxHeapLoad()} and {@link #getMaxGamesPerNode()}.
+	 * Among eligible nodes, the one hosting the fewest games per processor is chosen, breaking ties by CPU load. The game
+	 * is then placed on that node's deployment with the fewest games.
+	 * <p>
+	 * The players of a new game have typically already been matched, so this method does not fail when every node is
+	 * saturated. Instead, it waits for a node to free up, checking again every {@link #LOAD_PUBLISH_INTERVAL}. If none
+	 * does within {@link #getPlacementTimeout()}, the game is placed on the least loaded node regardless of the limits.
+	 *
+	 * @return The deployment ID, or {@code null} if no deployment has published its load yet.
+	 * @throws SuspendExecution
+	 * @throws InterruptedException
+	 */
+	static String placeGame() throws SuspendExecution, InterruptedException {
+		long deadline = System.currentTimeMillis() + getPlacementTimeout();
+		while (true) {
+			Map<String, DeploymentLoad> deployments = getLiveDeployments();
+			if (deployments.isEmpty()) {
+				return null;
+			}
+			String deploymentId = placeGame(deployments);
+			if (deploymentId != null) {
+				return deploymentId;
+			}
+			if (System.currentTimeMillis() >= deadline) {
+				LOGGER.warn("placeGame: All nodes are still at capacity after {}ms, placing the game anyway", getPlacementTimeout());
+				return placeGame(deployments, false);
+			}
+			Strand.sleep(LOAD_PUBLISH_INTERVAL);
+		}
+	}
+
+	/**
+	 * Chooses a deployment from the given loads.
+	 *
+	 * @param deployments Deployment IDs mapped to their loads.
+	 * @return The deployment ID, or {@code null} if every node is saturated.
+	 * @see #placeGame() for the placement rules.
+	 */
+	static String placeGame(Map<String, DeploymentLoad> deployments) {
+		return placeGame(deployments, true);
+	}
+
+	/**
+	 * Chooses a deployment from the given loads.
+	 *
+	 * @param deployments Deployment IDs mapped to their loads.
+	 * @param limited     When {@code false}, saturated nodes are considered too.
+	 * @return The deployment ID, or {@code null} if every node is saturated and {@code limited} is {@code true}.
+	 */
+	static String placeGame(Map<String, DeploymentLoad> deployments, boolean limited) {
+		Map<String, List<Map.Entry<String, DeploymentLoad>>> nodes = deployments.entrySet().stream()
+				.collect(Collectors.groupingBy(entry -> entry.getValue().getNodeId()));
+
+		double maxCpuLoad = getMaxCpuLoad();
+		double maxHeapLoad = getMaxHeapLoad();
+		int maxGamesPerNode = getMaxGamesPerNode();
+		String bestDeploymentId = null;
+		double bestGamesPerProcessor = Double.MAX_VALUE;
+		double bestCpuLoad = Double.MAX_VALUE;
+		for (List<Map.Entry<String, DeploymentLoad>> node : nodes.values()) {
+			// The node-wide measurements come from whichever deployment published most recently
+			DeploymentLoad latest = node.stream()
+					.map(Map.Entry::getValue)
+					.max(Comparator.comparingLong(DeploymentLoad::getUpdatedAt))
+					.orElseThrow(AssertionError::new);
+			int games = node.stream().mapToInt(entry -> entry.getValue().getGames()).sum();
+			if (limited && (latest.getCpuLoad() >= maxCpuLoad
+					|| latest.getHeapLoad() >= maxHeapLoad
+					|| (maxGamesPerNode > 0 && games >= maxGamesPerNode))) {
+				continue;
+			}
+
+			double gamesPerProcessor = (double) games / Math.max(latest.getProcessors(), 1);
+			if (gamesPerProcessor < bestGamesPerProcessor
+					|| (gamesPerProcessor == bestGamesPerProcessor && latest.getCpuLoad() < bestCpuLoad)) {
+				bestGamesPerProcessor = gamesPerProcessor;
+				bestCpuLoad = latest.getCpuLoad();
+				bestDeploymentId = node.stream()
+						.min(Comparator.comparingInt(entry -> entry.getValue().getGames()))
+						.map(Map.Entry::getKey)
+						.orElseThrow(AssertionError::new);
+			}
+		}
+		return bestDeploymentId;
+	}
+
+	/**
+	 * Moves the given game to a deployment on a different node than the one currently hosting it, without interrupting
+	 * the players.
+	 *
+	 * @param game The game to move.
+	 * @return The deployment ID now hosting the game. This is the original deployment if there was no other node to move
+	 * 		the game to.
+	 * @throws SuspendExecution
+	 * @throws InterruptedException
+	 * @see #migrateGameSession(MigrateGameSessionRequest) for more about how games are moved.
+	 */
+	static String migrateGame(GameId game) throws SuspendExecution, InterruptedException {
+		CreateGameSessionResponse connection = getConnections().get(game);
+		if (connection == null) {
+			throw new NullPointerException(String.format("The specified game %s was not found", game.toString()));
+		}
+		Map<String, DeploymentLoad> deployments = getLiveDeployments();
+		DeploymentLoad current = deployments.get(connection.deploymentId);
+		String nodeId = current == null ? null : current.getNodeId();
+		deployments.values().removeIf(load -> Objects.equals(load.getNodeId(), nodeId));
+		String deploymentId = placeGame(deployments);
+		if (deploymentId == null) {
+			return connection.deploymentId;
+		}
+		return migrateGame(game, deploymentId);
+	}
+
+	/**
+	 * Moves the given game to the specified deployment.
+	 *
+	 * @param game         The game to move.
+	 * @param deploymentId The {@link Games} deployment that should host the game.
+	 * @return The deployment ID now hosting the game.
+	 * @throws SuspendExecution
+	 * @throws InterruptedException
+	 */
+	static String migrateGame(GameId game, String deploymentId) throws SuspendExecution, InterruptedException {
+		CreateGameSessionResponse connection = getConnections().get(game);
+		if (connection == null) {
+			throw new NullPointerException(String.format("The specified game %s was not found", game.toString()));
+		}
+		return Rpc.connect(Games.class).sync(connection.deploymentId)
+				.migrateGameSession(new MigrateGameSessionRequest(game.toString(), deploymentId))
+				.getDeploymentId();
+	}
+
 	/**
 	 * Immediately ends the given game, causing both players to concede.
 	 * <p>
@@ -659,6 +837,9 @@ public interface Games extends Verticle {
 
 	/**
 	 * Creates a match without entering a queue entry between two users.
+	 * <p>
+	 * The game is created on the deployment chosen by {@link #placeGame()}, waiting for capacity if every node is
+	 * saturated.
 	 *
 	 * @param request All the required information to create a game.
 	 * @return Connection information for both users.
@@ -668,7 +849,11 @@ public interface Games extends Verticle {
 	static MatchCreateResponse createGame(ConfigurationRequest request) throws SuspendExecution, InterruptedException {
 		Matchmaking.LOGGER.debug("createMatch: Creating match for request {}", request);
 
-		Games gamesService = Rpc.connect(Games.class).sync();
+		// Fall back to any deployment if none have published their load yet
+		String deploymentId = placeGame();
+		Games gamesService = deploymentId == null
+				? Rpc.connect(Games.class).sync()
+				: Rpc.connect(Games.class).sync(deploymentId);
 		return new MatchCreateResponse(gamesService.createGameSession(request));
 	}
 
@@ -740,6 +925,40 @@ public interface Games extends Verticle {
 	@Suspendable
 	ConcedeGameSessionResponse concedeGameSession(ConcedeGameSessionRequest request) throws InterruptedException, SuspendExecution;
 
+	/**
+	 * Moves a game hosted by this deployment to the deployment specified in the request.
+	 * <p>
+	 * The game is detached the next time it waits for a turn action (see {@link
+	 * com.hiddenswitch.spellsource.impl.util.ServerGameContext#detach()}), then continued on the other deployment with
+	 * {@link #resumeGameSession(ResumeGameSessionRequest)}. Since games are connected to their players through event bus
+	 * addresses that belong to the users, the players' connections follow the game to its new node. Their clients
+	 * receive the complete game state and the pending action request again. The turn timer keeps its remaining time.
+	 * <p>
+	 * If the other deployment fails to continue the game, this deployment continues it instead.
+	 *
+	 * @param request The game and its destination.
+	 * @return The deployment now hosting the game.
+	 * @throws InterruptedException
+	 * @throws SuspendExecution
+	 */
+	@Suspendable
+	@RpcOptions(serialization = RpcOptions.Serialization.JAVA)
+	MigrateGameSessionResponse migrateGameSession(MigrateGameSessionRequest request) throws InterruptedException, SuspendExecution;
+
+	/**
+	 * Continues a game detached by another deployment on this deployment.
+	 * <p>
+	 * The request is sent with Java serialization, since the snapshot it carries has no JSON representation.
+	 *
+	 * @param request The state of the detached game.
+	 * @return The game's new connection information.
+	 * @throws InterruptedException
+	 * @throws SuspendExecution
+	 */
+	@Suspendable
+	@RpcOptions(serialization = RpcOptions.Serialization.JAVA)
+	CreateGameSessionResponse resumeGameSession(ResumeGameSessionRequest request) throws InterruptedException, SuspendExecution;
+
 	/**
 	 * Given a context and a specification of who the local and opposing players are, generate a client game state view.
 	 * This view does not leak secure information.
@@ -1232,6 +1451,63 @@ public interface Games extends Verticle {
 		return Long.parseLong(System.getProperties().getProperty("games.defaultNoActivityTimeout", Long.toString(Games.DEFAULT_NO_ACTIVITY_TIMEOUT)));
 	}
 
+	/**
+	 * Gets how long a game waits for a human player to choose an action before it hibernates, i.e., serializes its state
+	 * and releases it from memory until the player acts.
+	 *
+	 * @return A value in milliseconds, or a negative number if games never hibernate (the default).
+	 * @see com.hiddenswitch.spellsource.impl.util.ServerGameContext for more about hibernation.
+	 */
+	static long getDefaultHibernationDelay() {
+		return Long.parseLong(System.getProperties().getProperty("games.hibernationDelay", "-1"));
+	}
+
+	/**
+	 * Gets the directory that hibernating games write their state to.
+	 *
+	 * @return A path, or {@code null} if hibernating games should keep their compressed state in memory (the default).
+	 */
+	static String getHibernationDirectory() {
+		return System.getProperties().getProperty("games.hibernationDirectory");
+	}
+
+	/**
+	 * Gets the CPU load at which a node stops accepting new games.
+	 *
+	 * @return The system load average per processor (see {@link DeploymentLoad#getCpuLoad()}).
+	 */
+	static double getMaxCpuLoad() {
+		return Double.parseDouble(System.getProperties().getProperty("games.maxCpuLoad", "2.0"));
+	}
+
+	/**
+	 * Gets the fraction of its heap a node may use before it stops accepting new games.
+	 *
+	 * @return A value between {@code 0.0} and {@code 1.0}.
+	 */
+	static double getMaxHeapLoad() {
+		return Double.parseDouble(System.getProperties().getProperty("games.maxHeapLoad", "0.9"));
+	}
+
+	/**
+	 * Gets the number of games a node may host before it stops accepting new games.
+	 *
+	 * @return The number of games, or a non-positive number if there is no limit (the default).
+	 */
+	static int getMaxGamesPerNode() {
+		return Integer.parseInt(System.getProperties().getProperty("games.maxGamesPerNode", "-1"));
+	}
+
+	/**
+	 * Gets how long {@link #createGame(ConfigurationRequest)} waits for a node to have capacity before it places the game
+	 * on a saturated node.
+	 *
+	 * @return A value in milliseconds.
+	 */
+	static long getPlacementTimeout() {
+		return Long.parseLong(System.getProperties().getProperty("games.placementTimeout", "30000"));
+	}
+
 	/**
 	 * Compute the {@link EntityChangeSet} between two {@link GameState}s.
 	 *
@@ -6,35 +6,43 @@ import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
 import com.hiddenswitch.spellsource.impl.UserId;
 import com.hiddenswitch.spellsource.impl.util.CollectionRecord;
+import com.hiddenswitch.spellsource.impl.util.DeckCardsCache;
+import com.hiddenswitch.spellsource.impl.util.InventoryCopyRecord;
+import com.hiddenswitch.spellsource.impl.util.InventoryCountsRecord;
 import com.hiddenswitch.spellsource.impl.util.InventoryRecord;
 import com.hiddenswitch.spellsource.models.*;
-import com.hiddenswitch.spellsource.util.Mongo;
-import com.hiddenswitch.spellsource.util.QuickJson;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.mongo.*;
-import io.vertx.ext.sync.Sync;
+import net.demilich.metastone.game.cards.CardCatalogue;
 import net.demilich.metastone.game.cards.CardCatalogueRecord;
 import net.demilich.metastone.game.cards.CardSet;
 import net.demilich.metastone.game.cards.Rarity;
 import net.demilich.metastone.game.cards.desc.CardDesc;
-import org.apache.commons.lang3.RandomStringUtils;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 import static com.hiddenswitch.spellsource.util.Mongo.mongo;
 import static com.hiddenswitch.spellsource.util.QuickJson.json;
-import static io.vertx.ext.sync.Sync.awaitResult;
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.*;
 
 /**
  * Provides methods to manage a player's persistent inventory.
+ * <p>
+ * The cards a user owns are stored in a single {@link InventoryCountsRecord} per user in {@link #COUNTS}, as the number
+ * of copies of each card. Decks, alliances and persistent facts only add entries for the copies they affect. Callers
+ * still work with one {@link InventoryRecord} per copy.
  */
 public interface Inventory {
+	/**
+	 * The collection that stored one {@link InventoryRecord} document per copy of a card. Only the migrations that
+	 * predate {@link #COUNTS} use it.
+	 */
 	String INVENTORY = "inventory.cards";
+	String COUNTS = "inventory.counts";
 	String COLLECTIONS = "inventory.collections";
 
 	/**
@@ -105,11 +113,7 @@ public interface Inventory {
 
 				if (request.getInventoryIds() != null
 						&& request.getInventoryIds().size() > 0) {
-					MongoClientUpdateResult update = mongo()
-							.updateCollectionWithOptions(INVENTORY,
-									json("_id", json("$in", request.getInventoryIds())),
-									json("$addToSet", json("collectionIds", deckId)),
-									new UpdateOptions().setMulti(true));
+					MongoClientUpdateResult update = addCopies(deckId, request.getInventoryIds());
 				}
 
 				return CreateCollectionResponse.deck(deckId);
@@ -123,24 +127,51 @@ public interface Inventory {
 		}
 	}
 
+	/**
+	 * Gives the user new copies of the specified cards.
+	 *
+	 * @param userId     The user.
+	 * @param cardsToAdd The cards.
+	 * @param copies     The number of copies of each card.
+	 * @return The inventory IDs of the new copies, in the order of {@code cardsToAdd} repeated {@code copies} times.
+	 */
+	@Suspendable
 	static List<String> createCardsForUser(String userId, List<CardDesc> cardsToAdd, int copies) throws InterruptedException, SuspendExecution {
 		if (userId == null) {
 			throw new NullPointerException();
 		}
 
-		List<String> userIdCollection = Collections.singletonList(userId);
-		List<JsonObject> documents = Collections.nCopies(copies, cardsToAdd)
+		List<String> cardIds = Collections.nCopies(copies, cardsToAdd)
 				.stream()
 				.flatMap(Collection::stream)
-				.map(card -> new InventoryRecord(RandomStringUtils.randomAlphanumeric(36), new JsonObject().put("id", card.getId()))
-						.withUserId(userId)
-						.withCollectionIds(userIdCollection))
-				.map(JsonObject::mapFrom)
+				.map(CardDesc::getId)
 				.collect(toList());
+		if (cardIds.isEmpty()) {
+			return new ArrayList<>();
+		}
 
-		mongo().insertManyWithOptions(INVENTORY, documents, new BulkWriteOptions().setOrdered(false).setWriteOption(WriteOption.ACKNOWLEDGED));
+		JsonObject increments = new JsonObject();
+		for (String cardId : cardIds) {
+			String path = InventoryCountsRecord.COUNTS + "." + cardId;
+			increments.put(path, increments.getInteger(path, 0) + 1);
+		}
 
-		return documents.stream().map(o -> o.getString("_id")).collect(toList());
+		// The counts before the increment are the numbers of the first new copies
+		JsonObject previous = mongo().findOneAndUpdateWithOptions(COUNTS,
+				json("_id", userId),
+				json("$inc", increments),
+				new FindOptions().setFields(json(InventoryCountsRecord.COUNTS, 1)),
+				new UpdateOptions().setUpsert(true).setReturningNewDocument(false));
+		JsonObject previousCounts = previous == null ? new JsonObject() : previous.getJsonObject(InventoryCountsRecord.COUNTS, new JsonObject());
+
+		Map<String, Integer> nextCopy = new HashMap<>();
+		List<String> inventoryIds = new ArrayList<>(cardIds.size());
+		for (String cardId : cardIds) {
+			int copy = nextCopy.computeIfAbsent(cardId, k -> ((Number) previousCounts.getValue(k, 0)).intValue());
+			nextCopy.put(cardId, copy + 1);
+			inventoryIds.add(InventoryCountsRecord.getInventoryId(userId, cardId, copy));
+		}
+		return inventoryIds;
 	}
 
 	static List<String> createCardsForUser(String userId, List<CardDesc> cardsToAdd) throws InterruptedException, SuspendExecution {
@@ -157,6 +188,81 @@ public interface Inventory {
 		return createCardsForUser(cardIds, userId, 1);
 	}
 
+	/**
+	 * Finds copies in the user's collection for lists of requested cards, creating the copies the user does not have
+	 * enough of.
+	 * <p>
+	 * Each list gets distinct copies, but different lists may share copies, just like decks do. The user's cards are read
+	 * with a single lookup of their {@link InventoryCountsRecord} and all the missing copies are created with a single
+	 * update, instead of loading the whole collection and creating copies one card at a time.
+	 *
+	 * @param userId  The user.
+	 * @param cardIds Lists of card IDs, typically one per deck, where duplicates request more copies.
+	 * @return For each list, a copy of each of its cards in the same order.
+	 * @throws IllegalArgumentException if a card ID does not exist.
+	 */
+	@Suspendable
+	static List<List<InventoryRecord>> getOrCreateCopies(String userId, List<List<String>> cardIds) throws InterruptedException, SuspendExecution {
+		InventoryCountsRecord counts = mongo().findOneById(COUNTS, userId, InventoryCountsRecord.class);
+		if (counts == null) {
+			counts = new InventoryCountsRecord(userId);
+		}
+
+		// The number of copies of each card the largest list needs
+		Map<String, Integer> needed = new HashMap<>();
+		for (List<String> list : cardIds) {
+			Map<String, Integer> listCounts = new HashMap<>();
+			list.forEach(cardId -> listCounts.merge(cardId, 1, Integer::sum));
+			listCounts.forEach((cardId, count) -> needed.merge(cardId, count, Math::max));
+		}
+
+		Map<String, Long> available = getCopiesInUserCollection(counts, needed.keySet()).stream()
+				.collect(groupingBy(InventoryRecord::getCardId, counting()));
+		List<String> missing = new ArrayList<>();
+		needed.forEach((cardId, count) -> {
+			for (long i = available.getOrDefault(cardId, 0L); i < count; i++) {
+				missing.add(cardId);
+			}
+		});
+
+		if (!missing.isEmpty()) {
+			for (String cardId : missing) {
+				if (!CardCatalogue.getRecords().containsKey(cardId)) {
+					throw new IllegalArgumentException(String.format("The cardId=%s does not exist", cardId));
+				}
+			}
+			createCardsForUser(missing, userId, 1);
+			counts = mongo().findOneById(COUNTS, userId, InventoryCountsRecord.class);
+		}
+
+		List<List<InventoryRecord>> copies = new ArrayList<>(cardIds.size());
+		for (List<String> list : cardIds) {
+			// Every list gets its own records, since callers may modify them
+			Map<String, List<InventoryRecord>> byCardId = getCopiesInUserCollection(counts, list).stream()
+					.collect(groupingBy(InventoryRecord::getCardId));
+			Map<String, Integer> nextCopy = new HashMap<>();
+			List<InventoryRecord> listCopies = new ArrayList<>(list.size());
+			for (String cardId : list) {
+				listCopies.add(byCardId.get(cardId).get(nextCopy.merge(cardId, 1, Integer::sum) - 1));
+			}
+			copies.add(listCopies);
+		}
+		return copies;
+	}
+
+	/**
+	 * Gets the copies of the specified cards that are in the user's own collection.
+	 *
+	 * @param counts  The user's record.
+	 * @param cardIds The card IDs.
+	 * @return The copies, excluding the ones that were donated.
+	 */
+	static List<InventoryRecord> getCopiesInUserCollection(InventoryCountsRecord counts, Collection<String> cardIds) {
+		List<InventoryRecord> records = counts.getInventoryRecords(cardIds);
+		records.removeIf(record -> !record.getCollectionIds().contains(counts.getUserId()));
+		return records;
+	}
+
 	static AddToCollectionResponse addToCollection(AddToCollectionRequest request) throws SuspendExecution, InterruptedException {
 		List<String> inventoryIds;
 		String collectionId;
@@ -179,16 +285,17 @@ public interface Inventory {
 			inventoryIds = new ArrayList<>();
 			// Interpret duplicate card IDs as multiple copies
 			Multiset<String> cardIds = HashMultiset.create(request.getCardIds());
-			List<JsonObject> unusedInventories = mongo().findWithOptions(INVENTORY,
-					json("userId", request.getUserId(),
-							"collectionIds", json("$ne", request.getCollectionId()),
-							"cardDesc.id", json("$in", request.getCardIds().stream().distinct().collect(toList()))),
-					new FindOptions().setFields(json("_id", 1, "cardDesc.id", 1)));
-			for (JsonObject unusedInventory : unusedInventories) {
-				final String cardId = unusedInventory.getJsonObject("cardDesc").getString("id");
-				if (cardIds.contains(cardId)) {
-					inventoryIds.add(unusedInventory.getString("_id"));
-					cardIds.remove(cardId);
+			InventoryCountsRecord owned = mongo().findOneById(COUNTS, request.getUserId(), InventoryCountsRecord.class);
+			if (owned != null) {
+				// Prefer the copies that are in the fewest other decks
+				List<InventoryRecord> unusedInventories = owned.getInventoryRecords(cardIds.elementSet()).stream()
+						.filter(record -> !record.getCollectionIds().contains(request.getCollectionId()))
+						.sorted(Comparator.comparingInt((InventoryRecord record) -> record.getCollectionIds().size()))
+						.collect(toList());
+				for (InventoryRecord unusedInventory : unusedInventories) {
+					if (cardIds.remove(unusedInventory.getCardId())) {
+						inventoryIds.add(unusedInventory.getId());
+					}
 				}
 			}
 
@@ -200,10 +307,7 @@ public interface Inventory {
 			throw new RuntimeException();
 		}
 
-		MongoClientUpdateResult result = mongo().updateCollectionWithOptions(Inventory.INVENTORY,
-				json("_id", json("$in", inventoryIds)),
-				json("$addToSet", json("collectionIds", collectionId)),
-				new UpdateOptions().setMulti(true));
+		MongoClientUpdateResult result = addCopies(collectionId, inventoryIds);
 
 		return AddToCollectionResponse.create(result, inventoryIds);
 	}
@@ -220,43 +324,40 @@ public interface Inventory {
 		}
 
 		List<String> inventoryIds = request.getInventoryIds() == null ? new ArrayList<>() : new ArrayList<>(request.getInventoryIds());
+		List<InventoryRecord> existingInventoryRecords = getInventoryRecords(Collections.singletonList(request.getCollectionId()));
 		if (request.getCardIds() != null) {
 			// Find the corresponding inventory IDs in this collection to remove. The cards that get removed will be arbitrary. Interpret duplicates as the count
-			List<JsonObject> existingInventoryIds = mongo().findWithOptions(INVENTORY,
-					json("collectionIds", request.getCollectionId(),
-							"cardDesc.id", json("$in", request.getCardIds())),
-					new FindOptions().setFields(json("_id", 1, "cardDesc.id", 1)));
-
-			Map<String, List<JsonObject>> cardsInCollection = existingInventoryIds.stream().collect(groupingBy(jo -> jo.getJsonObject("cardDesc").getString("id")));
+			Map<String, List<InventoryRecord>> cardsInCollection = existingInventoryRecords.stream()
+					.filter(record -> !inventoryIds.contains(record.getId()))
+					.collect(groupingBy(InventoryRecord::getCardId));
 			for (String cardId : request.getCardIds()) {
-				final List<JsonObject> inventoryItemsForId = cardsInCollection.getOrDefault(cardId, Collections.emptyList());
+				final List<InventoryRecord> inventoryItemsForId = cardsInCollection.getOrDefault(cardId, Collections.emptyList());
 				if (inventoryItemsForId.size() == 0) {
 					throw new IllegalArgumentException(String.format("The collectionId=%s does not contain the cardId=%s", request.getCollectionId(), cardId));
 				}
 
-				inventoryIds.add(inventoryItemsForId.remove(0).getString("_id"));
+				inventoryIds.add(inventoryItemsForId.remove(0).getId());
 			}
 		}
 
-		result = mongo().updateCollectionWithOptions(Inventory.INVENTORY,
-				json("_id", json("$in", inventoryIds)),
-				json("$pull", json("collectionIds", request.getCollectionId())),
-				new UpdateOptions().setMulti(true));
-
-		if (result.getDocMatched() != inventoryIds.size()) {
-			throw new ArrayStoreException(String.format("Could not find the correct number of inventoryIds=%s to remove from collectionId=%s.", request.getInventoryIds().toString(), request.getCollectionId()));
+		Set<String> existingInventoryIds = existingInventoryRecords.stream().map(InventoryRecord::getId).collect(toSet());
+		if (!existingInventoryIds.containsAll(inventoryIds)) {
+			throw new ArrayStoreException(String.format("Could not find the correct number of inventoryIds=%s to remove from collectionId=%s.", inventoryIds.toString(), request.getCollectionId()));
 		}
 
+		result = removeCopies(request.getCollectionId(), inventoryIds);
+
 		return new RemoveFromCollectionResponse(result, inventoryIds);
 	}
 
 
 	static DonateToCollectionResponse donateToCollection(DonateToCollectionRequest request) throws SuspendExecution, InterruptedException {
-		mongo().updateCollection(
-				Inventory.INVENTORY,
-				json("_id", json("$in", request.getInventoryIds())),
-				json("$set", json("allianceId", request.getAllianceId()),
-						"$addToSet", json("collectionIds", request.getAllianceId())));
+		String allianceId = request.getAllianceId();
+		updateCopies(request.getInventoryIds(), (inventoryId, update) -> {
+			putOperator(update, "$set", copyField(inventoryId, InventoryCopyRecord.ALLIANCE_ID), allianceId);
+			putOperator(update, "$addToSet", copyField(inventoryId, InventoryCopyRecord.COLLECTION_IDS), allianceId);
+			putOperator(update, "$addToSet", InventoryCountsRecord.COLLECTION_IDS, allianceId);
+		});
 
 		return new DonateToCollectionResponse();
 	}
@@ -276,10 +377,9 @@ public interface Inventory {
 			throw new IllegalArgumentException("Must specify collectionIds");
 		}
 
-		MongoClientUpdateResult update = mongo().updateCollectionWithOptions(INVENTORY,
-				json("collectionIds", json("$in", collectionIds)),
-				json("$set", json("borrowed", true, "borrowedByUserId", request.getUserId())),
-				new UpdateOptions().setMulti(true));
+		List<String> inventoryIds = getInventoryRecords(collectionIds).stream().map(InventoryRecord::getId).collect(toList());
+		MongoClientUpdateResult update = updateCopies(inventoryIds, (inventoryId, ownerUpdate) ->
+				putOperator(ownerUpdate, "$set", copyField(inventoryId, InventoryCopyRecord.BORROWED_BY_USER_ID), request.getUserId()));
 
 		return BorrowFromCollectionResponse.response(update.getDocModified());
 	}
@@ -292,10 +392,12 @@ public interface Inventory {
 	 */
 	@Suspendable
 	static ReturnToCollectionResponse returnToCollection(ReturnToCollectionRequest request) {
-		mongo().updateCollectionWithOptions(INVENTORY,
-				json("collectionIds", json("$in", request.getDeckIds())),
-				json("$set", json("borrowed", false, "borrowedByUserId", null)),
-				new UpdateOptions().setMulti(true));
+		List<String> borrowedInventoryIds = getInventoryRecords(request.getDeckIds()).stream()
+				.filter(InventoryRecord::isBorrowed)
+				.map(InventoryRecord::getId)
+				.collect(toList());
+		updateCopies(borrowedInventoryIds, (inventoryId, update) ->
+				putOperator(update, "$unset", copyField(inventoryId, InventoryCopyRecord.BORROWED_BY_USER_ID), ""));
 
 		return new ReturnToCollectionResponse();
 	}
@@ -333,10 +435,10 @@ public interface Inventory {
 
 			final Map<String, List<InventoryRecord>> deckInventories = new HashMap<>();
 			for (String deckId : deckIds) {
-				deckInventories.put(deckId, new Vector<>());
+				deckInventories.put(deckId, new ArrayList<>());
 			}
 
-			mongo().find(INVENTORY, json("collectionIds", json("$in", deckIds)), InventoryRecord.class)
+			getInventoryRecords(deckIds)
 					.forEach(ir -> ir.getCollectionIds().forEach(cid -> {
 						if (deckInventories.containsKey(cid)) {
 							deckInventories.get(cid).add(ir);
@@ -371,11 +473,10 @@ public interface Inventory {
 			throw new NullPointerException("No collection was specified");
 		}
 
-		List<JsonObject> results = mongo().find(INVENTORY, json("collectionIds", collectionId));
-		final List<InventoryRecord> inventoryRecords = results.stream().map(r -> QuickJson.fromJson(r, InventoryRecord.class)).collect(toList());
+		final List<InventoryRecord> inventoryRecords = getInventoryRecords(Collections.singletonList(collectionId));
 
 		if (type == CollectionTypes.DECK) {
-			CollectionRecord deck = mongo().findOne(COLLECTIONS, json("_id", collectionId), CollectionRecord.class);
+			CollectionRecord deck = mongo().findOneById(COLLECTIONS, collectionId, CollectionRecord.class);
 			return GetCollectionResponse.deck(deck.getUserId(), request.getDeckId(), deck.getName(), deck.getHeroClass(), deck.getHeroCardId(), deck.getFormat(), deck.getDeckType(), inventoryRecords, deck.isTrashed())
 					.setStandard(deck.isStandardDeck());
 		} else /* if (type == CollectionTypes.USER) */ {
@@ -394,28 +495,27 @@ public interface Inventory {
 						json("_id", collectionId, "trashed", false),
 						json("$set", json("trashed", true)));
 
-		MongoClientUpdateResult result2 = mongo()
-				.updateCollectionWithOptions(INVENTORY,
-						json("collectionIds", collectionId),
-						json("$pull", json("collectionIds", collectionId)),
-						new UpdateOptions().setMulti(true));
+		List<String> inventoryIds = getInventoryRecords(Collections.singletonList(collectionId)).stream().map(InventoryRecord::getId).collect(toList());
+		MongoClientUpdateResult result2 = updateCopies(inventoryIds, (inventoryId, update) -> {
+			putOperator(update, "$pull", copyField(inventoryId, InventoryCopyRecord.COLLECTION_IDS), collectionId);
+			// The trashed collection no longer has any cards, so its owners do not need to be found anymore
+			putOperator(update, "$pull", InventoryCountsRecord.COLLECTION_IDS, collectionId);
+		});
 
+		DeckCardsCache.invalidateDecks(collectionId);
 		return new TrashCollectionResponse(result1.getDocModified() == 1, result2.getDocModified());
 	}
 
 	static SetCollectionResponse setCollection(SetCollectionRequest setCollectionRequest) throws SuspendExecution, InterruptedException {
 		String collectionId = setCollectionRequest.getCollectionId();
-		MongoClientUpdateResult r = mongo()
-				.updateCollectionWithOptions(Inventory.INVENTORY,
-						json("collectionId", collectionId, "_id", json("$nin", setCollectionRequest.getInventoryIds())),
-						json("$pull", json("collectionIds", collectionId)),
-						new UpdateOptions().setMulti(true));
-
-		MongoClientUpdateResult r2 = mongo()
-				.updateCollectionWithOptions(Inventory.INVENTORY,
-						json("_id", json("$in", setCollectionRequest.getInventoryIds())),
-						json("$addToSet", json("collectionIds", collectionId)),
-						new UpdateOptions().setMulti(true));
+		List<String> inventoryIds = setCollectionRequest.getInventoryIds();
+		Set<String> existingInventoryIds = getInventoryRecords(Collections.singletonList(collectionId)).stream().map(InventoryRecord::getId).collect(toSet());
+
+		MongoClientUpdateResult r = removeCopies(collectionId,
+				existingInventoryIds.stream().filter(inventoryId -> !inventoryIds.contains(inventoryId)).collect(toList()));
+
+		MongoClientUpdateResult r2 = addCopies(collectionId,
+				inventoryIds.stream().filter(inventoryId -> !existingInventoryIds.contains(inventoryId)).collect(toList()));
 
 		return new SetCollectionResponse(r2, r);
 	}
@@ -424,4 +524,143 @@ public interface Inventory {
 	static boolean isOwner(String collectionId, UserId userId) {
 		return mongo().count(Inventory.COLLECTIONS, json("_id", collectionId, "userId", userId.toString())) != 0L;
 	}
+
+	/**
+	 * Gets every copy of a card in the specified collections.
+	 * <p>
+	 * Reads one {@link InventoryCountsRecord} per owner of the cards, usually just one.
+	 *
+	 * @param collectionIds User, deck or alliance collection IDs.
+	 * @return The copies that are in at least one of the collections.
+	 */
+	@Suspendable
+	static List<InventoryRecord> getInventoryRecords(List<String> collectionIds) {
+		if (collectionIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		List<InventoryCountsRecord> owners = mongo().find(COUNTS,
+				json("$or", new JsonArray()
+						.add(json("_id", json("$in", collectionIds)))
+						.add(json(InventoryCountsRecord.COLLECTION_IDS, json("$in", collectionIds)))),
+				InventoryCountsRecord.class);
+		return owners.stream()
+				.flatMap(owner -> owner.getInventoryRecordsInCollections(collectionIds).stream())
+				.collect(toList());
+	}
+
+	/**
+	 * Adds copies of cards to a collection.
+	 *
+	 * @param collectionId The user, deck or alliance collection.
+	 * @param inventoryIds The copies.
+	 * @return The result, counting copies.
+	 */
+	@Suspendable
+	static MongoClientUpdateResult addCopies(String collectionId, List<String> inventoryIds) {
+		MongoClientUpdateResult result = updateCopies(inventoryIds, (inventoryId, update) -> {
+			if (InventoryCountsRecord.getUserId(inventoryId).equals(collectionId)) {
+				putOperator(update, "$unset", copyField(inventoryId, InventoryCopyRecord.REMOVED_FROM_USER_COLLECTION), "");
+			} else {
+				putOperator(update, "$addToSet", copyField(inventoryId, InventoryCopyRecord.COLLECTION_IDS), collectionId);
+				putOperator(update, "$addToSet", InventoryCountsRecord.COLLECTION_IDS, collectionId);
+			}
+		});
+		// A cached deck is only found by the owners of the copies it already contained
+		DeckCardsCache.invalidateDecks(collectionId);
+		return result;
+	}
+
+	/**
+	 * Removes copies of cards from a collection.
+	 *
+	 * @param collectionId The user, deck or alliance collection.
+	 * @param inventoryIds The copies.
+	 * @return The result, counting copies.
+	 */
+	@Suspendable
+	static MongoClientUpdateResult removeCopies(String collectionId, List<String> inventoryIds) {
+		MongoClientUpdateResult result = updateCopies(inventoryIds, (inventoryId, update) -> {
+			if (InventoryCountsRecord.getUserId(inventoryId).equals(collectionId)) {
+				putOperator(update, "$set", copyField(inventoryId, InventoryCopyRecord.REMOVED_FROM_USER_COLLECTION), true);
+			} else {
+				putOperator(update, "$pull", copyField(inventoryId, InventoryCopyRecord.COLLECTION_IDS), collectionId);
+			}
+		});
+		// A cached deck is only found by the owners of the copies it already contained
+		DeckCardsCache.invalidateDecks(collectionId);
+		return result;
+	}
+
+	/**
+	 * Sets a persistent fact on copies of cards.
+	 *
+	 * @param inventoryIds The copies.
+	 * @param key          The name of the fact, typically an {@link net.demilich.metastone.game.cards.Attribute} in key
+	 *                     case.
+	 * @param value        The new value.
+	 * @return The result, counting copies.
+	 */
+	@Suspendable
+	static MongoClientUpdateResult setFact(List<String> inventoryIds, String key, Object value) {
+		return updateCopies(inventoryIds, (inventoryId, update) ->
+				putOperator(update, "$set", copyField(inventoryId, InventoryCopyRecord.FACTS + "." + key), value));
+	}
+
+	/**
+	 * Updates copies of cards in their owners' {@link InventoryCountsRecord}, making one update per owner.
+	 *
+	 * @param inventoryIds The copies.
+	 * @param update       Adds the operators for a copy, given its inventory ID, to the update of its owner's record. Use
+	 *                     {@link #copyField(String, String)} for the paths and {@link #putOperator(JsonObject, String,
+	 *                     String, Object)} to add them.
+	 * @return The result, where the matched and modified counts are numbers of copies instead of documents.
+	 */
+	@Suspendable
+	static MongoClientUpdateResult updateCopies(List<String> inventoryIds, BiConsumer<String, JsonObject> update) {
+		Map<String, List<String>> byOwner = inventoryIds.stream().distinct().collect(groupingBy(InventoryCountsRecord::getUserId));
+		long matched = 0L;
+		long modified = 0L;
+		for (Map.Entry<String, List<String>> owner : byOwner.entrySet()) {
+			JsonObject ownerUpdate = new JsonObject();
+			owner.getValue().forEach(inventoryId -> update.accept(inventoryId, ownerUpdate));
+			MongoClientUpdateResult result = mongo().updateCollection(COUNTS, json("_id", owner.getKey()), ownerUpdate);
+			if (result.getDocMatched() != 0L) {
+				matched += owner.getValue().size();
+			}
+			if (result.getDocModified() != 0L) {
+				modified += owner.getValue().size();
+			}
+		}
+		DeckCardsCache.invalidateOwners(byOwner.keySet().toArray(new String[0]));
+		return new MongoClientUpdateResult(matched, null, modified);
+	}
+
+	/**
+	 * The path of a field of a copy of a card in its owner's {@link InventoryCountsRecord}.
+	 *
+	 * @param inventoryId The copy.
+	 * @param field       The field in {@link InventoryCopyRecord}.
+	 * @return The path.
+	 */
+	static String copyField(String inventoryId, String field) {
+		return InventoryCountsRecord.COPIES + "." + InventoryCountsRecord.getCopyKey(inventoryId) + "." + field;
+	}
+
+	/**
+	 * Adds a field to an update operator, like {@code $set}, creating the operator if necessary.
+	 *
+	 * @param update   The update.
+	 * @param operator The operator.
+	 * @param path     The path of the field.
+	 * @param value    The operand.
+	 */
+	static void putOperator(JsonObject update, String operator, String path, Object value) {
+		JsonObject fields = update.getJsonObject(operator);
+		if (fields == null) {
+			fields = new JsonObject();
+			update.put(operator, fields);
+		}
+		fields.put(path, value);
+	}
 }
@@ -5,6 +5,7 @@ import co.paralleluniverse.fibers.Suspendable;
 import co.paralleluniverse.strands.Strand;
 import com.hiddenswitch.spellsource.client.models.*;
 import com.hiddenswitch.spellsource.client.models.Invite.StatusEnum;
+import com.hiddenswitch.spellsource.concurrent.SuspendableLock;
 import com.hiddenswitch.spellsource.impl.InviteId;
 import com.hiddenswitch.spellsource.impl.UserId;
 import com.hiddenswitch.spellsource.impl.util.UserRecord;
@@ -13,6 +14,7 @@ import com.hiddenswitch.spellsource.util.MatchmakingQueueConfiguration;
 import io.vertx.core.Closeable;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.streams.WriteStream;
@@ -45,6 +47,15 @@ public interface Invites {
 	long MAX_PENDING_FRIEND_COUNT = 10;
 	long MAX_PENDING_MATCHMAKING_INVITES = 1;
 	long DEFAULT_EXPIRY_TIME = 15 * 60 * 1000L;
+	/**
+	 * How often pending invites are checked for expiry.
+	 */
+	long EXPIRY_INTERVAL_MILLIS = 1000L;
+	/**
+	 * The most invites expired with a single update.
+	 */
+	int EXPIRY_BATCH_SIZE = 256;
+	String EXPIRY_LOCK = "Invites/expiry";
 
 
 	/**
@@ -73,27 +84,34 @@ public interface Invites {
 			}));
 			defer(v -> {
 				try {
-					// Expire old invites as sender or recipient
-					expireInvites(userId);
-
-					// Notify recipients of all pending invites.
-					List<Invite> invites = mongo().find(INVITES, json("toUserId", userId, "status", json("$in", PENDING_STATUSES)), Invite.class);
-					for (Invite invite : invites) {
+					// Load the invites the user received that are still pending. Expired ones are left to the expiry timer, while
+					// invites without an expiration time never expire.
+					long time = System.currentTimeMillis();
+					List<Invite> received = mongo().find(INVITES, json(
+							"toUserId", userId,
+							"status", json("$in", PENDING_STATUSES),
+							"$or", array(json("expiresAt", json("$exists", false)),
+									json("expiresAt", json("$gte", time)))), Invite.class);
+
+					// Notify the recipient of all pending invites in the initial state
+					List<String> undelivered = new ArrayList<>();
+					for (Invite invite : received) {
 						if (invite.getStatus() == StatusEnum.UNDELIVERED) {
 							invite.status(StatusEnum.PENDING);
+							undelivered.add(invite.getId());
 						}
-
-						connection.write(new Envelope().added(new EnvelopeAdded().invite(invite)));
+						connection.initialState().addInvitesItem(invite);
 					}
 
 					// Set undelivered to pending
-					JsonArray ids = new JsonArray(invites.stream().map(Invite::getId).collect(Collectors.toList()));
-					// State may have changed in between, only mess with the undelivered/pending ones
-					mongo().updateCollectionWithOptions(INVITES,
-							json("_id", json("$in", ids), "status", json("$in", PENDING_STATUSES)),
-							json("$set",
-									json("status", StatusEnum.PENDING.getValue())),
-							new UpdateOptions().setMulti(true));
+					if (!undelivered.isEmpty()) {
+						// State may have changed in between, only mess with the undelivered/pending ones
+						mongo().updateCollectionWithOptions(INVITES,
+								json("_id", json("$in", new JsonArray(undelivered)), "status", json("$in", PENDING_STATUSES)),
+								json("$set",
+										json("status", StatusEnum.PENDING.getValue())),
+								new UpdateOptions().setMulti(true));
+					}
 					fut.handle(Future.succeededFuture());
 				} catch (RuntimeException any) {
 					fut.handle(Future.failedFuture(any));
@@ -103,51 +121,90 @@ public interface Invites {
 	}
 
 	/**
-	 * Expires invites related to the given user
+	 * Starts expiring the pending invites of every user in the cluster as soon as their expiration time passes.
+	 * <p>
+	 * Every {@link #EXPIRY_INTERVAL_MILLIS}, the node holding {@link #EXPIRY_LOCK} expires the invites whose {@code
+	 * expiresAt} has passed in batches of {@link #EXPIRY_BATCH_SIZE}, using the index on {@code status} and {@code
+	 * expiresAt}. Nodes that do not get the lock skip that round.
+	 *
+	 * @return A handle to stop expiring invites on this node.
+	 */
+	static Closeable startExpiringInvites() {
+		Vertx vertx = Vertx.currentContext().owner();
+		long timerId = vertx.setPeriodic(EXPIRY_INTERVAL_MILLIS, suspendableHandler(ignored -> {
+			SuspendableLock lock;
+			try {
+				lock = SuspendableLock.lock(EXPIRY_LOCK, EXPIRY_INTERVAL_MILLIS / 2);
+			} catch (VertxException timeout) {
+				// Another node is expiring invites right now
+				return;
+			}
+
+			try {
+				expireInvites();
+			} catch (RuntimeException any) {
+				LOGGER.error("startExpiringInvites: Failed to expire invites", any);
+			} finally {
+				lock.release();
+			}
+		}));
+		return fut -> {
+			vertx.cancelTimer(timerId);
+			fut.handle(Future.succeededFuture());
+		};
+	}
+
+	/**
+	 * Expires every pending invite whose expiration time has passed and notifies both of its users.
 	 *
-	 * @param expire
+	 * @return The number of invites that were expired.
 	 */
 	@Suspendable
-	static void expireInvites(String expire) {
+	static long expireInvites() {
 		long time = System.currentTimeMillis();
-		List<Invite> shouldBeExpiredInvites = mongo().find(INVITES, json(
-				"toUserId", expire,
-				"status", json("$in", PENDING_STATUSES),
-				"expiresAt", json("$lt", time)
-		), Invite.class);
-		int totalExpied = shouldBeExpiredInvites.size();
-
-		// Cache retrieved connections
-		Map<String, WriteStream<Envelope>> connections = new HashMap<>();
-		for (Invite shouldBeExpiredInvite : shouldBeExpiredInvites) {
-			WriteStream<Envelope> fromConnection = connections.computeIfAbsent(shouldBeExpiredInvite.getFromUserId(), Connection::writeStream);
-			fromConnection.write(new Envelope().changed(new EnvelopeChanged().invite(new Invite().id(shouldBeExpiredInvite.getId()).status(StatusEnum.TIMEOUT))));
-		}
+		long expired = 0L;
+		while (true) {
+			List<JsonObject> shouldBeExpiredInvites = mongo().findWithOptions(INVITES, json(
+					"status", json("$in", PENDING_STATUSES),
+					"expiresAt", json("$lt", time)), new FindOptions()
+					.setFields(json("_id", 1, "fromUserId", 1, "toUserId", 1))
+					.setSort(json("expiresAt", 1))
+					.setLimit(EXPIRY_BATCH_SIZE));
+			if (shouldBeExpiredInvites.isEmpty()) {
+				return expired;
+			}
 
-		shouldBeExpiredInvites = mongo().find(INVITES, json(
-				"fromUserId", expire,
-				"status", json("$in", PENDING_STATUSES),
-				"expiresAt", json("$lt", time)
-		), Invite.class);
-		totalExpied += shouldBeExpiredInvites.size();
-		for (Invite shouldBeExpiredInvite : shouldBeExpiredInvites) {
-			WriteStream<Envelope> toConnection = connections.computeIfAbsent(shouldBeExpiredInvite.getToUserId(), Connection::writeStream);
-			toConnection.write(new Envelope().changed(new EnvelopeChanged().invite(new Invite().id(shouldBeExpiredInvite.getId()).status(StatusEnum.TIMEOUT))));
-		}
+			JsonArray ids = new JsonArray(shouldBeExpiredInvites.stream().map(invite -> invite.getString("_id")).collect(Collectors.toList()));
+			// State may have changed in between, only expire the ones that are still pending
+			MongoClientUpdateResult updateResult = mongo().updateCollectionWithOptions(INVITES,
+					json("_id", json("$in", ids),
+							"status", json("$in", PENDING_STATUSES)),
+					json("$set", json("status", StatusEnum.TIMEOUT.getValue())),
+					new UpdateOptions().setMulti(true));
+			expired += updateResult.getDocModified();
+
+			// Only this node expires invites while it holds the lock, so the invites in the batch that timed out are exactly
+			// the ones this update modified. The others were accepted or rejected in the meantime, and their users were
+			// notified of that instead.
+			List<JsonObject> expiredInvites = shouldBeExpiredInvites;
+			if (updateResult.getDocModified() != shouldBeExpiredInvites.size()) {
+				expiredInvites = updateResult.getDocModified() == 0L
+						? Collections.emptyList()
+						: mongo().findWithOptions(INVITES, json(
+						"_id", json("$in", ids),
+						"status", StatusEnum.TIMEOUT.getValue()), new FindOptions()
+						.setFields(json("_id", 1, "fromUserId", 1, "toUserId", 1)));
+			}
 
-		MongoClientUpdateResult updateResult = mongo().updateCollectionWithOptions(INVITES,
-				json("$and", array(json(
-						"status", json("$in", PENDING_STATUSES),
-						"expiresAt", json("$lt", time)),
-						json("$or", array(
-								json("fromUserId", expire),
-								json("toUserId", expire)
-						)))), json(
-						"$set", json("status", StatusEnum.TIMEOUT)
-				), new UpdateOptions().setMulti(true));
-
-		if (updateResult.getDocModified() != totalExpied) {
-			LOGGER.warn("handleConnections {}: Expired {} documents but should have expired {}", expire, updateResult.getDocModified(), totalExpied);
+			for (JsonObject expiredInvite : expiredInvites) {
+				Envelope timeout = new Envelope().changed(new EnvelopeChanged().invite(new Invite().id(expiredInvite.getString("_id")).status(StatusEnum.TIMEOUT)));
+				Connection.writeStream(expiredInvite.getString("fromUserId")).write(timeout);
+				Connection.writeStream(expiredInvite.getString("toUserId")).write(timeout);
+			}
+
+			if (shouldBeExpiredInvites.size() < EXPIRY_BATCH_SIZE) {
+				return expired;
+			}
 		}
 	}
 
@@ -217,15 +274,7 @@ public interface Invites {
 			expiryTime.setTime(new Date());
 			expiryTime.add(Calendar.MINUTE, 15);
 
-			Vertx vertx = Vertx.currentContext().owner();
-
-			// Set timer to expire the invite after 15 minutes
-			vertx.setTimer(DEFAULT_EXPIRY_TIME, suspendableHandler(timerId -> {
-				// If the invite hasn't been acted on, expire it
-				mongo().updateCollection(INVITES,
-						json("_id", inviteId.toString(), "status", json("$in", PENDING_STATUSES)),
-						json("$set", json("status", StatusEnum.TIMEOUT.getValue())));
-			}));
+			// The invite is expired by the timer started in startExpiringInvites
 
 			Invite invite = new Invite()
 					.id(inviteId.toString())
@@ -352,7 +401,7 @@ public interface Invites {
 	 */
 	static @NotNull
 	AcceptInviteResponse accept(@NotNull InviteId inviteId, @NotNull AcceptInviteRequest request, @NotNull UserRecord recipient) throws SuspendExecution, InterruptedException {
-		Invite invite = mongo().findOne(INVITES, json("_id", inviteId.toString()), Invite.class);
+		Invite invite = mongo().findOneById(INVITES, inviteId.toString(), Invite.class);
 		if (invite == null) {
 			throw new NullPointerException(String.format("Invite not found: %s", inviteId));
 		}
@@ -447,7 +496,7 @@ public interface Invites {
 	 */
 	static @NotNull
 	InviteResponse deleteInvite(@NotNull InviteId inviteId, @NotNull UserId userId) throws SuspendExecution {
-		Invite invite = mongo().findOne(INVITES, json("_id", inviteId.toString()), Invite.class);
+		Invite invite = mongo().findOneById(INVITES, inviteId.toString(), Invite.class);
 
 		if (invite == null) {
 			throw new NullPointerException(String.format("Invite not found: %s", inviteId));
@@ -4,6 +4,7 @@ import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.fibers.Suspendable;
 import co.paralleluniverse.strands.SuspendableAction1;
 import net.demilich.metastone.game.decks.DeckCreateRequest;
+import com.hiddenswitch.spellsource.impl.util.DeckCardsCache;
 import com.hiddenswitch.spellsource.impl.util.InventoryRecord;
 import com.hiddenswitch.spellsource.impl.util.PersistenceContext;
 import com.hiddenswitch.spellsource.impl.util.PersistenceTrigger;
@@ -12,11 +13,11 @@ import com.hiddenswitch.spellsource.util.Mongo;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.mongo.FindOptions;
 import io.vertx.ext.mongo.MongoClientUpdateResult;
-import io.vertx.ext.mongo.UpdateOptions;
 import net.demilich.metastone.game.GameContext;
 import net.demilich.metastone.game.cards.Card;
 import net.demilich.metastone.game.cards.CardCatalogue;
 import net.demilich.metastone.game.cards.desc.CardDesc;
+import net.demilich.metastone.game.decks.GameDeck;
 import net.demilich.metastone.game.entities.Actor;
 import net.demilich.metastone.game.entities.EntityType;
 import net.demilich.metastone.game.entities.minions.Minion;
@@ -149,9 +150,10 @@ public interface Logic {
 		response.setCreateCollectionResponse(Inventory.createCollection(CreateCollectionRequest.startingCollection(userId)));
 
 		// Load in the starting deck lists
-		List<DeckCreateRequest> standardDecks = Spellsource.spellsource().getStandardDecks();
-		for (DeckCreateRequest deckCreateRequest : standardDecks) {
-			final DeckCreateResponse deckCreate = Decks.createDeck(deckCreateRequest.clone().withUserId(userId));
+		List<DeckCreateRequest> standardDecks = Spellsource.spellsource().getStandardDecks().stream()
+				.map(deckCreateRequest -> deckCreateRequest.clone().withUserId(userId))
+				.collect(Collectors.toList());
+		for (DeckCreateResponse deckCreate : Decks.createDecks(userId, standardDecks)) {
 			response.getDeckCreateResponses().add(deckCreate);
 			response.getCreateCollectionResponse().getCreatedInventoryIds().addAll(deckCreate.getInventoryIds());
 		}
@@ -221,6 +223,51 @@ public interface Logic {
 		}
 	}
 
+	/**
+	 * Converts an inventory record into a {@link Card} for a game.
+	 * <p>
+	 * Unlike {@link #getDescriptionFromRecord(InventoryRecord, String, String)}, the card shares its {@link CardDesc}
+	 * with the card catalogue. The per-user and persistent attributes are put on the card itself with {@link
+	 * Card#putInventoryAttributes(AttributeMap)}, so that they take precedence over the attributes of its description.
+	 * The card does not have an {@link Attribute#ENTITY_INSTANCE_ID}; see {@link DeckCardsCache#instantiate(GameDeck)}.
+	 *
+	 * @param cardRecord The record from the database describing a card in a player's collection.
+	 * @param userId     The player to whom this card belongs.
+	 * @param deckId     The deck that the caller is requesting this card for.
+	 * @return The card, or {@code null} if the record could not be converted.
+	 * @see PersistenceTrigger for more about how this method is used.
+	 */
+	static Card getCardFromRecord(InventoryRecord cardRecord, String userId, String deckId) {
+		try {
+			String cardId = cardRecord.getCardDesc().getId();
+			Card card;
+			try {
+				card = CardCatalogue.getCardById(cardId);
+			} catch (NullPointerException notFound) {
+				logger.error("getCardFromRecord: Card with desc.id={} was not found", cardId);
+				return null;
+			}
+
+			AttributeMap attributes = new AttributeMap();
+			attributes.put(Attribute.USER_ID, userId);
+			attributes.put(Attribute.CARD_INVENTORY_ID, cardRecord.getId());
+			attributes.put(Attribute.DECK_ID, deckId);
+			attributes.put(Attribute.DONOR_ID, cardRecord.getDonorUserId());
+			attributes.put(Attribute.CHAMPION_ID, userId);
+			attributes.put(Attribute.COLLECTION_IDS, cardRecord.getCollectionIds());
+			attributes.put(Attribute.ALLIANCE_ID, cardRecord.getAllianceId());
+
+			// Collect the persistent attributes
+			attributes.putAll(cardRecord.getPersistentAttributes());
+			card.putInventoryAttributes(attributes);
+
+			return card;
+		} catch (Exception ex) {
+			logger.error("getCardFromRecord: Error {} retrieving data for userId={}, deckId={}, cardRecord={}", ex, userId, deckId, cardRecord);
+			return null;
+		}
+	}
+
 	/**
 	 * Persists the requested attribute for an inventory ID.
 	 *
@@ -230,8 +277,7 @@ public interface Logic {
 	@Suspendable
 	static PersistAttributeResponse persistAttribute(PersistAttributeRequest request) {
 		final String attributeName = request.getAttribute().toKeyCase();
-		MongoClientUpdateResult update = Mongo.mongo().updateCollectionWithOptions(Inventory.INVENTORY, json("_id", json("$in", request.getInventoryIds())), json(
-				"$set", json("facts." + attributeName, request.getNewValue())), new UpdateOptions().setMulti(true));
+		MongoClientUpdateResult update = Inventory.setFact(request.getInventoryIds(), attributeName, request.getNewValue());
 		return new PersistAttributeResponse().withUpdated(update.getDocModified());
 	}
 
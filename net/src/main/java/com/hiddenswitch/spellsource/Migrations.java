@@ -2,7 +2,10 @@ package com.hiddenswitch.spellsource;
 
 import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.fibers.Suspendable;
+import co.paralleluniverse.strands.SuspendableAction1;
+import com.google.common.collect.Lists;
 import com.hiddenswitch.spellsource.impl.MigratorImpl;
+import com.hiddenswitch.spellsource.impl.util.ParallelBatches;
 import com.hiddenswitch.spellsource.models.MigrateToRequest;
 import com.hiddenswitch.spellsource.models.MigrationRequest;
 import com.hiddenswitch.spellsource.models.MigrationResponse;
@@ -11,13 +14,29 @@ import com.hiddenswitch.spellsource.util.Migrator;
 import com.hiddenswitch.spellsource.util.RpcOptions;
 import io.vertx.core.Verticle;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.FindOptions;
 
 import java.io.Serializable;
+import java.util.List;
+
+import static com.hiddenswitch.spellsource.util.Mongo.mongo;
+import static com.hiddenswitch.spellsource.util.QuickJson.json;
 
 /**
  * The migrations service performs database migrations on Mongo, using a mongo document as a lock.
  */
 public interface Migrations extends Verticle {
+	/**
+	 * The number of documents or items a data migration reads and updates at a time.
+	 */
+	int BATCH_SIZE = 500;
+	/**
+	 * The number of batches a data migration updates at once.
+	 */
+	int PARALLELISM = 4;
+
 	/**
 	 * Adds a given up and down function to a specific version.
 	 *
@@ -49,6 +68,64 @@ public interface Migrations extends Verticle {
 	 */
 	Serializable forceUnlock(Serializable ignoredRequest) throws InterruptedException, SuspendExecution;
 
+	/**
+	 * Calls an action with batches of {@link #BATCH_SIZE} documents from a collection, running up to {@link
+	 * #PARALLELISM} batches at once.
+	 * <p>
+	 * Documents are read in {@code _id} order, one page at a time, so the action may modify the documents it is given and
+	 * the memory used does not grow with the collection. Use it for migrations that must compute a different update for
+	 * each document; prefer a single multi-document update when every document gets the same update.
+	 *
+	 * @param name       The name to log progress with.
+	 * @param collection The collection.
+	 * @param query      The documents to visit.
+	 * @param fields     The fields to read, or an empty object to read all of them.
+	 * @param action     Called with each batch. It must be safe to call concurrently.
+	 * @return The number of documents visited.
+	 */
+	@Suspendable
+	static long forEachBatch(String name, String collection, JsonObject query, JsonObject fields, SuspendableAction1<List<JsonObject>> action) {
+		ParallelBatches<JsonObject> batches = new ParallelBatches<>(name, PARALLELISM, action);
+		Object lastId = null;
+		try {
+			while (true) {
+				JsonObject page = lastId == null ? query : json("$and", new JsonArray().add(query).add(json("_id", json("$gt", lastId))));
+				List<JsonObject> batch = mongo().findWithOptions(collection, page, new FindOptions()
+						.setFields(fields)
+						.setSort(json("_id", 1))
+						.setLimit(BATCH_SIZE));
+				batches.submit(batch);
+				if (batch.size() < BATCH_SIZE) {
+					break;
+				}
+				lastId = batch.get(batch.size() - 1).getValue("_id");
+			}
+		} catch (RuntimeException failure) {
+			// Reading the next page failed, so the migration fails once the batches that already started are done
+			batches.drain(failure);
+			throw failure;
+		}
+		return batches.await();
+	}
+
+	/**
+	 * Calls an action with batches of {@link #BATCH_SIZE} items, running up to {@link #PARALLELISM} batches at once.
+	 *
+	 * @param name   The name to log progress with.
+	 * @param items  The items.
+	 * @param action Called with each batch. It must be safe to call concurrently.
+	 * @param <T>    The type of the items.
+	 * @return The number of items processed.
+	 */
+	@Suspendable
+	static <T> long forEachBatch(String name, List<T> items, SuspendableAction1<List<T>> action) {
+		ParallelBatches<T> batches = new ParallelBatches<>(name, PARALLELISM, action);
+		for (List<T> batch : Lists.partition(items, BATCH_SIZE)) {
+			batches.submit(batch);
+		}
+		return batches.await();
+	}
+
 	/**
 	 * Gets a {@link Migrator} that can be used to easily run a migration
 	 *
@@ -1,26 +1,34 @@
 package com.hiddenswitch.spellsource;
 
 import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.fibers.Suspendable;
 import com.hiddenswitch.spellsource.client.models.Envelope;
 import com.hiddenswitch.spellsource.client.models.EnvelopeChanged;
 import com.hiddenswitch.spellsource.client.models.Friend;
 import com.hiddenswitch.spellsource.client.models.PresenceEnum;
 import com.hiddenswitch.spellsource.concurrent.SuspendableCounter;
+import com.hiddenswitch.spellsource.concurrent.SuspendableMap;
+import com.hiddenswitch.spellsource.impl.GameId;
 import com.hiddenswitch.spellsource.impl.UserId;
+import com.hiddenswitch.spellsource.impl.util.FriendGraph;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
-import io.vertx.core.json.JsonObject;
-import io.vertx.ext.mongo.FindOptions;
-import io.vertx.ext.mongo.UpdateOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.SharedData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static com.hiddenswitch.spellsource.util.Mongo.mongo;
-import static com.hiddenswitch.spellsource.util.QuickJson.json;
+import java.util.*;
+
 import static com.hiddenswitch.spellsource.util.Sync.defer;
 import static com.hiddenswitch.spellsource.util.Sync.suspendableHandler;
+import static io.vertx.ext.sync.Sync.awaitResult;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Provides presence information to players who are each other's friends.
+ * <p>
+ * Presence is not stored in the database. Changes are replicated to every node by the {@link FriendGraph}.
  */
 public interface Presence {
 	Logger LOGGER = LoggerFactory.getLogger(Presence.class);
@@ -52,39 +60,125 @@ public interface Presence {
 		});
 	}
 
+	/**
+	 * Records a user's presence and notifies their friends who may be online.
+	 * <p>
+	 * The friends come from the node's {@link FriendGraph}, so changing presence does not touch the database once the
+	 * user's friends have been loaded.
+	 *
+	 * @param userId   The user.
+	 * @param presence The user's new presence.
+	 */
+	@Suspendable
 	static void updatePresence(UserId userId, PresenceEnum presence) {
-		// This doesn't need to be blocking.
-		mongo().client().updateCollectionWithOptions(Accounts.USERS,
-				json("friends.friendId", userId.toString()),
-				json("$set", json("friends.$.presence", presence.name())), new UpdateOptions().setMulti(true), Future.future());
-
-		FindOptions findOptions = new FindOptions()
-				.setFields(json("_id", 1, "friends.friendId", 1, "friends.presence", 1));
-		mongo().client().findWithOptions(Accounts.USERS, json("friends.friendId", userId.toString()), findOptions, res -> {
-			if (res.failed()) {
-				LOGGER.error("updatePresence {} {}: {}", userId, presence, res.cause().getMessage(), res.cause());
-				return;
-			}
+		Vertx vertx = Vertx.currentContext().owner();
+		FriendGraph graph = FriendGraph.get(vertx);
+		FriendGraph.setPresence(vertx, userId.toString(), presence);
 
-			for (JsonObject user : res.result()) {
-				Connection.writeStream(user.getString("_id"))
-						.write(new Envelope()
-								.changed(new EnvelopeChanged()
-										.friend(new Friend()
-												.friendId(userId.toString())
-												.presence(presence))));
+		Envelope changed = new Envelope()
+				.changed(new EnvelopeChanged()
+						.friend(new Friend()
+								.friendId(userId.toString())
+								.presence(presence)));
+		for (String friendId : graph.getFriends(userId.toString())) {
+			// Friends that are known to be offline have no connection to notify
+			if (graph.getPresence(friendId) == PresenceEnum.OFFLINE) {
+				continue;
 			}
-		});
+			Connection.writeStream(friendId).write(changed);
+		}
 	}
 
+	/**
+	 * Gets a user's presence.
+	 *
+	 * @param userId The user.
+	 * @return The presence this node last received, or the presence determined from the user's connections and games if
+	 * this node has not received one.
+	 * @throws SuspendExecution
+	 */
+	@Suspendable
+	static PresenceEnum getPresence(String userId) throws SuspendExecution {
+		FriendGraph graph = FriendGraph.current();
+		PresenceEnum presence = graph.getPresence(userId);
+		if (presence == null) {
+			presence = determinePresence(userId);
+			graph.putPresenceIfAbsent(userId, presence);
+		}
+		return presence;
+	}
 
-	static void updatePresence(String userId) throws SuspendExecution {
+	/**
+	 * Gets the presence of several users at once, like all of a user's friends.
+	 * <p>
+	 * Presences this node has received are read from its {@link FriendGraph}. The connection counts of the remaining
+	 * users are requested concurrently, and the games are only retrieved once.
+	 *
+	 * @param userIds The users.
+	 * @return A map of each user's presence, as {@link #getPresence(String)} would return it.
+	 * @throws SuspendExecution
+	 */
+	@Suspendable
+	static Map<String, PresenceEnum> getPresences(Collection<String> userIds) throws SuspendExecution {
+		FriendGraph graph = FriendGraph.current();
+		Map<String, PresenceEnum> presences = new HashMap<>();
+		List<String> unknown = new ArrayList<>();
+		for (String userId : userIds) {
+			PresenceEnum presence = graph.getPresence(userId);
+			if (presence == null) {
+				unknown.add(userId);
+			} else {
+				presences.put(userId, presence);
+			}
+		}
+
+		if (unknown.isEmpty()) {
+			return presences;
+		}
+
+		SharedData sharedData = Vertx.currentContext().owner().sharedData();
+		CompositeFuture connections = awaitResult(h -> CompositeFuture.all(unknown.stream().map(userId -> {
+			Future<Long> count = Future.future();
+			sharedData.getCounter("Presence/connections/" + userId, counter -> {
+				if (counter.failed()) {
+					count.fail(counter.cause());
+					return;
+				}
+				counter.result().get(count);
+			});
+			return count;
+		}).collect(toList())).setHandler(h));
+
+		SuspendableMap<UserId, GameId> usersInGames = null;
+		for (int i = 0; i < unknown.size(); i++) {
+			String userId = unknown.get(i);
+			PresenceEnum presence;
+			if (connections.<Long>resultAt(i) == 0L) {
+				presence = PresenceEnum.OFFLINE;
+			} else {
+				if (usersInGames == null) {
+					usersInGames = Games.getUsersInGames();
+				}
+				presence = usersInGames.containsKey(new UserId(userId)) ? PresenceEnum.IN_GAME : PresenceEnum.ONLINE;
+			}
+			graph.putPresenceIfAbsent(userId, presence);
+			presences.put(userId, presence);
+		}
+		return presences;
+	}
+
+	@Suspendable
+	static PresenceEnum determinePresence(String userId) throws SuspendExecution {
 		SuspendableCounter connections = SuspendableCounter.create("Presence/connections/" + userId);
-		boolean isInGame = Games.getUsersInGames().containsKey(new UserId(userId));
 		if (connections.get() == 0L) {
-			updatePresence(new UserId(userId), PresenceEnum.OFFLINE);
-		} else {
-			updatePresence(new UserId(userId), isInGame ? PresenceEnum.IN_GAME : PresenceEnum.ONLINE);
+			return PresenceEnum.OFFLINE;
 		}
+		boolean isInGame = Games.getUsersInGames().containsKey(new UserId(userId));
+		return isInGame ? PresenceEnum.IN_GAME : PresenceEnum.ONLINE;
+	}
+
+	@Suspendable
+	static void updatePresence(String userId) throws SuspendExecution {
+		updatePresence(new UserId(userId), determinePresence(userId));
 	}
-}
\ No newline at end of file
+}
@@ -48,6 +48,7 @@ import java.util.function.Supplier;
 
 import static com.hiddenswitch.spellsource.Draft.DRAFTS;
 import static com.hiddenswitch.spellsource.Inventory.COLLECTIONS;
+import static com.hiddenswitch.spellsource.Inventory.COUNTS;
 import static com.hiddenswitch.spellsource.Inventory.INVENTORY;
 import static com.hiddenswitch.spellsource.util.Mongo.mongo;
 import static com.hiddenswitch.spellsource.util.QuickJson.array;
@@ -186,10 +187,14 @@ public class Spellsource {
 							mongo().updateCollectionWithOptions(COLLECTIONS, json("heroClass", json("$eq", null)),
 									json("$unset", json("deckType", 1), "$set", json("trashed", false)), new UpdateOptions().setMulti(true));
 
-							for (JsonObject record : mongo().findWithOptions(Accounts.USERS, json(), new FindOptions().setFields(json("_id", 1)))) {
-								final String userId = record.getString("_id");
-								mongo().updateCollectionWithOptions(INVENTORY, json("userId", userId), json("$addToSet", json("collectionIds", userId)), new UpdateOptions().setMulti(true));
-							}
+							Migrations.forEachBatch("add MigrationRequest 4", Accounts.USERS, json(), json("_id", 1), users -> {
+								List<BulkOperation> updates = new ArrayList<>(users.size());
+								for (JsonObject record : users) {
+									final String userId = record.getString("_id");
+									updates.add(BulkOperation.createUpdate(json("userId", userId), json("$addToSet", json("collectionIds", userId)), false, true));
+								}
+								mongo().bulkWrite(INVENTORY, updates);
+							});
 
 							// Remove all inventory records that are in just one collection, the user collection
 							mongo().removeDocuments(INVENTORY, json("collectionIds", json("$size", 1)));
@@ -337,10 +342,15 @@ public class Spellsource {
 						.withVersion(12)
 						.withUp(thisVertx -> {
 							// Give all users a privacy token
-							for (JsonObject userRecord : mongo().find(Accounts.USERS, json())) {
-								mongo().updateCollection(Accounts.USERS, json("_id", userRecord.getString("_id")),
-										json("$set", json("privacyToken", RandomStringUtils.randomNumeric(4))));
-							}
+							// Only users without a token are read, so an interrupted run resumes where it stopped
+							Migrations.forEachBatch("add MigrationRequest 12", Accounts.USERS, json("privacyToken", json("$exists", false)), json("_id", 1), users -> {
+								List<BulkOperation> updates = new ArrayList<>(users.size());
+								for (JsonObject userRecord : users) {
+									updates.add(BulkOperation.createUpdate(json("_id", userRecord.getString("_id")),
+											json("$set", json("privacyToken", RandomStringUtils.randomNumeric(4)))));
+								}
+								mongo().bulkWrite(Accounts.USERS, updates);
+							});
 
 
 							// Add an index for invites
@@ -596,7 +606,56 @@ public class Spellsource {
 									json("$set", json(CollectionRecord.FORMAT, DeckFormat.ALL.getName())),
 									new UpdateOptions().setMulti(true));
 						}))
-				.migrateTo(36, then2 ->
+				.add(new MigrationRequest()
+						.withVersion(37)
+						.withUp(thisVertx -> {
+							// Store each user's cards as counts in one document instead of one document per copy
+							if (!mongo().getCollections().contains(COUNTS)) {
+								mongo().createCollection(COUNTS);
+							}
+							mongo().createIndex(COUNTS, json(InventoryCountsRecord.COLLECTION_IDS, 1));
+
+							// Users whose copies were already moved have no inventory records left, so an interrupted run resumes with the rest
+							List<String> userIds = new ArrayList<>();
+							for (Object userId : mongo().distinct(INVENTORY, "userId", String.class.getName())) {
+								if (userId != null) {
+									userIds.add((String) userId);
+								}
+							}
+							long users = Migrations.forEachBatch("add MigrationRequest 37", userIds, batch -> {
+								for (String userId : batch) {
+									// Earlier migrations may have already given this user cards in the new format
+									InventoryCountsRecord counts = mongo().findOneById(COUNTS, userId, InventoryCountsRecord.class);
+									if (counts == null) {
+										counts = new InventoryCountsRecord(userId);
+									}
+									counts.addInventoryRecords(mongo().find(INVENTORY, json("userId", userId), InventoryRecord.class));
+									JsonObject document = JsonObject.mapFrom(counts);
+									document.remove(MongoRecord.ID);
+									if (!document.isEmpty()) {
+										mongo().updateCollectionWithOptions(COUNTS, json("_id", userId), json("$set", document), new UpdateOptions().setUpsert(true));
+									}
+									mongo().removeDocuments(INVENTORY, json("userId", userId));
+								}
+							});
+							logger.info("add MigrationRequest 37: Migrated the cards of {} users", users);
+						}))
+				.add(new MigrationRequest()
+						.withVersion(38)
+						.withUp(thisVertx -> {
+							// Invites are now expired by a timer that looks for pending invites past their expiration time
+							mongo().createIndex(Invites.INVITES, json("status", 1, "expiresAt", 1));
+						}))
+				.add(new MigrationRequest()
+						.withVersion(39)
+						.withUp(thisVertx -> {
+							// Chat messages are now stored and read back by their sequence in their conversation
+							if (!mongo().getCollections().contains(Conversations.CONVERSATIONS)) {
+								mongo().createCollection(Conversations.CONVERSATIONS);
+							}
+							mongo().createIndex(Conversations.CONVERSATIONS, json(ConversationLog.CONVERSATION_ID, 1, ConversationLog.SEQUENCE, -1));
+						}))
+				.migrateTo(39, then2 ->
 						then.handle(then2.succeeded() ? Future.succeededFuture() : Future.failedFuture(then2.cause())));
 		return this;
 	}
@@ -752,6 +811,13 @@ public class Spellsource {
 		return spells;
 	}
 
+	/**
+	 * Changes the ID of a card in every user's inventory, both in the legacy {@link Inventory#INVENTORY} documents and in
+	 * the {@link Inventory#COUNTS} records. In the latter, the copies of the old card are numbered after the copies of
+	 * the new card the user already owns.
+	 *
+	 * @return The result, where the {@link Inventory#COUNTS} records are counted as one document per user.
+	 */
 	@Suspendable
 	protected static MongoClientUpdateResult changeCardId(String oldId, String newId) {
 		CardCatalogue.loadCardsFromPackage();
@@ -762,13 +828,86 @@ public class Spellsource {
 			return new MongoClientUpdateResult();
 		}
 
-		return Mongo.mongo().updateCollectionWithOptions(INVENTORY,
+		MongoClientUpdateResult legacy = Mongo.mongo().updateCollectionWithOptions(INVENTORY,
 				json("cardDesc.id", oldId), json("$set", json("cardDesc.id", newId)), new UpdateOptions().setMulti(true));
+
+		long matched = legacy.getDocMatched();
+		long modified = legacy.getDocModified();
+		List<String> owners = new ArrayList<>();
+		for (InventoryCountsRecord counts : ownersOfCards(oldId)) {
+			int oldCount = counts.getCounts().getOrDefault(oldId, 0);
+			int newCount = counts.getCounts().getOrDefault(newId, 0);
+			JsonObject update = new JsonObject();
+			Inventory.putOperator(update, "$unset", InventoryCountsRecord.COUNTS + "." + oldId, "");
+			Inventory.putOperator(update, "$set", InventoryCountsRecord.COUNTS + "." + newId, oldCount + newCount);
+			for (int i = 0; i < oldCount; i++) {
+				InventoryCopyRecord copy = counts.getCopies().get(InventoryCountsRecord.getCopyKey(oldId, i));
+				if (copy == null) {
+					continue;
+				}
+				Inventory.putOperator(update, "$unset", InventoryCountsRecord.COPIES + "." + InventoryCountsRecord.getCopyKey(oldId, i), "");
+				Inventory.putOperator(update, "$set", InventoryCountsRecord.COPIES + "." + InventoryCountsRecord.getCopyKey(newId, newCount + i), JsonObject.mapFrom(copy));
+			}
+			MongoClientUpdateResult result = mongo().updateCollection(COUNTS, json("_id", counts.getUserId()), update);
+			matched += result.getDocMatched();
+			modified += result.getDocModified();
+			owners.add(counts.getUserId());
+		}
+		if (!owners.isEmpty()) {
+			DeckCardsCache.invalidateOwners(owners.toArray(new String[0]));
+		}
+		return new MongoClientUpdateResult(matched, null, modified);
 	}
 
+	/**
+	 * Removes every copy of the specified cards from every user's inventory, both in the legacy {@link
+	 * Inventory#INVENTORY} documents and in the {@link Inventory#COUNTS} records.
+	 *
+	 * @return The result, where the copies in {@link Inventory#COUNTS} records are counted individually.
+	 */
 	@Suspendable
 	protected static MongoClientDeleteResult removeCards(String... ids) {
-		return Mongo.mongo().removeDocuments(INVENTORY, json("cardDesc.id",
+		MongoClientDeleteResult legacy = Mongo.mongo().removeDocuments(INVENTORY, json("cardDesc.id",
 				json("$in", array(ids))));
+
+		long removed = legacy.getRemovedCount();
+		List<String> owners = new ArrayList<>();
+		for (InventoryCountsRecord counts : ownersOfCards(ids)) {
+			JsonObject update = new JsonObject();
+			for (String id : ids) {
+				int count = counts.getCounts().getOrDefault(id, 0);
+				if (count == 0) {
+					continue;
+				}
+				Inventory.putOperator(update, "$unset", InventoryCountsRecord.COUNTS + "." + id, "");
+				for (int i = 0; i < count; i++) {
+					if (counts.getCopies().containsKey(InventoryCountsRecord.getCopyKey(id, i))) {
+						Inventory.putOperator(update, "$unset", InventoryCountsRecord.COPIES + "." + InventoryCountsRecord.getCopyKey(id, i), "");
+					}
+				}
+				removed += count;
+			}
+			if (update.isEmpty()) {
+				continue;
+			}
+			mongo().updateCollection(COUNTS, json("_id", counts.getUserId()), update);
+			owners.add(counts.getUserId());
+		}
+		if (!owners.isEmpty()) {
+			DeckCardsCache.invalidateOwners(owners.toArray(new String[0]));
+		}
+		return new MongoClientDeleteResult(removed);
+	}
+
+	/**
+	 * Finds the {@link Inventory#COUNTS} records of the users who own at least one copy of the specified cards.
+	 */
+	@Suspendable
+	private static List<InventoryCountsRecord> ownersOfCards(String... ids) {
+		JsonArray owns = new JsonArray();
+		for (String id : ids) {
+			owns.add(json(InventoryCountsRecord.COUNTS + "." + id, json("$exists", true)));
+		}
+		return mongo().find(COUNTS, json("$or", owns), InventoryCountsRecord.class);
 	}
 }
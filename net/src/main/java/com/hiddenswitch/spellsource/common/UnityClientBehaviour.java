@@ -12,7 +12,6 @@ import com.hiddenswitch.spellsource.client.models.*;
 import com.hiddenswitch.spellsource.impl.UserId;
 import com.hiddenswitch.spellsource.impl.util.ActivityMonitor;
 import com.hiddenswitch.spellsource.impl.util.Scheduler;
-import com.hiddenswitch.spellsource.util.NoOpLock;
 import io.opentracing.Span;
 import io.opentracing.Tracer;
 import io.opentracing.tag.Tags;
@@ -69,7 +68,7 @@ public class UnityClientBehaviour extends UtilityBehaviour implements Client, Cl
 	private final UserId userId;
 	private final int playerId;
 	private final Scheduler scheduler;
-	private final ReentrantLock requestsLock = new NoOpLock();
+	private final ReentrantLock requestsLock = new ReentrantLock();
 	private final ReadStream<ClientToServerMessage> reader;
 	private final WriteStream<ServerToClientMessage> writer;
 	private final Server server;
@@ -768,6 +767,16 @@ public class UnityClientBehaviour extends UtilityBehaviour implements Client, Cl
 		}
 	}
 
+	/**
+	 * Guards the {@link #getRequests()} of this client. A server that changes the callbacks of pending requests should
+	 * hold it, so that a response from the player is not handled in the meantime.
+	 *
+	 * @return The lock.
+	 */
+	public ReentrantLock getRequestsLock() {
+		return requestsLock;
+	}
+
 	public Deque<GameplayRequest> getRequests() {
 		return requests;
 	}
@@ -2,11 +2,13 @@ package com.hiddenswitch.spellsource.impl;
 
 import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.fibers.Suspendable;
+import co.paralleluniverse.strands.Strand;
 import com.hiddenswitch.spellsource.*;
 import com.hiddenswitch.spellsource.client.models.Replay;
 import com.hiddenswitch.spellsource.concurrent.SuspendableMap;
 import com.hiddenswitch.spellsource.impl.server.Configuration;
-import com.hiddenswitch.spellsource.impl.server.VertxScheduler;
+import com.hiddenswitch.spellsource.impl.server.TimerWheel;
+import com.hiddenswitch.spellsource.impl.util.DeckCardsCache;
 import com.hiddenswitch.spellsource.impl.util.DeckType;
 import com.hiddenswitch.spellsource.impl.util.GameRecord;
 import com.hiddenswitch.spellsource.impl.util.ServerGameContext;
@@ -21,6 +23,7 @@ import io.opentracing.util.GlobalTracer;
 import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.ext.sync.SyncVerticle;
+import net.demilich.metastone.game.GameContextSnapshot;
 import net.demilich.metastone.game.cards.CardCatalogue;
 import net.demilich.metastone.game.decks.CollectionDeck;
 import net.demilich.metastone.game.decks.Deck;
@@ -29,6 +32,7 @@ import net.demilich.metastone.game.cards.AttributeMap;
 import net.demilich.metastone.game.logic.GameStatus;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -38,11 +42,16 @@ import java.util.concurrent.ConcurrentHashMap;
 import static com.hiddenswitch.spellsource.util.Mongo.mongo;
 import static com.hiddenswitch.spellsource.util.QuickJson.json;
 import static com.hiddenswitch.spellsource.util.Sync.defer;
+import static com.hiddenswitch.spellsource.util.Sync.suspendableHandler;
 import static io.vertx.core.json.JsonObject.mapFrom;
 import static java.util.stream.Collectors.toList;
 
 public class ClusteredGames extends SyncVerticle implements Games {
+	private static final long MIGRATION_TIMEOUT_MILLIS = 10000L;
+	private static final long MIGRATION_POLL_MILLIS = 50L;
 	private Registration registration;
+	private long loadTimerId = -1L;
+	private volatile boolean stopping;
 	private Map<GameId, ServerGameContext> contexts = new ConcurrentHashMap<>();
 
 	@Override
@@ -50,6 +59,9 @@ public class ClusteredGames extends SyncVerticle implements Games {
 		CardCatalogue.loadCardsFromPackage();
 
 		registration = Rpc.register(this, Games.class);
+		// Advertise this deployment's capacity for placing and migrating games
+		publishLoad();
+		loadTimerId = vertx.setPeriodic(Games.LOAD_PUBLISH_INTERVAL, suspendableHandler(timerId -> publishLoad()));
 		LOGGER.info("start: Consumers={}", registration.getMessageConsumers().stream().map(MessageConsumer::address).collect(toList()));
 	}
 
@@ -76,18 +88,15 @@ public class ClusteredGames extends SyncVerticle implements Games {
 			// Get the collection data from the configurations that are not yet populated with valid cards
 			for (Configuration configuration : request.getConfigurations()) {
 				if (configuration.getDeck() instanceof CollectionDeck) {
-					GetCollectionResponse deckCollection = Inventory.getCollection(new GetCollectionRequest()
-							.withUserId(configuration.getUserId().toString())
-							.withDeckId(configuration.getDeck().getDeckId()));
-
-					// Create the deck and assign all the appropriate IDs to the cards
-					Deck deck = deckCollection.asDeck(configuration.getUserId().toString());
+					// Create the deck and assign all the appropriate IDs to the cards, reusing the resolved cards of recently
+					// played decks
+					Deck deck = DeckCardsCache.current().get(configuration.getUserId().toString(), configuration.getDeck().getDeckId());
 
 					// TODO: Add player information as attached to the hero entity
 					configuration.setDeck(deck);
 				}
 
-				String username = mongo().findOne(Accounts.USERS, json("_id", configuration.getUserId().toString()), UserRecord.class).getUsername();
+				String username = Accounts.get(configuration.getUserId().toString()).getUsername();
 				configuration.setName(username);
 				// TODO: Get more attributes from database
 				AttributeMap playerAttributes = new AttributeMap();
@@ -106,7 +115,7 @@ public class ClusteredGames extends SyncVerticle implements Games {
 			if (connection == null) {
 				ServerGameContext context = new ServerGameContext(
 						request.getGameId(),
-						new VertxScheduler(Vertx.currentContext().owner()),
+						TimerWheel.get(Vertx.currentContext().owner()).scheduler(),
 						request.getConfigurations());
 
 				context.setSpanContext(span.context());
@@ -116,17 +125,7 @@ public class ClusteredGames extends SyncVerticle implements Games {
 						games.put(configuration.getUserId(), request.getGameId());
 					}
 
-					// Deal with ending the game
-					context.handleEndGame(session -> {
-						Games.LOGGER.debug("onGameOver: Handling on game over for session " + session.getGameId());
-						final GameId gameOverId = new GameId(session.getGameId());
-						// The players should not accidentally wind back up in games
-						removeGameAndRecordReplay(gameOverId);
-					});
-
-					CreateGameSessionResponse response = CreateGameSessionResponse.session(deploymentID(), context);
-					connections.replace(request.getGameId(), response);
-					contexts.put(request.getGameId(), context);
+					CreateGameSessionResponse response = host(context);
 					// Plays the game context in its own fiber
 					context.play(true);
 					context.awaitReadyForConnections();
@@ -149,6 +148,128 @@ public class ClusteredGames extends SyncVerticle implements Games {
 		}
 	}
 
+	/**
+	 * Makes this deployment responsible for the game in the given context.
+	 *
+	 * @param context A game that has not yet started.
+	 * @return The connection information for the game.
+	 * @throws SuspendExecution
+	 */
+	@Suspendable
+	private CreateGameSessionResponse host(ServerGameContext context) throws SuspendExecution {
+		GameId gameId = new GameId(context.getGameId());
+		// Deal with ending the game
+		context.handleEndGame(session -> {
+			Games.LOGGER.debug("onGameOver: Handling on game over for session " + session.getGameId());
+			final GameId gameOverId = new GameId(session.getGameId());
+			// The players should not accidentally wind back up in games
+			removeGameAndRecordReplay(gameOverId);
+		});
+
+		CreateGameSessionResponse response = CreateGameSessionResponse.session(deploymentID(), context);
+		// The entry was created by whoever requested the game, so the game is not hosted if it was ended in the meantime
+		Games.getConnections().replace(gameId, response);
+		contexts.put(gameId, context);
+		publishLoad();
+		return response;
+	}
+
+	/**
+	 * Publishes the current load of this deployment into {@link Games#getDeployments()}, unless the deployment is
+	 * stopping.
+	 *
+	 * @throws SuspendExecution
+	 */
+	@Suspendable
+	private void publishLoad() throws SuspendExecution {
+		if (stopping) {
+			return;
+		}
+		Games.getDeployments().put(deploymentID(), DeploymentLoad.measure(Connection.nodeId(vertx), contexts.size()));
+	}
+
+	@Override
+	public MigrateGameSessionResponse migrateGameSession(MigrateGameSessionRequest request) throws InterruptedException, SuspendExecution {
+		GameId key = new GameId(request.getGameId());
+		ServerGameContext context = contexts.get(key);
+		if (context == null) {
+			CreateGameSessionResponse connection = Games.getConnections().get(key);
+			if (connection == null || deploymentID().equals(connection.deploymentId)) {
+				throw new IllegalArgumentException("request.gameId");
+			}
+			Games.LOGGER.debug("migrateGameSession: This instance does not contain the gameId " + request.getGameId()
+					+ ". Redirecting your request to the correct deployment.");
+			return Rpc.connect(Games.class).sync(connection.deploymentId).migrateGameSession(request);
+		}
+
+		if (request.getDeploymentId() == null || deploymentID().equals(request.getDeploymentId())) {
+			return new MigrateGameSessionResponse(deploymentID());
+		}
+
+		Tracer tracer = GlobalTracer.get();
+		Span span = tracer.buildSpan("ClusteredGames/migrateGameSession")
+				.asChildOf(context.getSpanContext())
+				.withTag("gameId", request.getGameId())
+				.withTag("deploymentId", request.getDeploymentId())
+				.start();
+		try (Scope s1 = tracer.activateSpan(span)) {
+			// Games can only be moved while they wait for a turn action
+			long deadline = System.currentTimeMillis() + MIGRATION_TIMEOUT_MILLIS;
+			GameContextSnapshot snapshot;
+			while ((snapshot = context.detach()) == null) {
+				if (!context.isRunning() || System.currentTimeMillis() > deadline) {
+					throw new IllegalStateException(String.format("The game %s could not be detached", request.getGameId()));
+				}
+				Strand.sleep(MIGRATION_POLL_MILLIS);
+			}
+			contexts.remove(key);
+			publishLoad();
+			span.setTag("size", snapshot.size());
+
+			ResumeGameSessionRequest resume = new ResumeGameSessionRequest()
+					.setGameId(key)
+					.setConfigurations(new ArrayList<>(context.getPlayerConfigurations()))
+					.setSnapshot(snapshot)
+					.setTurnMillisRemaining(context.getMillisRemaining());
+			try {
+				CreateGameSessionResponse response = Rpc.connect(Games.class).sync(request.getDeploymentId()).resumeGameSession(resume);
+				Games.LOGGER.debug("migrateGameSession {}: Moved to deploymentId {}", key, response.deploymentId);
+				return new MigrateGameSessionResponse(response.deploymentId);
+			} catch (RuntimeException any) {
+				// Keep playing the game here instead
+				Tracing.error(any, span, false);
+				return new MigrateGameSessionResponse(resumeGameSession(resume).deploymentId);
+			} finally {
+				// The game's consumers are registered wherever it resumed, so the detached game can stop receiving messages
+				context.dispose();
+			}
+		} finally {
+			span.finish();
+		}
+	}
+
+	@Override
+	public CreateGameSessionResponse resumeGameSession(ResumeGameSessionRequest request) throws InterruptedException, SuspendExecution {
+		Tracer tracer = GlobalTracer.get();
+		Span span = tracer.buildSpan("ClusteredGames/resumeGameSession")
+				.asChildOf(tracer.activeSpan())
+				.withTag("gameId", request.getGameId().toString())
+				.start();
+		try (Scope s1 = tracer.activateSpan(span)) {
+			Logic.triggers();
+			ServerGameContext context = new ServerGameContext(
+					request.getGameId(),
+					TimerWheel.get(Vertx.currentContext().owner()).scheduler(),
+					request.getConfigurations());
+			context.setSpanContext(span.context());
+			CreateGameSessionResponse response = host(context);
+			context.playFrom(request.getSnapshot(), request.getTurnMillisRemaining());
+			return response;
+		} finally {
+			span.finish();
+		}
+	}
+
 	/**
 	 * Handles a game that ends by any means.
 	 * <p>
@@ -173,6 +294,7 @@ public class ClusteredGames extends SyncVerticle implements Games {
 			Games.LOGGER.debug("endGame {}", gameId);
 			ServerGameContext gameContext = contexts.remove(gameId);
 			Games.getConnections().remove(gameId);
+			publishLoad();
 
 			UserId winner = null;
 			try {
@@ -308,6 +430,10 @@ public class ClusteredGames extends SyncVerticle implements Games {
 	@Suspendable
 	public void stop() throws Exception {
 		Games.LOGGER.debug("stop: Stopping the ClusteredGamesImpl.");
+		// Stop advertising this deployment first, so that no games are placed on or migrated to it while it stops
+		stopping = true;
+		vertx.cancelTimer(loadTimerId);
+		Games.getDeployments().remove(deploymentID());
 		for (GameId gameId : contexts.keySet()) {
 			Objects.requireNonNull(gameId.toString());
 			removeGameAndRecordReplay(gameId);
@@ -4,8 +4,11 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.hiddenswitch.spellsource.Connection;
 import com.hiddenswitch.spellsource.Tracing;
+import com.hiddenswitch.spellsource.client.models.EntityChangeSet;
 import com.hiddenswitch.spellsource.client.models.Envelope;
+import com.hiddenswitch.spellsource.client.models.EnvelopeAdded;
 import com.hiddenswitch.spellsource.client.models.MessageType;
+import com.hiddenswitch.spellsource.client.models.ServerToClientMessage;
 import io.opentracing.Span;
 import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
@@ -18,17 +21,50 @@ import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.eventbus.impl.clustered.ClusteredEventBus;
 import io.vertx.core.http.ServerWebSocket;
-import io.vertx.core.json.Json;
 import io.vertx.core.streams.WriteStream;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
 import static com.hiddenswitch.spellsource.util.Sync.suspendableHandler;
 
+/**
+ * A connection to a user's websocket.
+ * <p>
+ * Every connection has a write budget. Envelopes are written to the socket until its write queue is full, after which
+ * they are held in a pending queue and flushed when the socket drains. While envelopes are pending, game state updates
+ * that are superseded by a newer update are coalesced into it and touch notifications are dropped. A client that keeps
+ * the queue full for longer than {@link #SLOW_CLIENT_TIMEOUT_MILLIS}, or that accumulates more than {@link
+ * #MAX_PENDING_ENVELOPES} pending envelopes, is disconnected. The timeout is checked by a timer, so a client is
+ * disconnected even if nothing else is written to it. Writes to a disconnected slow client fail instead of throwing.
+ */
 public class ConnectionImpl implements Connection {
+	/**
+	 * The number of bytes that may be buffered by the socket before its write queue is considered full.
+	 */
+	public static final int WRITE_QUEUE_MAX_SIZE = 1024 * 1024;
+	/**
+	 * The number of envelopes that may wait for the socket to drain before the client is disconnected.
+	 */
+	public static final int MAX_PENDING_ENVELOPES = 256;
+	/**
+	 * The longest the socket's write queue may stay full before the client is disconnected, unless overridden with
+	 * {@link #setSlowClientTimeoutMillis(long)}.
+	 */
+	public static final long SLOW_CLIENT_TIMEOUT_MILLIS = 30000L;
+	private Vertx vertx;
 	private ServerWebSocket socket;
+	private Span span;
+	private final Deque<PendingWrite> pending = new ArrayDeque<>();
+	private long fullSinceMillis;
+	private long slowClientTimer = -1L;
+	private long slowClientTimeoutMillis = SLOW_CLIENT_TIMEOUT_MILLIS;
+	private boolean disconnecting;
+	private EnvelopeFormat format = EnvelopeFormat.JSON;
+	private boolean readyState;
 	private SpanContext parentSpan;
 	private final String userId;
 	private final List<Handler<Throwable>> exceptionHandlers = new ArrayList<>();
@@ -36,6 +72,7 @@ public class ConnectionImpl implements Connection {
 	private final List<Handler<Envelope>> handlers = new ArrayList<>();
 	private final List<Handler<Void>> endHandlers = new ArrayList<>();
 	private final String eventBusAddress;
+	private final EnvelopeAdded initialState = new EnvelopeAdded();
 
 	public ConnectionImpl(String userId, String eventBusAddress) {
 		this.userId = userId;
@@ -46,18 +83,29 @@ public class ConnectionImpl implements Connection {
 	public void setSocket(ServerWebSocket socket, Handler<AsyncResult<Void>> readyHandler, SpanContext parentSpan) {
 		this.socket = socket;
 		this.parentSpan = parentSpan;
+		this.format = EnvelopeFormat.fromSubProtocol(socket.subProtocol());
+		this.readyState = EnvelopeFormat.isReadyState(socket.subProtocol());
 		String eventBusAddress = getEventBusAddress();
-		EventBus eventBus = Vertx.currentContext().owner().eventBus();
+		Vertx vertx = Vertx.currentContext().owner();
+		this.vertx = vertx;
+		EventBus eventBus = vertx.eventBus();
+		// Writers on this node switch to writing directly before the consumer below exists, so that no envelope from this
+		// node can still be queued on the event bus once direct writes begin
+		String localKey = Connection.localKey(vertx, userId);
+		LOCAL_CONNECTIONS.put(localKey, this);
 		MessageConsumer<Envelope> consumer = eventBus.consumer(eventBusAddress);
 		Tracer tracer = GlobalTracer.get();
 		Span span = tracer.buildSpan("Connection/internal")
 				.asChildOf(parentSpan)
 				.withTag("userId", userId)
 				.withTag(Tags.PEER_HOSTNAME, socket.remoteAddress().host())
+				.withTag("format", format.name())
 				.start();
+		this.span = span;
+		socket.setWriteQueueMaxSize(WRITE_QUEUE_MAX_SIZE);
 
 		// Write to the socket when we receive a message on the event bus
-		consumer.handler(msg -> socket.write(Json.encodeToBuffer(msg.body()), written -> {
+		consumer.handler(msg -> send(msg.body(), written -> {
 			if (!written.succeeded()) {
 				msg.fail(-1, written.cause().getMessage());
 			}
@@ -78,7 +126,7 @@ public class ConnectionImpl implements Connection {
 
 		// Read handler
 		socket.handler(buf -> {
-			Envelope decoded = Json.decodeValue(buf, Envelope.class);
+			Envelope decoded = format.decode(buf);
 			span.log(ImmutableMap.of(Fields.EVENT, "received", "size", buf.length()));
 			for (Handler<Envelope> handler : handlers) {
 				try {
@@ -98,6 +146,11 @@ public class ConnectionImpl implements Connection {
 
 		socket.drainHandler(v -> {
 			span.log("drained");
+			flush();
+			if (writeQueueFull()) {
+				// Still writing pending envelopes
+				return;
+			}
 			for (Handler<Void> handler : drainHandlers) {
 				handler.handle(v);
 			}
@@ -106,6 +159,8 @@ public class ConnectionImpl implements Connection {
 		socket.endHandler(suspendableHandler(v1 -> {
 			try {
 				span.log("ending");
+				// A reconnection may have already replaced this connection
+				LOCAL_CONNECTIONS.remove(localKey, this);
 				for (Handler<Void> handler : endHandlers) {
 					handler.handle(v1);
 				}
@@ -113,6 +168,7 @@ public class ConnectionImpl implements Connection {
 				drainHandlers.clear();
 				handlers.clear();
 				endHandlers.clear();
+				clearPending();
 				consumer.unregister();
 				closeConsumer.unregister();
 				span.log("ended");
@@ -142,16 +198,160 @@ public class ConnectionImpl implements Connection {
 
 	@Override
 	public Connection write(@NotNull Envelope data) {
-		socket.write(Json.encodeToBuffer(data));
+		send(data, null);
 		return this;
 	}
 
 	@Override
 	public Connection write(Envelope data, Handler<AsyncResult<Void>> handler) {
-		socket.write(Json.encodeToBuffer(data), handler);
+		send(data, handler);
 		return this;
 	}
 
+	/**
+	 * Writes the envelope to the socket, or queues it if the socket's write queue is full.
+	 * <p>
+	 * Envelopes may be written from the event loop and from game fibers (see {@link Connection#local(Vertx, String)}),
+	 * so access to the pending queue is synchronized.
+	 *
+	 * @param envelope The envelope.
+	 * @param handler  An optional handler for the result of the write.
+	 */
+	private synchronized void send(Envelope envelope, Handler<AsyncResult<Void>> handler) {
+		if (disconnecting) {
+			// The socket is already closing, so the envelope is dropped like it would be for any closed connection
+			if (handler != null) {
+				handler.handle(Future.failedFuture("slow client disconnected"));
+			}
+			return;
+		}
+
+		if (pending.isEmpty() && !socket.writeQueueFull()) {
+			write(socket, envelope, handler);
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		if (fullSinceMillis == 0L) {
+			fullSinceMillis = now;
+			startSlowClientTimer(now);
+		}
+
+		MessageType type = messageType(envelope);
+		if (type == MessageType.TOUCH) {
+			// Touches are cosmetic, so they are the first thing to be dropped
+			succeed(handler);
+			return;
+		}
+
+		PendingWrite last = pending.peekLast();
+		if (type == MessageType.ON_UPDATE && last != null && messageType(last.envelope) == MessageType.ON_UPDATE) {
+			// The newer update contains the complete game state, so only the entity changes of the older one are kept
+			ServerToClientMessage older = last.envelope.getGame().getServerToClient();
+			ServerToClientMessage newer = envelope.getGame().getServerToClient();
+			EntityChangeSet changes = new EntityChangeSet();
+			if (older.getChanges() != null) {
+				changes.addAll(older.getChanges());
+			}
+			if (newer.getChanges() != null) {
+				changes.addAll(newer.getChanges());
+			}
+			newer.setChanges(changes);
+			pending.pollLast();
+			succeed(last.handler);
+		}
+
+		pending.add(new PendingWrite(envelope, handler));
+		span.log(ImmutableMap.of(Fields.EVENT, "pending", "size", pending.size()));
+
+		if (pending.size() > MAX_PENDING_ENVELOPES || now - fullSinceMillis > slowClientTimeoutMillis) {
+			disconnectSlowClient();
+		}
+	}
+
+	/**
+	 * Writes as many pending envelopes as the socket's write queue allows.
+	 */
+	private synchronized void flush() {
+		PendingWrite next;
+		while (!socket.writeQueueFull() && (next = pending.poll()) != null) {
+			write(socket, next.envelope, next.handler);
+		}
+		if (pending.isEmpty()) {
+			fullSinceMillis = 0L;
+			cancelSlowClientTimer();
+		}
+	}
+
+	/**
+	 * Disconnects the client if the write queue is still full after the timeout, even if nothing else is written to it.
+	 *
+	 * @param fullSinceMillis When the write queue became full.
+	 */
+	private void startSlowClientTimer(long fullSinceMillis) {
+		cancelSlowClientTimer();
+		slowClientTimer = vertx.setTimer(slowClientTimeoutMillis, timerId -> {
+			synchronized (this) {
+				if (slowClientTimer != timerId) {
+					return;
+				}
+				slowClientTimer = -1L;
+				if (!disconnecting && this.fullSinceMillis == fullSinceMillis) {
+					disconnectSlowClient();
+				}
+			}
+		});
+	}
+
+	private void cancelSlowClientTimer() {
+		if (slowClientTimer != -1L) {
+			vertx.cancelTimer(slowClientTimer);
+			slowClientTimer = -1L;
+		}
+	}
+
+	private synchronized void clearPending() {
+		PendingWrite next;
+		while ((next = pending.poll()) != null) {
+			if (next.handler != null) {
+				next.handler.handle(Future.failedFuture("connection closed"));
+			}
+		}
+		fullSinceMillis = 0L;
+		cancelSlowClientTimer();
+	}
+
+	private synchronized void disconnectSlowClient() {
+		disconnecting = true;
+		Tracing.error(new IllegalStateException("slow client"), span, false);
+		clearPending();
+		try {
+			socket.close();
+		} catch (IllegalStateException alreadyClosed) {
+		}
+	}
+
+	private void write(ServerWebSocket socket, Envelope envelope, Handler<AsyncResult<Void>> handler) {
+		if (handler == null) {
+			socket.write(format.encode(envelope));
+		} else {
+			socket.write(format.encode(envelope), handler);
+		}
+	}
+
+	private static void succeed(Handler<AsyncResult<Void>> handler) {
+		if (handler != null) {
+			handler.handle(Future.succeededFuture());
+		}
+	}
+
+	private static MessageType messageType(Envelope envelope) {
+		if (envelope.getGame() == null || envelope.getGame().getServerToClient() == null) {
+			return null;
+		}
+		return envelope.getGame().getServerToClient().getMessageType();
+	}
+
 	@Override
 	public void end() {
 		if (socket != null) {
@@ -173,8 +373,8 @@ public class ConnectionImpl implements Connection {
 	}
 
 	@Override
-	public boolean writeQueueFull() {
-		return socket.writeQueueFull();
+	public synchronized boolean writeQueueFull() {
+		return !pending.isEmpty() || socket.writeQueueFull();
 	}
 
 	@Override
@@ -220,6 +420,17 @@ public class ConnectionImpl implements Connection {
 		return userId;
 	}
 
+	@Override
+	@NotNull
+	public EnvelopeAdded initialState() {
+		return initialState;
+	}
+
+	@Override
+	public boolean isReadyState() {
+		return readyState;
+	}
+
 	@Override
 	public Connection removeHandler(Handler<Envelope> handler) {
 		handlers.remove(handler);
@@ -231,6 +442,17 @@ public class ConnectionImpl implements Connection {
 		end(completionHandler);
 	}
 
+	/**
+	 * Sets how long the socket's write queue may stay full before the client is disconnected.
+	 *
+	 * @param slowClientTimeoutMillis The timeout in milliseconds.
+	 * @return This connection.
+	 */
+	public synchronized ConnectionImpl setSlowClientTimeoutMillis(long slowClientTimeoutMillis) {
+		this.slowClientTimeoutMillis = slowClientTimeoutMillis;
+		return this;
+	}
+
 	public String getEventBusAddress() {
 		return eventBusAddress;
 	}
@@ -238,4 +460,14 @@ public class ConnectionImpl implements Connection {
 	public String getEventBusCloserAddress() {
 		return eventBusAddress + "/closer";
 	}
+
+	private static class PendingWrite {
+		private final Envelope envelope;
+		private final Handler<AsyncResult<Void>> handler;
+
+		private PendingWrite(Envelope envelope, Handler<AsyncResult<Void>> handler) {
+			this.envelope = envelope;
+			this.handler = handler;
+		}
+	}
 }
@@ -0,0 +1,190 @@
+package com.hiddenswitch.spellsource.impl;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.hiddenswitch.spellsource.client.models.Envelope;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.EncodeException;
+import io.vertx.core.json.Json;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * The wire formats a client can negotiate for the {@link Envelope} messages on its realtime connection.
+ * <p>
+ * Clients choose a format by requesting its {@link #getSubProtocol()} in the {@code Sec-WebSocket-Protocol} header when
+ * they connect to {@code /realtime}. Clients that request no sub-protocol get {@link #JSON}, which is the format every
+ * client used before sub-protocols were negotiated.
+ * <p>
+ * Clients that request a format's {@link #getReadyStateSubProtocol()} instead receive the friends and invites they have
+ * when they connect in the {@code added} field of the envelope that indicates the connection is ready. Other clients
+ * receive an {@code added} envelope per record before it.
+ */
+public enum EnvelopeFormat {
+	/**
+	 * Envelopes are JSON, as encoded by {@link Json#mapper}.
+	 */
+	JSON("spellsource-json") {
+		@Override
+		public Buffer encode(Envelope envelope) {
+			return Json.encodeToBuffer(envelope);
+		}
+	},
+	/**
+	 * Envelopes are encoded with Jackson's binary Smile format. Game states are a fraction of the size of their JSON
+	 * equivalent and are cheaper to encode and parse.
+	 */
+	SMILE("spellsource-smile") {
+		@Override
+		public Buffer encode(Envelope envelope) {
+			try {
+				return Buffer.buffer(SMILE_MAPPER.writeValueAsBytes(envelope));
+			} catch (IOException e) {
+				throw new EncodeException("Failed to encode as Smile: " + e.getMessage());
+			}
+		}
+	};
+
+	/**
+	 * Appended to a format's sub-protocol by clients that read their initial state from the ready envelope.
+	 */
+	public static final String READY_STATE_SUFFIX = "-ready";
+	private static final ObjectMapper SMILE_MAPPER;
+	/**
+	 * The header every Smile document starts with, {@code :)\n}.
+	 */
+	private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+	static {
+		SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+		SMILE_MAPPER.registerModule(new AfterburnerModule());
+		// Omit the same fields the JSON encoding omits
+		SMILE_MAPPER.setSerializationInclusion(JsonInclude.Include.NON_DEFAULT);
+		SMILE_MAPPER.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+	}
+
+	private final String subProtocol;
+
+	EnvelopeFormat(String subProtocol) {
+		this.subProtocol = subProtocol;
+	}
+
+	/**
+	 * Encodes an envelope for a client.
+	 *
+	 * @param envelope The envelope to encode.
+	 * @return A buffer containing the encoded envelope.
+	 */
+	public abstract Buffer encode(Envelope envelope);
+
+	/**
+	 * Decodes an envelope sent by a client.
+	 * <p>
+	 * Smile documents are recognized by their header, so clients may always fall back to sending JSON regardless of the
+	 * format they negotiated.
+	 *
+	 * @param buffer The frame data.
+	 * @return The decoded envelope.
+	 * @throws DecodeException if the buffer is neither valid JSON nor Smile.
+	 */
+	public Envelope decode(Buffer buffer) throws DecodeException {
+		if (!isSmile(buffer)) {
+			return Json.decodeValue(buffer, Envelope.class);
+		}
+		try {
+			return SMILE_MAPPER.readValue(buffer.getBytes(), Envelope.class);
+		} catch (IOException e) {
+			throw new DecodeException("Failed to decode Smile: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * The value of the {@code Sec-WebSocket-Protocol} header that selects this format.
+	 *
+	 * @return The sub-protocol.
+	 */
+	public String getSubProtocol() {
+		return subProtocol;
+	}
+
+	/**
+	 * The value of the {@code Sec-WebSocket-Protocol} header that selects this format and opts into receiving the initial
+	 * state in the ready envelope.
+	 *
+	 * @return The sub-protocol.
+	 */
+	public String getReadyStateSubProtocol() {
+		return subProtocol + READY_STATE_SUFFIX;
+	}
+
+	/**
+	 * Gets the format for the sub-protocol the server agreed to during the websocket handshake.
+	 *
+	 * @param subProtocol The negotiated sub-protocol, or {@code null} if the client did not request one.
+	 * @return The format, defaulting to {@link #JSON}.
+	 */
+	public static EnvelopeFormat fromSubProtocol(@Nullable String subProtocol) {
+		if (subProtocol == null) {
+			return JSON;
+		}
+		for (EnvelopeFormat format : values()) {
+			if (format.subProtocol.equalsIgnoreCase(subProtocol.trim())
+					|| format.getReadyStateSubProtocol().equalsIgnoreCase(subProtocol.trim())) {
+				return format;
+			}
+		}
+		return JSON;
+	}
+
+	/**
+	 * Determines whether the client opted into receiving its initial state in the ready envelope.
+	 *
+	 * @param subProtocol The negotiated sub-protocol, or {@code null} if the client did not request one.
+	 * @return {@code true} if the sub-protocol is one of the formats' {@link #getReadyStateSubProtocol()}.
+	 */
+	public static boolean isReadyState(@Nullable String subProtocol) {
+		if (subProtocol == null) {
+			return false;
+		}
+		for (EnvelopeFormat format : values()) {
+			if (format.getReadyStateSubProtocol().equalsIgnoreCase(subProtocol.trim())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The sub-protocols the server accepts, in the form expected by {@link
+	 * io.vertx.core.http.HttpServerOptions#setWebsocketSubProtocols(String)}. The first one the client requests is
+	 * chosen.
+	 *
+	 * @return A comma-separated list of sub-protocols.
+	 */
+	public static String subProtocols() {
+		return Arrays.stream(values())
+				.flatMap(format -> Stream.of(format.getSubProtocol(), format.getReadyStateSubProtocol()))
+				.collect(joining(","));
+	}
+
+	private static boolean isSmile(Buffer buffer) {
+		if (buffer.length() < SMILE_HEADER.length) {
+			return false;
+		}
+		for (int i = 0; i < SMILE_HEADER.length; i++) {
+			if (buffer.getByte(i) != SMILE_HEADER[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -10,7 +10,6 @@ import com.hiddenswitch.spellsource.client.models.CreateAccountResponse;
 import com.hiddenswitch.spellsource.client.models.LoginRequest;
 import com.hiddenswitch.spellsource.client.models.LoginResponse;
 import net.demilich.metastone.game.decks.DeckCreateRequest;
-import com.hiddenswitch.spellsource.concurrent.SuspendableMap;
 import com.hiddenswitch.spellsource.impl.util.*;
 import com.hiddenswitch.spellsource.models.ChangePasswordRequest;
 import com.hiddenswitch.spellsource.models.ChangePasswordResponse;
@@ -18,6 +17,7 @@ import com.hiddenswitch.spellsource.models.*;
 import com.hiddenswitch.spellsource.models.MatchCancelResponse;
 import com.hiddenswitch.spellsource.util.*;
 import io.vertx.core.Closeable;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
@@ -38,6 +38,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import static com.hiddenswitch.spellsource.util.Mongo.mongo;
 import static com.hiddenswitch.spellsource.util.QuickJson.array;
@@ -76,6 +77,7 @@ public class GatewayImpl extends SyncVerticle implements Gateway {
 				.setWebsocketAllowServerNoContext(true)
 				.setWebsocketPreferredClientNoContext(true)
 				.setMaxWebsocketMessageSize(100 * 65536)
+				.setWebsocketSubProtocols(EnvelopeFormat.subProtocols())
 				.setPerFrameWebsocketCompressionSupported(true)
 				.setPerMessageWebsocketCompressionSupported(true)
 				.setCompressionSupported(true));
@@ -111,12 +113,20 @@ public class GatewayImpl extends SyncVerticle implements Gateway {
 		queues = Matchmaking.startDefaultQueues();
 		// Create draft queue
 		Closeable draftQueue = Draft.startDraftQueue();
+		// Expire pending invites on time
+		Closeable inviteExpiry = Invites.startExpiringInvites();
+		// Write chat messages to the database in batches
+		Closeable messagePersistence = Conversations.startPersistingMessages();
 
 		final Closeable originalQueues = queues;
 		queues = fut -> {
 			originalQueues.close(v1 -> {
 				serverMessaging.close(v2 -> {
-					draftQueue.close(fut);
+					draftQueue.close(v3 -> {
+						inviteExpiry.close(v4 -> {
+							messagePersistence.close(fut);
+						});
+					});
 				});
 			});
 		};
@@ -654,7 +664,7 @@ public class GatewayImpl extends SyncVerticle implements Gateway {
 
 	@Override
 	public WebResult<InviteResponse> getInvite(RoutingContext context, String userId, String inviteId) throws SuspendExecution, InterruptedException {
-		Invite invite = mongo().findOne(Invites.INVITES, json("_id", inviteId), Invite.class);
+		Invite invite = mongo().findOneById(Invites.INVITES, inviteId, Invite.class);
 		if (invite == null) {
 			return WebResult.notFound("This invite was not found");
 		}
@@ -692,35 +702,42 @@ public class GatewayImpl extends SyncVerticle implements Gateway {
 
 	@Override
 	public WebResult<GetCardsResponse> getCards(RoutingContext context) throws SuspendExecution, InterruptedException {
-		SuspendableMap<String, String> cache = SuspendableMap.getOrCreate("Cards/cards");
-
-		String cardsVersion = cache.get("cards-version");
-		String lastModified = cache.get("cards-last-modified");
+		CardCataloguePayload payload = Cards.getCataloguePayload();
+		String cardsVersion = payload.getVersion();
 
 		context.response().putHeader("ETag", cardsVersion);
 		String userVersion = context.request().getHeader("If-None-Match");
 		if (userVersion != null &&
 				userVersion.equals(cardsVersion)) {
-			return WebResult.succeeded(304, new GetCardsResponse().version(cardsVersion));
+			return WebResult.succeeded(304, null);
 		}
 
 		context.response().putHeader("Cache-Control", "public, max-age=31536000");
-		context.response().putHeader("Last-Modified", lastModified);
+		context.response().putHeader("Last-Modified", payload.getLastModified());
 		context.response().putHeader("Date", DATE_TIME_FORMATTER.format(new Date()));
 
 		if (context.request().method() == HttpMethod.HEAD) {
 			return WebResult.succeeded(new GetCardsResponse().version(cardsVersion));
 		}
 
-		// We created the cache for the first time
-		// TODO: It's possible that there are multiple versions of Spellsource sharing a cluster, so version should be a hash
-		return WebResult.succeeded(new GetCardsResponse()
-				.cards(Cards.getCards()));
+		// Send the response that was serialized and compressed when the catalogue was loaded
+		context.response().putHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+		context.response().putHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		String acceptEncoding = context.request().getHeader(HttpHeaders.ACCEPT_ENCODING);
+		if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+			context.response().putHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+			context.response().end(payload.getGzip());
+		} else {
+			// Prevents the server from compressing the response again
+			context.response().putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+			context.response().end(payload.getJson());
+		}
+		return WebResult.succeeded(null);
 	}
 
 	@Override
 	public WebResult<GetGameRecordResponse> getGameRecord(RoutingContext context, String userId, String gameId) throws SuspendExecution, InterruptedException {
-		GameRecord record = mongo().findOne(Games.GAMES, json("_id", gameId), GameRecord.class);
+		GameRecord record = mongo().findOneById(Games.GAMES, gameId, GameRecord.class);
 		if (record == null) {
 			return WebResult.notFound("No game with the specified ID was found.");
 		}
@@ -775,6 +792,12 @@ public class GatewayImpl extends SyncVerticle implements Gateway {
 		// Get the decks
 		GetCollectionResponse deckCollections = Inventory.getCollection(GetCollectionRequest.decks(userId, record.getDecks()));
 
+		// The presence stored with the friend records is not kept up to date
+		Map<String, PresenceEnum> presences = Presence.getPresences(record.getFriends().stream().map(FriendRecord::getFriendId).collect(toList()));
+		for (FriendRecord friend : record.getFriends()) {
+			friend.setPresence(presences.get(friend.getFriendId()));
+		}
+
 		final String displayName = record.getUsername();
 		final List<GetCollectionResponse> responses = deckCollections.getResponses();
 		return new Account()
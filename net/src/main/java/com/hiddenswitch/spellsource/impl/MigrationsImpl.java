@@ -104,7 +104,13 @@ public class MigrationsImpl extends SyncVerticle implements Migrations {
 		if (null != request.getRerun()
 				&& request.getRerun()) {
 			logger.info("Rerunning version " + Integer.toString(version));
-			migrateUp(findIndexByVersion(version));
+			try {
+				migrateUp(findIndexByVersion(version));
+			} catch (Throwable e) {
+				logger.error(String.format("Failed to rerun version %d, unlocking", version), e);
+				unlock();
+				return MigrationToResponse.failedMigration(e);
+			}
 			logger.info("Finished migrating.");
 			unlock();
 			return MigrationToResponse.succeededMigration();
@@ -124,19 +130,34 @@ public class MigrationsImpl extends SyncVerticle implements Migrations {
 		if (endIndex > startIndex) {
 			try {
 				for (int i = startIndex; i < endIndex; i++) {
+					int nextVersion = migrations.get(i + 1).getVersion();
+					long startedAt = System.currentTimeMillis();
+					logger.info(String.format("Migrating up to %d (%d of %d)...", nextVersion, i + 1 - startIndex, endIndex - startIndex));
 					migrateUp(i + 1);
-					currentVersion = migrations.get(i + 1).getVersion();
+					currentVersion = nextVersion;
+					// Record every completed migration, so that an interrupted migration resumes after it
+					checkpoint(currentVersion);
+					logger.info(String.format("Migrated up to %d in %dms", nextVersion, System.currentTimeMillis() - startedAt));
 				}
 			} catch (Throwable e) {
+				logger.error(String.format("Failed to migrate up from %d, unlocking", currentVersion), e);
+				unlock(currentVersion);
 				return MigrationToResponse.failedMigration(e);
 			}
 		} else {
 			try {
 				for (int i = startIndex; i > endIndex; i--) {
+					int nextVersion = migrations.get(i - 1).getVersion();
+					long startedAt = System.currentTimeMillis();
+					logger.info(String.format("Migrating down to %d (%d of %d)...", nextVersion, startIndex - i + 1, startIndex - endIndex));
 					migrateDown(i);
-					currentVersion = migrations.get(i - 1).getVersion();
+					currentVersion = nextVersion;
+					checkpoint(currentVersion);
+					logger.info(String.format("Migrated down to %d in %dms", nextVersion, System.currentTimeMillis() - startedAt));
 				}
 			} catch (Throwable e) {
+				logger.error(String.format("Failed to migrate down from %d, unlocking", currentVersion), e);
+				unlock(currentVersion);
 				return MigrationToResponse.failedMigration(e);
 			}
 		}
@@ -175,6 +196,9 @@ public class MigrationsImpl extends SyncVerticle implements Migrations {
 				json("locked", true, "lockedAt", Instant.now()))).getDocModified() == 1;
 	}
 
+	private void checkpoint(int version) throws SuspendExecution, InterruptedException {
+		Mongo.mongo().updateCollection(MIGRATIONS, json("_id", "control"), json("$set", json("version", version)));
+	}
 
 	private JsonObject unlock(int version) throws SuspendExecution, InterruptedException {
 		return setControl(json("locked", false, "version", version));
@@ -0,0 +1,238 @@
+package com.hiddenswitch.spellsource.impl.server;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.VertxInternal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A hashed-wheel timer shared by every game on a node.
+ * <p>
+ * Timers are kept in a ring of {@link #WHEEL_SIZE} slots that a single periodic Vert.x timer advances every {@link
+ * #TICK_MILLIS}. Each slot is a doubly linked list of the timers that expire in it, so that setting, cancelling and
+ * rescheduling a timer are constant time operations that do not create a Vert.x timer. Rescheduling a timer moves its
+ * existing entry without allocating.
+ * <p>
+ * Timers are accurate to within a tick. Handlers are executed on the {@link Context} that set the timer, like {@link
+ * Vertx#setTimer(long, Handler)}.
+ * <p>
+ * Use {@link #get(Vertx)} to retrieve the node's wheel and {@link #scheduler()} to create a {@link WheelScheduler} for a
+ * game. The wheel is closed when its Vert.x instance closes.
+ */
+public class TimerWheel {
+	public static final long TICK_MILLIS = 100L;
+	public static final int WHEEL_SIZE = 512;
+	private static final int MASK = WHEEL_SIZE - 1;
+	private static final Map<Vertx, TimerWheel> WHEELS = Collections.synchronizedMap(new HashMap<>());
+
+	private final Vertx vertx;
+	private final Timeout[] slots = new Timeout[WHEEL_SIZE];
+	private final long startNanos = System.nanoTime();
+	private final AtomicLong ids = new AtomicLong();
+	private final long periodicId;
+	private long tick;
+	private int count;
+	private volatile boolean closed;
+
+	/**
+	 * A timer in a slot of the wheel. Also the node of that slot's linked list.
+	 */
+	static class Timeout {
+		final long id;
+		final Handler<Long> handler;
+		final Context context;
+		final WheelScheduler owner;
+		long deadlineTick;
+		Timeout previous;
+		Timeout next;
+		boolean scheduled;
+		/**
+		 * Incremented whenever the timer is scheduled or cancelled, so that a handler is not executed if its timer changed
+		 * between expiring and being dispatched to its context.
+		 */
+		int generation;
+		int expiredGeneration;
+		boolean dispatching;
+
+		Timeout(long id, Handler<Long> handler, Context context, WheelScheduler owner) {
+			this.id = id;
+			this.handler = handler;
+			this.context = context;
+			this.owner = owner;
+		}
+	}
+
+	TimerWheel(Vertx vertx) {
+		this.vertx = vertx;
+		this.periodicId = vertx.setPeriodic(TICK_MILLIS, ignored -> advance());
+		// The wheel references its instance, so it has to be removed explicitly for the instance to be collected
+		((VertxInternal) vertx).addCloseHook(v -> {
+			close();
+			v.handle(Future.succeededFuture());
+		});
+	}
+
+	/**
+	 * Gets the timer wheel for the given Vert.x instance, creating it if necessary.
+	 *
+	 * @param vertx The instance.
+	 * @return The wheel.
+	 */
+	public static TimerWheel get(Vertx vertx) {
+		synchronized (WHEELS) {
+			return WHEELS.computeIfAbsent(vertx, TimerWheel::new);
+		}
+	}
+
+	/**
+	 * Creates a scheduler whose timers are kept on this wheel. Closing the scheduler cancels all of its timers.
+	 *
+	 * @return A new scheduler.
+	 */
+	public WheelScheduler scheduler() {
+		return new WheelScheduler(this);
+	}
+
+	/**
+	 * The number of timers that are waiting to fire on this wheel.
+	 *
+	 * @return The count.
+	 */
+	public synchronized int getTimerCount() {
+		return count;
+	}
+
+	/**
+	 * Stops advancing the wheel. Timers that have not fired are never fired.
+	 */
+	public void close() {
+		closed = true;
+		vertx.cancelTimer(periodicId);
+		WHEELS.remove(vertx, this);
+	}
+
+	/**
+	 * Whether this wheel was closed, either explicitly or because its Vert.x instance closed.
+	 *
+	 * @return {@code true} if the wheel no longer fires timers.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	Vertx getVertx() {
+		return vertx;
+	}
+
+	long nextId() {
+		return ids.incrementAndGet();
+	}
+
+	synchronized void schedule(Timeout timeout, long delay) {
+		if (timeout.scheduled) {
+			unlink(timeout);
+		}
+		timeout.dispatching = false;
+		timeout.generation++;
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		// Round up so that a timer never fires early, and never into the slot that is currently being expired
+		long deadlineTick = (elapsedMillis + Math.max(delay, 0L) + TICK_MILLIS - 1) / TICK_MILLIS;
+		timeout.deadlineTick = Math.max(deadlineTick, tick + 1);
+		link(timeout);
+	}
+
+	synchronized boolean cancel(Timeout timeout) {
+		boolean pending = timeout.scheduled || timeout.dispatching;
+		if (timeout.scheduled) {
+			unlink(timeout);
+		}
+		timeout.dispatching = false;
+		timeout.generation++;
+		return pending;
+	}
+
+	private void link(Timeout timeout) {
+		int slot = (int) (timeout.deadlineTick & MASK);
+		Timeout head = slots[slot];
+		timeout.previous = null;
+		timeout.next = head;
+		if (head != null) {
+			head.previous = timeout;
+		}
+		slots[slot] = timeout;
+		timeout.scheduled = true;
+		count++;
+	}
+
+	private void unlink(Timeout timeout) {
+		int slot = (int) (timeout.deadlineTick & MASK);
+		if (timeout.previous == null) {
+			slots[slot] = timeout.next;
+		} else {
+			timeout.previous.next = timeout.next;
+		}
+		if (timeout.next != null) {
+			timeout.next.previous = timeout.previous;
+		}
+		timeout.previous = null;
+		timeout.next = null;
+		timeout.scheduled = false;
+		count--;
+	}
+
+	/**
+	 * Expires every timer whose deadline has passed, catching up on ticks that were delayed by a busy event loop.
+	 */
+	private void advance() {
+		long currentTick = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) / TICK_MILLIS;
+		List<Timeout> expired = null;
+		synchronized (this) {
+			while (tick < currentTick) {
+				tick++;
+				Timeout timeout = slots[(int) (tick & MASK)];
+				while (timeout != null) {
+					// Unlinking clears the pointer
+					Timeout next = timeout.next;
+					// Timers further than a full rotation away share the slot but stay in it
+					if (timeout.deadlineTick <= tick) {
+						unlink(timeout);
+						timeout.expiredGeneration = timeout.generation;
+						timeout.dispatching = true;
+						if (expired == null) {
+							expired = new ArrayList<>();
+						}
+						expired.add(timeout);
+					}
+					timeout = next;
+				}
+			}
+		}
+
+		// Execute the handlers outside of the lock, since they will typically set more timers
+		if (expired == null) {
+			return;
+		}
+		for (Timeout timeout : expired) {
+			timeout.context.runOnContext(v -> {
+				synchronized (this) {
+					if (timeout.generation != timeout.expiredGeneration) {
+						// Cancelled or rescheduled in the meantime
+						return;
+					}
+					timeout.dispatching = false;
+					timeout.owner.expired(timeout);
+				}
+				timeout.handler.handle(timeout.id);
+			});
+		}
+	}
+}
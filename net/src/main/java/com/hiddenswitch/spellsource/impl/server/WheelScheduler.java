@@ -0,0 +1,97 @@
+package com.hiddenswitch.spellsource.impl.server;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.hiddenswitch.spellsource.impl.TimerId;
+import com.hiddenswitch.spellsource.impl.util.Scheduler;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Closeable;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link Scheduler} whose timers are kept on the node's {@link TimerWheel}.
+ * <p>
+ * Each game gets its own scheduler, so that {@link #close(Handler)} cancels all of the game's timers at once.
+ */
+public class WheelScheduler implements Scheduler, Closeable {
+	private final TimerWheel wheel;
+	private final Map<Long, TimerWheel.Timeout> timeouts = new HashMap<>();
+
+	WheelScheduler(TimerWheel wheel) {
+		this.wheel = wheel;
+	}
+
+	@Override
+	@Suspendable
+	public TimerId setTimer(long delay, Handler<Long> handler) {
+		Context context = Vertx.currentContext();
+		if (context == null) {
+			context = wheel.getVertx().getOrCreateContext();
+		}
+		TimerWheel.Timeout timeout = new TimerWheel.Timeout(wheel.nextId(), handler, context, this);
+		// The wheel's lock guards this scheduler's timers too, since the wheel removes them as they fire
+		synchronized (wheel) {
+			timeouts.put(timeout.id, timeout);
+			wheel.schedule(timeout, delay);
+		}
+		return new TimerId(timeout.id);
+	}
+
+	@Override
+	@Suspendable
+	public boolean cancelTimer(TimerId id) {
+		synchronized (wheel) {
+			TimerWheel.Timeout timeout = timeouts.remove(id.longValue());
+			return timeout != null && wheel.cancel(timeout);
+		}
+	}
+
+	@Override
+	@Suspendable
+	public boolean rescheduleTimer(TimerId id, long delay) {
+		synchronized (wheel) {
+			TimerWheel.Timeout timeout = timeouts.get(id.longValue());
+			if (timeout == null) {
+				return false;
+			}
+			wheel.schedule(timeout, delay);
+			return true;
+		}
+	}
+
+	/**
+	 * The number of this scheduler's timers that have not fired yet.
+	 *
+	 * @return The count.
+	 */
+	public int getTimerCount() {
+		synchronized (wheel) {
+			return timeouts.size();
+		}
+	}
+
+	/**
+	 * Cancels all of this scheduler's timers.
+	 *
+	 * @param completionHandler Called when the timers are cancelled.
+	 */
+	@Override
+	public void close(Handler<AsyncResult<Void>> completionHandler) {
+		synchronized (wheel) {
+			for (TimerWheel.Timeout timeout : timeouts.values()) {
+				wheel.cancel(timeout);
+			}
+			timeouts.clear();
+		}
+		completionHandler.handle(Future.succeededFuture());
+	}
+
+	void expired(TimerWheel.Timeout timeout) {
+		timeouts.remove(timeout.id);
+	}
+}
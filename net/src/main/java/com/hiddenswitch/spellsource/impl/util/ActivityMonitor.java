@@ -37,6 +37,11 @@ public class ActivityMonitor {
 			return;
 		}
 
+		// Moving the existing timer is cheaper than replacing it, when the scheduler supports it
+		if (lastTimerId != null && scheduler.rescheduleTimer(lastTimerId, noActivityTimeout)) {
+			return;
+		}
+
 		cancel();
 
 		lastTimerId = scheduler.setTimer(noActivityTimeout, suspendableHandler(this::handleTimeout));
@@ -51,6 +56,7 @@ public class ActivityMonitor {
 
 		if (lastTimerId != null) {
 			scheduler.cancelTimer(lastTimerId);
+			lastTimerId = null;
 		}
 	}
 
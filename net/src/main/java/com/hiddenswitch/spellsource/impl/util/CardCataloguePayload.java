@@ -0,0 +1,100 @@
+package com.hiddenswitch.spellsource.impl.util;
+
+import com.google.common.hash.Hashing;
+import com.hiddenswitch.spellsource.Gateway;
+import com.hiddenswitch.spellsource.client.models.CardRecord;
+import com.hiddenswitch.spellsource.client.models.GetCardsResponse;
+import com.hiddenswitch.spellsource.util.Serialization;
+import io.vertx.core.buffer.Buffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The response of {@link Gateway#getCards(io.vertx.ext.web.RoutingContext)}, serialized and compressed ahead of time
+ * so that it can be sent to every client without building it again.
+ * <p>
+ * The version is a hash of the serialized cards, so every node serving the same card catalogue reports the same
+ * version, which clients send back in {@code If-None-Match}.
+ */
+public final class CardCataloguePayload {
+	private final String version;
+	private final String lastModified;
+	private final Buffer json;
+	private final Buffer gzip;
+
+	private CardCataloguePayload(String version, String lastModified, Buffer json, Buffer gzip) {
+		this.version = version;
+		this.lastModified = lastModified;
+		this.json = json;
+		this.gzip = gzip;
+	}
+
+	/**
+	 * Serializes and compresses a card catalogue response.
+	 *
+	 * @param cards The cards in the response.
+	 * @return The payload.
+	 */
+	public static CardCataloguePayload create(List<CardRecord> cards) {
+		String version = Hashing.sha256()
+				.hashString(Serialization.serialize(cards), StandardCharsets.UTF_8)
+				.toString();
+		byte[] json = Serialization.serialize(new GetCardsResponse()
+				.version(version)
+				.cards(cards)).getBytes(StandardCharsets.UTF_8);
+
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(json);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return new CardCataloguePayload(version,
+				Gateway.DATE_TIME_FORMATTER.format(new Date()),
+				Buffer.buffer(json),
+				Buffer.buffer(compressed.toByteArray()));
+	}
+
+	/**
+	 * The version of the catalogue, also used as its entity tag.
+	 *
+	 * @return A hash of the cards.
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * The time this payload was built, formatted for the {@code Last-Modified} header.
+	 *
+	 * @return The formatted time.
+	 */
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * The serialized {@link GetCardsResponse}.
+	 *
+	 * @return The JSON. Callers must not modify it.
+	 */
+	public Buffer getJson() {
+		return json;
+	}
+
+	/**
+	 * The serialized {@link GetCardsResponse}, compressed with gzip.
+	 *
+	 * @return The compressed JSON. Callers must not modify it.
+	 */
+	public Buffer getGzip() {
+		return gzip;
+	}
+}
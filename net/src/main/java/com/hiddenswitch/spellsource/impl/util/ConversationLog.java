@@ -0,0 +1,269 @@
+package com.hiddenswitch.spellsource.impl.util;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.hiddenswitch.spellsource.Conversations;
+import com.hiddenswitch.spellsource.client.models.ChatMessage;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.FindOptions;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hiddenswitch.spellsource.util.Mongo.mongo;
+import static com.hiddenswitch.spellsource.util.QuickJson.json;
+
+/**
+ * A node-local log of the chat messages in each conversation, so that sending a message does not need a cluster-wide
+ * data structure or a database round trip.
+ * <p>
+ * Every conversation that this node has seen recently has a tail of its last {@link #TAIL_SIZE} messages and a
+ * sequence counter that numbers its messages. The tail is loaded from {@link Conversations#CONVERSATIONS} the first
+ * time the conversation is used on this node. New messages are published to every node on {@link #ADDRESS}, appended
+ * to the tails and delivered to the local subscribers. The node that accepted a message writes it to the database with
+ * the other messages it accepted in the meantime when {@link #flush()} is called.
+ * <p>
+ * Sequence numbers are counted per node and advanced past every message a node receives, so they order the messages of
+ * a conversation unless two nodes accept messages for it at the same time. Message IDs stay unique regardless.
+ */
+public class ConversationLog {
+	public static final String ADDRESS = "Conversations/log";
+	public static final int TAIL_SIZE = 100;
+	public static final int FLUSH_BATCH_SIZE = 512;
+	public static final long EXPIRE_AFTER_ACCESS_MINUTES = 30L;
+	public static final long MAXIMUM_SIZE = 10000L;
+	public static final String SEQUENCE = "sequence";
+	public static final String CONVERSATION_ID = "conversationId";
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConversationLog.class);
+	private static final Map<Vertx, ConversationLog> LOGS = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private final Cache<String, Tail> tails = CacheBuilder.newBuilder()
+			.maximumSize(MAXIMUM_SIZE)
+			.expireAfterAccess(EXPIRE_AFTER_ACCESS_MINUTES, TimeUnit.MINUTES)
+			.build();
+	private final Map<String, Set<Handler<ChatMessage>>> subscribers = new ConcurrentHashMap<>();
+	/**
+	 * The documents of the messages this node accepted that have not been written to the database yet.
+	 */
+	private final Queue<JsonObject> unsaved = new ConcurrentLinkedQueue<>();
+	private final Vertx vertx;
+
+	ConversationLog(Vertx vertx) {
+		this.vertx = vertx;
+		vertx.eventBus().<JsonObject>consumer(ADDRESS, message -> apply(message.body()));
+	}
+
+	/**
+	 * Gets the conversation log for the given Vert.x instance, creating it if necessary.
+	 *
+	 * @param vertx The instance.
+	 * @return The log.
+	 */
+	public static ConversationLog get(Vertx vertx) {
+		synchronized (LOGS) {
+			return LOGS.computeIfAbsent(vertx, ConversationLog::new);
+		}
+	}
+
+	/**
+	 * Gets the conversation log for the current Vert.x instance.
+	 *
+	 * @return The log.
+	 */
+	public static ConversationLog current() {
+		return get(Vertx.currentContext().owner());
+	}
+
+	/**
+	 * Adds a message to a conversation and sends it to its subscribers on every node.
+	 *
+	 * @param conversationId The conversation.
+	 * @param senderUserId   The ID of the user sending the message.
+	 * @param senderName     The name of the user sending the message.
+	 * @param text           The message.
+	 * @return The message as it will be delivered.
+	 */
+	@Suspendable
+	public ChatMessage append(String conversationId, String senderUserId, String senderName, String text) {
+		long sequence = getTail(conversationId).sequence.incrementAndGet();
+		ChatMessage message = new ChatMessage()
+				.messageId("c:" + sequence + ":" + RandomStringUtils.randomAlphanumeric(6))
+				.conversationId(conversationId)
+				.message(text)
+				.senderUserId(senderUserId)
+				.senderName(senderName)
+				.timestamp(System.currentTimeMillis());
+
+		unsaved.add(toDocument(message, sequence));
+		vertx.eventBus().publish(ADDRESS, json(SEQUENCE, sequence, "message", JsonObject.mapFrom(message)));
+		return message;
+	}
+
+	/**
+	 * Delivers the recent messages of a conversation and then every new message to the handler, in order.
+	 *
+	 * @param conversationId The conversation.
+	 * @param handler        Called with each message.
+	 * @return A handle to stop delivering messages.
+	 */
+	@Suspendable
+	public Disposable subscribe(String conversationId, Handler<ChatMessage> handler) {
+		Tail tail = getTail(conversationId);
+		// Take the snapshot and subscribe together so that no message is missed or delivered twice
+		synchronized (this) {
+			tail.messages().forEach(handler::handle);
+			subscribers.computeIfAbsent(conversationId, k -> new CopyOnWriteArraySet<>()).add(handler);
+		}
+		return Disposables.fromAction(() -> {
+			synchronized (this) {
+				subscribers.computeIfPresent(conversationId, (k, handlers) -> {
+					handlers.remove(handler);
+					return handlers.isEmpty() ? null : handlers;
+				});
+			}
+		});
+	}
+
+	/**
+	 * Gets the recent messages of a conversation.
+	 *
+	 * @param conversationId The conversation.
+	 * @return At most {@link #TAIL_SIZE} messages, oldest first.
+	 */
+	@Suspendable
+	public List<ChatMessage> getRecentMessages(String conversationId) {
+		Tail tail = getTail(conversationId);
+		synchronized (this) {
+			return tail.messages();
+		}
+	}
+
+	/**
+	 * Writes the messages this node accepted since the last flush to the database, in batches of {@link
+	 * #FLUSH_BATCH_SIZE}.
+	 *
+	 * @return The number of messages written.
+	 */
+	@Suspendable
+	public int flush() {
+		int written = 0;
+		List<JsonObject> batch = new ArrayList<>();
+		JsonObject document;
+		while ((document = unsaved.poll()) != null) {
+			batch.add(document);
+			if (batch.size() == FLUSH_BATCH_SIZE) {
+				written += write(batch);
+				batch = new ArrayList<>();
+			}
+		}
+		if (!batch.isEmpty()) {
+			written += write(batch);
+		}
+		return written;
+	}
+
+	@Suspendable
+	private int write(List<JsonObject> batch) {
+		try {
+			mongo().insertMany(Conversations.CONVERSATIONS, batch);
+			return batch.size();
+		} catch (RuntimeException any) {
+			LOGGER.error("write: Failed to save {} chat messages", batch.size(), any);
+			return 0;
+		}
+	}
+
+	@Suspendable
+	private Tail getTail(String conversationId) {
+		Tail tail = tails.asMap().computeIfAbsent(conversationId, k -> new Tail());
+		if (!tail.loaded) {
+			List<JsonObject> documents = mongo().findWithOptions(Conversations.CONVERSATIONS,
+					json(CONVERSATION_ID, conversationId),
+					new FindOptions().setSort(json(SEQUENCE, -1)).setLimit(TAIL_SIZE));
+			synchronized (this) {
+				for (JsonObject saved : documents) {
+					tail.add(saved.getLong(SEQUENCE), fromDocument(saved));
+				}
+				tail.loaded = true;
+			}
+		}
+		return tail;
+	}
+
+	private void apply(JsonObject published) {
+		long sequence = published.getLong(SEQUENCE);
+		ChatMessage message = published.getJsonObject("message").mapTo(ChatMessage.class);
+		synchronized (this) {
+			// Conversations this node has not seen recently will be read from the database when they are used
+			Tail tail = tails.getIfPresent(message.getConversationId());
+			if (tail != null) {
+				tail.add(sequence, message);
+			}
+			Set<Handler<ChatMessage>> handlers = subscribers.get(message.getConversationId());
+			if (handlers != null) {
+				handlers.forEach(handler -> handler.handle(message));
+			}
+		}
+	}
+
+	private static JsonObject toDocument(ChatMessage message, long sequence) {
+		return JsonObject.mapFrom(message)
+				.put(MongoRecord.ID, message.getMessageId())
+				.put(SEQUENCE, sequence);
+	}
+
+	private static ChatMessage fromDocument(JsonObject document) {
+		JsonObject copy = document.copy();
+		copy.remove(MongoRecord.ID);
+		copy.remove(SEQUENCE);
+		return copy.mapTo(ChatMessage.class);
+	}
+
+	/**
+	 * Removes every conversation from this node's log. Messages that were not flushed are kept.
+	 */
+	public void clear() {
+		tails.invalidateAll();
+	}
+
+	/**
+	 * The recent messages of a conversation, ordered by sequence number. Guarded by the lock of the log.
+	 */
+	private static class Tail {
+		private final AtomicLong sequence = new AtomicLong();
+		private final TreeMap<Long, List<ChatMessage>> messages = new TreeMap<>();
+		private final Set<String> messageIds = new HashSet<>();
+		private volatile boolean loaded;
+
+		private void add(long sequence, ChatMessage message) {
+			this.sequence.accumulateAndGet(sequence, Math::max);
+			if (!messageIds.add(message.getMessageId())) {
+				return;
+			}
+			messages.computeIfAbsent(sequence, k -> new ArrayList<>(1)).add(message);
+			while (messageIds.size() > TAIL_SIZE) {
+				for (ChatMessage oldest : messages.pollFirstEntry().getValue()) {
+					messageIds.remove(oldest.getMessageId());
+				}
+			}
+		}
+
+		private List<ChatMessage> messages() {
+			List<ChatMessage> ordered = new ArrayList<>(messageIds.size());
+			messages.values().forEach(ordered::addAll);
+			return ordered;
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package com.hiddenswitch.spellsource.impl.util;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.hiddenswitch.spellsource.Decks;
+import com.hiddenswitch.spellsource.Inventory;
+import com.hiddenswitch.spellsource.models.GetCollectionRequest;
+import com.hiddenswitch.spellsource.models.GetCollectionResponse;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import net.demilich.metastone.game.cards.Attribute;
+import net.demilich.metastone.game.cards.Card;
+import net.demilich.metastone.game.decks.GameDeck;
+import org.apache.commons.lang3.RandomStringUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hiddenswitch.spellsource.util.QuickJson.json;
+
+/**
+ * A node-local cache of decks whose cards have been resolved for a game, so that starting a game with a deck that was
+ * played recently does not have to read and resolve its cards again.
+ * <p>
+ * Each entry is a prototype {@link GameDeck} whose cards share the {@link net.demilich.metastone.game.cards.desc.CardDesc}
+ * in the card catalogue and carry the per-user attributes of their inventory records. {@link #get(String, String)}
+ * returns a clone of the prototype with a new {@link Attribute#ENTITY_INSTANCE_ID} on every card.
+ * <p>
+ * {@link Decks} invalidates a deck with {@link #invalidateDecks(Vertx, Collection)} when it changes the deck, and
+ * {@link Inventory} invalidates every deck containing a user's cards with {@link #invalidateOwners(Vertx, Collection)}
+ * when it changes that user's copies, including their persisted attributes. Invalidations are published to every node
+ * in the cluster on {@link #INVALIDATE_ADDRESS}. As a safety net, entries also expire {@link
+ * #EXPIRE_AFTER_WRITE_SECONDS} after they were loaded.
+ */
+public class DeckCardsCache {
+	public static final String INVALIDATE_ADDRESS = "Decks/cards/invalidate";
+	public static final long EXPIRE_AFTER_WRITE_SECONDS = 600L;
+	public static final long MAXIMUM_SIZE = 10000L;
+	private static final String DECK_IDS = "deckIds";
+	private static final String USER_IDS = "userIds";
+	private static final Map<Vertx, DeckCardsCache> CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private final Cache<String, CachedDeck> decks = CacheBuilder.newBuilder()
+			.maximumSize(MAXIMUM_SIZE)
+			.expireAfterWrite(EXPIRE_AFTER_WRITE_SECONDS, TimeUnit.SECONDS)
+			.removalListener(this::unindex)
+			.build();
+	/**
+	 * The IDs of the cached decks that contain copies owned by each user.
+	 */
+	private final Map<String, Set<String>> decksByOwner = new ConcurrentHashMap<>();
+	/**
+	 * Incremented by every invalidation, so that a load that raced with a write does not cache the old deck.
+	 */
+	private final AtomicLong invalidations = new AtomicLong();
+
+	DeckCardsCache(Vertx vertx) {
+		vertx.eventBus().<JsonObject>consumer(INVALIDATE_ADDRESS, message -> evict(message.body()));
+	}
+
+	/**
+	 * Gets the deck cards cache for the given Vert.x instance, creating it if necessary.
+	 *
+	 * @param vertx The instance.
+	 * @return The cache.
+	 */
+	public static DeckCardsCache get(Vertx vertx) {
+		synchronized (CACHES) {
+			return CACHES.computeIfAbsent(vertx, DeckCardsCache::new);
+		}
+	}
+
+	/**
+	 * Gets the deck cards cache for the current Vert.x instance.
+	 *
+	 * @return The cache.
+	 */
+	public static DeckCardsCache current() {
+		return get(Vertx.currentContext().owner());
+	}
+
+	/**
+	 * Evicts the given decks on every node in the cluster. Call this after modifying deck documents.
+	 *
+	 * @param vertx   The Vert.x instance the modification was made on.
+	 * @param deckIds The IDs of the modified decks.
+	 */
+	public static void invalidateDecks(Vertx vertx, Collection<String> deckIds) {
+		invalidate(vertx, DECK_IDS, deckIds);
+	}
+
+	/**
+	 * Evicts every deck that contains copies owned by the given users on every node in the cluster. Call this after
+	 * modifying the users' copies.
+	 *
+	 * @param vertx   The Vert.x instance the modification was made on.
+	 * @param userIds The owners of the modified copies.
+	 */
+	public static void invalidateOwners(Vertx vertx, Collection<String> userIds) {
+		invalidate(vertx, USER_IDS, userIds);
+	}
+
+	/**
+	 * Evicts the given decks on every node in the cluster, using the current Vert.x instance.
+	 *
+	 * @param deckIds The IDs of the modified decks.
+	 * @see #invalidateDecks(Vertx, Collection)
+	 */
+	public static void invalidateDecks(String... deckIds) {
+		invalidateDecks(Vertx.currentContext().owner(), Arrays.asList(deckIds));
+	}
+
+	/**
+	 * Evicts every deck that contains copies owned by the given users on every node in the cluster, using the current
+	 * Vert.x instance.
+	 *
+	 * @param userIds The owners of the modified copies.
+	 * @see #invalidateOwners(Vertx, Collection)
+	 */
+	public static void invalidateOwners(String... userIds) {
+		invalidateOwners(Vertx.currentContext().owner(), Arrays.asList(userIds));
+	}
+
+	private static void invalidate(Vertx vertx, String key, Collection<String> ids) {
+		if (ids.isEmpty()) {
+			return;
+		}
+		JsonArray array = new JsonArray();
+		ids.forEach(array::add);
+		JsonObject message = json(key, array);
+		// Evict here immediately, since the published message arrives later
+		get(vertx).evict(message);
+		vertx.eventBus().publish(INVALIDATE_ADDRESS, message);
+	}
+
+	/**
+	 * Gets a deck with its cards ready to be put into a game, resolving the cards if the deck is not cached.
+	 *
+	 * @param userId The user who will play the deck.
+	 * @param deckId The deck.
+	 * @return A new deck whose cards have new {@link Attribute#ENTITY_INSTANCE_ID} values.
+	 */
+	@Suspendable
+	public GameDeck get(String userId, String deckId) {
+		CachedDeck cached = decks.getIfPresent(deckId);
+		if (cached == null || !Objects.equals(cached.userId, userId)) {
+			long generation = invalidations.get();
+			GetCollectionResponse collection = Inventory.getCollection(new GetCollectionRequest()
+					.withUserId(userId)
+					.withDeckId(deckId));
+			GameDeck prototype = collection.asDeckPrototype(userId);
+			Set<String> owners = new HashSet<>();
+			for (InventoryRecord record : collection.getInventoryRecords()) {
+				owners.add(record.getUserId());
+			}
+			cached = new CachedDeck(userId, owners, prototype);
+			// Index the owners first, so that an invalidation of an owner that arrives after the put always finds the deck
+			for (String owner : owners) {
+				decksByOwner.computeIfAbsent(owner, k -> ConcurrentHashMap.newKeySet()).add(deckId);
+			}
+			if (generation == invalidations.get()) {
+				decks.put(deckId, cached);
+			}
+		}
+		return instantiate(cached.prototype);
+	}
+
+	/**
+	 * Clones a prototype deck, giving every card a new {@link Attribute#ENTITY_INSTANCE_ID}.
+	 *
+	 * @param prototype A deck whose cards have no instance IDs.
+	 * @return The new deck.
+	 */
+	public static GameDeck instantiate(GameDeck prototype) {
+		GameDeck deck = (GameDeck) prototype.clone();
+		for (Card card : deck.getCards()) {
+			card.getAttributes().put(Attribute.ENTITY_INSTANCE_ID, RandomStringUtils.randomAlphanumeric(20).toLowerCase());
+		}
+		return deck;
+	}
+
+	private void evict(JsonObject message) {
+		invalidations.incrementAndGet();
+		JsonArray deckIds = message.getJsonArray(DECK_IDS);
+		if (deckIds != null) {
+			for (Object deckId : deckIds) {
+				decks.invalidate(deckId);
+			}
+		}
+		JsonArray userIds = message.getJsonArray(USER_IDS);
+		if (userIds != null) {
+			for (Object userId : userIds) {
+				Set<String> ownedDeckIds = decksByOwner.remove(userId);
+				if (ownedDeckIds != null) {
+					decks.invalidateAll(ownedDeckIds);
+				}
+			}
+		}
+	}
+
+	private void unindex(RemovalNotification<String, CachedDeck> notification) {
+		// A replaced deck is indexed again before it is put, and stale index entries only cause extra evictions
+		if (notification.getValue() == null || notification.getCause() == RemovalCause.REPLACED) {
+			return;
+		}
+		for (String owner : notification.getValue().owners) {
+			decksByOwner.computeIfPresent(owner, (k, deckIds) -> {
+				deckIds.remove(notification.getKey());
+				return deckIds.isEmpty() ? null : deckIds;
+			});
+		}
+	}
+
+	/**
+	 * Removes every entry from this node's cache.
+	 */
+	public void clear() {
+		invalidations.incrementAndGet();
+		decks.invalidateAll();
+		decksByOwner.clear();
+	}
+
+	private static class CachedDeck {
+		private final String userId;
+		private final Set<String> owners;
+		private final GameDeck prototype;
+
+		private CachedDeck(String userId, Set<String> owners, GameDeck prototype) {
+			this.userId = userId;
+			this.owners = owners;
+			this.prototype = prototype;
+		}
+	}
+}
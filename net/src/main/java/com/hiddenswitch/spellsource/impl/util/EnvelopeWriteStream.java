@@ -0,0 +1,104 @@
+package com.hiddenswitch.spellsource.impl.util;
+
+import com.hiddenswitch.spellsource.Connection;
+import com.hiddenswitch.spellsource.client.models.Envelope;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageProducer;
+import io.vertx.core.streams.WriteStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes envelopes to a user's {@link Connection}, wherever its socket is hosted.
+ * <p>
+ * Like {@link GameMessageWriteStream}, the envelope is written to the connection directly when the user's socket is
+ * hosted by the same {@link Vertx} instance, and published to the connection's event bus address otherwise. Every
+ * writer on a node therefore uses the same path to a connection, so envelopes written by a game and by other services
+ * arrive in the order they were written.
+ */
+public class EnvelopeWriteStream implements WriteStream<Envelope> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(EnvelopeWriteStream.class);
+	private final Vertx vertx;
+	private final String userId;
+	private final MessageProducer<Envelope> producer;
+
+	public EnvelopeWriteStream(Vertx vertx, String userId, MessageProducer<Envelope> producer) {
+		this.vertx = vertx;
+		this.userId = userId;
+		this.producer = producer;
+	}
+
+	@Override
+	public EnvelopeWriteStream exceptionHandler(Handler<Throwable> handler) {
+		producer.exceptionHandler(handler);
+		return this;
+	}
+
+	@Override
+	public EnvelopeWriteStream write(Envelope data) {
+		Connection connection = Connection.local(vertx, userId);
+		if (connection == null) {
+			producer.write(data);
+			return this;
+		}
+
+		try {
+			connection.write(data);
+		} catch (IllegalStateException ex) {
+			// Matches the behaviour of the event bus path, which drops messages for disconnected sockets
+			LOGGER.warn("write {}: Socket disconnected for message {}", userId, data);
+		}
+		return this;
+	}
+
+	@Override
+	public EnvelopeWriteStream write(Envelope data, Handler<AsyncResult<Void>> handler) {
+		Connection connection = Connection.local(vertx, userId);
+		if (connection == null) {
+			producer.write(data, handler);
+			return this;
+		}
+
+		try {
+			connection.write(data, handler);
+		} catch (IllegalStateException ex) {
+			LOGGER.warn("write {}: Socket disconnected for message {}", userId, data);
+			handler.handle(Future.failedFuture(ex));
+		}
+		return this;
+	}
+
+	/**
+	 * Closes the event bus producer. The user's connection is never ended by a writer.
+	 */
+	@Override
+	public void end() {
+		producer.end();
+	}
+
+	@Override
+	public void end(Handler<AsyncResult<Void>> handler) {
+		producer.end(handler);
+	}
+
+	@Override
+	public EnvelopeWriteStream setWriteQueueMaxSize(int maxSize) {
+		producer.setWriteQueueMaxSize(maxSize);
+		return this;
+	}
+
+	@Override
+	public boolean writeQueueFull() {
+		Connection connection = Connection.local(vertx, userId);
+		return connection == null ? producer.writeQueueFull() : connection.writeQueueFull();
+	}
+
+	@Override
+	public EnvelopeWriteStream drainHandler(Handler<Void> handler) {
+		producer.drainHandler(handler);
+		return this;
+	}
+}
@@ -0,0 +1,202 @@
+package com.hiddenswitch.spellsource.impl.util;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.hiddenswitch.spellsource.Friends;
+import com.hiddenswitch.spellsource.Presence;
+import com.hiddenswitch.spellsource.client.models.PresenceEnum;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hiddenswitch.spellsource.util.QuickJson.json;
+
+/**
+ * A node-local index of who is friends with whom and of the users' current presence, so that {@link Presence} can fan
+ * presence changes out to friends without querying the database.
+ * <p>
+ * A user's friends are loaded through the {@link UserRecordCache} the first time they are needed. Afterwards, {@link
+ * Friends} keeps them up to date by calling {@link #friend(Vertx, String, String)} and {@link #unfriend(Vertx, String,
+ * String)}, and {@link Presence} records presence changes with {@link #setPresence(Vertx, String, PresenceEnum)}. These
+ * changes are published to every node in the cluster on {@link #ADDRESS} and applied in the order they were sent.
+ * <p>
+ * A node that started after a user connected does not know that user's presence; {@link #getPresence(String)} returns
+ * {@code null} in that case.
+ */
+public class FriendGraph {
+	public static final String ADDRESS = "Friends/graph";
+	public static final long MAXIMUM_SIZE = 100000L;
+	private static final Map<Vertx, FriendGraph> GRAPHS = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private final Cache<String, Set<String>> friends = CacheBuilder.newBuilder()
+			.maximumSize(MAXIMUM_SIZE)
+			.build();
+	private final Cache<String, PresenceEnum> presences = CacheBuilder.newBuilder()
+			.maximumSize(MAXIMUM_SIZE)
+			.build();
+	/**
+	 * Incremented by every friendship change, so that a load that raced with a change does not store the old friends.
+	 */
+	private final AtomicLong changes = new AtomicLong();
+
+	FriendGraph(Vertx vertx) {
+		vertx.eventBus().<JsonObject>consumer(ADDRESS, message -> apply(message.body()));
+	}
+
+	/**
+	 * Gets the friend graph for the given Vert.x instance, creating it if necessary.
+	 *
+	 * @param vertx The instance.
+	 * @return The graph.
+	 */
+	public static FriendGraph get(Vertx vertx) {
+		synchronized (GRAPHS) {
+			return GRAPHS.computeIfAbsent(vertx, FriendGraph::new);
+		}
+	}
+
+	/**
+	 * Gets the friend graph for the current Vert.x instance.
+	 *
+	 * @return The graph.
+	 */
+	public static FriendGraph current() {
+		return get(Vertx.currentContext().owner());
+	}
+
+	/**
+	 * Records on every node that two users became friends. Call this after modifying both user documents.
+	 *
+	 * @param vertx    The Vert.x instance the modification was made on.
+	 * @param userId   One user.
+	 * @param friendId The other user.
+	 */
+	public static void friend(Vertx vertx, String userId, String friendId) {
+		// Reload the users here on their next use, since the published change arrives later
+		get(vertx).evict(userId, friendId);
+		vertx.eventBus().publish(ADDRESS, json("friend", new JsonArray().add(userId).add(friendId)));
+	}
+
+	/**
+	 * Records on every node that two users are no longer friends. Call this after modifying both user documents.
+	 *
+	 * @param vertx    The Vert.x instance the modification was made on.
+	 * @param userId   One user.
+	 * @param friendId The other user.
+	 */
+	public static void unfriend(Vertx vertx, String userId, String friendId) {
+		get(vertx).evict(userId, friendId);
+		vertx.eventBus().publish(ADDRESS, json("unfriend", new JsonArray().add(userId).add(friendId)));
+	}
+
+	/**
+	 * Records a user's presence on every node.
+	 *
+	 * @param vertx    The Vert.x instance the change was made on.
+	 * @param userId   The user.
+	 * @param presence The user's new presence.
+	 */
+	public static void setPresence(Vertx vertx, String userId, PresenceEnum presence) {
+		vertx.eventBus().publish(ADDRESS, json("presence", userId, "value", presence.name()));
+	}
+
+	/**
+	 * Gets the IDs of a user's friends, loading them if this node has not seen the user yet.
+	 *
+	 * @param userId The user.
+	 * @return The friend IDs, or an empty set if the user does not exist.
+	 */
+	@Suspendable
+	@NotNull
+	public Set<String> getFriends(String userId) {
+		Set<String> userFriends = friends.getIfPresent(userId);
+		if (userFriends == null) {
+			long generation = changes.get();
+			UserRecord user = UserRecordCache.current().get(userId);
+			if (user == null) {
+				return Collections.emptySet();
+			}
+			userFriends = ConcurrentHashMap.newKeySet();
+			if (user.getFriends() != null) {
+				for (FriendRecord friend : user.getFriends()) {
+					userFriends.add(friend.getFriendId());
+				}
+			}
+			if (generation == changes.get()) {
+				friends.put(userId, userFriends);
+			}
+		}
+		return Collections.unmodifiableSet(userFriends);
+	}
+
+	/**
+	 * Gets the presence of a user as of the last change this node received.
+	 *
+	 * @param userId The user.
+	 * @return The presence, or {@code null} if this node has not seen a change of the user's presence.
+	 */
+	@Nullable
+	public PresenceEnum getPresence(String userId) {
+		return presences.getIfPresent(userId);
+	}
+
+	/**
+	 * Stores a presence this node determined by other means, unless it has received one for the user in the meantime.
+	 *
+	 * @param userId   The user.
+	 * @param presence The presence.
+	 */
+	public void putPresenceIfAbsent(String userId, PresenceEnum presence) {
+		presences.asMap().putIfAbsent(userId, presence);
+	}
+
+	private void apply(JsonObject change) {
+		if (change.containsKey("presence")) {
+			presences.put(change.getString("presence"), PresenceEnum.valueOf(change.getString("value")));
+			return;
+		}
+
+		changes.incrementAndGet();
+		boolean added = change.containsKey("friend");
+		JsonArray userIds = added ? change.getJsonArray("friend") : change.getJsonArray("unfriend");
+		String userId = userIds.getString(0);
+		String friendId = userIds.getString(1);
+		update(userId, friendId, added);
+		update(friendId, userId, added);
+	}
+
+	private void update(String userId, String friendId, boolean added) {
+		// Users this node has not loaded yet will be read with the change already applied
+		Set<String> userFriends = friends.getIfPresent(userId);
+		if (userFriends == null) {
+			return;
+		}
+		if (added) {
+			userFriends.add(friendId);
+		} else {
+			userFriends.remove(friendId);
+		}
+	}
+
+	private void evict(String userId, String friendId) {
+		changes.incrementAndGet();
+		friends.invalidate(userId);
+		friends.invalidate(friendId);
+	}
+
+	/**
+	 * Removes every entry from this node's graph.
+	 */
+	public void clear() {
+		changes.incrementAndGet();
+		friends.invalidateAll();
+		presences.invalidateAll();
+	}
+}
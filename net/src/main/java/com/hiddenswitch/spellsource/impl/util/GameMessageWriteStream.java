@@ -0,0 +1,111 @@
+package com.hiddenswitch.spellsource.impl.util;
+
+import com.hiddenswitch.spellsource.Connection;
+import com.hiddenswitch.spellsource.client.models.Envelope;
+import com.hiddenswitch.spellsource.client.models.EnvelopeGame;
+import com.hiddenswitch.spellsource.client.models.ServerToClientMessage;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageProducer;
+import io.vertx.core.streams.WriteStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes game messages to a user's {@link Connection}.
+ * <p>
+ * When the user's socket is hosted by the same {@link Vertx} instance as the game, the message is written to the
+ * connection directly. Otherwise, it is published to the event bus, where the node hosting the socket forwards it (see
+ * {@link ServerGameContext#handleConnections()}).
+ * <p>
+ * The connection is looked up on every write, so a user who reconnects to a different node keeps receiving messages.
+ */
+public class GameMessageWriteStream implements WriteStream<ServerToClientMessage> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GameMessageWriteStream.class);
+	private final Vertx vertx;
+	private final String userId;
+	private final MessageProducer<ServerToClientMessage> producer;
+
+	public GameMessageWriteStream(Vertx vertx, String userId, MessageProducer<ServerToClientMessage> producer) {
+		this.vertx = vertx;
+		this.userId = userId;
+		this.producer = producer;
+	}
+
+	@Override
+	public GameMessageWriteStream exceptionHandler(Handler<Throwable> handler) {
+		producer.exceptionHandler(handler);
+		return this;
+	}
+
+	@Override
+	public GameMessageWriteStream write(ServerToClientMessage data) {
+		Connection connection = Connection.local(vertx, userId);
+		if (connection == null) {
+			producer.write(data);
+			return this;
+		}
+
+		try {
+			connection.write(toEnvelope(data));
+		} catch (IllegalStateException ex) {
+			// Matches the behaviour of the event bus path, which drops messages for disconnected sockets
+			LOGGER.warn("write {}: Socket disconnected for message {}", userId, data);
+		}
+		return this;
+	}
+
+	@Override
+	public GameMessageWriteStream write(ServerToClientMessage data, Handler<AsyncResult<Void>> handler) {
+		Connection connection = Connection.local(vertx, userId);
+		if (connection == null) {
+			producer.write(data, handler);
+			return this;
+		}
+
+		try {
+			connection.write(toEnvelope(data), handler);
+		} catch (IllegalStateException ex) {
+			LOGGER.warn("write {}: Socket disconnected for message {}", userId, data);
+			handler.handle(Future.failedFuture(ex));
+		}
+		return this;
+	}
+
+	private static Envelope toEnvelope(ServerToClientMessage data) {
+		return new Envelope().game(new EnvelopeGame().serverToClient(data));
+	}
+
+	/**
+	 * Closes the event bus producer. The user's connection is never ended by a game.
+	 */
+	@Override
+	public void end() {
+		producer.end();
+	}
+
+	@Override
+	public void end(Handler<AsyncResult<Void>> handler) {
+		producer.end(handler);
+	}
+
+	@Override
+	public GameMessageWriteStream setWriteQueueMaxSize(int maxSize) {
+		producer.setWriteQueueMaxSize(maxSize);
+		return this;
+	}
+
+	@Override
+	public boolean writeQueueFull() {
+		Connection connection = Connection.local(vertx, userId);
+		return connection == null ? producer.writeQueueFull() : connection.writeQueueFull();
+	}
+
+	@Override
+	public GameMessageWriteStream drainHandler(Handler<Void> handler) {
+		producer.drainHandler(handler);
+		return this;
+	}
+}
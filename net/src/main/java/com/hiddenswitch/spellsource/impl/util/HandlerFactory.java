@@ -103,6 +103,10 @@ public class HandlerFactory {
 	}
 
 	private static <R> void respond(RoutingContext context, WebResult<R> result) {
+		if (context.response().ended()) {
+			// The handler wrote the response itself
+			return;
+		}
 		context.response().setStatusCode(result.responseCode());
 		if (context.response().closed()) {
 			context.fail(new IOException("Response was closed (client disconnected)"));
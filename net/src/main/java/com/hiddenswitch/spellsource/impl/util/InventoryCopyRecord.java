@@ -0,0 +1,104 @@
+package com.hiddenswitch.spellsource.impl.util;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of a single copy of a card in an {@link InventoryCountsRecord}.
+ * <p>
+ * Copies that are only in their owner's collection and have no persistent facts do not have a copy record at all.
+ */
+public class InventoryCopyRecord implements Serializable {
+	public static final String COLLECTION_IDS = "collectionIds";
+	public static final String REMOVED_FROM_USER_COLLECTION = "removedFromUserCollection";
+	public static final String ALLIANCE_ID = "allianceId";
+	public static final String BORROWED_BY_USER_ID = "borrowedByUserId";
+	public static final String FACTS = "facts";
+
+	/**
+	 * The decks and alliances this copy is in, not including its owner's collection.
+	 */
+	@JsonProperty
+	private List<String> collectionIds = new ArrayList<>();
+
+	@JsonProperty
+	private boolean removedFromUserCollection;
+
+	@JsonProperty
+	private String allianceId;
+
+	@JsonProperty
+	private String borrowedByUserId;
+
+	@JsonProperty
+	private Map<String, Object> facts = new HashMap<>();
+
+	public InventoryCopyRecord() {
+	}
+
+	@JsonIgnore
+	public List<String> getCollectionIds() {
+		return collectionIds;
+	}
+
+	@JsonIgnore
+	public InventoryCopyRecord setCollectionIds(List<String> collectionIds) {
+		this.collectionIds = collectionIds;
+		return this;
+	}
+
+	/**
+	 * Indicates the copy is no longer in the collection of the user that owns it, for example because it was donated.
+	 *
+	 * @return {@code true} if the copy was removed from the user collection.
+	 */
+	@JsonIgnore
+	public boolean isRemovedFromUserCollection() {
+		return removedFromUserCollection;
+	}
+
+	@JsonIgnore
+	public InventoryCopyRecord setRemovedFromUserCollection(boolean removedFromUserCollection) {
+		this.removedFromUserCollection = removedFromUserCollection;
+		return this;
+	}
+
+	@JsonIgnore
+	public String getAllianceId() {
+		return allianceId;
+	}
+
+	@JsonIgnore
+	public InventoryCopyRecord setAllianceId(String allianceId) {
+		this.allianceId = allianceId;
+		return this;
+	}
+
+	@JsonIgnore
+	public String getBorrowedByUserId() {
+		return borrowedByUserId;
+	}
+
+	@JsonIgnore
+	public InventoryCopyRecord setBorrowedByUserId(String borrowedByUserId) {
+		this.borrowedByUserId = borrowedByUserId;
+		return this;
+	}
+
+	@JsonIgnore
+	public Map<String, Object> getFacts() {
+		return facts;
+	}
+
+	@JsonIgnore
+	public InventoryCopyRecord setFacts(Map<String, Object> facts) {
+		this.facts = facts;
+		return this;
+	}
+}
@@ -0,0 +1,240 @@
+package com.hiddenswitch.spellsource.impl.util;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.vertx.core.json.JsonObject;
+import net.demilich.metastone.game.cards.desc.CardDesc;
+
+import java.util.*;
+
+/**
+ * A user's cards, stored as the number of copies they own of each card.
+ * <p>
+ * The {@code n}th copy of a card has the inventory ID {@code userId:cardId:n}. Only the copies that are in a deck or
+ * an alliance, or that have persistent facts, have an {@link InventoryCopyRecord} in {@link #getCopies()}, keyed by
+ * {@code cardId:n}. A whole collection is therefore one document instead of one document per copy. Use {@link
+ * #getInventoryRecords()} to work with the individual copies.
+ */
+public class InventoryCountsRecord extends MongoRecord {
+	public static final String COUNTS = "counts";
+	public static final String COPIES = "copies";
+	public static final String COLLECTION_IDS = "collectionIds";
+	private static final String SEPARATOR = ":";
+
+	@JsonProperty
+	private Map<String, Integer> counts = new HashMap<>();
+
+	@JsonProperty
+	private Map<String, InventoryCopyRecord> copies = new HashMap<>();
+
+	/**
+	 * The decks and alliances that copies in this record have been added to. It is used to find the owners of the cards in
+	 * a deck, so it may still contain collections that the copies were later removed from.
+	 */
+	@JsonProperty
+	private List<String> collectionIds = new ArrayList<>();
+
+	public InventoryCountsRecord() {
+	}
+
+	public InventoryCountsRecord(String userId) {
+		super(userId);
+	}
+
+	/**
+	 * The inventory ID of a copy of a card.
+	 *
+	 * @param userId The owner of the card.
+	 * @param cardId The card ID.
+	 * @param copy   The zero-based number of the copy.
+	 * @return The inventory ID.
+	 */
+	public static String getInventoryId(String userId, String cardId, int copy) {
+		return userId + SEPARATOR + cardId + SEPARATOR + copy;
+	}
+
+	/**
+	 * The owner of a copy of a card.
+	 *
+	 * @param inventoryId The inventory ID.
+	 * @return The user ID, which is also the ID of the {@link InventoryCountsRecord} that stores the copy.
+	 * @throws IllegalArgumentException if the ID is not an inventory ID from {@link #getInventoryId(String, String,
+	 *                                  int)}.
+	 */
+	public static String getUserId(String inventoryId) {
+		int end = inventoryId.indexOf(SEPARATOR);
+		if (end <= 0) {
+			throw new IllegalArgumentException(String.format("invalid inventoryId=%s", inventoryId));
+		}
+		return inventoryId.substring(0, end);
+	}
+
+	/**
+	 * The key of a copy of a card in {@link #getCopies()}.
+	 *
+	 * @param inventoryId The inventory ID.
+	 * @return The {@code cardId:n} part of the inventory ID.
+	 */
+	public static String getCopyKey(String inventoryId) {
+		return inventoryId.substring(getUserId(inventoryId).length() + SEPARATOR.length());
+	}
+
+	/**
+	 * The key of a copy of a card in {@link #getCopies()}.
+	 *
+	 * @param cardId The card ID.
+	 * @param copy   The zero-based number of the copy.
+	 * @return The {@code cardId:n} key.
+	 */
+	public static String getCopyKey(String cardId, int copy) {
+		return cardId + SEPARATOR + copy;
+	}
+
+	@JsonIgnore
+	public String getUserId() {
+		return getId();
+	}
+
+	/**
+	 * The number of copies of each card ID this user owns.
+	 *
+	 * @return A map of card IDs to counts.
+	 */
+	@JsonIgnore
+	public Map<String, Integer> getCounts() {
+		return counts;
+	}
+
+	/**
+	 * The state of the copies that are not just in the user's collection.
+	 *
+	 * @return A map of {@code cardId:n} keys to copies.
+	 */
+	@JsonIgnore
+	public Map<String, InventoryCopyRecord> getCopies() {
+		return copies;
+	}
+
+	@JsonIgnore
+	public List<String> getCollectionIds() {
+		return collectionIds;
+	}
+
+	/**
+	 * Creates an {@link InventoryRecord} for every copy of every card.
+	 *
+	 * @return The records.
+	 */
+	@JsonIgnore
+	public List<InventoryRecord> getInventoryRecords() {
+		return getInventoryRecords(counts.keySet());
+	}
+
+	/**
+	 * Creates an {@link InventoryRecord} for every copy of the specified cards.
+	 *
+	 * @param cardIds The card IDs.
+	 * @return The records.
+	 */
+	@JsonIgnore
+	public List<InventoryRecord> getInventoryRecords(Collection<String> cardIds) {
+		List<InventoryRecord> records = new ArrayList<>();
+		for (String cardId : new LinkedHashSet<>(cardIds)) {
+			int count = counts.getOrDefault(cardId, 0);
+			if (count == 0) {
+				continue;
+			}
+			// Inventory records only use the ID of the card description, so every copy can share it
+			CardDesc cardDesc = new JsonObject().put("id", cardId).mapTo(CardDesc.class);
+			for (int i = 0; i < count; i++) {
+				InventoryCopyRecord copy = copies.get(cardId + SEPARATOR + i);
+				List<String> recordCollectionIds = new ArrayList<>();
+				if (copy == null || !copy.isRemovedFromUserCollection()) {
+					recordCollectionIds.add(getUserId());
+				}
+				InventoryRecord record = new InventoryRecord(getInventoryId(getUserId(), cardId, i), cardDesc)
+						.withUserId(getUserId())
+						.withCollectionIds(recordCollectionIds);
+				if (copy != null) {
+					recordCollectionIds.addAll(copy.getCollectionIds());
+					record.setAllianceId(copy.getAllianceId());
+					record.setBorrowedByUserId(copy.getBorrowedByUserId());
+					record.setFacts(new HashMap<>(copy.getFacts()));
+				}
+				records.add(record);
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * Creates an {@link InventoryRecord} for every copy in at least one of the specified collections.
+	 *
+	 * @param collectionIds User, deck or alliance collection IDs.
+	 * @return The records.
+	 */
+	@JsonIgnore
+	public List<InventoryRecord> getInventoryRecordsInCollections(Collection<String> collectionIds) {
+		List<InventoryRecord> records;
+		if (collectionIds.contains(getUserId())) {
+			records = getInventoryRecords();
+		} else {
+			// Only copies with a copy record can be in a deck or alliance
+			Set<String> cardIds = new LinkedHashSet<>();
+			copies.forEach((key, copy) -> {
+				if (copy.getCollectionIds().stream().anyMatch(collectionIds::contains)) {
+					cardIds.add(key.substring(0, key.lastIndexOf(SEPARATOR)));
+				}
+			});
+			records = getInventoryRecords(cardIds);
+		}
+		records.removeIf(record -> record.getCollectionIds().stream().noneMatch(collectionIds::contains));
+		return records;
+	}
+
+	/**
+	 * Appends copies that were stored as one {@link InventoryRecord} document per copy, numbering them after the copies
+	 * of the same card this record already has.
+	 *
+	 * @param records Records owned by this user.
+	 * @return This instance.
+	 */
+	@JsonIgnore
+	public InventoryCountsRecord addInventoryRecords(List<InventoryRecord> records) {
+		for (InventoryRecord record : records) {
+			String cardId = record.getCardId();
+			if (cardId == null) {
+				continue;
+			}
+			int copy = counts.getOrDefault(cardId, 0);
+			counts.put(cardId, copy + 1);
+
+			List<String> recordCollectionIds = record.getCollectionIds() == null ? Collections.emptyList() : record.getCollectionIds();
+			InventoryCopyRecord copyRecord = new InventoryCopyRecord()
+					.setRemovedFromUserCollection(!recordCollectionIds.contains(getUserId()))
+					.setAllianceId(record.getAllianceId())
+					.setBorrowedByUserId(record.getBorrowedByUserId());
+			for (String collectionId : recordCollectionIds) {
+				if (collectionId.equals(getUserId()) || copyRecord.getCollectionIds().contains(collectionId)) {
+					continue;
+				}
+				copyRecord.getCollectionIds().add(collectionId);
+				if (!collectionIds.contains(collectionId)) {
+					collectionIds.add(collectionId);
+				}
+			}
+			if (record.getFacts() != null) {
+				copyRecord.getFacts().putAll(record.getFacts());
+			}
+
+			if (copyRecord.isRemovedFromUserCollection()
+					|| !copyRecord.getCollectionIds().isEmpty()
+					|| copyRecord.getAllianceId() != null
+					|| copyRecord.getBorrowedByUserId() != null
+					|| !copyRecord.getFacts().isEmpty()) {
+				copies.put(cardId + SEPARATOR + copy, copyRecord);
+			}
+		}
+		return this;
+	}
+}
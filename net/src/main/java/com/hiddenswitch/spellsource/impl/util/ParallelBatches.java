@@ -0,0 +1,128 @@
+package com.hiddenswitch.spellsource.impl.util;
+
+import co.paralleluniverse.fibers.Suspendable;
+import co.paralleluniverse.strands.SuspendableAction1;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static com.hiddenswitch.spellsource.util.Sync.suspendableHandler;
+import static io.vertx.ext.sync.Sync.awaitResult;
+
+/**
+ * Runs an action on batches of items in their own fibers, with at most a fixed number of batches running at a time.
+ * <p>
+ * {@link #submit(List)} waits for the oldest running batch when the limit is reached, so a caller reading the next
+ * batch from a cursor never has more than {@code parallelism} batches in memory. Progress is logged as batches
+ * complete.
+ * <p>
+ * When a batch fails, every other running batch is waited for before its failure is rethrown, so that the caller does
+ * not, e.g., release a migration lock while batches are still writing. Callers that fail for another reason should call
+ * {@link #drain(Throwable)} before rethrowing.
+ *
+ * @param <T> The type of the items.
+ */
+public class ParallelBatches<T> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ParallelBatches.class);
+
+	private final String name;
+	private final int parallelism;
+	private final SuspendableAction1<List<T>> action;
+	private final Deque<Future<Integer>> running = new ArrayDeque<>();
+	private long submitted;
+	private long completed;
+
+	/**
+	 * Creates a runner.
+	 *
+	 * @param name        The name to log progress with, typically the migration.
+	 * @param parallelism The maximum number of batches to run at once.
+	 * @param action      The action to call with each batch. It must be safe to call concurrently.
+	 */
+	public ParallelBatches(String name, int parallelism, SuspendableAction1<List<T>> action) {
+		this.name = name;
+		this.parallelism = parallelism;
+		this.action = action;
+	}
+
+	/**
+	 * Starts running the action on a batch, first waiting for a running batch to complete if there are too many.
+	 *
+	 * @param batch The items.
+	 * @throws RuntimeException the failure of a batch that was waited for, after every running batch completed.
+	 */
+	@Suspendable
+	public void submit(List<T> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		if (running.size() >= parallelism) {
+			awaitOldest();
+		}
+		Future<Integer> done = Future.future();
+		Vertx.currentContext().runOnContext(suspendableHandler(v -> {
+			try {
+				action.call(batch);
+				done.complete(batch.size());
+			} catch (Throwable any) {
+				done.fail(any);
+			}
+		}));
+		running.add(done);
+		submitted += batch.size();
+	}
+
+	/**
+	 * Waits for every submitted batch to complete.
+	 *
+	 * @return The number of items that were processed.
+	 * @throws RuntimeException the failure of the first batch that failed, after every running batch completed.
+	 */
+	@Suspendable
+	public long await() {
+		while (!running.isEmpty()) {
+			awaitOldest();
+		}
+		return completed;
+	}
+
+	/**
+	 * Waits for every running batch to complete without throwing their failures, which are added to the given failure
+	 * as suppressed exceptions instead.
+	 *
+	 * @param cause The failure the caller is about to rethrow.
+	 */
+	@Suspendable
+	public void drain(Throwable cause) {
+		while (!running.isEmpty()) {
+			Future<Integer> batch = running.poll();
+			try {
+				completed += awaitResult(batch::setHandler);
+			} catch (Throwable failure) {
+				if (failure != cause) {
+					cause.addSuppressed(failure);
+				}
+			}
+		}
+		LOGGER.warn("{}: Stopped after processing {} of {} submitted items", name, completed, submitted);
+	}
+
+	@Suspendable
+	private void awaitOldest() {
+		Future<Integer> oldest = running.poll();
+		int size;
+		try {
+			size = awaitResult(oldest::setHandler);
+		} catch (RuntimeException failure) {
+			drain(failure);
+			throw failure;
+		}
+		completed += size;
+		LOGGER.info("{}: Processed {} of {} submitted items", name, completed, submitted);
+	}
+}
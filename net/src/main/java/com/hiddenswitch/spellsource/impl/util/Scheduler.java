@@ -10,4 +10,18 @@ public interface Scheduler {
 
 	@Suspendable
 	boolean cancelTimer(TimerId id);
+
+	/**
+	 * Restarts a timer that has not fired yet, so that it fires {@code delay} milliseconds from now with its original
+	 * handler.
+	 *
+	 * @param id    The timer.
+	 * @param delay The new delay in milliseconds.
+	 * @return {@code true} if the timer was rescheduled, or {@code false} if the timer already fired, was cancelled or
+	 * 		this scheduler does not support rescheduling. Callers should set a new timer in that case.
+	 */
+	@Suspendable
+	default boolean rescheduleTimer(TimerId id, long delay) {
+		return false;
+	}
 }
@@ -5,6 +5,7 @@ import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.fibers.Suspendable;
 import co.paralleluniverse.strands.Strand;
 import co.paralleluniverse.strands.SuspendableAction1;
+import co.paralleluniverse.strands.SuspendableRunnable;
 import co.paralleluniverse.strands.concurrent.ReentrantLock;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
@@ -19,7 +20,6 @@ import com.hiddenswitch.spellsource.impl.TimerId;
 import com.hiddenswitch.spellsource.impl.UserId;
 import com.hiddenswitch.spellsource.impl.server.BotsServiceBehaviour;
 import com.hiddenswitch.spellsource.impl.server.Configuration;
-import com.hiddenswitch.spellsource.impl.server.VertxScheduler;
 import com.hiddenswitch.spellsource.models.GetCollectionResponse;
 import com.hiddenswitch.spellsource.models.LogicGetDeckRequest;
 import io.opentracing.Scope;
@@ -38,11 +38,14 @@ import io.vertx.core.eventbus.MessageProducer;
 import io.vertx.core.impl.ConcurrentHashSet;
 import io.vertx.ext.sync.Sync;
 import net.demilich.metastone.game.GameContext;
+import net.demilich.metastone.game.GameContextSnapshot;
 import net.demilich.metastone.game.Player;
 import net.demilich.metastone.game.actions.GameAction;
 import net.demilich.metastone.game.behaviour.Behaviour;
+import net.demilich.metastone.game.behaviour.UtilityBehaviour;
 import net.demilich.metastone.game.cards.Attribute;
 import net.demilich.metastone.game.cards.Card;
+import net.demilich.metastone.game.cards.CardArrayList;
 import net.demilich.metastone.game.decks.DeckFormat;
 import net.demilich.metastone.game.decks.GameDeck;
 import net.demilich.metastone.game.entities.Entity;
@@ -51,20 +54,28 @@ import net.demilich.metastone.game.events.GameEvent;
 import net.demilich.metastone.game.events.TouchingNotification;
 import net.demilich.metastone.game.events.TriggerFired;
 import net.demilich.metastone.game.logic.GameLogic;
+import net.demilich.metastone.game.logic.Trace;
 import net.demilich.metastone.game.logic.TurnState;
 import net.demilich.metastone.game.spells.desc.SpellArg;
 import net.demilich.metastone.game.spells.desc.SpellDesc;
 import net.demilich.metastone.game.spells.trigger.Enchantment;
 import net.demilich.metastone.game.spells.trigger.Trigger;
+import net.demilich.metastone.game.spells.trigger.TriggerManager;
 import net.demilich.metastone.game.targeting.Zones;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
@@ -82,6 +93,13 @@ import static java.util.stream.Collectors.toList;
  * <p>
  * This class also automatically adds support for persistence effects written on cards using a {@link
  * PersistenceTrigger}.
+ * <p>
+ * When {@link Games#getDefaultHibernationDelay()} is set, a game whose human player has not chosen an action in that
+ * time <b>hibernates</b>: its fiber is stopped, its state is stored as a compressed {@link GameContextSnapshot} (in
+ * memory or in {@link Games#getHibernationDirectory()}) and its entities are released. The pending action request is
+ * kept, so the client notices nothing. When the player answers, the turn timer elapses, the player reconnects or the
+ * game is ended, the state is restored into this instance and the turn continues as though the fiber had been waiting
+ * all along.
  */
 public class ServerGameContext extends GameContext implements Server {
 	private static Logger LOGGER = LoggerFactory.getLogger(ServerGameContext.class);
@@ -106,6 +124,13 @@ public class ServerGameContext extends GameContext implements Server {
 	private Long timerStartTimeMillis;
 	private Long timerLengthMillis;
 	private boolean didExpire;
+	private transient TimerId hibernationTimerId;
+	private transient boolean awaitingTurnAction;
+	private transient boolean suspending;
+	private transient boolean hibernated;
+	private transient GameContextSnapshot hibernatedSnapshot;
+	private transient String hibernatedPath;
+	private final transient Set<GameplayRequest> hibernatedRequests = new HashSet<>();
 
 	/**
 	 * {@inheritDoc}
@@ -132,6 +157,10 @@ public class ServerGameContext extends GameContext implements Server {
 
 		this.gameId = gameId;
 		this.scheduler = scheduler;
+		// Cancel all of this game's timers in bulk when it is disposed
+		if (scheduler instanceof Closeable) {
+			closeables.add((Closeable) scheduler);
+		}
 		// Save the information used to create this game
 		this.playerConfigurations.addAll(playerConfigurations);
 
@@ -206,9 +235,10 @@ public class ServerGameContext extends GameContext implements Server {
 
 				// Create a client that handles game events and action/mulligan requests
 				UnityClientBehaviour client = new UnityClientBehaviour(this,
-						new VertxScheduler(Vertx.currentContext().owner()),
+						scheduler,
 						consumer.bodyStream(),
-						producer,
+						// Writes directly to the socket when the user is connected to this node
+						new GameMessageWriteStream(Vertx.currentContext().owner(), userId.toString(), producer),
 						userId,
 						configuration.getPlayerId(),
 						configuration.getNoActivityTimeout());
@@ -534,19 +564,14 @@ public class ServerGameContext extends GameContext implements Server {
 	public void play(boolean fork) {
 		isRunning = true;
 		if (fork) {
-			// We're going to build this fiber with a huge stack
 			if (getFiber() != null) {
 				throw new UnsupportedOperationException("Cannot play with a fork twice!");
 			}
-			setFiber(new Fiber<>(String.format("ServerGameContext/fiber[%s]", getGameId()), Sync.getContextScheduler(), 512, () -> {
-				Tracer tracer = GlobalTracer.get();
-				Span span = tracer.buildSpan("ServerGameContext/play")
-						.asChildOf(getSpanContext())
-						.start();
-				Scope scope = tracer.activateSpan(span);
+			setFiber(newGameFiber("ServerGameContext/play", () -> {
 				// Send the trace information to the clients since the game is now running
 				BinaryCarrier carrier = new BinaryCarrier();
-				tracer.inject(span.context(), Format.Builtin.BINARY, carrier);
+				Tracer tracer = GlobalTracer.get();
+				tracer.inject(tracer.activeSpan().context(), Format.Builtin.BINARY, carrier);
 
 				getPlayerConfigurations().forEach(c -> Connection.writeStream(c.getUserId())
 						.write(new Envelope()
@@ -554,37 +579,8 @@ public class ServerGameContext extends GameContext implements Server {
 										.spanContext(new com.hiddenswitch.spellsource.client.models.SpanContext()
 												.data(carrier.getBytes())))).end());
 
-				try {
-					LOGGER.debug("play {}: Starting forked game", gameId);
-					super.play(false);
-				} catch (Throwable throwable) {
-					Throwable rootCause = Throwables.getRootCause(throwable);
-					if (Strand.currentStrand().isInterrupted() || rootCause instanceof InterruptedException) {
-						// Generally only an interrupt from endGame() is allowed to gracefully interrupt this daemon.
-						span.log(ImmutableMap.of(
-								Fields.EVENT, "interrupt",
-								"graceful", true
-						));
-						// The game is already ended whenever the fiber is interrupted, there's no other place that the external user
-						// is allowed to interrupt the fiber. So we don't need to call endGame here.
-					} else {
-						Tracing.error(throwable);
-						try {
-							endGame();
-						} catch (Throwable endGameError) {
-							Tracing.error(endGameError);
-						}
-					}
-
-				} finally {
-					// Regardless of what happens that causes an event loop exception, make certain the user is released from their game
-					span.finish();
-					scope.close();
-					UserId[] userIds = getPlayerConfigurations().stream().map(Configuration::getUserId).toArray(UserId[]::new);
-					Vertx.currentContext().runOnContext((ctx) -> ServerGameContext.releaseUsers(gameId, userIds));
-					dispose();
-				}
-				return null;
+				LOGGER.debug("play {}: Starting forked game", gameId);
+				super.play(false);
 			}));
 
 			getFiber().start();
@@ -594,6 +590,62 @@ public class ServerGameContext extends GameContext implements Server {
 		}
 	}
 
+	/**
+	 * Creates the fiber that runs this game's loop.
+	 * <p>
+	 * Only an interrupt from {@link #endGame()} or {@link #interruptTurn()} gracefully stops the fiber. Any other error
+	 * ends the game. Unless the turn was interrupted, the users are released from the game and this instance is disposed
+	 * when the fiber terminates.
+	 *
+	 * @param operationName The name of the span that traces the fiber.
+	 * @param body          The game loop, typically {@link GameContext#play()}.
+	 * @return A fiber that has not been started.
+	 */
+	private Fiber<Void> newGameFiber(String operationName, SuspendableRunnable body) {
+		// We're going to build this fiber with a huge stack
+		return new Fiber<>(String.format("ServerGameContext/fiber[%s]", getGameId()), Sync.getContextScheduler(), 512, () -> {
+			Tracer tracer = GlobalTracer.get();
+			Span span = tracer.buildSpan(operationName)
+					.asChildOf(getSpanContext())
+					.start();
+			Scope scope = tracer.activateSpan(span);
+			try {
+				body.run();
+			} catch (Throwable throwable) {
+				Throwable rootCause = Throwables.getRootCause(throwable);
+				if (Strand.currentStrand().isInterrupted() || rootCause instanceof InterruptedException) {
+					// Generally only an interrupt from endGame() is allowed to gracefully interrupt this daemon.
+					span.log(ImmutableMap.of(
+							Fields.EVENT, "interrupt",
+							"graceful", true,
+							"suspending", suspending
+					));
+					// The game is already ended whenever the fiber is interrupted, there's no other place that the external user
+					// is allowed to interrupt the fiber. So we don't need to call endGame here.
+				} else {
+					Tracing.error(throwable);
+					try {
+						endGame();
+					} catch (Throwable endGameError) {
+						Tracing.error(endGameError);
+					}
+				}
+
+			} finally {
+				span.finish();
+				scope.close();
+				// A suspended game will continue in another fiber or on another node
+				if (!suspending) {
+					// Regardless of what happens that causes an event loop exception, make certain the user is released from their game
+					UserId[] userIds = getPlayerConfigurations().stream().map(Configuration::getUserId).toArray(UserId[]::new);
+					Vertx.currentContext().runOnContext((ctx) -> ServerGameContext.releaseUsers(gameId, userIds));
+					dispose();
+				}
+			}
+			return null;
+		});
+	}
+
 	@Override
 	@Suspendable
 	public void startTurn(int playerId) {
@@ -612,27 +664,7 @@ public class ServerGameContext extends GameContext implements Server {
 			}
 
 			if (getBehaviours().get(getNonActivePlayerId()).isHuman()) {
-				timerLengthMillis = (long) getTurnTimeForPlayer(getActivePlayerId());
-				timerStartTimeMillis = System.currentTimeMillis();
-
-				if (turnTimerId == null) {
-					turnTimerId = scheduler.setTimer(timerLengthMillis, suspendableHandler(ignored -> {
-						// Since executing the callback may itself trigger more action requests, we'll indicate to
-						// the NetworkDelegate (i.e., this ServerGameContext instance) that further
-						// networkRequestActions should be executed immediately.
-						HasElapsableTurns client = getClient(playerId);
-						if (client == null) {
-							// Simply end the turn, since there were no requests pending to begin with
-							endTurn();
-						} else {
-							client.elapseAwaitingRequests();
-						}
-					}));
-				} else {
-					LOGGER.warn("startTurn {}: Timer set twice!", getGameId());
-				}
-
-
+				setTurnTimer(playerId, getTurnTimeForPlayer(getActivePlayerId()));
 			} else {
 				timerLengthMillis = null;
 				timerStartTimeMillis = null;
@@ -648,6 +680,28 @@ public class ServerGameContext extends GameContext implements Server {
 		}
 	}
 
+	private void setTurnTimer(int playerId, long lengthMillis) {
+		timerLengthMillis = lengthMillis;
+		timerStartTimeMillis = System.currentTimeMillis();
+
+		if (turnTimerId == null) {
+			turnTimerId = scheduler.setTimer(timerLengthMillis, suspendableHandler(ignored -> {
+				// Since executing the callback may itself trigger more action requests, we'll indicate to
+				// the NetworkDelegate (i.e., this ServerGameContext instance) that further
+				// networkRequestActions should be executed immediately.
+				HasElapsableTurns client = getClient(playerId);
+				if (client == null) {
+					// Simply end the turn, since there were no requests pending to begin with
+					endTurn();
+				} else {
+					client.elapseAwaitingRequests();
+				}
+			}));
+		} else {
+			LOGGER.warn("startTurn {}: Timer set twice!", getGameId());
+		}
+	}
+
 	@Override
 	@Suspendable
 	public void endTurn() {
@@ -712,6 +766,313 @@ public class ServerGameContext extends GameContext implements Server {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Schedules this game to hibernate if the active player does not choose an action in time.
+	 */
+	@Override
+	@Suspendable
+	public boolean takeActionInTurn() {
+		scheduleHibernation();
+		awaitingTurnAction = true;
+		try {
+			return super.takeActionInTurn();
+		} finally {
+			awaitingTurnAction = false;
+		}
+	}
+
+	private void scheduleHibernation() {
+		long delay = Games.getDefaultHibernationDelay();
+		if (delay < 0L || !getActiveBehaviour().isHuman()) {
+			return;
+		}
+		if (hibernationTimerId == null || !scheduler.rescheduleTimer(hibernationTimerId, delay)) {
+			hibernationTimerId = scheduler.setTimer(delay, suspendableHandler(this::hibernate));
+		}
+	}
+
+	private Behaviour getActiveBehaviour() {
+		return getBehaviours().get(getActivePlayerId());
+	}
+
+	/**
+	 * Stops the fiber running this game while it waits for the active player's turn action, so that the turn can be
+	 * continued later with {@link #resumeTurn()}.
+	 * <p>
+	 * The fiber is interrupted in {@link Behaviour#requestAction(GameContext, Player, List)}. Since {@link
+	 * #takeActionInTurn()} is reentered from the start when the game continues, the action count of the turn is rolled
+	 * back to its value before the request.
+	 *
+	 * @return {@code true} if the fiber was stopped, or {@code false} if the game was not waiting for a turn action.
+	 */
+	@Suspendable
+	private boolean interruptTurn() throws InterruptedException {
+		if (!isRunning() || hibernated || !awaitingTurnAction) {
+			return false;
+		}
+		suspending = true;
+		try {
+			Fiber<Void> fiber = getFiber();
+			fiber.interrupt();
+			try {
+				fiber.join();
+			} catch (ExecutionException ignored) {
+				// The fiber handles its own errors
+			}
+		} finally {
+			suspending = false;
+		}
+		setFiber(null);
+		setActionsThisTurn(getActionsThisTurn() - 1);
+		return true;
+	}
+
+	/**
+	 * Hibernates this game if it is still waiting on the same human player's action.
+	 * <p>
+	 * The player's requests are locked while the game is stopped and its state captured, so that an action the player
+	 * chooses in the meantime is either performed before the game hibernates or wakes it afterwards. If the state cannot
+	 * be stored, the turn continues in a new fiber instead.
+	 *
+	 * @param timerId The ignored timer ID.
+	 */
+	@Suspendable
+	private void hibernate(long timerId) {
+		lock.lock();
+		try {
+			hibernationTimerId = null;
+			Behaviour behaviour = getActiveBehaviour();
+			if (!awaitingTurnAction || !(behaviour instanceof UnityClientBehaviour)) {
+				return;
+			}
+			UnityClientBehaviour client = (UnityClientBehaviour) behaviour;
+			ReentrantLock requestsLock = client.getRequestsLock();
+			requestsLock.lock();
+			Span span = GlobalTracer.get().buildSpan("ServerGameContext/hibernate")
+					.asChildOf(getSpanContext())
+					.start();
+			try {
+				List<GameplayRequest> requests = client.getRequests().stream()
+						.filter(request -> request.getType() == GameplayRequestType.ACTION)
+						.collect(toList());
+				if (requests.isEmpty()) {
+					// The action was received and is being performed
+					return;
+				}
+
+				if (!interruptTurn()) {
+					return;
+				}
+
+				GameContextSnapshot snapshot;
+				try {
+					snapshot = GameContextSnapshot.of(this);
+					span.setTag("size", snapshot.size());
+					String directory = Games.getHibernationDirectory();
+					if (directory == null) {
+						hibernatedSnapshot = snapshot;
+					} else {
+						// The snapshot is small, and was just serialized on this thread anyway
+						Path path = Paths.get(directory, getGameId() + ".snapshot");
+						Files.write(path, snapshot.getBytes());
+						hibernatedPath = path.toString();
+					}
+				} catch (Throwable any) {
+					// The entities were not released yet, so the game can continue as though it never tried to hibernate
+					LOGGER.error("hibernate {}: Could not store the game's state, continuing the turn instead", getGameId(), any);
+					Tracing.error(any, span, false);
+					hibernatedSnapshot = null;
+					hibernatedPath = null;
+					// The turn will request an action again
+					client.getRequests().removeAll(requests);
+					setFiber(newGameFiber("ServerGameContext/hibernate", this::resumeTurn));
+					getFiber().start();
+					return;
+				}
+
+				// Release the entities
+				setPlayer1(new Player());
+				setPlayer2(new Player());
+				setTempCards(new CardArrayList());
+				setTriggerManager(new TriggerManager());
+				setEnvironment(new HashMap<>());
+				setTrace(new Trace());
+
+				// Answering the request that is still pending wakes the game
+				for (GameplayRequest request : requests) {
+					request.setCallback(suspendableHandler(this::wake));
+					hibernatedRequests.add(request);
+				}
+				hibernated = true;
+				LOGGER.debug("hibernate {}: Hibernated with a snapshot of {} bytes", getGameId(), snapshot.size());
+			} catch (Throwable any) {
+				Tracing.error(any, span, true);
+				// The game cannot continue without its fiber
+				hibernated = false;
+				endGame();
+			} finally {
+				span.finish();
+				requestsLock.unlock();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops this game so that it can be continued by another instance, typically on another node, with {@link
+	 * #playFrom(GameContextSnapshot, Long)}.
+	 * <p>
+	 * A game can only be detached while it waits for the active player's turn action. Its timers are cancelled and its
+	 * clients stop handling messages, but its users are not released from the game and its end game handlers are not
+	 * called. The clients stay registered on the event bus until the caller {@link #dispose()}s this instance, which it
+	 * should do once the game continues elsewhere, so that players' messages always have a recipient.
+	 *
+	 * @return The state of the game, or {@code null} if the game is not currently waiting for a turn action.
+	 * @throws InterruptedException if the fiber calling this method was interrupted.
+	 * @see com.hiddenswitch.spellsource.impl.ClusteredGames#migrateGameSession(com.hiddenswitch.spellsource.models.MigrateGameSessionRequest)
+	 * 		for the migration of games between nodes.
+	 */
+	@Suspendable
+	public GameContextSnapshot detach() throws InterruptedException {
+		lock.lock();
+		try {
+			if (!restoreFromHibernation() && !interruptTurn()) {
+				return null;
+			}
+			isRunning = false;
+			GameContextSnapshot snapshot = GameContextSnapshot.of(this);
+			for (TimerId timerId : new TimerId[]{turnTimerId, hibernationTimerId}) {
+				if (timerId != null) {
+					scheduler.cancelTimer(timerId);
+				}
+			}
+			turnTimerId = null;
+			hibernationTimerId = null;
+			// Also stops the clients' activity monitors, so that no player is conceded on behalf of the detached game
+			if (scheduler instanceof Closeable) {
+				Void closed = awaitResult(((Closeable) scheduler)::close);
+			}
+			for (Client client : getClients()) {
+				client.closeInboundMessages();
+			}
+			return snapshot;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Continues a game stopped by {@link #detach()} in this instance's fiber.
+	 * <p>
+	 * This instance should have been created with the same game ID and configurations as the detached one. Its clients
+	 * receive the complete game state and the pending action request again once the game continues.
+	 *
+	 * @param snapshot            The state of the detached game.
+	 * @param turnMillisRemaining The time remaining in the turn, or {@code null} if the turn was not timed.
+	 */
+	@Suspendable
+	public void playFrom(GameContextSnapshot snapshot, Long turnMillisRemaining) {
+		// Make sure the players' responses to the requests the game is about to send will arrive
+		CompositeFuture registered = awaitResult(CompositeFuture.join(new ArrayList<>(registrationsReady))::setHandler);
+		lock.lock();
+		try {
+			if (getFiber() != null) {
+				throw new UnsupportedOperationException("Cannot play with a fork twice!");
+			}
+			snapshot.restoreTo(this);
+			// The players connected to the game before it was detached, so reconnecting clients are treated as such
+			clientsReady.clear();
+			initialization.complete();
+			isRunning = true;
+			for (Client client : getClients()) {
+				client.onActivePlayer(getActivePlayer());
+			}
+			if (turnMillisRemaining != null && getBehaviours().get(getNonActivePlayerId()).isHuman()) {
+				setTurnTimer(getActivePlayerId(), turnMillisRemaining);
+			}
+			setFiber(newGameFiber("ServerGameContext/playFrom", this::resumeTurn));
+			getFiber().start();
+			LOGGER.debug("playFrom {}: Fiber started at turn {}", gameId, getTurn());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Restores a hibernated game and continues its turn in a new fiber.
+	 *
+	 * @param action The action the player chose in response to the request that was pending when the game hibernated, or
+	 *               {@code null} to request an action again.
+	 */
+	@Suspendable
+	private void wake(GameAction action) {
+		lock.lock();
+		try {
+			if (!restoreFromHibernation()) {
+				return;
+			}
+			if (action != null) {
+				setBehaviour(getActivePlayerId(), new ResumedTurnBehaviour(getActiveBehaviour(), action.getId()));
+			}
+			setFiber(newGameFiber("ServerGameContext/wake", this::resumeTurn));
+			getFiber().start();
+			LOGGER.debug("wake {}: Fiber started", gameId);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Restores the state of a hibernated game into this instance without starting its fiber.
+	 *
+	 * @return {@code true} if the game was hibernated.
+	 */
+	@Suspendable
+	private boolean restoreFromHibernation() {
+		lock.lock();
+		try {
+			if (!hibernated) {
+				return false;
+			}
+			GameContextSnapshot snapshot = hibernatedSnapshot;
+			if (snapshot == null) {
+				Path path = Paths.get(hibernatedPath);
+				try {
+					snapshot = GameContextSnapshot.fromBytes(Files.readAllBytes(path));
+					Files.deleteIfExists(path);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			snapshot.restoreTo(this);
+			hibernated = false;
+			hibernatedSnapshot = null;
+			hibernatedPath = null;
+			// Requests that were not answered will be made again
+			for (Client client : getClients()) {
+				if (client instanceof UnityClientBehaviour) {
+					((UnityClientBehaviour) client).getRequests().removeAll(hibernatedRequests);
+				}
+			}
+			hibernatedRequests.clear();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Indicates whether this game's state is currently stored in a {@link GameContextSnapshot} instead of in memory.
+	 *
+	 * @return {@code true} if the game is hibernated.
+	 */
+	public boolean isHibernated() {
+		return hibernated;
+	}
+
 	private int getTurnTimeForPlayer(int activePlayerId) {
 		return getLogic().getTurnTimeMillis(activePlayerId);
 	}
@@ -778,6 +1139,8 @@ public class ServerGameContext extends GameContext implements Server {
 	@Override
 	@Suspendable
 	public void onWillPerformGameAction(int playerId, GameAction action) {
+		// Requests made while performing an action, like discovers, cannot be resumed after hibernating
+		awaitingTurnAction = false;
 		super.onWillPerformGameAction(playerId, action);
 		GameState gameStateCopy = getGameStateCopy();
 		for (Client client : getClients()) {
@@ -790,7 +1153,7 @@ public class ServerGameContext extends GameContext implements Server {
 	public void concede(int playerId) {
 		lock.lock();
 		try {
-			// TODO: Make sure we don't have to do anything special here
+			restoreFromHibernation();
 			super.concede(playerId);
 		} finally {
 			lock.unlock();
@@ -820,6 +1183,12 @@ public class ServerGameContext extends GameContext implements Server {
 	protected void endGame() {
 		lock.lock();
 		try {
+			// The game must be over in its actual state
+			restoreFromHibernation();
+			if (hibernationTimerId != null) {
+				scheduler.cancelTimer(hibernationTimerId);
+				hibernationTimerId = null;
+			}
 			isRunning = false;
 			// Close the inbound messages from the client, they should be ignored by these client instances
 			// This way, a user doesn't accidentally trigger some other kind of processing that's only going to be interrupted
@@ -920,6 +1289,14 @@ public class ServerGameContext extends GameContext implements Server {
 	@Override
 	@Suspendable
 	public void dispose() {
+		if (hibernatedPath != null) {
+			try {
+				Files.deleteIfExists(Paths.get(hibernatedPath));
+			} catch (IOException e) {
+				LOGGER.warn("dispose {}: Could not delete hibernated game {}", getGameId(), hibernatedPath);
+			}
+			hibernatedPath = null;
+		}
 		Iterator<Closeable> iter = closeables.iterator();
 		while (iter.hasNext()) {
 			try {
@@ -1030,6 +1407,8 @@ public class ServerGameContext extends GameContext implements Server {
 	public void onPlayerReconnected(Client client) {
 		try {
 			lock.lock();
+			// The client will need the actual game state, and a new request for its action
+			wake(null);
 			// Update the client
 			ListIterator<Client> listIterator = getClients().listIterator();
 			while (listIterator.hasNext()) {
@@ -1074,6 +1453,9 @@ public class ServerGameContext extends GameContext implements Server {
 	}
 
 	public boolean isRunning() {
+		if (hibernated) {
+			return true;
+		}
 		if (isRunning) {
 			return !getFiber().isInterrupted() && !getFiber().isTerminated();
 		}
@@ -1083,6 +1465,7 @@ public class ServerGameContext extends GameContext implements Server {
 	@Suspendable
 	public void loseBothPlayers() {
 		try {
+			restoreFromHibernation();
 			getLogic().loseBothPlayers();
 			endGame();
 		} finally {
@@ -1124,4 +1507,53 @@ public class ServerGameContext extends GameContext implements Server {
 		this.spanContext = spanContext;
 		return this;
 	}
+
+	/**
+	 * Returns the action a player chose while the game was hibernated the next time the game requests an action, then
+	 * puts the player's actual behaviour back.
+	 */
+	private static class ResumedTurnBehaviour extends UtilityBehaviour {
+		private final Behaviour behaviour;
+		private final int actionId;
+
+		private ResumedTurnBehaviour(Behaviour behaviour, int actionId) {
+			this.behaviour = behaviour;
+			this.actionId = actionId;
+		}
+
+		@Override
+		public String getName() {
+			return behaviour.getName();
+		}
+
+		@Override
+		public boolean isHuman() {
+			return behaviour.isHuman();
+		}
+
+		@Override
+		@Suspendable
+		public List<Card> mulligan(GameContext context, Player player, List<Card> cards) {
+			return behaviour.mulligan(context, player, cards);
+		}
+
+		@Override
+		@Suspendable
+		public void onGameOver(GameContext context, int playerId, int winningPlayerId) {
+			behaviour.onGameOver(context, playerId, winningPlayerId);
+		}
+
+		@Override
+		@Suspendable
+		public GameAction requestAction(GameContext context, Player player, List<GameAction> validActions) {
+			context.setBehaviour(player.getId(), behaviour);
+			// The restored game computes the same valid actions as the one that hibernated
+			for (GameAction action : validActions) {
+				if (action.getId() == actionId) {
+					return action;
+				}
+			}
+			return behaviour.requestAction(context, player, validActions);
+		}
+	}
 }
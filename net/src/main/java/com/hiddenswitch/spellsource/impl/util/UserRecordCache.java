@@ -0,0 +1,184 @@
+package com.hiddenswitch.spellsource.impl.util;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.hiddenswitch.spellsource.Accounts;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hiddenswitch.spellsource.util.Mongo.mongo;
+import static com.hiddenswitch.spellsource.util.QuickJson.fromJson;
+
+/**
+ * A node-local, read-through cache of the documents in {@link Accounts#USERS}.
+ * <p>
+ * Every code path that modifies a user document must call {@link #invalidate(Vertx, Collection)} with the affected
+ * user IDs afterwards. Invalidations are published to every node in the cluster on {@link #INVALIDATE_ADDRESS}. As a
+ * safety net for writes that are not invalidated, entries also expire {@link #EXPIRE_AFTER_WRITE_SECONDS} after they
+ * were loaded. The hit rate is logged every {@link #STATS_INTERVAL_MILLIS} and available from {@link #getHitRate()}.
+ * <p>
+ * The cache stores the documents rather than {@link UserRecord} instances, so every {@link #get(String)} returns a new
+ * record that callers may modify freely.
+ */
+public class UserRecordCache {
+	public static final String INVALIDATE_ADDRESS = "Accounts/users/invalidate";
+	public static final long EXPIRE_AFTER_WRITE_SECONDS = 60L;
+	public static final long MAXIMUM_SIZE = 10000L;
+	public static final long STATS_INTERVAL_MILLIS = 300000L;
+	private static final Logger LOGGER = LoggerFactory.getLogger(UserRecordCache.class);
+	private static final Map<Vertx, UserRecordCache> CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private final Cache<String, JsonObject> documents = CacheBuilder.newBuilder()
+			.maximumSize(MAXIMUM_SIZE)
+			.expireAfterWrite(EXPIRE_AFTER_WRITE_SECONDS, TimeUnit.SECONDS)
+			.recordStats()
+			.build();
+	/**
+	 * Incremented by every invalidation, so that a load that raced with a write does not cache the old document.
+	 */
+	private final AtomicLong invalidations = new AtomicLong();
+
+	UserRecordCache(Vertx vertx) {
+		vertx.eventBus().<JsonArray>consumer(INVALIDATE_ADDRESS, message -> evict(message.body()));
+		vertx.setPeriodic(STATS_INTERVAL_MILLIS, ignored -> logStats());
+	}
+
+	/**
+	 * Gets the user record cache for the given Vert.x instance, creating it if necessary.
+	 *
+	 * @param vertx The instance.
+	 * @return The cache.
+	 */
+	public static UserRecordCache get(Vertx vertx) {
+		synchronized (CACHES) {
+			return CACHES.computeIfAbsent(vertx, UserRecordCache::new);
+		}
+	}
+
+	/**
+	 * Gets the user record cache for the current Vert.x instance.
+	 *
+	 * @return The cache.
+	 */
+	public static UserRecordCache current() {
+		return get(Vertx.currentContext().owner());
+	}
+
+	/**
+	 * Evicts the given users on every node in the cluster. Call this after modifying user documents.
+	 *
+	 * @param vertx   The Vert.x instance the modification was made on.
+	 * @param userIds The IDs of the modified users.
+	 */
+	public static void invalidate(Vertx vertx, Collection<String> userIds) {
+		if (userIds.isEmpty()) {
+			return;
+		}
+		JsonArray ids = new JsonArray();
+		userIds.forEach(ids::add);
+		// Evict here immediately, since the published message arrives later
+		get(vertx).evict(ids);
+		vertx.eventBus().publish(INVALIDATE_ADDRESS, ids);
+	}
+
+	/**
+	 * Evicts the given users on every node in the cluster, using the current Vert.x instance.
+	 *
+	 * @param userIds The IDs of the modified users.
+	 * @see #invalidate(Vertx, Collection)
+	 */
+	public static void invalidate(String... userIds) {
+		invalidate(Vertx.currentContext().owner(), Arrays.asList(userIds));
+	}
+
+	/**
+	 * Gets a user, loading it from the database if it is not cached.
+	 *
+	 * @param userId The user's ID.
+	 * @return A new record, or {@code null} if the user does not exist.
+	 */
+	@Suspendable
+	@Nullable
+	public UserRecord get(String userId) {
+		if (userId == null) {
+			return null;
+		}
+		JsonObject document = documents.getIfPresent(userId);
+		if (document == null) {
+			long generation = invalidations.get();
+			document = mongo().findOneById(Accounts.USERS, userId);
+			if (document == null) {
+				return null;
+			}
+			if (generation == invalidations.get()) {
+				documents.put(userId, document);
+			}
+		}
+		return fromJson(document, UserRecord.class);
+	}
+
+	/**
+	 * Stores a document that was just written to the database, so that the next read does not have to load it.
+	 *
+	 * @param record The record as it was inserted.
+	 */
+	public void put(UserRecord record) {
+		documents.put(record.getId(), JsonObject.mapFrom(record));
+	}
+
+	private void evict(JsonArray userIds) {
+		invalidations.incrementAndGet();
+		for (Object userId : userIds) {
+			documents.invalidate(userId);
+		}
+	}
+
+	/**
+	 * Removes every entry from this node's cache.
+	 */
+	public void clear() {
+		invalidations.incrementAndGet();
+		documents.invalidateAll();
+	}
+
+	/**
+	 * The statistics of this node's cache, including its hit rate.
+	 *
+	 * @return The statistics since the cache was created.
+	 */
+	public CacheStats getStats() {
+		return documents.stats();
+	}
+
+	/**
+	 * The fraction of {@link #get(String)} calls that did not have to load the user from the database.
+	 *
+	 * @return The hit rate between {@code 0.0} and {@code 1.0}, or {@code 1.0} if there have been no requests.
+	 */
+	public double getHitRate() {
+		return documents.stats().hitRate();
+	}
+
+	/**
+	 * Logs the statistics of this cache.
+	 */
+	public void logStats() {
+		CacheStats stats = getStats();
+		LOGGER.info("logStats: hitRate={} hits={} misses={} size={} evictions={}",
+				stats.hitRate(), stats.hitCount(), stats.missCount(), documents.size(), stats.evictionCount());
+	}
+}
@@ -0,0 +1,148 @@
+package com.hiddenswitch.spellsource.models;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+/**
+ * The capacity of a {@link com.hiddenswitch.spellsource.Games} deployment, as published into the cluster by the
+ * deployment itself.
+ * <p>
+ * The CPU and heap measurements describe the whole node (JVM) hosting the deployment, while the number of games counts
+ * only the games hosted by this deployment.
+ *
+ * @see com.hiddenswitch.spellsource.Games#getDeployments() for the map these are stored in.
+ */
+public final class DeploymentLoad implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private String nodeId;
+	private int games;
+	private int processors;
+	private double cpuLoad;
+	private double heapLoad;
+	private long updatedAt;
+
+	public DeploymentLoad() {
+	}
+
+	/**
+	 * Measures the load of this node right now.
+	 *
+	 * @param nodeId The node hosting the deployment.
+	 * @param games  The number of games the deployment is hosting.
+	 * @return The current load.
+	 */
+	public static DeploymentLoad measure(String nodeId, int games) {
+		Runtime runtime = Runtime.getRuntime();
+		// The load average is negative on platforms that don't support it
+		double loadAverage = Math.max(ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage(), 0d);
+		// Prefer the heap usage as of the last collection, because the instantaneous usage includes garbage
+		long heapUsed = 0L;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (pool.getType() == MemoryType.HEAP && usage != null) {
+				heapUsed += usage.getUsed();
+			}
+		}
+		if (heapUsed == 0L) {
+			heapUsed = runtime.totalMemory() - runtime.freeMemory();
+		}
+
+		return new DeploymentLoad()
+				.setNodeId(nodeId)
+				.setGames(games)
+				.setProcessors(runtime.availableProcessors())
+				.setCpuLoad(loadAverage / runtime.availableProcessors())
+				.setHeapLoad((double) heapUsed / runtime.maxMemory())
+				.setUpdatedAt(System.currentTimeMillis());
+	}
+
+	/**
+	 * The ID of the node hosting the deployment.
+	 *
+	 * @return A node ID.
+	 * @see com.hiddenswitch.spellsource.Connection#nodeId(io.vertx.core.Vertx)
+	 */
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	public DeploymentLoad setNodeId(String nodeId) {
+		this.nodeId = nodeId;
+		return this;
+	}
+
+	/**
+	 * The number of games hosted by this deployment.
+	 *
+	 * @return The number of games.
+	 */
+	public int getGames() {
+		return games;
+	}
+
+	public DeploymentLoad setGames(int games) {
+		this.games = games;
+		return this;
+	}
+
+	/**
+	 * The number of processors available to the node.
+	 *
+	 * @return The number of processors.
+	 */
+	public int getProcessors() {
+		return processors;
+	}
+
+	public DeploymentLoad setProcessors(int processors) {
+		this.processors = processors;
+		return this;
+	}
+
+	/**
+	 * The system load average of the node divided by its number of processors. {@code 1.0} indicates every processor
+	 * is busy.
+	 *
+	 * @return The load.
+	 */
+	public double getCpuLoad() {
+		return cpuLoad;
+	}
+
+	public DeploymentLoad setCpuLoad(double cpuLoad) {
+		this.cpuLoad = cpuLoad;
+		return this;
+	}
+
+	/**
+	 * The fraction of the node's maximum heap that is in use.
+	 *
+	 * @return The heap load between {@code 0.0} and {@code 1.0}.
+	 */
+	public double getHeapLoad() {
+		return heapLoad;
+	}
+
+	public DeploymentLoad setHeapLoad(double heapLoad) {
+		this.heapLoad = heapLoad;
+		return this;
+	}
+
+	/**
+	 * When this load was measured, in milliseconds since the epoch.
+	 *
+	 * @return A timestamp.
+	 */
+	public long getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public DeploymentLoad setUpdatedAt(long updatedAt) {
+		this.updatedAt = updatedAt;
+		return this;
+	}
+}
@@ -2,6 +2,7 @@ package com.hiddenswitch.spellsource.models;
 
 import com.hiddenswitch.spellsource.client.models.Entity;
 import com.hiddenswitch.spellsource.client.models.EntityState;
+import com.hiddenswitch.spellsource.impl.util.DeckCardsCache;
 import com.hiddenswitch.spellsource.impl.util.DeckType;
 import com.hiddenswitch.spellsource.Games;
 import com.hiddenswitch.spellsource.Logic;
@@ -69,7 +70,26 @@ public final class GetCollectionResponse implements Serializable {
 				.withName(name);
 	}
 
+	/**
+	 * Creates a deck for a game from this deck collection.
+	 *
+	 * @param userId The user who will play the deck.
+	 * @return A deck whose cards have new {@link net.demilich.metastone.game.cards.Attribute#ENTITY_INSTANCE_ID} values.
+	 * @see DeckCardsCache#get(String, String) to get a deck for a game without reading its collection.
+	 */
 	public GameDeck asDeck(String userId) {
+		return DeckCardsCache.instantiate(asDeckPrototype(userId));
+	}
+
+	/**
+	 * Creates a deck from this deck collection whose cards share their descriptions with the card catalogue and do not
+	 * have instance IDs yet.
+	 *
+	 * @param userId The user who will play the deck.
+	 * @return The deck.
+	 * @see DeckCardsCache#instantiate(GameDeck) to create decks for games from it.
+	 */
+	public GameDeck asDeckPrototype(String userId) {
 		GameDeck deck = new GameDeck();
 		deck.setDeckId(getCollectionId());
 		deck.setHeroClass(getHeroClass());
@@ -79,9 +99,8 @@ public final class GetCollectionResponse implements Serializable {
 			deck.setHeroCard((Card) CardCatalogue.getCardById(heroCardId));
 		}
 
-		getInventoryRecords().stream().map(cardRecord -> Logic.getDescriptionFromRecord(cardRecord, userId, getCollectionId()))
+		getInventoryRecords().stream().map(cardRecord -> Logic.getCardFromRecord(cardRecord, userId, getCollectionId()))
 				.filter(Objects::nonNull)
-				.map(CardDesc::create)
 				.forEach(deck.getCards()::addCard);
 
 		return deck;
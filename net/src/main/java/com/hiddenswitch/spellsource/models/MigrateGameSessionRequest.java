@@ -0,0 +1,43 @@
+package com.hiddenswitch.spellsource.models;
+
+import java.io.Serializable;
+
+/**
+ * Indicates a request to move a running game to another {@link com.hiddenswitch.spellsource.Games} deployment,
+ * typically on another node.
+ */
+public final class MigrateGameSessionRequest implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private String gameId;
+	private String deploymentId;
+
+	public MigrateGameSessionRequest() {
+	}
+
+	public MigrateGameSessionRequest(String gameId, String deploymentId) {
+		setGameId(gameId);
+		setDeploymentId(deploymentId);
+	}
+
+	public String getGameId() {
+		return gameId;
+	}
+
+	public void setGameId(String gameId) {
+		this.gameId = gameId;
+	}
+
+	/**
+	 * The deployment that should host the game.
+	 *
+	 * @return A deployment ID.
+	 */
+	public String getDeploymentId() {
+		return deploymentId;
+	}
+
+	public void setDeploymentId(String deploymentId) {
+		this.deploymentId = deploymentId;
+	}
+}
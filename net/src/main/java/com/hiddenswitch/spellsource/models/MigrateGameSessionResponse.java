@@ -0,0 +1,32 @@
+package com.hiddenswitch.spellsource.models;
+
+import java.io.Serializable;
+
+/**
+ * Indicates where the game in a {@link MigrateGameSessionRequest} is now hosted.
+ */
+public final class MigrateGameSessionResponse implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private String deploymentId;
+
+	public MigrateGameSessionResponse() {
+	}
+
+	public MigrateGameSessionResponse(String deploymentId) {
+		this.deploymentId = deploymentId;
+	}
+
+	/**
+	 * The deployment now hosting the game. This is the original deployment if the game could not be moved.
+	 *
+	 * @return A deployment ID.
+	 */
+	public String getDeploymentId() {
+		return deploymentId;
+	}
+
+	public void setDeploymentId(String deploymentId) {
+		this.deploymentId = deploymentId;
+	}
+}
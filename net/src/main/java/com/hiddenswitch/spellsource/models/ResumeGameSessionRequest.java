@@ -0,0 +1,69 @@
+package com.hiddenswitch.spellsource.models;
+
+import com.hiddenswitch.spellsource.impl.GameId;
+import com.hiddenswitch.spellsource.impl.server.Configuration;
+import net.demilich.metastone.game.GameContextSnapshot;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Indicates a request to continue a game that was detached from another deployment.
+ *
+ * @see MigrateGameSessionRequest for the request that creates these.
+ */
+public final class ResumeGameSessionRequest implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private GameId gameId;
+	private List<Configuration> configurations = new ArrayList<>();
+	private GameContextSnapshot snapshot;
+	private Long turnMillisRemaining;
+
+	public GameId getGameId() {
+		return gameId;
+	}
+
+	public ResumeGameSessionRequest setGameId(GameId gameId) {
+		this.gameId = gameId;
+		return this;
+	}
+
+	/**
+	 * The configurations the game was originally created with.
+	 *
+	 * @return The configurations.
+	 */
+	public List<Configuration> getConfigurations() {
+		return configurations;
+	}
+
+	public ResumeGameSessionRequest setConfigurations(List<Configuration> configurations) {
+		this.configurations = configurations;
+		return this;
+	}
+
+	public GameContextSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public ResumeGameSessionRequest setSnapshot(GameContextSnapshot snapshot) {
+		this.snapshot = snapshot;
+		return this;
+	}
+
+	/**
+	 * The time remaining in the current turn when the game was detached.
+	 *
+	 * @return A value in milliseconds, or {@code null} if the turn is not timed.
+	 */
+	public Long getTurnMillisRemaining() {
+		return turnMillisRemaining;
+	}
+
+	public ResumeGameSessionRequest setTurnMillisRemaining(Long turnMillisRemaining) {
+		this.turnMillisRemaining = turnMillisRemaining;
+		return this;
+	}
+}
@@ -0,0 +1,104 @@
+package com.hiddenswitch.spellsource.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+
+import java.util.*;
+
+import static com.hiddenswitch.spellsource.util.QuickJson.json;
+
+/**
+ * Gathers the lookups by {@code _id} started on a {@link Context} during the same event loop tick into a single
+ * {@code $in} query per collection, then completes each lookup with its document.
+ * <p>
+ * Fibers on the same context that look up documents concurrently, like the handlers of simultaneous requests, share
+ * one round trip to the database instead of making one each. The loader is confined to its context, so it needs no
+ * synchronization.
+ *
+ * @see Mongo#findOneById(String, String) for the public interface.
+ */
+final class IdLoader {
+	private static final String KEY = "Mongo/IdLoader";
+	static final int MAX_BATCH_SIZE = 256;
+
+	private final Context context;
+	private final Map<String, Map<String, List<Handler<AsyncResult<JsonObject>>>>> pending = new HashMap<>();
+
+	private IdLoader(Context context) {
+		this.context = context;
+	}
+
+	/**
+	 * Gets the loader for the given context, creating it if necessary.
+	 *
+	 * @param context The context.
+	 * @return The loader.
+	 */
+	static IdLoader get(Context context) {
+		IdLoader loader = context.get(KEY);
+		if (loader == null) {
+			loader = new IdLoader(context);
+			context.put(KEY, loader);
+		}
+		return loader;
+	}
+
+	/**
+	 * Loads the document with the given ID in the next batch for its collection.
+	 *
+	 * @param client     The client to query with.
+	 * @param collection The collection.
+	 * @param id         The document's {@code _id}.
+	 * @param handler    Receives the document, or {@code null} if it does not exist.
+	 */
+	void load(MongoClient client, String collection, String id, Handler<AsyncResult<JsonObject>> handler) {
+		Map<String, List<Handler<AsyncResult<JsonObject>>>> batch = pending.get(collection);
+		if (batch == null) {
+			batch = new LinkedHashMap<>();
+			pending.put(collection, batch);
+			// Runs after the tasks already queued on this context, i.e., once the current tick's lookups are gathered
+			context.runOnContext(v -> flush(client, collection));
+		}
+		batch.computeIfAbsent(id, k -> new ArrayList<>(1)).add(handler);
+		if (batch.size() >= MAX_BATCH_SIZE) {
+			flush(client, collection);
+		}
+	}
+
+	private void flush(MongoClient client, String collection) {
+		Map<String, List<Handler<AsyncResult<JsonObject>>>> batch = pending.remove(collection);
+		if (batch == null) {
+			return;
+		}
+
+		if (batch.size() == 1) {
+			Map.Entry<String, List<Handler<AsyncResult<JsonObject>>>> only = batch.entrySet().iterator().next();
+			client.findOne(collection, json("_id", only.getKey()), null, res -> only.getValue().forEach(handler -> handler.handle(res)));
+			return;
+		}
+
+		client.find(collection, json("_id", json("$in", new JsonArray(new ArrayList<>(batch.keySet())))), res -> {
+			if (res.failed()) {
+				batch.values().forEach(handlers -> handlers.forEach(handler -> handler.handle(Future.failedFuture(res.cause()))));
+				return;
+			}
+
+			Map<String, JsonObject> documents = new HashMap<>(res.result().size());
+			for (JsonObject document : res.result()) {
+				documents.put(String.valueOf(document.getValue("_id")), document);
+			}
+			batch.forEach((id, handlers) -> {
+				JsonObject document = documents.get(id);
+				for (int i = 0; i < handlers.size(); i++) {
+					// Each waiter gets its own copy, since callers may modify the documents they receive
+					handlers.get(i).handle(Future.succeededFuture(document == null || i == 0 ? document : document.copy()));
+				}
+			});
+		});
+	}
+}
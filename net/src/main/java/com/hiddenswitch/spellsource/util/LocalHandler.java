@@ -0,0 +1,143 @@
+package com.hiddenswitch.spellsource.util;
+
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.fibers.Suspendable;
+import com.hiddenswitch.spellsource.concurrent.SuspendableFunction;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hiddenswitch.spellsource.util.Sync.suspendableHandler;
+
+/**
+ * A service method registered with {@link Rpc#register(Object, Class)} that can be called without going across the
+ * {@link EventBus}, because the caller is using the same {@link Vertx} instance.
+ * <p>
+ * Local calls run the method in a new fiber on the context of the verticle that registered it, just like a message
+ * arriving on the event bus would, and reply on the caller's context. Failures and timeouts are reported as {@link
+ * ReplyException} like their event bus counterparts. Unlike event bus calls, the request and response are passed by
+ * reference instead of being serialized.
+ */
+final class LocalHandler {
+	private static final Map<EventBus, Map<String, List<LocalHandler>>> HANDLERS = Collections.synchronizedMap(new WeakHashMap<>());
+	private static final AtomicInteger NEXT = new AtomicInteger();
+
+	private final String address;
+	private final Context context;
+	private final FiberScheduler scheduler;
+	private final SuspendableFunction<Object, Object> method;
+
+	private LocalHandler(String address, Context context, FiberScheduler scheduler, SuspendableFunction<Object, Object> method) {
+		this.address = address;
+		this.context = context;
+		this.scheduler = scheduler;
+		this.method = method;
+	}
+
+	/**
+	 * Registers a method at the given address for callers using the same event bus. Must be called on the context that
+	 * should run the method.
+	 *
+	 * @param eb      The event bus.
+	 * @param address The address the method is also registered at on the event bus.
+	 * @param method  The method.
+	 * @return The handler, which should be removed with {@link #remove(EventBus)} when the service is unregistered.
+	 */
+	static LocalHandler add(EventBus eb, String address, SuspendableFunction<Object, Object> method) {
+		LocalHandler handler = new LocalHandler(address, Vertx.currentContext(), io.vertx.ext.sync.Sync.getContextScheduler(), method);
+		HANDLERS.computeIfAbsent(eb, k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(address, k -> new CopyOnWriteArrayList<>())
+				.add(handler);
+		return handler;
+	}
+
+	/**
+	 * Chooses a handler registered at the address, rotating between them when there is more than one.
+	 *
+	 * @param eb      The event bus of the caller.
+	 * @param address The address.
+	 * @return A handler, or {@code null} if no method is registered at this address for this event bus.
+	 */
+	@Nullable
+	static LocalHandler choose(EventBus eb, String address) {
+		Map<String, List<LocalHandler>> handlers = HANDLERS.get(eb);
+		if (handlers == null) {
+			return null;
+		}
+		List<LocalHandler> candidates = handlers.get(address);
+		if (candidates == null || candidates.isEmpty()) {
+			return null;
+		}
+		try {
+			return candidates.get(Math.floorMod(NEXT.getAndIncrement(), candidates.size()));
+		} catch (IndexOutOfBoundsException unregistered) {
+			return null;
+		}
+	}
+
+	/**
+	 * Removes this handler so that it no longer receives local calls.
+	 *
+	 * @param eb The event bus it was added with.
+	 */
+	void remove(EventBus eb) {
+		Map<String, List<LocalHandler>> handlers = HANDLERS.get(eb);
+		if (handlers != null) {
+			handlers.getOrDefault(address, Collections.emptyList()).remove(this);
+		}
+	}
+
+	/**
+	 * Calls the method with the request.
+	 *
+	 * @param request The request.
+	 * @param timeout How long to wait for the method to return before failing with {@link ReplyFailure#TIMEOUT}.
+	 * @param next    The handler for the response.
+	 */
+	@Suspendable
+	void call(Object request, long timeout, Handler<AsyncResult<Object>> next) {
+		Context caller = Vertx.currentContext();
+		AtomicBoolean replied = new AtomicBoolean();
+		Handler<AsyncResult<Object>> reply = res -> {
+			if (!replied.compareAndSet(false, true)) {
+				return;
+			}
+			if (caller == null) {
+				next.handle(res);
+			} else {
+				caller.runOnContext(v -> next.handle(res));
+			}
+		};
+
+		long timerId = context.owner().setTimer(timeout, t -> reply.handle(Future.failedFuture(
+				new ReplyException(ReplyFailure.TIMEOUT, "Timed out after waiting " + timeout + "(ms) for a reply. address: " + address))));
+		context.runOnContext(suspendableHandler(scheduler, v -> {
+			AsyncResult<Object> result;
+			try {
+				result = Future.succeededFuture(method.apply(request));
+			} catch (InvocationTargetException e) {
+				result = Future.failedFuture(new ReplyException(ReplyFailure.RECIPIENT_FAILURE, -1, BufferEventBusHandler.getMessage(e.getCause())));
+			} catch (RuntimeException | InterruptedException | IllegalAccessException e) {
+				result = Future.failedFuture(new ReplyException(ReplyFailure.RECIPIENT_FAILURE, -1, BufferEventBusHandler.getMessage(e)));
+			}
+			context.owner().cancelTimer(timerId);
+			reply.handle(result);
+		}));
+	}
+}
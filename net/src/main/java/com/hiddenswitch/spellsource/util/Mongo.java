@@ -10,9 +10,11 @@ import io.opentracing.Span;
 import io.opentracing.Tracer;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 import io.vertx.core.impl.VertxInternal;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.mongo.*;
 
@@ -251,6 +253,53 @@ public class Mongo {
 		}
 	}
 
+	/**
+	 * Finds the document with the given {@code _id}.
+	 * <p>
+	 * Lookups started on the same context during the same event loop tick are batched into a single {@code $in} query
+	 * per collection, so prefer this to {@link #findOne(String, JsonObject, JsonObject)} when looking up a whole document
+	 * by its ID.
+	 *
+	 * @param collection The collection.
+	 * @param id         The document's {@code _id}.
+	 * @return The document, or {@code null} if it does not exist.
+	 */
+	@Suspendable
+	public JsonObject findOneById(String collection, String id) {
+		Span span = getSpan("findOneById", json("collection", collection, "_id", id));
+		try {
+			Context context = Vertx.currentContext();
+			if (context == null) {
+				return awaitResult(h -> client().findOne(collection, json("_id", id), null, h));
+			}
+			return awaitResult(h -> IdLoader.get(context).load(client(), collection, id, h));
+		} catch (Throwable throwable) {
+			Tracing.error(throwable, span, true);
+			throw throwable;
+		} finally {
+			span.finish();
+		}
+	}
+
+	/**
+	 * Finds the document with the given {@code _id}, batching it with concurrent lookups.
+	 *
+	 * @param collection  The collection.
+	 * @param id          The document's {@code _id}.
+	 * @param returnClass The class to decode the document into.
+	 * @param <T>         The type of the record.
+	 * @return The record, or {@code null} if it does not exist.
+	 * @see #findOneById(String, String)
+	 */
+	@Suspendable
+	public <T> T findOneById(String collection, String id, Class<? extends T> returnClass) {
+		JsonObject obj = findOneById(collection, id);
+		if (obj == null) {
+			return null;
+		}
+		return fromJson(obj, returnClass);
+	}
+
 	@Suspendable
 	public Long count(String collection, JsonObject query) {
 		Span span = getSpan("count", json("collection", collection, "query", query));
@@ -437,6 +486,50 @@ public class Mongo {
 		}
 	}
 
+	/**
+	 * Find a single matching document in the specified collection and update it.
+	 *
+	 * @param collection    the collection
+	 * @param query         the query used to match the document
+	 * @param update        used to describe how the documents will be updated
+	 * @param findOptions   options to configure the find
+	 * @param updateOptions options to configure the update, like whether to upsert or to return the updated document
+	 * @return the document before or after the update, or {@code null} if no document matched
+	 */
+	@Suspendable
+	public JsonObject findOneAndUpdateWithOptions(String collection, JsonObject query, JsonObject update, FindOptions findOptions, UpdateOptions updateOptions) {
+		Span span = getSpan("findOneAndUpdateWithOptions", json("collection", collection, "query", query, "update", update, "updateOptions", updateOptions.toJson()));
+		try {
+			return awaitResult(h -> client().findOneAndUpdateWithOptions(collection, query, update, findOptions, updateOptions, h));
+		} catch (Throwable throwable) {
+			Tracing.error(throwable, span, true);
+			throw throwable;
+		} finally {
+			span.finish();
+		}
+	}
+
+	/**
+	 * Gets the distinct values of the specified field name.
+	 *
+	 * @param collection      the collection
+	 * @param fieldName       the field name
+	 * @param resultClassname the class name of the values, like {@code java.lang.String}
+	 * @return the distinct values
+	 */
+	@Suspendable
+	public JsonArray distinct(String collection, String fieldName, String resultClassname) {
+		Span span = getSpan("distinct", json("collection", collection, "fieldName", fieldName));
+		try {
+			return awaitResult(h -> client().distinct(collection, fieldName, resultClassname, h));
+		} catch (Throwable throwable) {
+			Tracing.error(throwable, span, true);
+			throw throwable;
+		} finally {
+			span.finish();
+		}
+	}
+
 
 	/**
 	 * Execute a bulk operation. Can insert, update, replace, and/or delete multiple documents with one request.
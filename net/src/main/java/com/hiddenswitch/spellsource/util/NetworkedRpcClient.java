@@ -2,11 +2,16 @@ package com.hiddenswitch.spellsource.util;
 
 import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.fibers.Suspendable;
+import com.hiddenswitch.spellsource.concurrent.SuspendableFunction;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.eventbus.EventBus;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 class NetworkedRpcClient<T> implements RpcClient<T> {
@@ -49,6 +54,43 @@ class NetworkedRpcClient<T> implements RpcClient<T> {
 		return getProxy(null);
 	}
 
+	@Override
+	@Suspendable
+	@SuppressWarnings("unchecked")
+	public <R> List<R> batch(List<? extends SuspendableFunction<T, R>> calls) throws SuspendExecution, InterruptedException {
+		if (calls.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		// Record the method and request of each call
+		Method[] method = {null};
+		ArrayList<Object> requests = new ArrayList<>(calls.size());
+		T recorder = (T) Proxy.newProxyInstance(
+				serviceInterface.getClassLoader(),
+				new Class[]{serviceInterface},
+				(proxy, called, args) -> {
+					if (method[0] != null && !method[0].equals(called)) {
+						throw new IllegalArgumentException("Every call in a batch must be to the same method");
+					}
+					method[0] = called;
+					requests.add(args[0]);
+					return null;
+				});
+		for (SuspendableFunction<T, R> call : calls) {
+			try {
+				call.apply(recorder);
+			} catch (IllegalAccessException | InvocationTargetException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+		if (requests.size() != calls.size()) {
+			throw new IllegalArgumentException("Every call in a batch must call exactly one method");
+		}
+
+		VertxInvocationHandler<T> invocationHandler = new VertxInvocationHandler<>(null, bus, true, null, serviceInterface.getName());
+		return (List<R>) (List) invocationHandler.batch(method[0], requests);
+	}
+
 	@Suspendable
 	@SuppressWarnings("unchecked")
 	private T getProxy(String deploymentId) {
@@ -1,11 +1,15 @@
 package com.hiddenswitch.spellsource.util;
 
+import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.MessageConsumer;
 
+import java.util.Collections;
 import java.util.List;
 
 public class Registration {
 	private List<MessageConsumer> messageConsumers;
+	private List<LocalHandler> localHandlers = Collections.emptyList();
+	private EventBus eventBus;
 
 	public List<MessageConsumer> getMessageConsumers() {
 		return messageConsumers;
@@ -14,4 +18,20 @@ public class Registration {
 	public void setMessageConsumers(List<MessageConsumer> messageConsumers) {
 		this.messageConsumers = messageConsumers;
 	}
+
+	List<LocalHandler> getLocalHandlers() {
+		return localHandlers;
+	}
+
+	void setLocalHandlers(List<LocalHandler> localHandlers) {
+		this.localHandlers = localHandlers;
+	}
+
+	EventBus getEventBus() {
+		return eventBus;
+	}
+
+	void setEventBus(EventBus eventBus) {
+		this.eventBus = eventBus;
+	}
 }
@@ -15,6 +15,7 @@ import io.vertx.ext.sync.Sync;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 import java.nio.Buffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -50,6 +51,10 @@ public class Rpc {
 	 * <p>
 	 * {@code serviceInterface.getName() + "/" + method.getName(); }
 	 * <p>
+	 * Calls made with {@link #connect(Class)} on the same {@link Vertx} instance as a registered {@code instance} skip the
+	 * {@link EventBus} and invoke the method directly on the {@code instance}'s context, passing the request by
+	 * reference. Each method also accepts batches of requests at a separate address (see {@link RpcClient#batch(List)}).
+	 * <p>
 	 * Internally, the system will use {@link Serialization#serialize(Object)} to serialize the message, which uses {@link
 	 * java.io.ObjectOutputStream} to write the message (i.e., {@link java.io.Serializable} for serialization).
 	 * <p>
@@ -102,6 +107,7 @@ public class Rpc {
 		final String name = serviceInterface.getName();
 
 		Registration registration = new Registration();
+		List<LocalHandler> localHandlers = new ArrayList<>();
 
 		registration.setMessageConsumers(Stream.of(serviceInterface.getDeclaredMethods()).flatMap(method -> {
 			if (Modifier.isStatic(method.getModifiers())
@@ -113,6 +119,15 @@ public class Rpc {
 			final String address = name + "/" + method.getName();
 
 			SuspendableFunction<Object, Object> finalMethod = arg -> method.invoke(instance, arg);
+			// Batches are lists of requests to the same method, answered with a list of responses in the same order
+			SuspendableFunction<Object, Object> batchMethod = arg -> {
+				List<?> requests = (List<?>) arg;
+				ArrayList<Object> responses = new ArrayList<>(requests.size());
+				for (Object request : requests) {
+					responses.add(finalMethod.apply(request));
+				}
+				return responses;
+			};
 
 			// Get the context at the time of calling this function
 			RpcOptions.Serialization serialization = defaultSerialization();
@@ -121,30 +136,37 @@ public class Rpc {
 				serialization = rpcOptions.serialization();
 			}
 			SuspendableAction1 eventBusHandler;
-			MessageConsumer consumer;
 			if (serialization == RpcOptions.Serialization.JAVA) {
 				eventBusHandler = new BufferEventBusHandler<>(finalMethod);
-				consumer = eb.consumer(address, suspendableHandler(eventBusHandler));
 			} else if (serialization == RpcOptions.Serialization.JSON) {
 				eventBusHandler = new JsonEventBusHandler<>(finalMethod, method.getParameterTypes()[0]);
-				consumer = eb.<JsonObject>consumer(address, suspendableHandler(eventBusHandler));
 			} else {
 				throw new RuntimeException("Unexpected serialization option for this event bus handler.");
 			}
+			SuspendableAction1 batchEventBusHandler = new BufferEventBusHandler<>(batchMethod);
 
-
+			List<String> addresses = new ArrayList<>();
+			addresses.add(address);
 			// If the instance we are consuming supports deployment IDs, register a function prefixed with the
 			// deployment ID in order to support stateful message consumers.
 			if (instance instanceof AbstractVerticle) {
 				AbstractVerticle deployedInstance = (AbstractVerticle) instance;
 				// Specific deployment instance ID consumer.
-				final String specificInstanceAddress = deployedInstance.deploymentID() + "::" + address;
-				MessageConsumer consumerSpecific = eb.consumer(specificInstanceAddress, suspendableHandler(eventBusHandler));
-				return Stream.of(consumer, consumerSpecific);
+				addresses.add(getInstanceAddress(deployedInstance.deploymentID(), address));
 			}
 
-			return Stream.of(consumer);
+			List<MessageConsumer> consumers = new ArrayList<>();
+			for (String consumerAddress : addresses) {
+				consumers.add(eb.consumer(consumerAddress, suspendableHandler(eventBusHandler)));
+				consumers.add(eb.consumer(getBatchAddress(consumerAddress), suspendableHandler(batchEventBusHandler)));
+				// Callers on this node skip the event bus
+				localHandlers.add(LocalHandler.add(eb, consumerAddress, finalMethod));
+				localHandlers.add(LocalHandler.add(eb, getBatchAddress(consumerAddress), batchMethod));
+			}
+			return consumers.stream();
 		}).collect(Collectors.toList()));
+		registration.setLocalHandlers(localHandlers);
+		registration.setEventBus(eb);
 
 		CompositeFuture.join(registration.getMessageConsumers()
 				.stream().map(consumer -> {
@@ -238,6 +260,9 @@ public class Rpc {
 	 */
 	@SuppressWarnings("unchecked")
 	public static void unregister(Registration registration, Handler<AsyncResult<CompositeFuture>> handler) {
+		for (LocalHandler localHandler : registration.getLocalHandlers()) {
+			localHandler.remove(registration.getEventBus());
+		}
 		List<MessageConsumer> consumers = registration.getMessageConsumers();
 		CompositeFuture.all(consumers.stream().map(consumer -> {
 			Future<Void> future = Future.future();
@@ -257,6 +282,28 @@ public class Rpc {
 		return Sync.awaitResult(h -> unregister(registration, h));
 	}
 
+	/**
+	 * Gets the address of a method as served by a specific instance of a service.
+	 *
+	 * @param deploymentId The deployment ID of the instance.
+	 * @param address      The address of the method, as returned by {@link #getAddress(Class, SuspendableAction1)}.
+	 * @return An {@link EventBus} address.
+	 */
+	static String getInstanceAddress(String deploymentId, String address) {
+		return deploymentId + "::" + address;
+	}
+
+	/**
+	 * Gets the address that receives batches of calls to the method at the given address.
+	 *
+	 * @param address The address of the method.
+	 * @return An {@link EventBus} address.
+	 * @see RpcClient#batch(List) for more about batches.
+	 */
+	static String getBatchAddress(String address) {
+		return address + "/batch";
+	}
+
 	public static RpcOptions.Serialization defaultSerialization() {
 		return RpcOptions.Serialization.JSON;
 	}
@@ -9,6 +9,7 @@ import io.vertx.core.Future;
 import io.vertx.core.Handler;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
@@ -141,4 +142,29 @@ public interface RpcClient<T> {
 	 */
 	@Suspendable
 	T uncheckedSync();
+
+	/**
+	 * Calls the same method of the service with many requests in a single message, instead of sending one message per
+	 * request.
+	 * <p>
+	 * Each element of {@code calls} should call one method on the service it is given. For example:
+	 * <pre>
+	 *     {@code
+	 *     List<SuspendableFunction<Cards, GetCardResponse>> calls = new ArrayList<>();
+	 *     for (String cardId : cardIds) {
+	 *         calls.add(cards -> cards.getCard(new GetCardRequest().withCardId(cardId)));
+	 *     }
+	 *     List<GetCardResponse> responses = Rpc.connect(Cards.class).batch(calls);
+	 *     }
+	 * </pre>
+	 * The instance receiving the batch calls the method with each request in order. The batch fails with the first
+	 * failure.
+	 *
+	 * @param calls The calls to make. Every call must be to the same method.
+	 * @param <R>   The return type of the method.
+	 * @return The responses, in the same order as {@code calls}.
+	 * @throws IllegalArgumentException if the calls are not all to the same method.
+	 */
+	@Suspendable
+	<R> List<R> batch(List<? extends SuspendableFunction<T, R>> calls) throws SuspendExecution, InterruptedException;
 }
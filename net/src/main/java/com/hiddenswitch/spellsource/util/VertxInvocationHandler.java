@@ -24,6 +24,8 @@ import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import static com.hiddenswitch.spellsource.util.Sync.suspendableHandler;
@@ -109,11 +111,12 @@ final class VertxInvocationHandler<T> implements InvocationHandler, Serializable
 				serialization = options.serialization();
 			}
 
+			final String address = getAddress(methodName);
 			if (sync) {
 				final RpcOptions.Serialization finalSerialization = serialization;
-				result = awaitFiber(done -> call(methodName, args, deliveryOptions, finalSerialization, done, method));
+				result = awaitFiber(done -> call(address, args[0], deliveryOptions, finalSerialization, method.getReturnType(), span, done));
 			} else {
-				call(methodName, args, deliveryOptions, serialization, (res) -> {
+				call(address, args[0], deliveryOptions, serialization, method.getReturnType(), span, (res) -> {
 					try {
 						next.handle(res);
 					} catch (RuntimeException runtimeException) {
@@ -122,7 +125,7 @@ final class VertxInvocationHandler<T> implements InvocationHandler, Serializable
 					} finally {
 						span.finish();
 					}
-				}, method);
+				});
 			}
 
 			return result;
@@ -134,22 +137,65 @@ final class VertxInvocationHandler<T> implements InvocationHandler, Serializable
 		}
 	}
 
+	/**
+	 * Calls the method with every request in a single message, waiting for all the responses.
+	 *
+	 * @param method   The method to call.
+	 * @param requests The requests.
+	 * @return The responses, in the same order as the requests.
+	 * @see RpcClient#batch(java.util.List) for more about batches.
+	 */
 	@Suspendable
-	private void call(String methodName, Object[] args, final DeliveryOptions deliveryOptions, RpcOptions.Serialization serialization, Handler<AsyncResult<Object>> next, Method method) {
-		Object message = null;
+	@SuppressWarnings("unchecked")
+	List<Object> batch(Method method, ArrayList<Object> requests) {
+		Span span = GlobalTracer.get().buildSpan("VertxInvocationHandler/batch/" + name)
+				.withTag("method", method.getName())
+				.withTag("size", requests.size())
+				.start();
+		try {
+			DeliveryOptions deliveryOptions = new DeliveryOptions().setSendTimeout(timeout);
+			RpcOptions options = method.getAnnotation(RpcOptions.class);
+			if (options != null) {
+				deliveryOptions.setSendTimeout(options.sendTimeoutMS());
+			}
+			// Batches always use Java serialization, since a list of requests has no JSON schema
+			String address = Rpc.getBatchAddress(getAddress(method.getName()));
+			Object responses = awaitFiber(done -> call(address, requests, deliveryOptions, RpcOptions.Serialization.JAVA, ArrayList.class, span, done));
+			return (List<Object>) responses;
+		} catch (RuntimeException runtimeException) {
+			Tracing.error(runtimeException, span, true);
+			throw runtimeException;
+		} finally {
+			span.finish();
+		}
+	}
 
+	private String getAddress(String methodName) {
 		String address = name + "/" + methodName;
 		if (deploymentId != null) {
-			address = deploymentId + "/" + address;
+			address = Rpc.getInstanceAddress(deploymentId, address);
 		}
+		return address;
+	}
 
+	@Suspendable
+	private void call(String address, Object request, final DeliveryOptions deliveryOptions, RpcOptions.Serialization serialization, Class<?> returnType, Span span, Handler<AsyncResult<Object>> next) {
+		// Call services registered on this node directly
+		LocalHandler localHandler = LocalHandler.choose(eb, address);
+		if (localHandler != null) {
+			span.setTag("local", true);
+			localHandler.call(request, deliveryOptions.getSendTimeout(), next);
+			return;
+		}
+
+		Object message = null;
 		SuspendableAction1<AsyncResult<Message<Object>>> handler;
 
 		if (serialization == RpcOptions.Serialization.JAVA) {
 			final Buffer result = Buffer.buffer(512);
 
 			try {
-				Serialization.serialize(args[0], new VertxBufferOutputStream(result));
+				Serialization.serialize(request, new VertxBufferOutputStream(result));
 			} catch (IOException e) {
 				next.handle(Future.failedFuture(e));
 				return;
@@ -158,8 +204,8 @@ final class VertxInvocationHandler<T> implements InvocationHandler, Serializable
 			message = result;
 			handler = new ReplyHandler(next);
 		} else if (serialization == RpcOptions.Serialization.JSON) {
-			message = JsonObject.mapFrom(args[0]);
-			handler = new JsonReplyHandler(next, method.getReturnType());
+			message = JsonObject.mapFrom(request);
+			handler = new JsonReplyHandler(next, returnType);
 		} else {
 			throw new RuntimeException("Unspecified serialization option in invocation.");
 		}
@@ -1,7 +1,10 @@
 package com.hiddenswitch.spellsource;
 
+import com.hiddenswitch.spellsource.client.models.FriendPutRequest;
 import com.hiddenswitch.spellsource.impl.SpellsourceTestBase;
+import com.hiddenswitch.spellsource.impl.UserId;
 import com.hiddenswitch.spellsource.impl.util.UserRecord;
+import com.hiddenswitch.spellsource.impl.util.UserRecordCache;
 import com.hiddenswitch.spellsource.models.CreateAccountResponse;
 import com.hiddenswitch.spellsource.models.LoginRequest;
 import com.hiddenswitch.spellsource.models.LoginResponse;
@@ -57,6 +60,36 @@ public class AccountsTest extends SpellsourceTestBase {
 		}, context);
 	}
 
+	@Test
+	public void testUserRecordCacheReadsThroughAndInvalidates(TestContext context) throws Exception {
+		sync(() -> {
+			UserRecordCache cache = UserRecordCache.current();
+			String emailAddress = getEmailAddress();
+			CreateAccountResponse user1 = Accounts.createAccount(emailAddress, "password", getUsername());
+			CreateAccountResponse user2 = Accounts.createAccount(getEmailAddress(), "password", getUsername());
+
+			long hits = cache.getStats().hitCount();
+			UserRecord record = Accounts.get(user1.getUserId());
+			assertEquals(user1.getUserId(), record.getId());
+			assertEquals(hits + 1, cache.getStats().hitCount());
+			// Records returned by the cache are copies
+			record.getDecks().add("modified");
+			assertTrue(Accounts.get(user1.getUserId()).getDecks().isEmpty());
+
+			// New login tokens are visible immediately
+			LoginResponse login = Accounts.login(emailAddress, "password");
+			assertNotNull(Accounts.getWithToken(login.getToken().getToken()));
+
+			// Friending modifies both users
+			Friends.putFriend(Accounts.get(user1.getUserId()), new FriendPutRequest().friendId(user2.getUserId()));
+			assertTrue(Accounts.get(user1.getUserId()).isFriend(user2.getUserId()));
+			assertTrue(Accounts.get(user2.getUserId()).isFriend(user1.getUserId()));
+
+			Accounts.removeAccount(new UserId(user2.getUserId()));
+			assertNull(Accounts.get(user2.getUserId()));
+		}, context);
+	}
+
 	@NotNull
 	public String getEmailAddress() {
 		return "a" + RandomStringUtils.randomAlphanumeric(32) + "test@test.com";
@@ -1,8 +1,13 @@
 package com.hiddenswitch.spellsource;
 
+import com.google.common.io.ByteStreams;
+import com.hiddenswitch.spellsource.client.models.GetCardsResponse;
 import com.hiddenswitch.spellsource.impl.SpellsourceTestBase;
+import com.hiddenswitch.spellsource.impl.util.CardCataloguePayload;
 import com.hiddenswitch.spellsource.models.*;
 import com.hiddenswitch.spellsource.util.Mongo;
+import com.hiddenswitch.spellsource.util.Serialization;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.ext.mongo.FindOptions;
 import io.vertx.ext.unit.TestContext;
 import net.demilich.metastone.game.cards.Card;
@@ -14,8 +19,11 @@ import net.demilich.metastone.game.decks.DeckFormat;
 import net.demilich.metastone.game.entities.heroes.HeroClass;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static com.hiddenswitch.spellsource.util.QuickJson.json;
 import static java.util.stream.Collectors.toList;
@@ -46,4 +54,24 @@ public class CardsTest extends SpellsourceTestBase {
 			assertNotNull(CardCatalogue.getCardById(classCard.getHero()));
 		}
 	}
+
+	@Test
+	public void testCataloguePayloadIsBuiltOncePerVersion() throws IOException {
+		CardCataloguePayload payload = Cards.getCataloguePayload();
+		assertSame(payload, Cards.getCataloguePayload());
+
+		// The compressed payload is the same response
+		try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload.getGzip().getBytes()))) {
+			assertEquals(payload.getJson(), Buffer.buffer(ByteStreams.toByteArray(gzip)));
+		}
+		GetCardsResponse response = Serialization.deserialize(payload.getJson().toString(), GetCardsResponse.class);
+		assertEquals(payload.getVersion(), response.getVersion());
+		assertEquals(Cards.getCards().size(), response.getCards().size());
+
+		// Building it again for the same catalogue gives the same version
+		Cards.invalidateCardCache();
+		CardCataloguePayload rebuilt = Cards.getCataloguePayload();
+		assertNotSame(payload, rebuilt);
+		assertEquals(payload.getVersion(), rebuilt.getVersion());
+	}
 }
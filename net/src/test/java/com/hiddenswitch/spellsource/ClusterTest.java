@@ -4,6 +4,7 @@ import co.paralleluniverse.fibers.Suspendable;
 import co.paralleluniverse.strands.Strand;
 import co.paralleluniverse.strands.concurrent.CountDownLatch;
 import com.hiddenswitch.spellsource.client.models.ServerToClientMessage;
+import com.hiddenswitch.spellsource.impl.GameId;
 import com.hiddenswitch.spellsource.impl.SpellsourceTestBase;
 import com.hiddenswitch.spellsource.util.MatchmakingQueueConfiguration;
 import com.hiddenswitch.spellsource.util.Sync;
@@ -24,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -168,4 +170,92 @@ public class ClusterTest extends SpellsourceTestBase {
 			}
 		}, context);
 	}
+
+	@Test(timeout = 95000L)
+	@Suspendable
+	public void testMigrateGameBetweenNodes(TestContext context) {
+		sync(() -> {
+			Atomix instance = Cluster.create(5702, Node.builder().withHost("0.0.0.0").withPort(5701).build());
+			try {
+				Sync.get(instance.start());
+				AtomixClusterManager clusterManager = new AtomixClusterManager(instance);
+				Vertx vertx2 = awaitResult(h -> {
+					Vertx.clusteredVertx(new VertxOptions()
+							.setPreferNativeTransport(true)
+							.setClusterManager(clusterManager), h);
+				});
+				try {
+					awaitResult(h -> vertx2.runOnContext(v -> {
+						Connection.registerCodecs();
+						h.handle(Future.succeededFuture());
+					}));
+
+					SpellsourceInner spellsourceInner = new SpellsourceInner();
+					CompositeFuture res = awaitResult(h -> spellsourceInner.deployAll(vertx2, getConcurrency(), h));
+					String queueId = "private-queue-migration";
+					Closeable queue = Matchmaking.startMatchmaker(queueId, new MatchmakingQueueConfiguration()
+							.setAwaitingLobbyTimeout(4000L)
+							.setBotOpponent(false)
+							.setEmptyLobbyTimeout(4000L)
+							.setLobbySize(2)
+							.setName("migration")
+							.setOnce(true)
+							.setPrivateLobby(true)
+							.setRanked(false)
+							.setStillConnectedTimeout(2000L)
+							.setJoin(true)
+							.setAutomaticallyClose(true)
+							.setRules(new CardDesc[0]));
+
+					WorkerExecutor executor = contextRule.vertx()
+							.createSharedWorkerExecutor("migration-testers", 2, 90000L, TimeUnit.MILLISECONDS);
+					CountDownLatch latch = new CountDownLatch(2);
+					List<UnityClient> clients = new CopyOnWriteArrayList<>();
+					// Connect one player to each node
+					for (int port : new int[]{8080, 9090}) {
+						executor.executeBlocking(fut -> {
+							try (UnityClient client = new UnityClient(context, port)) {
+								client.createUserAccount();
+								clients.add(client);
+								client.ensureConnected();
+								client.matchmakeAndPlay(null, queueId);
+								client.waitUntilDone();
+								context.assertTrue(client.isGameOver());
+								context.assertTrue(client.getTurnsPlayed() > 1);
+								latch.countDown();
+								fut.complete();
+							} catch (Throwable t) {
+								fut.fail(t);
+							}
+						}, false, context.asyncAssertSuccess());
+					}
+
+					// Wait until the game has started and a turn has been played
+					GameId gameId = null;
+					while (gameId == null || clients.stream().allMatch(client -> client.getTurnsPlayed() == 0)) {
+						Strand.sleep(100L);
+						if (clients.isEmpty() || clients.get(0).getUserId() == null) {
+							continue;
+						}
+						gameId = Games.getUsersInGames().get(clients.get(0).getUserId());
+					}
+
+					// Move the game back and forth between the nodes while it is played
+					String original = Games.getConnections().get(gameId).deploymentId;
+					String migrated = Games.migrateGame(gameId);
+					context.assertNotEquals(original, migrated);
+					context.assertEquals(migrated, Games.getConnections().get(gameId).deploymentId);
+					context.assertEquals(original, Games.migrateGame(gameId, original));
+					context.assertEquals(original, Games.getConnections().get(gameId).deploymentId);
+
+					latch.await();
+					Strand.sleep(1000);
+				} finally {
+					Void t3 = awaitResult(vertx2::close);
+				}
+			} finally {
+				Sync.get(instance.stop());
+			}
+		}, context);
+	}
 }
@@ -0,0 +1,172 @@
+package com.hiddenswitch.spellsource;
+
+import com.hiddenswitch.spellsource.client.models.*;
+import com.hiddenswitch.spellsource.impl.ConnectionImpl;
+import com.hiddenswitch.spellsource.impl.EnvelopeFormat;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.stream.Collectors.toList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(VertxUnitRunner.class)
+public class ConnectionImplTest {
+
+	@Rule
+	public RunTestOnContext contextRule = new RunTestOnContext();
+
+	private final AtomicBoolean writeQueueFull = new AtomicBoolean();
+	private final List<Envelope> written = new ArrayList<>();
+
+	@SuppressWarnings("unchecked")
+	private ServerWebSocket mockSocket() {
+		ServerWebSocket socket = mock(ServerWebSocket.class);
+		when(socket.remoteAddress()).thenReturn(SocketAddress.inetSocketAddress(8080, "localhost"));
+		when(socket.writeQueueFull()).thenAnswer(invocation -> writeQueueFull.get());
+		when(socket.write(any(Buffer.class))).thenAnswer(invocation -> {
+			written.add(EnvelopeFormat.JSON.decode(invocation.getArgument(0)));
+			return socket;
+		});
+		return socket;
+	}
+
+	private ConnectionImpl connect(ServerWebSocket socket) {
+		String userId = "connectionImplTest";
+		ConnectionImpl connection = new ConnectionImpl(userId, Connection.toBusAddress(userId));
+		connection.setSocket(socket, null, null);
+		return connection;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void drain(ServerWebSocket socket) {
+		ArgumentCaptor<Handler<Void>> drainHandler = ArgumentCaptor.forClass(Handler.class);
+		verify(socket).drainHandler(drainHandler.capture());
+		drainHandler.getValue().handle(null);
+	}
+
+	private static Envelope update(int... entityIds) {
+		EntityChangeSet changes = new EntityChangeSet();
+		for (int entityId : entityIds) {
+			changes.add(new EntityChangeSetInner().op(EntityChangeSetInner.OpEnum.C).id(entityId));
+		}
+		return new Envelope().game(new EnvelopeGame().serverToClient(new ServerToClientMessage()
+				.messageType(MessageType.ON_UPDATE)
+				.changes(changes)));
+	}
+
+	private static Envelope touch() {
+		return new Envelope().game(new EnvelopeGame().serverToClient(new ServerToClientMessage()
+				.messageType(MessageType.TOUCH)));
+	}
+
+	private static Envelope friend(String friendId) {
+		return new Envelope().added(new EnvelopeAdded().friend(new Friend().friendId(friendId)));
+	}
+
+	private static List<Integer> changedIds(Envelope envelope) {
+		return envelope.getGame().getServerToClient().getChanges().stream().map(EntityChangeSetInner::getId).collect(toList());
+	}
+
+	@Test
+	public void testStaleGameUpdatesAreCoalesced(TestContext testContext) {
+		ServerWebSocket socket = mockSocket();
+		ConnectionImpl connection = connect(socket);
+
+		connection.write(update(1));
+		testContext.assertEquals(1, written.size(), "should write directly while the socket has room");
+
+		writeQueueFull.set(true);
+		connection.write(update(2));
+		connection.write(touch());
+		connection.write(update(3));
+		testContext.assertEquals(1, written.size());
+		testContext.assertTrue(connection.writeQueueFull());
+
+		writeQueueFull.set(false);
+		drain(socket);
+		testContext.assertFalse(connection.writeQueueFull());
+		testContext.assertEquals(2, written.size(), "the touch should be dropped and the updates merged");
+		Envelope coalesced = written.get(1);
+		testContext.assertEquals(MessageType.ON_UPDATE, coalesced.getGame().getServerToClient().getMessageType());
+		testContext.assertEquals(2, changedIds(coalesced).size());
+		testContext.assertTrue(changedIds(coalesced).contains(2), "should keep the older update's changes");
+		testContext.assertTrue(changedIds(coalesced).contains(3));
+		verify(socket, never()).close();
+	}
+
+	@Test
+	public void testOverflowDisconnectsClient(TestContext testContext) {
+		ServerWebSocket socket = mockSocket();
+		ConnectionImpl connection = connect(socket);
+
+		writeQueueFull.set(true);
+		List<Boolean> results = new ArrayList<>();
+		for (int i = 0; i <= ConnectionImpl.MAX_PENDING_ENVELOPES; i++) {
+			connection.write(friend(Integer.toString(i)), res -> results.add(res.succeeded()));
+		}
+		verify(socket).close();
+		testContext.assertEquals(ConnectionImpl.MAX_PENDING_ENVELOPES + 1, results.size(), "every pending write should fail");
+		testContext.assertFalse(results.contains(true));
+
+		// Writing to a disconnected slow client fails instead of throwing
+		Async async = testContext.async();
+		connection.write(friend("late"), res -> {
+			testContext.assertTrue(res.failed());
+			async.complete();
+		});
+		connection.write(friend("late"));
+		testContext.assertTrue(written.isEmpty());
+	}
+
+	@Test(timeout = 5000L)
+	public void testSlowClientTimesOut(TestContext testContext) {
+		ServerWebSocket socket = mockSocket();
+		ConnectionImpl connection = connect(socket).setSlowClientTimeoutMillis(100L);
+
+		writeQueueFull.set(true);
+		Async async = testContext.async();
+		// Nothing else is written after this, so only the timer can disconnect the client
+		connection.write(friend("pending"), res -> {
+			testContext.assertTrue(res.failed());
+			// Pending writes fail just before the socket is closed
+			contextRule.vertx().runOnContext(v -> {
+				verify(socket).close();
+				async.complete();
+			});
+		});
+		verify(socket, never()).close();
+	}
+
+	@Test(timeout = 5000L)
+	public void testDrainedClientDoesNotTimeOut(TestContext testContext) {
+		ServerWebSocket socket = mockSocket();
+		ConnectionImpl connection = connect(socket).setSlowClientTimeoutMillis(100L);
+
+		writeQueueFull.set(true);
+		connection.write(friend("pending"));
+		writeQueueFull.set(false);
+		drain(socket);
+		testContext.assertEquals(1, written.size());
+
+		Async async = testContext.async();
+		contextRule.vertx().setTimer(300L, v -> {
+			verify(socket, never()).close();
+			async.complete();
+		});
+	}
+}
@@ -1,18 +1,28 @@
 package com.hiddenswitch.spellsource;
 
+import co.paralleluniverse.strands.Strand;
 import co.paralleluniverse.strands.concurrent.CountDownLatch;
 import com.hiddenswitch.spellsource.client.models.Envelope;
+import com.hiddenswitch.spellsource.client.models.EnvelopeAdded;
+import com.hiddenswitch.spellsource.client.models.Friend;
+import com.hiddenswitch.spellsource.impl.EnvelopeFormat;
 import com.hiddenswitch.spellsource.impl.SpellsourceTestBase;
 import com.hiddenswitch.spellsource.models.CreateAccountResponse;
 import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.WebSocket;
 import io.vertx.core.http.WebsocketRejectedException;
+import io.vertx.core.http.WebsocketVersion;
 import io.vertx.core.json.Json;
 import io.vertx.ext.unit.TestContext;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import static io.vertx.ext.sync.Sync.awaitEvent;
 
 public class ConnectionTest extends SpellsourceTestBase {
@@ -53,6 +63,31 @@ public class ConnectionTest extends SpellsourceTestBase {
 		}, testContext);
 	}
 
+	@Test(timeout = 15000)
+	public void testConnectionNegotiatesSmile(TestContext testContext) {
+		sync(() -> {
+			WebSocket socket = null;
+			try {
+				CountDownLatch latch = new CountDownLatch(1);
+				CreateAccountResponse account = createRandomAccount();
+
+				HttpClient client = Vertx.currentContext().owner().createHttpClient();
+				socket = awaitEvent(h -> client.websocket(Port.port(), "localhost", "/realtime?X-Auth-Token=" + account.getLoginToken().getToken(),
+						MultiMap.caseInsensitiveMultiMap(), WebsocketVersion.V13, EnvelopeFormat.SMILE.getSubProtocol(), h, testContext::fail));
+				testContext.assertEquals(EnvelopeFormat.SMILE.getSubProtocol(), socket.subProtocol());
+				socket.handler(buf -> {
+					testContext.assertEquals((byte) ':', buf.getByte(0), "should be encoded as Smile");
+					Envelope env = EnvelopeFormat.SMILE.decode(buf);
+					testContext.assertNotNull(env);
+					latch.countDown();
+				});
+				latch.await();
+			} finally {
+				socket.close();
+			}
+		}, testContext);
+	}
+
 	@Test
 	public void testConnectionWithInvalidAuthFails(TestContext testContext) {
 		sync(() -> {
@@ -73,4 +108,52 @@ public class ConnectionTest extends SpellsourceTestBase {
 			latch.await();
 		}, testContext);
 	}
+
+	@Test(timeout = 15000)
+	public void testLocalConnectionPreservesWriteOrder(TestContext testContext) {
+		sync(() -> {
+			int count = 200;
+			CountDownLatch ready = new CountDownLatch(1);
+			CountDownLatch received = new CountDownLatch(count);
+			List<String> friendIds = Collections.synchronizedList(new ArrayList<>());
+			CreateAccountResponse account = createRandomAccount();
+			String userId = account.getUserId();
+			Vertx vertx = Vertx.currentContext().owner();
+
+			HttpClient client = vertx.createHttpClient();
+			WebSocket socket = awaitEvent(h -> client.websocket(Port.port(), "localhost", "/realtime?X-Auth-Token=" + account.getLoginToken().getToken(), h, testContext::fail));
+			socket.handler(buf -> {
+				Envelope env = Json.decodeValue(buf, Envelope.class);
+				ready.countDown();
+				if (env.getAdded() != null && env.getAdded().getFriend() != null) {
+					friendIds.add(env.getAdded().getFriend().getFriendId());
+					received.countDown();
+				}
+			});
+			ready.await();
+
+			// The socket is hosted by this node, so both ways of writing to it should use the connection directly
+			Connection connection = Connection.local(vertx, userId);
+			testContext.assertNotNull(connection);
+			List<String> expected = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				Envelope env = new Envelope().added(new EnvelopeAdded().friend(new Friend().friendId(Integer.toString(i))));
+				expected.add(Integer.toString(i));
+				if (i % 2 == 0) {
+					Connection.writeStream(userId).write(env);
+				} else {
+					connection.write(env);
+				}
+			}
+
+			received.await();
+			testContext.assertEquals(expected, friendIds);
+
+			// Once the socket closes the connection is no longer local
+			socket.close();
+			while (Connection.local(vertx, userId) != null) {
+				Strand.sleep(10);
+			}
+		}, testContext);
+	}
 }
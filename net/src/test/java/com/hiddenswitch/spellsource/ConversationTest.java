@@ -1,19 +1,27 @@
 package com.hiddenswitch.spellsource;
 
+import co.paralleluniverse.strands.Strand;
 import co.paralleluniverse.strands.concurrent.CountDownLatch;
 import com.hiddenswitch.spellsource.client.models.*;
 import com.hiddenswitch.spellsource.impl.SpellsourceTestBase;
+import com.hiddenswitch.spellsource.impl.util.ConversationLog;
 import com.hiddenswitch.spellsource.models.CreateAccountResponse;
 import com.hiddenswitch.spellsource.util.UnityClient;
 import io.vertx.ext.unit.TestContext;
+import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.hiddenswitch.spellsource.util.Mongo.mongo;
+import static com.hiddenswitch.spellsource.util.QuickJson.json;
 import static com.hiddenswitch.spellsource.util.Sync.invoke0;
+import static java.util.stream.Collectors.toList;
 
 public class ConversationTest extends SpellsourceTestBase {
 
@@ -73,4 +81,30 @@ public class ConversationTest extends SpellsourceTestBase {
 			}
 		}, context);
 	}
+
+	@Test
+	public void testConversationLogSequencesAndPersistsMessages(TestContext context) {
+		sync(() -> {
+			ConversationLog log = ConversationLog.current();
+			String conversationId = "user1," + RandomStringUtils.randomAlphanumeric(8);
+			List<String> messageIds = new ArrayList<>();
+			for (int i = 1; i <= 3; i++) {
+				String messageId = log.append(conversationId, "user1", "name", "message " + i).getMessageId();
+				context.assertTrue(messageId.startsWith("c:" + i + ":"));
+				messageIds.add(messageId);
+			}
+
+			// The gateway's timer may write some of the messages first
+			log.flush();
+			for (int i = 0; i < 50 && mongo().count(Conversations.CONVERSATIONS, json(ConversationLog.CONVERSATION_ID, conversationId)) < 3L; i++) {
+				Strand.sleep(100L);
+			}
+			context.assertEquals(3L, mongo().count(Conversations.CONVERSATIONS, json(ConversationLog.CONVERSATION_ID, conversationId)));
+
+			// The recent messages and the sequence are recovered from the database
+			log.clear();
+			context.assertEquals(messageIds, log.getRecentMessages(conversationId).stream().map(ChatMessage::getMessageId).collect(toList()));
+			context.assertTrue(log.append(conversationId, "user1", "name", "message 4").getMessageId().startsWith("c:4:"));
+		}, context);
+	}
 }
@@ -6,14 +6,21 @@ import com.hiddenswitch.spellsource.client.models.DecksUpdateCommandPushCardIds;
 import com.hiddenswitch.spellsource.client.models.DecksUpdateCommandPushInventoryIds;
 import net.demilich.metastone.game.decks.DeckCreateRequest;
 import com.hiddenswitch.spellsource.impl.*;
+import com.hiddenswitch.spellsource.impl.util.DeckCardsCache;
 import com.hiddenswitch.spellsource.impl.util.InventoryRecord;
 import com.hiddenswitch.spellsource.models.*;
 import io.vertx.ext.unit.TestContext;
+import net.demilich.metastone.game.cards.Attribute;
+import net.demilich.metastone.game.cards.Card;
+import net.demilich.metastone.game.cards.CardCatalogue;
+import net.demilich.metastone.game.decks.GameDeck;
 import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
+import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.RandomUtils.nextInt;
 
 /**
@@ -104,6 +111,68 @@ public class DeckTest extends SpellsourceTestBase {
 		}, context);
 	}
 
+	@Test
+	public void testCreateDecksSharesAndCreatesCopies(TestContext context) {
+		sync(() -> {
+			CreateAccountResponse player1 = createRandomAccount();
+			final String userId = player1.getUserId();
+			Inventory.createCollection(CreateCollectionRequest.emptyUserCollection(userId));
+			List<DeckCreateResponse> decks = Decks.createDecks(userId, Arrays.asList(
+					DeckCreateRequest.fromCardIds("TEST", "spell_test_summon_tokens", "spell_test_summon_tokens", "minion_test_3_2").withUserId(userId).withName("first"),
+					DeckCreateRequest.fromCardIds("TEST", "spell_test_summon_tokens", "minion_test_3_2").withUserId(userId).withName("second")));
+
+			// The user only needs enough copies for the largest deck
+			GetCollectionResponse userCollection = Inventory.getCollection(GetCollectionRequest.user(userId));
+			context.assertEquals(2L, userCollection.getInventoryRecords().stream().filter(ir -> ir.getCardId().equals("spell_test_summon_tokens")).count());
+			context.assertEquals(1L, userCollection.getInventoryRecords().stream().filter(ir -> ir.getCardId().equals("minion_test_3_2")).count());
+
+			// The returned decks match what was stored
+			for (DeckCreateResponse deck : decks) {
+				GetCollectionResponse stored = getDeck(deck.getDeckId());
+				context.assertEquals(stored.getInventoryRecords().stream().map(InventoryRecord::getId).sorted().collect(toList()),
+						deck.getInventoryIds().stream().sorted().collect(toList()));
+				context.assertTrue(deck.getCollection().getInventoryRecords().stream().allMatch(ir -> ir.getCollectionIds().contains(deck.getDeckId())));
+			}
+			context.assertEquals(3L, decks.get(0).getInventoryIds().stream().distinct().count());
+		}, context);
+	}
+
+	@Test
+	public void testDeckCardsCacheSharesDescsAndFollowsUpdates(TestContext context) {
+		sync(() -> {
+			CreateAccountResponse player1 = createRandomAccount();
+			final String userId = player1.getUserId();
+			Inventory.createCollection(CreateCollectionRequest.emptyUserCollection(userId));
+			DeckCreateResponse deck = Decks.createDecks(userId, Collections.singletonList(
+					DeckCreateRequest.fromCardIds("TEST", "spell_test_summon_tokens", "minion_test_3_2").withUserId(userId).withName("cached"))).get(0);
+			String deckId = deck.getDeckId();
+
+			GameDeck first = DeckCardsCache.current().get(userId, deckId);
+			GameDeck second = DeckCardsCache.current().get(userId, deckId);
+			context.assertEquals(2, first.getCards().getCount());
+			context.assertEquals("cached", first.getName());
+			for (int i = 0; i < first.getCards().getCount(); i++) {
+				Card card = first.getCards().get(i);
+				// The cards share the catalogue's description and get the per-user attributes on top of it
+				context.assertTrue(card.getDesc() == CardCatalogue.getCardById(card.getCardId()).getDesc());
+				context.assertEquals(userId, card.getAttribute(Attribute.USER_ID));
+				context.assertEquals(deckId, card.getAttribute(Attribute.DECK_ID));
+				context.assertTrue(deck.getInventoryIds().contains((String) card.getAttribute(Attribute.CARD_INVENTORY_ID)));
+				context.assertNotEquals(card.getAttribute(Attribute.ENTITY_INSTANCE_ID), second.getCards().get(i).getAttribute(Attribute.ENTITY_INSTANCE_ID));
+				context.assertFalse(card.getDesc().getAttributes() != null && card.getDesc().getAttributes().containsKey(Attribute.USER_ID));
+			}
+
+			// Persisted attributes and deck updates are visible to the next game
+			String inventoryId = (String) first.getCards().get(0).getAttribute(Attribute.CARD_INVENTORY_ID);
+			Inventory.setFact(Collections.singletonList(inventoryId), Attribute.LAST_MINION_DESTROYED_CARD_ID.toKeyCase(), "minion_test_3_2");
+			Decks.updateDeck(DeckUpdateRequest.create(userId, deckId, new DecksUpdateCommand().setName("renamed")));
+			GameDeck third = DeckCardsCache.current().get(userId, deckId);
+			context.assertEquals("renamed", third.getName());
+			context.assertTrue(third.getCards().stream().anyMatch(card -> inventoryId.equals(card.getAttribute(Attribute.CARD_INVENTORY_ID))
+					&& "minion_test_3_2".equals(card.getAttribute(Attribute.LAST_MINION_DESTROYED_CARD_ID))));
+		}, context);
+	}
+
 	@Test
 	public void testDeleteDecks(TestContext context) {
 		// Get my card collection
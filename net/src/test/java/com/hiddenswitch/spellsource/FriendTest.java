@@ -1,22 +1,31 @@
 package com.hiddenswitch.spellsource;
 
+import co.paralleluniverse.strands.Strand;
 import co.paralleluniverse.strands.concurrent.CountDownLatch;
 import com.hiddenswitch.spellsource.client.ApiException;
 import com.hiddenswitch.spellsource.client.api.DefaultApi;
 import com.hiddenswitch.spellsource.client.models.*;
+import com.hiddenswitch.spellsource.impl.EnvelopeFormat;
 import com.hiddenswitch.spellsource.impl.SpellsourceTestBase;
+import com.hiddenswitch.spellsource.impl.UserId;
+import com.hiddenswitch.spellsource.impl.util.FriendGraph;
 import com.hiddenswitch.spellsource.impl.util.UserRecord;
 import com.hiddenswitch.spellsource.models.CreateAccountResponse;
+import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.WebSocket;
+import io.vertx.core.http.WebsocketVersion;
 import io.vertx.core.json.Json;
 import io.vertx.ext.unit.TestContext;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.hiddenswitch.spellsource.util.Mongo.mongo;
 import static com.hiddenswitch.spellsource.util.QuickJson.json;
@@ -170,4 +179,136 @@ public class FriendTest extends SpellsourceTestBase {
 			}
 		}, context);
 	}
+
+	@Test
+	public void testInitialStateContainsFriendsAndInvites(TestContext context) {
+		sync(() -> {
+			CreateAccountResponse account1 = createRandomAccount();
+			CreateAccountResponse account2 = createRandomAccount();
+			CreateAccountResponse account3 = createRandomAccount();
+			String usernameWithToken2 = account2.getRecord().getUsername() + "#" + account2.getRecord().getPrivacyToken();
+			Friends.putFriend(Accounts.get(account1.getUserId()), new FriendPutRequest().usernameWithToken(usernameWithToken2));
+			InviteResponse invite = Invites.invite(new InvitePostRequest().friend(true).toUserNameWithToken(usernameWithToken2), Accounts.get(account3.getUserId()));
+
+			HttpClient httpClient = Vertx.currentContext().owner().createHttpClient();
+			AtomicReference<Envelope> initialState = new AtomicReference<>();
+			CountDownLatch received = new CountDownLatch(1);
+			WebSocket socket = awaitEvent(h -> httpClient.websocket(8080, "localhost", "/realtime?X-Auth-Token=" + account2.getLoginToken().getToken(),
+					MultiMap.caseInsensitiveMultiMap(), WebsocketVersion.V13, EnvelopeFormat.JSON.getReadyStateSubProtocol(), h, context::fail));
+			context.assertEquals(EnvelopeFormat.JSON.getReadyStateSubProtocol(), socket.subProtocol());
+			socket.handler(buf -> {
+				Envelope msg = Json.decodeValue(buf, Envelope.class);
+				if (msg.getAdded() != null && initialState.compareAndSet(null, msg)) {
+					received.countDown();
+				}
+			});
+			try {
+				// A single envelope contains everything loaded during setup
+				received.await();
+				Envelope first = initialState.get();
+				context.assertEquals(1, first.getAdded().getFriends().size());
+				context.assertEquals(account1.getUserId(), first.getAdded().getFriends().get(0).getFriendId());
+				context.assertEquals(1, first.getAdded().getInvites().size());
+				context.assertEquals(invite.getInvite().getId(), first.getAdded().getInvites().get(0).getId());
+				context.assertEquals(Invite.StatusEnum.PENDING, first.getAdded().getInvites().get(0).getStatus());
+			} finally {
+				socket.close();
+			}
+		}, context);
+	}
+
+	@Test
+	public void testInitialStateIsSentPerRecordWithoutOptIn(TestContext context) {
+		sync(() -> {
+			CreateAccountResponse account1 = createRandomAccount();
+			CreateAccountResponse account2 = createRandomAccount();
+			CreateAccountResponse account3 = createRandomAccount();
+			String usernameWithToken2 = account2.getRecord().getUsername() + "#" + account2.getRecord().getPrivacyToken();
+			Friends.putFriend(Accounts.get(account1.getUserId()), new FriendPutRequest().usernameWithToken(usernameWithToken2));
+			InviteResponse invite = Invites.invite(new InvitePostRequest().friend(true).toUserNameWithToken(usernameWithToken2), Accounts.get(account3.getUserId()));
+
+			HttpClient httpClient = Vertx.currentContext().owner().createHttpClient();
+			Collection<Envelope> added = new ConcurrentLinkedDeque<>();
+			CountDownLatch ready = new CountDownLatch(1);
+			WebSocket socket = awaitEvent(h -> httpClient.websocket(8080, "localhost", "/realtime?X-Auth-Token=" + account2.getLoginToken().getToken(), h));
+			socket.handler(buf -> {
+				Envelope msg = Json.decodeValue(buf, Envelope.class);
+				if (msg.equals(new Envelope())) {
+					ready.countDown();
+				} else if (msg.getAdded() != null && ready.getCount() > 0) {
+					added.add(msg);
+				}
+			});
+			try {
+				// Clients that did not request a ready sub-protocol receive an added envelope per record before the ready one
+				ready.await();
+				context.assertEquals(2, added.size());
+				for (Envelope envelope : added) {
+					context.assertNull(envelope.getAdded().getFriends());
+					context.assertNull(envelope.getAdded().getInvites());
+				}
+				context.assertTrue(added.stream().anyMatch(envelope -> envelope.getAdded().getFriend() != null
+						&& account1.getUserId().equals(envelope.getAdded().getFriend().getFriendId())));
+				context.assertTrue(added.stream().anyMatch(envelope -> envelope.getAdded().getInvite() != null
+						&& invite.getInvite().getId().equals(envelope.getAdded().getInvite().getId())));
+			} finally {
+				socket.close();
+			}
+		}, context);
+	}
+
+	@Test(timeout = 15000L)
+	public void testFriendGraphFollowsFriendships(TestContext context) {
+		sync(() -> {
+			CreateAccountResponse account1 = createRandomAccount();
+			CreateAccountResponse account2 = createRandomAccount();
+			FriendGraph graph = FriendGraph.current();
+			context.assertTrue(graph.getFriends(account1.getUserId()).isEmpty());
+
+			FriendPutResponse put = Friends.putFriend(Accounts.get(account1.getUserId()), new FriendPutRequest().usernameWithToken(account2.getRecord().getUsername() + "#" + account2.getRecord().getPrivacyToken()));
+			context.assertEquals(Presence.getPresence(account2.getUserId()), put.getFriend().getPresence());
+			context.assertTrue(graph.getFriends(account1.getUserId()).contains(account2.getUserId()));
+			context.assertTrue(graph.getFriends(account2.getUserId()).contains(account1.getUserId()));
+
+			// Presence changes are replicated through the event bus
+			Presence.updatePresence(new UserId(account1.getUserId()), PresenceEnum.IN_GAME);
+			while (graph.getPresence(account1.getUserId()) != PresenceEnum.IN_GAME) {
+				Strand.sleep(10L);
+			}
+			context.assertEquals(PresenceEnum.IN_GAME, Presence.getPresence(account1.getUserId()));
+
+			// The removed friend is returned with their current presence
+			Presence.updatePresence(new UserId(account2.getUserId()), PresenceEnum.ONLINE);
+			while (graph.getPresence(account2.getUserId()) != PresenceEnum.ONLINE) {
+				Strand.sleep(10L);
+			}
+			UnfriendResponse unfriend = Friends.unfriend(Accounts.get(account1.getUserId()), account2.getUserId());
+			context.assertEquals(PresenceEnum.ONLINE, unfriend.getDeletedFriend().getPresence());
+			context.assertFalse(graph.getFriends(account1.getUserId()).contains(account2.getUserId()));
+			while (graph.getFriends(account2.getUserId()).contains(account1.getUserId())) {
+				Strand.sleep(10L);
+			}
+		}, context);
+	}
+
+	@Test(timeout = 15000L)
+	public void testGetPresencesMatchesGetPresence(TestContext context) {
+		sync(() -> {
+			CreateAccountResponse account1 = createRandomAccount();
+			CreateAccountResponse account2 = createRandomAccount();
+			FriendGraph graph = FriendGraph.current();
+			Presence.updatePresence(new UserId(account1.getUserId()), PresenceEnum.IN_GAME);
+			while (graph.getPresence(account1.getUserId()) != PresenceEnum.IN_GAME) {
+				Strand.sleep(10L);
+			}
+
+			// A user this node has not received a presence for is determined from their connections
+			context.assertNull(graph.getPresence(account2.getUserId()));
+			Map<String, PresenceEnum> presences = Presence.getPresences(Arrays.asList(account1.getUserId(), account2.getUserId()));
+			context.assertEquals(PresenceEnum.IN_GAME, presences.get(account1.getUserId()));
+			context.assertEquals(PresenceEnum.OFFLINE, presences.get(account2.getUserId()));
+			context.assertEquals(PresenceEnum.OFFLINE, graph.getPresence(account2.getUserId()));
+			context.assertEquals(Presence.getPresence(account2.getUserId()), presences.get(account2.getUserId()));
+		}, context);
+	}
 }
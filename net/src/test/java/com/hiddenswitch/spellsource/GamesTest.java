@@ -1,15 +1,20 @@
 package com.hiddenswitch.spellsource;
 
 import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.concurrent.CountDownLatch;
 import com.hiddenswitch.spellsource.client.models.ServerToClientMessage;
+import com.hiddenswitch.spellsource.impl.GameId;
 import com.hiddenswitch.spellsource.impl.SpellsourceTestBase;
 import com.hiddenswitch.spellsource.impl.UserId;
+import com.hiddenswitch.spellsource.models.DeploymentLoad;
 import com.hiddenswitch.spellsource.util.UnityClient;
 import io.vertx.ext.unit.TestContext;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.hiddenswitch.spellsource.util.Sync.invoke;
@@ -17,6 +22,12 @@ import static com.hiddenswitch.spellsource.util.Sync.invoke0;
 
 public class GamesTest extends SpellsourceTestBase {
 
+	@Override
+	protected int getConcurrency() {
+		// Games are moved and placed between deployments
+		return Math.max(2, super.getConcurrency());
+	}
+
 	@Test(timeout = 15000L)
 	public void testReconnectsResumesMulligan(TestContext context) {
 		sync(() -> {
@@ -89,4 +100,131 @@ public class GamesTest extends SpellsourceTestBase {
 			}
 		}, context);
 	}
+
+	@Test
+	public void testPlacesGamesOnLeastLoadedNode(TestContext context) {
+		Map<String, DeploymentLoad> deployments = new HashMap<>();
+		deployments.put("a1", new DeploymentLoad().setNodeId("a").setProcessors(4).setGames(6).setCpuLoad(0.5));
+		deployments.put("a2", new DeploymentLoad().setNodeId("a").setProcessors(4).setGames(2).setCpuLoad(0.5));
+		deployments.put("b1", new DeploymentLoad().setNodeId("b").setProcessors(2).setGames(3).setCpuLoad(0.1));
+		deployments.put("b2", new DeploymentLoad().setNodeId("b").setProcessors(2).setGames(2).setCpuLoad(0.1));
+		// Node a has 8 games on 4 processors, node b has 5 games on 2 processors
+		context.assertEquals("a2", Games.placeGame(deployments));
+
+		// Saturated nodes are skipped
+		deployments.get("a1").setHeapLoad(0.99);
+		deployments.get("a1").setUpdatedAt(1L);
+		context.assertEquals("b2", Games.placeGame(deployments));
+
+		System.setProperty("games.maxGamesPerNode", "5");
+		try {
+			context.assertNull(Games.placeGame(deployments));
+		} finally {
+			System.clearProperty("games.maxGamesPerNode");
+		}
+	}
+
+	@Test(timeout = 45000L)
+	public void testCreatesGamesOnPlacedDeployment(TestContext context) {
+		sync(() -> {
+			CountDownLatch firstRequest = new CountDownLatch(1);
+			CountDownLatch secondRequest = new CountDownLatch(1);
+			// Both games are kept running while their deployments are checked
+			try (UnityClient first = new UnityClient(context) {
+				@Override
+				protected boolean onRequestAction(ServerToClientMessage message) {
+					firstRequest.countDown();
+					return false;
+				}
+			}; UnityClient second = new UnityClient(context) {
+				@Override
+				protected boolean onRequestAction(ServerToClientMessage message) {
+					secondRequest.countDown();
+					return false;
+				}
+			}) {
+				invoke0(first::createUserAccount);
+				invoke0(first::matchmakeQuickPlay, null);
+				firstRequest.await();
+
+				// The hosting deployment publishes its load as soon as the game is hosted
+				String busy = Games.getConnections().get(Games.getUsersInGames().get(first.getUserId())).deploymentId;
+				Map<String, DeploymentLoad> deployments = Games.getLiveDeployments();
+				context.assertEquals(1, deployments.get(busy).getGames());
+				String expected = Games.placeGame(deployments);
+				context.assertNotEquals(busy, expected);
+
+				invoke0(second::createUserAccount);
+				invoke0(second::matchmakeQuickPlay, null);
+				secondRequest.await();
+				GameId gameId = Games.getUsersInGames().get(second.getUserId());
+				context.assertEquals(expected, Games.getConnections().get(gameId).deploymentId);
+			}
+		}, context);
+	}
+
+	@Test(timeout = 45000L)
+	public void testPlacesGamesWhenEveryNodeIsSaturated(TestContext context) {
+		System.setProperty("games.maxGamesPerNode", "1");
+		System.setProperty("games.placementTimeout", "1");
+		sync(() -> {
+			CountDownLatch firstRequest = new CountDownLatch(1);
+			try (UnityClient client = new UnityClient(context) {
+				@Override
+				protected boolean onRequestAction(ServerToClientMessage message) {
+					firstRequest.countDown();
+					return false;
+				}
+			}) {
+				invoke0(client::createUserAccount);
+				invoke0(client::matchmakeQuickPlay, null);
+				firstRequest.await();
+
+				context.assertNull(Games.placeGame(Games.getLiveDeployments()));
+				// Matched players still get a game after the placement timeout
+				context.assertNotNull(Games.placeGame());
+			} finally {
+				System.clearProperty("games.maxGamesPerNode");
+				System.clearProperty("games.placementTimeout");
+			}
+		}, context);
+	}
+
+	@Test(timeout = 45000L)
+	public void testMigrateGameToAnotherDeployment(TestContext context) {
+		sync(() -> {
+			CountDownLatch firstRequest = new CountDownLatch(1);
+			AtomicInteger requests = new AtomicInteger();
+			try (UnityClient client = new UnityClient(context) {
+				@Override
+				protected boolean onRequestAction(ServerToClientMessage message) {
+					// Hold on to the first request so that the game waits for a turn action while it is moved
+					if (requests.getAndIncrement() == 0) {
+						firstRequest.countDown();
+						return false;
+					}
+					return true;
+				}
+			}) {
+				invoke0(client::createUserAccount);
+				invoke0(client::matchmakeQuickPlay, null);
+				firstRequest.await();
+
+				GameId gameId = Games.getUsersInGames().get(client.getUserId());
+				String original = Games.getConnections().get(gameId).deploymentId;
+				String target = Games.getLiveDeployments().keySet().stream()
+						.filter(deploymentId -> !deploymentId.equals(original))
+						.findFirst()
+						.orElseThrow(AssertionError::new);
+
+				context.assertEquals(target, Games.migrateGame(gameId, target));
+				context.assertEquals(target, Games.getConnections().get(gameId).deploymentId);
+
+				// The new deployment requests the held action again, and the game is played to its end there
+				invoke0(client::waitUntilDone);
+				context.assertTrue(requests.get() > 1);
+				context.assertTrue(client.isGameOver());
+			}
+		}, context);
+	}
 }
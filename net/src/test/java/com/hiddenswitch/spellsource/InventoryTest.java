@@ -1,9 +1,12 @@
 package com.hiddenswitch.spellsource;
 
 import com.hiddenswitch.spellsource.impl.SpellsourceTestBase;
+import com.hiddenswitch.spellsource.impl.util.InventoryCountsRecord;
 import com.hiddenswitch.spellsource.impl.util.InventoryRecord;
 import com.hiddenswitch.spellsource.models.*;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.TestContext;
+import net.demilich.metastone.game.cards.Attribute;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.junit.Assert;
 import org.junit.Test;
@@ -11,8 +14,11 @@ import org.junit.runner.RunWith;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.stream.Stream;
 
+import static com.hiddenswitch.spellsource.util.Mongo.mongo;
+
 @RunWith(VertxUnitRunner.class)
 public class InventoryTest extends SpellsourceTestBase {
 
@@ -123,4 +129,69 @@ public class InventoryTest extends SpellsourceTestBase {
 							&& record.getCollectionIds().stream().anyMatch(cid -> cid.equals(newDeck.getCollectionId()))).count());
 		}, context);
 	}
+
+	@Test
+	public void testCollectionsAreStoredAsCounts(TestContext context) {
+		sync(() -> {
+			String userId = createRandomAccount().getUserId();
+			List<String> inventoryIds = Inventory.createCardsForUser(Arrays.asList("minion_test_3_2", "spell_test_deal_6"), userId, 3);
+			context.assertEquals(6, inventoryIds.size());
+			context.assertEquals(6L, inventoryIds.stream().distinct().count());
+
+			// The user's cards are in a single document, and only copies that are in decks get their own entries
+			CreateCollectionResponse deck = Inventory.createCollection(CreateCollectionRequest.deck(userId, "name", "TEST", Collections.singletonList(inventoryIds.get(0)), false));
+			InventoryCountsRecord counts = mongo().findOneById(Inventory.COUNTS, userId, InventoryCountsRecord.class);
+			context.assertEquals(3, counts.getCounts().get("spell_test_deal_6"));
+			context.assertEquals(1, counts.getCopies().size());
+			context.assertTrue(counts.getCollectionIds().contains(deck.getCollectionId()));
+
+			GetCollectionResponse deckCollection = Inventory.getCollection(GetCollectionRequest.deck(deck.getCollectionId()));
+			context.assertEquals(1, deckCollection.getInventoryRecords().size());
+			context.assertEquals(inventoryIds.get(0), deckCollection.getInventoryRecords().get(0).getId());
+
+			// Facts are stored on the copy
+			Inventory.setFact(Collections.singletonList(inventoryIds.get(1)), Attribute.RESERVED_INTEGER_4.toKeyCase(), 4);
+			InventoryRecord withFact = Inventory.getCollection(GetCollectionRequest.user(userId)).getInventoryRecords().stream()
+					.filter(record -> record.getId().equals(inventoryIds.get(1)))
+					.findFirst().orElseThrow(AssertionError::new);
+			context.assertEquals(4, withFact.getPersistentAttribute(Attribute.RESERVED_INTEGER_4, 0));
+
+			// New copies are numbered after the existing ones
+			List<String> more = Inventory.createCardsForUser(Collections.singletonList("spell_test_deal_6"), userId, 1);
+			context.assertEquals(InventoryCountsRecord.getInventoryId(userId, "spell_test_deal_6", 3), more.get(0));
+			context.assertEquals(7, Inventory.getCollection(GetCollectionRequest.user(userId)).getInventoryRecords().size());
+		}, context);
+	}
+
+	@Test
+	public void testLegacyInventoryRecordsConvertToCounts() {
+		String userId = "user1";
+		InventoryRecord unused = new InventoryRecord("a", new JsonObject().put("id", "minion_test_3_2"))
+				.withUserId(userId)
+				.withCollectionIds(Collections.singletonList(userId));
+		InventoryRecord inDeck = new InventoryRecord("b", new JsonObject().put("id", "minion_test_3_2"))
+				.withUserId(userId)
+				.withCollectionIds(Arrays.asList(userId, "deck1"));
+		InventoryRecord donated = new InventoryRecord("c", new JsonObject().put("id", "spell_test_deal_6"))
+				.withUserId(userId)
+				.withCollectionIds(Collections.singletonList("alliance1"));
+		donated.setAllianceId("alliance1");
+		donated.putPersistentAttribute(Attribute.RESERVED_INTEGER_4, 2);
+
+		InventoryCountsRecord counts = new InventoryCountsRecord(userId).addInventoryRecords(Arrays.asList(unused, inDeck, donated));
+		Assert.assertEquals(2, (int) counts.getCounts().get("minion_test_3_2"));
+		Assert.assertEquals(1, (int) counts.getCounts().get("spell_test_deal_6"));
+		Assert.assertEquals(2, counts.getCopies().size());
+		Assert.assertEquals(Arrays.asList("deck1", "alliance1"), counts.getCollectionIds());
+
+		List<InventoryRecord> records = counts.getInventoryRecords();
+		Assert.assertEquals(3, records.size());
+		Assert.assertEquals(1, counts.getInventoryRecordsInCollections(Collections.singletonList("deck1")).size());
+		Assert.assertEquals(2, counts.getInventoryRecordsInCollections(Collections.singletonList(userId)).size());
+		InventoryRecord migratedDonation = counts.getInventoryRecordsInCollections(Collections.singletonList("alliance1")).get(0);
+		Assert.assertEquals(InventoryCountsRecord.getInventoryId(userId, "spell_test_deal_6", 0), migratedDonation.getId());
+		Assert.assertEquals(userId, migratedDonation.getDonorUserId());
+		Assert.assertEquals("alliance1", migratedDonation.getAllianceId());
+		Assert.assertEquals(2, (int) migratedDonation.getPersistentAttribute(Attribute.RESERVED_INTEGER_4, 0));
+	}
 }
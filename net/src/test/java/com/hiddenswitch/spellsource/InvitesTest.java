@@ -9,14 +9,21 @@ import com.hiddenswitch.spellsource.client.ApiException;
 import com.hiddenswitch.spellsource.client.models.*;
 import com.hiddenswitch.spellsource.concurrent.SuspendableQueue;
 import com.hiddenswitch.spellsource.impl.SpellsourceTestBase;
+import com.hiddenswitch.spellsource.models.CreateAccountResponse;
 import com.hiddenswitch.spellsource.util.UnityClient;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.mongo.UpdateOptions;
 import io.vertx.ext.unit.TestContext;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static co.paralleluniverse.strands.Strand.sleep;
+import static com.hiddenswitch.spellsource.util.Mongo.mongo;
+import static com.hiddenswitch.spellsource.util.QuickJson.json;
 import static com.hiddenswitch.spellsource.util.Sync.invoke;
 import static com.hiddenswitch.spellsource.util.Sync.invoke0;
 
@@ -354,4 +361,29 @@ public class InvitesTest extends SpellsourceTestBase {
 		}, testContext);
 
 	}
+
+	@Test
+	public void testExpiresInvitesInBulk(TestContext testContext) {
+		sync(() -> {
+			CreateAccountResponse sender = createRandomAccount();
+			List<String> inviteIds = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				CreateAccountResponse recipient = createRandomAccount();
+				inviteIds.add(Invites.invite(new InvitePostRequest()
+						.friend(true)
+						.toUserNameWithToken(recipient.getRecord().getUsername() + "#" + recipient.getRecord().getPrivacyToken()), Accounts.get(sender.getUserId())).getInvite().getId());
+			}
+
+			// Only invites whose expiration time has passed are expired
+			mongo().updateCollectionWithOptions(Invites.INVITES, json("_id", json("$in", new JsonArray(inviteIds.subList(0, 2)))),
+					json("$set", json("expiresAt", System.currentTimeMillis() - 1L)), new UpdateOptions().setMulti(true));
+			// The gateway's timer may get to them first
+			Invites.expireInvites();
+
+			for (int i = 0; i < inviteIds.size(); i++) {
+				Invite invite = mongo().findOne(Invites.INVITES, json("_id", inviteIds.get(i)), Invite.class);
+				testContext.assertEquals(i < 2 ? Invite.StatusEnum.TIMEOUT : Invite.StatusEnum.UNDELIVERED, invite.getStatus());
+			}
+		}, testContext);
+	}
 }
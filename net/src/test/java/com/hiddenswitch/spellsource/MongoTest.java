@@ -0,0 +1,120 @@
+package com.hiddenswitch.spellsource;
+
+import co.paralleluniverse.strands.Strand;
+import com.hiddenswitch.spellsource.impl.SpellsourceTestBase;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.unit.TestContext;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hiddenswitch.spellsource.util.Mongo.mongo;
+import static com.hiddenswitch.spellsource.util.QuickJson.json;
+import static com.hiddenswitch.spellsource.util.Sync.suspendableHandler;
+import static io.vertx.ext.sync.Sync.awaitResult;
+import static org.junit.Assert.*;
+
+public class MongoTest extends SpellsourceTestBase {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testFindOneByIdBatchesConcurrentLookups(TestContext context) {
+		sync(() -> {
+			String collection = "test.findOneById." + RandomStringUtils.randomAlphanumeric(8);
+			for (int i = 0; i < 5; i++) {
+				mongo().insert(collection, json("_id", "doc" + i, "value", i));
+			}
+
+			// Start every lookup in the same tick, including a missing document and the same document twice
+			List<String> ids = new ArrayList<>();
+			for (int i = 0; i < 5; i++) {
+				ids.add("doc" + i);
+			}
+			ids.add("missing");
+			ids.add("doc0");
+
+			List<Future> lookups = new ArrayList<>();
+			for (String id : ids) {
+				Future<JsonObject> lookup = Future.future();
+				lookups.add(lookup);
+				Vertx.currentContext().runOnContext(suspendableHandler(v -> lookup.complete(mongo().findOneById(collection, id))));
+			}
+			CompositeFuture results = awaitResult(h -> CompositeFuture.all(lookups).setHandler(h));
+
+			for (int i = 0; i < 5; i++) {
+				JsonObject document = results.resultAt(i);
+				assertEquals("doc" + i, document.getString("_id"));
+				assertEquals(i, (int) document.getInteger("value"));
+			}
+			assertNull(results.resultAt(5));
+			// Waiters on the same document get their own copies
+			JsonObject first = results.resultAt(0);
+			JsonObject duplicate = results.resultAt(6);
+			assertEquals(first, duplicate);
+			assertNotSame(first, duplicate);
+
+			assertNull(mongo().findOneById(collection, "missing"));
+			assertEquals(3, (int) mongo().findOneById(collection, "doc3").getInteger("value"));
+			mongo().removeDocuments(collection, json());
+		}, context);
+	}
+
+	@Test
+	public void testForEachBatchVisitsEveryDocumentOnce(TestContext context) {
+		sync(() -> {
+			String collection = "test.forEachBatch." + RandomStringUtils.randomAlphanumeric(8);
+			int total = Migrations.BATCH_SIZE * Migrations.PARALLELISM * 2 + 3;
+			List<JsonObject> documents = new ArrayList<>();
+			for (int i = 0; i < total; i++) {
+				documents.add(json("_id", String.format("doc%05d", i), "value", i));
+			}
+			mongo().insertMany(collection, documents);
+
+			// Update the documents being visited, which must not affect which documents are read next
+			long visited = Migrations.forEachBatch("testForEachBatch", collection, json("value", json("$gte", 0)), json("_id", 1), batch -> {
+				List<BulkOperation> updates = new ArrayList<>();
+				for (JsonObject document : batch) {
+					updates.add(BulkOperation.createUpdate(json("_id", document.getString("_id")), json("$inc", json("visits", 1))));
+				}
+				mongo().bulkWrite(collection, updates);
+			});
+
+			assertEquals(total, visited);
+			assertEquals(total, (long) mongo().count(collection, json("visits", 1)));
+			assertEquals(0L, Migrations.forEachBatch("testForEachBatch", collection, json("value", json("$lt", 0)), json("_id", 1), batch -> fail()));
+			mongo().removeDocuments(collection, json());
+		}, context);
+	}
+
+	@Test
+	public void testForEachBatchWaitsForRunningBatchesOnFailure(TestContext context) {
+		sync(() -> {
+			List<Integer> items = new ArrayList<>();
+			for (int i = 0; i < Migrations.BATCH_SIZE * Migrations.PARALLELISM; i++) {
+				items.add(i);
+			}
+
+			AtomicInteger finished = new AtomicInteger();
+			try {
+				Migrations.forEachBatch("testForEachBatchFailure", items, batch -> {
+					if (batch.get(0) == 0) {
+						throw new IllegalStateException("first batch");
+					}
+					Strand.sleep(200L);
+					finished.incrementAndGet();
+				});
+				fail("the failure of the first batch should be rethrown");
+			} catch (RuntimeException expected) {
+				// The other batches were already running when the first one failed
+				assertEquals(Migrations.PARALLELISM - 1, finished.get());
+			}
+		}, context);
+	}
+}
@@ -4,6 +4,7 @@ import com.hiddenswitch.spellsource.client.ApiException;
 import com.hiddenswitch.spellsource.client.models.DecksPutRequest;
 import com.hiddenswitch.spellsource.client.models.DecksPutResponse;
 import com.hiddenswitch.spellsource.impl.SpellsourceTestBase;
+import com.hiddenswitch.spellsource.impl.util.InventoryCountsRecord;
 import com.hiddenswitch.spellsource.util.Mongo;
 import com.hiddenswitch.spellsource.util.QuickJson;
 import com.hiddenswitch.spellsource.util.UnityClient;
@@ -15,6 +16,7 @@ import net.demilich.metastone.game.cards.Attribute;
 import org.junit.Test;
 
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -24,6 +26,7 @@ public class PersistenceTest extends SpellsourceTestBase {
 	@Test
 	public void testMinionatePersistenceApi(TestContext context) {
 		ConcurrentLinkedQueue<Long> queue = new ConcurrentLinkedQueue<Long>();
+		AtomicReference<String> userId = new AtomicReference<>();
 		Vertx vertx = contextRule.vertx();
 		Spellsource.spellsource().persistAttribute("reserved-attribute-1", GameEventType.TURN_END, Attribute.RESERVED_INTEGER_4, persistenceContext -> {
 			// Save the turn number to this yogg attribute
@@ -36,6 +39,7 @@ public class PersistenceTest extends SpellsourceTestBase {
 		vertx.executeBlocking(fut -> {
 			UnityClient client = new UnityClient(context);
 			client.createUserAccount();
+			userId.set(client.getUserId().toString());
 			// The user needs a deck of persistent effect cards
 			DecksPutResponse decksPutResponse;
 			try {
@@ -55,10 +59,12 @@ public class PersistenceTest extends SpellsourceTestBase {
 			fut.complete();
 		}, context.asyncAssertSuccess(also -> {
 			context.assertTrue(queue.stream().anyMatch(l -> l > 0L), "Any number of the entities updated was greater than zero.");
-			Mongo.mongo().client().count(Inventory.INVENTORY,
-					QuickJson.json("facts." + Attribute.RESERVED_INTEGER_4.toKeyCase(), QuickJson.json("$exists", true)),
-					context.asyncAssertSuccess(count -> {
-						context.assertTrue(count > 0L, "There is at least one inventory item that has the attribute that we configured to listen for.");
+			Mongo.mongo().client().findOne(Inventory.COUNTS,
+					QuickJson.json("_id", userId.get()), null,
+					context.asyncAssertSuccess(document -> {
+						InventoryCountsRecord counts = QuickJson.fromJson(document, InventoryCountsRecord.class);
+						context.assertTrue(counts.getInventoryRecords().stream().anyMatch(record -> record.getFacts().containsKey(Attribute.RESERVED_INTEGER_4.toKeyCase())),
+								"There is at least one inventory item that has the attribute that we configured to listen for.");
 					}));
 		}));
 	}
@@ -0,0 +1,123 @@
+package com.hiddenswitch.spellsource;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.fibers.Suspendable;
+import com.hiddenswitch.spellsource.concurrent.SuspendableFunction;
+import com.hiddenswitch.spellsource.util.Registration;
+import com.hiddenswitch.spellsource.util.Rpc;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.ext.sync.SyncVerticle;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.hiddenswitch.spellsource.util.Sync.suspendableHandler;
+
+@RunWith(VertxUnitRunner.class)
+public class RpcTest {
+
+	@Rule
+	public RunTestOnContext contextRule = new RunTestOnContext();
+
+	public interface Counter {
+		@Suspendable
+		Value increment(Value request) throws SuspendExecution, InterruptedException;
+	}
+
+	public static class Value implements Serializable {
+		private int value;
+
+		public Value() {
+		}
+
+		public Value(int value) {
+			this.value = value;
+		}
+
+		public int getValue() {
+			return value;
+		}
+
+		public void setValue(int value) {
+			this.value = value;
+		}
+	}
+
+	public static class CounterService extends SyncVerticle implements Counter {
+		private Registration registration;
+		private Context serviceContext;
+		private Context lastContext;
+		private Value lastRequest;
+
+		@Override
+		@Suspendable
+		public void start() throws SuspendExecution {
+			serviceContext = Vertx.currentContext();
+			registration = Rpc.register(this, Counter.class);
+		}
+
+		@Override
+		public Value increment(Value request) {
+			lastContext = Vertx.currentContext();
+			lastRequest = request;
+			if (request.getValue() < 0) {
+				throw new IllegalArgumentException("request.value");
+			}
+			return new Value(request.getValue() + 1);
+		}
+
+		@Override
+		@Suspendable
+		public void stop() throws Exception {
+			Rpc.unregister(registration);
+			super.stop();
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testLocalCallsAndBatches(TestContext testContext) {
+		CounterService service = new CounterService();
+		Async async = testContext.async();
+		contextRule.vertx().deployVerticle(service, testContext.asyncAssertSuccess(deploymentId -> {
+			Vertx.currentContext().runOnContext(suspendableHandler(v -> {
+				// Local calls run on the service's context without copying the request
+				Value request = new Value(1);
+				testContext.assertEquals(2, Rpc.connect(Counter.class).sync().increment(request).getValue());
+				testContext.assertTrue(service.lastRequest == request);
+				testContext.assertTrue(service.lastContext == service.serviceContext);
+
+				// Calls to a specific instance
+				testContext.assertEquals(3, Rpc.connect(Counter.class).sync(deploymentId).increment(new Value(2)).getValue());
+
+				List<SuspendableFunction<Counter, Value>> calls = new ArrayList<>();
+				for (int i = 0; i < 3; i++) {
+					Value value = new Value(i);
+					calls.add(counter -> counter.increment(value));
+				}
+				List<Value> responses = Rpc.connect(Counter.class).batch(calls);
+				testContext.assertEquals(3, responses.size());
+				for (int i = 0; i < 3; i++) {
+					testContext.assertEquals(i + 1, responses.get(i).getValue());
+				}
+
+				// Failures are reported like event bus failures
+				try {
+					Rpc.connect(Counter.class).sync().increment(new Value(-1));
+					testContext.fail("should throw");
+				} catch (RuntimeException expected) {
+					testContext.assertTrue(expected.getMessage().contains("request.value"));
+				}
+				async.complete();
+			}));
+		}));
+	}
+}
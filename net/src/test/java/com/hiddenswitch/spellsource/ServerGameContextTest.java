@@ -1,6 +1,11 @@
 package com.hiddenswitch.spellsource;
 
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.fibers.Suspendable;
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.concurrent.CountDownLatch;
 import com.hiddenswitch.spellsource.client.models.ClientToServerMessage;
+import com.hiddenswitch.spellsource.client.models.MessageType;
 import com.hiddenswitch.spellsource.client.models.ServerToClientMessage;
 import com.hiddenswitch.spellsource.common.Server;
 import com.hiddenswitch.spellsource.common.UnityClientBehaviour;
@@ -9,11 +14,14 @@ import com.hiddenswitch.spellsource.impl.SpellsourceTestBase;
 import com.hiddenswitch.spellsource.impl.TimerId;
 import com.hiddenswitch.spellsource.impl.UserId;
 import com.hiddenswitch.spellsource.impl.server.Configuration;
+import com.hiddenswitch.spellsource.impl.server.TimerWheel;
 import com.hiddenswitch.spellsource.impl.util.Scheduler;
 import com.hiddenswitch.spellsource.impl.util.ServerGameContext;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.streams.ReadStream;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -21,16 +29,23 @@ import io.vertx.ext.unit.junit.VertxUnitRunner;
 import io.vertx.test.fakestream.FakeStream;
 import net.demilich.metastone.game.cards.CardCatalogue;
 import net.demilich.metastone.game.decks.Deck;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.After;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunnerDelegate;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.vertx.ext.sync.Sync.awaitResult;
 
 import static net.demilich.metastone.tests.util.TestBase.assertThrows;
 import static org.junit.Assert.*;
@@ -86,4 +101,138 @@ public class ServerGameContextTest extends SpellsourceTestBase {
 			new ServerGameContext(null, new TestScheduler(), playerConfigurations);
 		});
 	}
+
+	@After
+	public void clearHibernationProperties() {
+		System.clearProperty("games.hibernationDelay");
+		System.clearProperty("games.hibernationDirectory");
+	}
+
+	/**
+	 * Plays a game between two humans on the event bus. The first player holds on to their first turn action request
+	 * until {@code respond} is counted down, while every other request is answered by ending the turn.
+	 */
+	private static class HeldTurnGame {
+		final UserId holder = new UserId("hibernation-" + RandomStringUtils.randomAlphanumeric(8));
+		final UserId opponent = new UserId("hibernation-" + RandomStringUtils.randomAlphanumeric(8));
+		final CountDownLatch held = new CountDownLatch(1);
+		final CountDownLatch respond = new CountDownLatch(1);
+		final AtomicReference<ServerToClientMessage> heldRequest = new AtomicReference<>();
+		final AtomicInteger holderRequests = new AtomicInteger();
+		final List<MessageConsumer<ServerToClientMessage>> consumers = new ArrayList<>();
+		ServerGameContext context;
+
+		@Suspendable
+		void start() throws SuspendExecution, InterruptedException {
+			Vertx vertx = Vertx.currentContext().owner();
+			EventBus bus = vertx.eventBus();
+			for (UserId userId : new UserId[]{holder, opponent}) {
+				MessageConsumer<ServerToClientMessage> consumer = ServerGameContext.fromServer(bus, userId.toString());
+				consumer.handler(msg -> handle(bus, userId, msg.body()));
+				consumers.add(consumer);
+				Void registered = awaitResult(consumer::completionHandler);
+			}
+
+			context = new ServerGameContext(new GameId("hibernation-" + RandomStringUtils.randomAlphanumeric(8)),
+					TimerWheel.get(vertx).scheduler(),
+					Arrays.asList(new Configuration()
+									.setDeck(Deck.randomDeck())
+									.setName("holder")
+									.setPlayerId(0)
+									.setUserId(holder),
+							new Configuration()
+									.setDeck(Deck.randomDeck())
+									.setName("opponent")
+									.setPlayerId(1)
+									.setUserId(opponent)));
+			context.play(true);
+			context.awaitReadyForConnections();
+			for (UserId userId : new UserId[]{holder, opponent}) {
+				ServerGameContext.clientToServer(bus, userId.toString(), new ClientToServerMessage().messageType(MessageType.FIRST_MESSAGE));
+			}
+		}
+
+		private void handle(EventBus bus, UserId userId, ServerToClientMessage message) {
+			switch (message.getMessageType()) {
+				case ON_MULLIGAN:
+					ServerGameContext.clientToServer(bus, userId.toString(), new ClientToServerMessage()
+							.messageType(MessageType.UPDATE_MULLIGAN)
+							.repliesTo(message.getId())
+							.discardedCardIndices(Collections.emptyList()));
+					break;
+				case ON_REQUEST_ACTION:
+					if (userId.equals(holder) && holderRequests.getAndIncrement() == 0) {
+						heldRequest.set(message);
+						held.countDown();
+						return;
+					}
+					endTurn(bus, userId, message);
+					break;
+			}
+		}
+
+		private static void endTurn(EventBus bus, UserId userId, ServerToClientMessage message) {
+			Integer endTurn = message.getActions().getEndTurn();
+			ServerGameContext.clientToServer(bus, userId.toString(), new ClientToServerMessage()
+					.messageType(MessageType.UPDATE_ACTION)
+					.repliesTo(message.getId())
+					.actionIndex(endTurn == null ? 0 : endTurn));
+		}
+
+		@Suspendable
+		void stop() {
+			context.loseBothPlayers();
+			for (MessageConsumer<ServerToClientMessage> consumer : consumers) {
+				consumer.unregister();
+			}
+		}
+	}
+
+	@Test(timeout = 45000L)
+	public void testHibernatedGameWakesWhenPlayerResponds(TestContext testContext) {
+		System.setProperty("games.hibernationDelay", "300");
+		sync(() -> {
+			HeldTurnGame game = new HeldTurnGame();
+			game.start();
+			game.held.await();
+			int turn = game.context.getTurn();
+
+			while (!game.context.isHibernated()) {
+				Strand.sleep(50L);
+			}
+			assertTrue(game.context.isRunning());
+
+			// Answering the held request restores the game and performs the action
+			HeldTurnGame.endTurn(Vertx.currentContext().owner().eventBus(), game.holder, game.heldRequest.get());
+			while (game.holderRequests.get() < 2) {
+				Strand.sleep(50L);
+			}
+			assertFalse(game.context.isHibernated());
+			assertTrue(game.context.isRunning());
+			assertTrue(game.context.getTurn() > turn);
+			assertNotNull("the entities should be restored", game.context.getPlayer(0).getHero());
+			game.stop();
+		}, testContext);
+	}
+
+	@Test(timeout = 45000L)
+	public void testGameKeepsRunningWhenHibernationFails(TestContext testContext) {
+		System.setProperty("games.hibernationDelay", "300");
+		// The snapshot cannot be written to a directory that does not exist
+		System.setProperty("games.hibernationDirectory", "/nonexistent-" + RandomStringUtils.randomAlphanumeric(8));
+		sync(() -> {
+			HeldTurnGame game = new HeldTurnGame();
+			game.start();
+			game.held.await();
+
+			// The turn continues in a new fiber, which requests the action again. Answering it plays the game on to the
+			// holder's next turn.
+			while (game.holderRequests.get() < 3) {
+				assertFalse(game.context.isHibernated());
+				Strand.sleep(50L);
+			}
+			assertTrue(game.context.isRunning());
+			game.stop();
+		}, testContext);
+	}
 }
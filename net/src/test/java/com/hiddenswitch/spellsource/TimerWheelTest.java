@@ -0,0 +1,81 @@
+package com.hiddenswitch.spellsource;
+
+import com.hiddenswitch.spellsource.impl.TimerId;
+import com.hiddenswitch.spellsource.impl.server.TimerWheel;
+import com.hiddenswitch.spellsource.impl.server.WheelScheduler;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class TimerWheelTest {
+
+	@Rule
+	public RunTestOnContext contextRule = new RunTestOnContext();
+
+	@Test(timeout = 5000)
+	public void testTimersFireAfterDelay(TestContext testContext) {
+		WheelScheduler scheduler = TimerWheel.get(contextRule.vertx()).scheduler();
+		Async async = testContext.async();
+		long start = System.currentTimeMillis();
+		TimerId id = scheduler.setTimer(300L, timerId -> {
+			testContext.assertTrue(System.currentTimeMillis() - start >= 300L, "should not fire early");
+			testContext.assertEquals(0, scheduler.getTimerCount());
+			async.complete();
+		});
+		testContext.assertEquals(1, scheduler.getTimerCount());
+		testContext.assertNotNull(id);
+	}
+
+	@Test(timeout = 5000)
+	public void testRescheduleAndCancel(TestContext testContext) {
+		WheelScheduler scheduler = TimerWheel.get(contextRule.vertx()).scheduler();
+		Async async = testContext.async();
+		long start = System.currentTimeMillis();
+		TimerId cancelled = scheduler.setTimer(200L, timerId -> testContext.fail("cancelled timer fired"));
+		TimerId rescheduled = scheduler.setTimer(200L, timerId -> {
+			testContext.assertTrue(System.currentTimeMillis() - start >= 600L, "should fire after the new delay");
+			testContext.assertFalse(scheduler.rescheduleTimer(new TimerId(timerId), 100L), "fired timers cannot be rescheduled");
+			async.complete();
+		});
+		testContext.assertTrue(scheduler.cancelTimer(cancelled));
+		testContext.assertFalse(scheduler.cancelTimer(cancelled));
+		testContext.assertTrue(scheduler.rescheduleTimer(rescheduled, 600L));
+		testContext.assertEquals(1, scheduler.getTimerCount());
+	}
+
+	@Test(timeout = 5000)
+	public void testCloseCancelsAllTimers(TestContext testContext) {
+		TimerWheel wheel = TimerWheel.get(contextRule.vertx());
+		WheelScheduler game1 = wheel.scheduler();
+		WheelScheduler game2 = wheel.scheduler();
+		int before = wheel.getTimerCount();
+		for (int i = 0; i < 100; i++) {
+			game1.setTimer(200L, timerId -> testContext.fail("closed scheduler's timer fired"));
+		}
+		Async async = testContext.async();
+		game2.setTimer(400L, timerId -> {
+			testContext.assertEquals(before, wheel.getTimerCount());
+			async.complete();
+		});
+		testContext.assertEquals(before + 101, wheel.getTimerCount());
+		game1.close(Future.future());
+		testContext.assertEquals(0, game1.getTimerCount());
+		testContext.assertEquals(before + 1, wheel.getTimerCount());
+	}
+
+	@Test(timeout = 5000)
+	public void testWheelClosesWithVertx(TestContext testContext) {
+		Vertx vertx = Vertx.vertx();
+		TimerWheel wheel = TimerWheel.get(vertx);
+		testContext.assertTrue(wheel == TimerWheel.get(vertx));
+		wheel.scheduler().setTimer(200L, timerId -> testContext.fail("timer fired after its instance closed"));
+		vertx.close(testContext.asyncAssertSuccess(v -> testContext.assertTrue(wheel.isClosed())));
+	}
+}
@@ -0,0 +1,97 @@
+package com.hiddenswitch.spellsource.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hiddenswitch.spellsource.util.QuickJson.json;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(VertxUnitRunner.class)
+public class IdLoaderTest {
+
+	@Rule
+	public RunTestOnContext contextRule = new RunTestOnContext();
+
+	@SuppressWarnings("unchecked")
+	private static MongoClient mockClient(String collection) {
+		MongoClient client = mock(MongoClient.class);
+		// Answers an $in query with a document for every ID except "missing"
+		when(client.find(eq(collection), any(JsonObject.class), any(Handler.class))).thenAnswer(invocation -> {
+			JsonArray ids = invocation.<JsonObject>getArgument(1).getJsonObject("_id").getJsonArray("$in");
+			List<JsonObject> documents = new ArrayList<>();
+			for (Object id : ids) {
+				if (!"missing".equals(id)) {
+					documents.add(json("_id", id));
+				}
+			}
+			invocation.<Handler<AsyncResult<List<JsonObject>>>>getArgument(2).handle(Future.succeededFuture(documents));
+			return client;
+		});
+		when(client.findOne(eq(collection), any(JsonObject.class), any(), any(Handler.class))).thenAnswer(invocation -> {
+			invocation.<Handler<AsyncResult<JsonObject>>>getArgument(3).handle(Future.succeededFuture(json("_id", invocation.<JsonObject>getArgument(1).getString("_id"))));
+			return client;
+		});
+		return client;
+	}
+
+	@Test(timeout = 5000L)
+	@SuppressWarnings("unchecked")
+	public void testLookupsInOneTickShareOneQuery(TestContext testContext) {
+		MongoClient client = mockClient("test");
+		IdLoader loader = IdLoader.get(Vertx.currentContext());
+		String[] ids = {"a", "b", "a", "missing"};
+		AtomicInteger remaining = new AtomicInteger(ids.length);
+		Async async = testContext.async();
+		for (String id : ids) {
+			loader.load(client, "test", id, testContext.asyncAssertSuccess(document -> {
+				if (id.equals("missing")) {
+					testContext.assertNull(document);
+				} else {
+					testContext.assertEquals(id, document.getString("_id"));
+				}
+				if (remaining.decrementAndGet() == 0) {
+					verify(client, times(1)).find(eq("test"), any(JsonObject.class), any(Handler.class));
+					verify(client, never()).findOne(any(), any(), any(), any(Handler.class));
+					async.complete();
+				}
+			}));
+		}
+		// The query is only sent once the current tick's lookups are gathered
+		verify(client, never()).find(any(), any(), any(Handler.class));
+	}
+
+	@Test(timeout = 5000L)
+	@SuppressWarnings("unchecked")
+	public void testLookupsInDifferentTicksAreNotBatched(TestContext testContext) {
+		MongoClient client = mockClient("test");
+		IdLoader loader = IdLoader.get(Vertx.currentContext());
+		Async async = testContext.async();
+		loader.load(client, "test", "a", testContext.asyncAssertSuccess(first -> {
+			loader.load(client, "test", "b", testContext.asyncAssertSuccess(second -> {
+				testContext.assertEquals("b", second.getString("_id"));
+				// A single lookup is sent as a plain findOne
+				verify(client, times(2)).findOne(eq("test"), any(JsonObject.class), any(), any(Handler.class));
+				verify(client, never()).find(any(), any(), any(Handler.class));
+				async.complete();
+			}));
+		}));
+	}
+}